@@ -0,0 +1,286 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The AllocationCheck class verifies that the game does not allocate in steady state, so GC
+ * pauses stay out of gameplay as the code evolves. It boots a headless world and plays a
+ * scripted scenario (enemies spawning, combat, a boss fight through its phases, the transition
+ * to the next stage), first a few times to warm up (JIT, pools, grown arrays, painted
+ * sprites), then once more while measuring every tick: the bytes {@code update()} allocates
+ * and the bytes {@code drawGame()} allocates drawing into an offscreen image, on this thread,
+ * via ThreadMXBean. A tick over budget is reported with the phases that allocated (see
+ * PerfStats).
+ *
+ * Ticks where the game creates something by design (an enemy, the boss, a stage, a picked up
+ * item, an autosave) are checked against a separate, larger budget for such events. Drawing is not free
+ * even with nothing to create: Java2D allocates a few hundred bytes per frame inside itself
+ * (validating a new Graphics for each font, stroking wide outlines), hence its own budget.
+ *
+ * Usage: {@code java -Djava.awt.headless=true AllocationCheck [warmup rounds]}; budgets in
+ * bytes per tick come from {@code -Dalloc.updateBytes} (default 0), {@code -Dalloc.drawBytes}
+ * (default 2048) and {@code -Dalloc.eventBytes} (default 64 KB). Exits with status 1 if a tick
+ * went over budget.
+ */
+public class AllocationCheck {
+
+    // The scenario, in ticks of one round
+    private static final int TICKS = 3300;
+    private static final int BOSS_TICK = 1200; // Enough score for the boss, who arrives 300 ticks later
+    private static final int KILL_TICK = 2400; // The boss dies, the next stage starts 150 ticks later
+
+    private static final int[] UPDATE_PHASES = {
+            PerfStats.TIMERS, PerfStats.PLAYER, PerfStats.CHUNKS, PerfStats.ENEMIES, PerfStats.ECS_AI,
+            PerfStats.ECS_MOVE, PerfStats.ECS_COLLIDE, PerfStats.EFFECTS, PerfStats.UPKEEP
+    };
+    private static final int[] DRAW_PHASES = {PerfStats.RENDER_TILES, PerfStats.RENDER_ENTITIES, PerfStats.RENDER_HUD};
+    private static final String[] BOSS_ACTIONS = {"idle", "jump", "rapid fire", "360 shot", "dash"};
+    private static final int MAX_REPORTED = 20;
+
+    private final GamePanel gp;
+    private final long updateBudget;
+    private final long drawBudget;
+    private final long eventBudget;
+    private final BufferedImage frame;
+
+    // Results of the measured round
+    private final long[] phaseTotals = new long[PerfStats.PHASE_NAMES.length];
+    private final Set<String> segments = new LinkedHashSet<>();
+    private long maxUpdate, maxDraw, maxEvent;
+    private int eventTicks = 0;
+    private int failures = 0;
+
+    /**
+     * Constructor for AllocationCheck.
+     *
+     * @param gp The game to play.
+     * @param updateBudget Bytes update() may allocate in a tick without events.
+     * @param drawBudget Bytes drawGame() may allocate in a tick without events.
+     * @param eventBudget Bytes a tick with an event may allocate, update and draw together.
+     */
+    public AllocationCheck(GamePanel gp, long updateBudget, long drawBudget, long eventBudget) {
+        this.gp = gp;
+        this.updateBudget = updateBudget;
+        this.drawBudget = drawBudget;
+        this.eventBudget = eventBudget;
+        this.frame = new BufferedImage(gp.screenWidth, gp.screenHeight, BufferedImage.TYPE_INT_RGB);
+    }
+
+    /**
+     * Runs the check.
+     *
+     * @param args Optional number of warm-up rounds (default 3).
+     */
+    public static void main(String[] args) {
+        int warmupRounds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        if (System.getProperty("game.seed") == null) {
+            System.setProperty("game.seed", "1"); // Same world and boss every run
+        }
+        if (System.getProperty("log.level") == null) {
+            Log.setLevel(Log.WARN); // Keep pickups and spawns out of the report
+        }
+
+        GamePanel gp = new GamePanel();
+        if (gp.perf.currentThreadAllocatedBytes() == 0) {
+            System.out.println("This JVM cannot measure the bytes a thread allocates.");
+            System.exit(2);
+        }
+        gp.perf.trackAllocations = true;
+        AllocationCheck check = new AllocationCheck(gp,
+                Long.getLong("alloc.updateBytes", 0),
+                Long.getLong("alloc.drawBytes", 2048),
+                Long.getLong("alloc.eventBytes", 64 << 10));
+
+        for (int round = 0; round < warmupRounds; round++) {
+            check.playRound(false);
+        }
+        check.playRound(true);
+        System.exit(check.report() ? 0 : 1);
+    }
+
+    /**
+     * Plays the scenario once from a fresh game.
+     *
+     * @param measure Whether to check and record this round.
+     */
+    void playRound(boolean measure) {
+        gp.resetGame();
+        gp.playerName = "alloc";
+        gp.gameState = gp.playState;
+
+        for (int tick = 0; tick < TICKS; tick++) {
+            if (gp.gameState != gp.playState) {
+                throw new IllegalStateException("The scenario left play state at tick " + tick);
+            }
+            long before = signature();
+            script(tick);
+
+            gp.perf.clearLastAllocated();
+            long start = gp.perf.currentThreadAllocatedBytes();
+            gp.update();
+            long updateBytes = gp.perf.currentThreadAllocatedBytes() - start;
+
+            // A new Graphics per frame, as Swing paints, but creating it is not the game's doing
+            Graphics2D g2 = frame.createGraphics();
+            start = gp.perf.currentThreadAllocatedBytes();
+            gp.drawGame(g2);
+            long drawBytes = gp.perf.currentThreadAllocatedBytes() - start;
+            g2.dispose();
+
+            if (measure) {
+                check(tick, updateBytes, drawBytes, before != signature());
+            }
+        }
+    }
+
+    /**
+     * Drives the player and the story: walking a square and swinging throughout, enough score
+     * for the boss at BOSS_TICK, the boss dying at KILL_TICK.
+     *
+     * @param tick The tick of the round.
+     */
+    private void script(int tick) {
+        KeyHandler k = gp.keyH;
+        gp.player.invincible = true; // The run must not end in game over, a boss hit can be lethal
+        gp.player.hp = gp.player.maxHp;
+        k.spacePressed = tick % 20 == 0;
+        int side = tick / 60 % 4;
+        k.upPressed = side == 0;
+        k.rightPressed = side == 1;
+        k.downPressed = side == 2;
+        k.leftPressed = side == 3;
+
+        if (tick == BOSS_TICK) {
+            gp.addScore(gp.nextBossScore);
+        }
+        if (tick == KILL_TICK) {
+            for (int i = 0; i < gp.enemies.size(); i++) {
+                Enemy e = gp.enemies.get(i);
+                if (e.isBoss && e.alive) e.takeDamage(e.hp);
+            }
+        }
+    }
+
+    /**
+     * Returns a hash of what ticks create or destroy: when it changes, the tick had an event.
+     */
+    private long signature() {
+        long h = gp.enemies.size();
+        h = h * 31 + gp.spawners.size();
+        h = h * 31 + gp.lootBoxes.size();
+        h = h * 31 + gp.floatingTexts.size();
+        // Dropping expired damage numbers takes a sublist view, even when a new one replaces them
+        h = h * 31 + gp.damageNumbers.size();
+        h = h * 31 + gp.damageNumberPool.getHits() + gp.damageNumberPool.getMisses();
+        h = h * 31 + gp.stage;
+        h = h * 31 + gp.player.attackRange; // A range potion paints a new attack circle
+        h = h * 31 + gp.saves.lastCaptureNanos; // An autosave hands the snapshot to the writer
+        h = h * 8 + (gp.bossActive ? 4 : 0) + (gp.bossSpawnPending ? 2 : 0) + (gp.stageTransitionPending ? 1 : 0);
+        return h;
+    }
+
+    /**
+     * Returns the part of the scenario the game is in.
+     */
+    private String segment() {
+        if (gp.stageTransitionPending) return "stage transition";
+        if (gp.bossSpawnPending) return "boss incoming";
+        if (gp.bossActive) {
+            for (int i = 0; i < gp.enemies.size(); i++) {
+                Enemy e = gp.enemies.get(i);
+                if (e.isBoss) return "boss " + BOSS_ACTIONS[e.bossAction];
+            }
+        }
+        return "stage " + gp.stage;
+    }
+
+    /**
+     * Checks one measured tick against the budgets and adds it to the totals.
+     */
+    private void check(int tick, long updateBytes, long drawBytes, boolean event) {
+        String segment = segment();
+        segments.add(segment);
+        for (int p = 0; p < phaseTotals.length; p++) {
+            phaseTotals[p] += gp.perf.getLastAllocatedBytes(p);
+        }
+
+        if (event) {
+            eventTicks++;
+            maxEvent = Math.max(maxEvent, updateBytes + drawBytes);
+            if (updateBytes + drawBytes > eventBudget) {
+                fail(tick, segment + ", event", "update + draw", updateBytes + drawBytes, eventBudget,
+                        phases(UPDATE_PHASES, updateBytes) + phases(DRAW_PHASES, drawBytes));
+            }
+            return;
+        }
+        maxUpdate = Math.max(maxUpdate, updateBytes);
+        maxDraw = Math.max(maxDraw, drawBytes);
+        if (updateBytes > updateBudget) {
+            fail(tick, segment, "update()", updateBytes, updateBudget, phases(UPDATE_PHASES, updateBytes));
+        }
+        if (drawBytes > drawBudget) {
+            fail(tick, segment, "drawGame()", drawBytes, drawBudget, phases(DRAW_PHASES, drawBytes));
+        }
+    }
+
+    /**
+     * Lists the phases that allocated in the last tick, and what was allocated outside them.
+     */
+    private String phases(int[] phases, long total) {
+        StringBuilder sb = new StringBuilder();
+        long inPhases = 0;
+        for (int p : phases) {
+            long bytes = gp.perf.getLastAllocatedBytes(p);
+            if (bytes > 0) {
+                sb.append(' ').append(PerfStats.PHASE_NAMES[p]).append('=').append(bytes);
+                inPhases += bytes;
+            }
+        }
+        if (total > inPhases) {
+            sb.append(" outside-phases=").append(total - inPhases);
+        }
+        return sb.toString();
+    }
+
+    private void fail(int tick, String segment, String what, long bytes, long budget, String phases) {
+        failures++;
+        if (failures <= MAX_REPORTED) {
+            System.out.println("Tick " + tick + " (" + segment + "): " + what + " allocated " + bytes
+                    + " B, budget " + budget + " B:" + phases);
+        }
+    }
+
+    /**
+     * Prints the results of the measured round.
+     *
+     * @return Whether every tick stayed within budget.
+     */
+    boolean report() {
+        if (failures > MAX_REPORTED) {
+            System.out.println("... and " + (failures - MAX_REPORTED) + " more");
+        }
+        System.out.println("Segments: " + String.join(", ", segments));
+        System.out.println("Steady ticks: update max " + maxUpdate + " B (budget " + updateBudget
+                + "), draw max " + maxDraw + " B (budget " + drawBudget + ")");
+        System.out.println("Event ticks: " + eventTicks + ", max " + maxEvent + " B (budget " + eventBudget + ")");
+        StringBuilder sb = new StringBuilder("Bytes per phase over " + TICKS + " ticks:");
+        for (int p = 0; p < phaseTotals.length; p++) {
+            if (phaseTotals[p] > 0) {
+                sb.append(' ').append(PerfStats.PHASE_NAMES[p]).append('=').append(phaseTotals[p]);
+            }
+        }
+        System.out.println(sb);
+
+        if (gp.stage < 2) {
+            System.out.println("FAILED: the scenario never reached the next stage");
+            return false;
+        }
+        if (failures > 0) {
+            System.out.println("FAILED: " + failures + " ticks over budget");
+            return false;
+        }
+        System.out.println("OK");
+        return true;
+    }
+}
@@ -0,0 +1,130 @@
+import java.util.Arrays;
+
+/**
+ * The Archetype class stores every ECS entity that has exactly the same set of components.
+ * Components are kept in dense, parallel arrays (structure of arrays) indexed by row, so a system
+ * walks them linearly without chasing object pointers. Arrays for components that are not part
+ * of the archetype's mask are never allocated.
+ */
+public class Archetype {
+
+    /** The component mask (see EntityWorld constants) shared by every row. */
+    public final int mask;
+    /** The number of live rows. Rows [0, count) are valid. */
+    public int count = 0;
+    /** The entity id stored in each row. */
+    public int[] entityIds;
+
+    // POSITION (world pixels)
+    public float[] posX, posY;
+    // VELOCITY (pixels per tick)
+    public float[] velX, velY;
+    // HEALTH
+    public int[] hp, maxHp;
+    // COLLIDER (square box, size in pixels) and whether the last move was blocked by a wall
+    public int[] colliderSize;
+    public boolean[] hitWall;
+    // AI (behaviour id and its cooldown in ticks)
+    public int[] aiType, aiCooldown;
+    // RENDERABLE (what to draw, see RenderSystem)
+    public int[] renderKind;
+    // LIFETIME (ticks left before the entity is destroyed)
+    public int[] lifetime;
+    // DAMAGE (dealt to the player on contact)
+    public int[] damage;
+
+    /**
+     * Constructor for Archetype.
+     *
+     * @param mask The component mask.
+     * @param capacity The initial number of rows.
+     */
+    public Archetype(int mask, int capacity) {
+        this.mask = mask;
+        allocate(capacity);
+    }
+
+    /**
+     * Checks if this archetype has every component in the given mask.
+     *
+     * @param required The components a system needs.
+     * @return True if all of them are present.
+     */
+    public boolean has(int required) {
+        return (mask & required) == required;
+    }
+
+    /**
+     * Appends a zeroed row for a new entity.
+     *
+     * @param entityId The id of the entity.
+     * @return The row index.
+     */
+    int add(int entityId) {
+        if (count == entityIds.length) {
+            allocate(entityIds.length * 2);
+        }
+        int row = count++;
+        entityIds[row] = entityId;
+        clearRow(row);
+        return row;
+    }
+
+    /**
+     * Removes a row by moving the last row into its place (swap-remove).
+     *
+     * @param row The row to remove.
+     * @return The entity id that now occupies the row, or -1 if the removed row was the last one.
+     */
+    int swapRemove(int row) {
+        int last = --count;
+        if (row == last) {
+            return -1;
+        }
+        entityIds[row] = entityIds[last];
+        if (posX != null) { posX[row] = posX[last]; posY[row] = posY[last]; }
+        if (velX != null) { velX[row] = velX[last]; velY[row] = velY[last]; }
+        if (hp != null) { hp[row] = hp[last]; maxHp[row] = maxHp[last]; }
+        if (colliderSize != null) { colliderSize[row] = colliderSize[last]; hitWall[row] = hitWall[last]; }
+        if (aiType != null) { aiType[row] = aiType[last]; aiCooldown[row] = aiCooldown[last]; }
+        if (renderKind != null) renderKind[row] = renderKind[last];
+        if (lifetime != null) lifetime[row] = lifetime[last];
+        if (damage != null) damage[row] = damage[last];
+        return entityIds[row];
+    }
+
+    private void clearRow(int row) {
+        if (posX != null) { posX[row] = 0; posY[row] = 0; }
+        if (velX != null) { velX[row] = 0; velY[row] = 0; }
+        if (hp != null) { hp[row] = 0; maxHp[row] = 0; }
+        if (colliderSize != null) { colliderSize[row] = 0; hitWall[row] = false; }
+        if (aiType != null) { aiType[row] = 0; aiCooldown[row] = 0; }
+        if (renderKind != null) renderKind[row] = 0;
+        if (lifetime != null) lifetime[row] = 0;
+        if (damage != null) damage[row] = 0;
+    }
+
+    private void allocate(int capacity) {
+        entityIds = grow(entityIds, capacity);
+        if ((mask & EntityWorld.POSITION) != 0) { posX = grow(posX, capacity); posY = grow(posY, capacity); }
+        if ((mask & EntityWorld.VELOCITY) != 0) { velX = grow(velX, capacity); velY = grow(velY, capacity); }
+        if ((mask & EntityWorld.HEALTH) != 0) { hp = grow(hp, capacity); maxHp = grow(maxHp, capacity); }
+        if ((mask & EntityWorld.COLLIDER) != 0) { colliderSize = grow(colliderSize, capacity); hitWall = grow(hitWall, capacity); }
+        if ((mask & EntityWorld.AI) != 0) { aiType = grow(aiType, capacity); aiCooldown = grow(aiCooldown, capacity); }
+        if ((mask & EntityWorld.RENDERABLE) != 0) renderKind = grow(renderKind, capacity);
+        if ((mask & EntityWorld.LIFETIME) != 0) lifetime = grow(lifetime, capacity);
+        if ((mask & EntityWorld.DAMAGE) != 0) damage = grow(damage, capacity);
+    }
+
+    private static int[] grow(int[] a, int capacity) {
+        return a == null ? new int[capacity] : Arrays.copyOf(a, capacity);
+    }
+
+    private static float[] grow(float[] a, int capacity) {
+        return a == null ? new float[capacity] : Arrays.copyOf(a, capacity);
+    }
+
+    private static boolean[] grow(boolean[] a, int capacity) {
+        return a == null ? new boolean[capacity] : Arrays.copyOf(a, capacity);
+    }
+}
@@ -0,0 +1,82 @@
+import java.util.Random;
+
+/**
+ * The BspGenerator class builds classic rooms-and-corridors dungeons with binary space
+ * partitioning: the map is split recursively into leaves, each leaf gets a rectangular room,
+ * and the two halves of every split are joined by an L-shaped corridor, so every room is reachable.
+ */
+public class BspGenerator implements DungeonGenerator {
+
+    /** Smallest leaf side in tiles; a leaf is only split if both halves stay at least this big. */
+    public int minLeaf = 10;
+
+    @Override
+    public void generate(TileMap map, long seed) {
+        Random rand = new Random(seed);
+        map.fill(TileType.WALL);
+        split(map, rand, 1, 1, map.cols - 2, map.rows - 2); // Keep a wall border
+    }
+
+    /**
+     * Splits an area (or fills it with a room) and returns the packed centre of one of its rooms.
+     */
+    private long split(TileMap map, Random rand, int x, int y, int w, int h) {
+        boolean canSplitX = w >= 2 * minLeaf;
+        boolean canSplitY = h >= 2 * minLeaf;
+        if (!canSplitX && !canSplitY) {
+            return carveRoom(map, rand, x, y, w, h);
+        }
+
+        long a, b;
+        if (canSplitX && (!canSplitY || w > h || (w == h && rand.nextBoolean()))) {
+            int cut = minLeaf + rand.nextInt(w - 2 * minLeaf + 1);
+            a = split(map, rand, x, y, cut, h);
+            b = split(map, rand, x + cut, y, w - cut, h);
+        } else {
+            int cut = minLeaf + rand.nextInt(h - 2 * minLeaf + 1);
+            a = split(map, rand, x, y, w, cut);
+            b = split(map, rand, x, y + cut, w, h - cut);
+        }
+        carveCorridor(map, rand, FloorIndex.col(a), FloorIndex.row(a), FloorIndex.col(b), FloorIndex.row(b));
+        return rand.nextBoolean() ? a : b;
+    }
+
+    private long carveRoom(TileMap map, Random rand, int x, int y, int w, int h) {
+        int roomW, roomH, roomX, roomY;
+        if (w < 6) {
+            roomW = Math.max(1, w - 2);
+            roomX = x + (w - roomW) / 2;
+        } else {
+            roomW = 3 + rand.nextInt(w - 5);
+            roomX = x + 1 + rand.nextInt(w - roomW - 1);
+        }
+        if (h < 6) {
+            roomH = Math.max(1, h - 2);
+            roomY = y + (h - roomH) / 2;
+        } else {
+            roomH = 3 + rand.nextInt(h - 5);
+            roomY = y + 1 + rand.nextInt(h - roomH - 1);
+        }
+        for (int row = roomY; row < roomY + roomH; row++) {
+            for (int col = roomX; col < roomX + roomW; col++) {
+                map.set(col, row, TileType.FLOOR);
+            }
+        }
+        return FloorIndex.pack(roomX + roomW / 2, roomY + roomH / 2);
+    }
+
+    private void carveCorridor(TileMap map, Random rand, int col, int row, int toCol, int toRow) {
+        boolean horizontalFirst = rand.nextBoolean();
+        if (horizontalFirst) {
+            for (; col != toCol; col += col < toCol ? 1 : -1) map.set(col, row, TileType.FLOOR);
+        }
+        for (; row != toRow; row += row < toRow ? 1 : -1) map.set(col, row, TileType.FLOOR);
+        for (; col != toCol; col += col < toCol ? 1 : -1) map.set(col, row, TileType.FLOOR);
+        map.set(toCol, toRow, TileType.FLOOR);
+    }
+
+    @Override
+    public String name() {
+        return "bsp";
+    }
+}
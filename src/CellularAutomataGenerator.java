@@ -0,0 +1,106 @@
+/**
+ * The CellularAutomataGenerator class grows natural-looking caves: the map starts as random
+ * noise and a few smoothing passes turn it into open caverns (a tile becomes wall when most of
+ * its eight neighbours are walls). Caves are usually split into several regions, which
+ * TileManager connects or prunes afterwards (see RegionMap).
+ *
+ * Both the noise and every smoothing pass run in parallel over strips of rows (fork/join, see
+ * StripTask). Each tile's noise is a hash of the seed and its index, so the result does not depend
+ * on how the strips are scheduled.
+ */
+public class CellularAutomataGenerator implements DungeonGenerator {
+
+    /** Rows per parallel strip. */
+    public static final int STRIP_ROWS = 32;
+
+    /** Chance (in percent) that a tile starts as a wall. */
+    public int wallPercent = 45;
+    /** Number of smoothing passes. */
+    public int iterations = 5;
+
+    @Override
+    public void generate(TileMap map, long seed) {
+        int cols = map.cols;
+        int rows = map.rows;
+        byte wall = TileType.WALL.id;
+        byte floor = TileType.FLOOR.id;
+        int strips = (rows + STRIP_ROWS - 1) / STRIP_ROWS;
+
+        // Random noise with a solid border
+        byte[] noise = new byte[cols * rows];
+        StripTask.forEachStrip(strips, cols * rows, strip -> {
+            int end = Math.min(rows, (strip + 1) * STRIP_ROWS);
+            for (int row = strip * STRIP_ROWS; row < end; row++) {
+                for (int col = 0; col < cols; col++) {
+                    int index = row * cols + col;
+                    boolean border = col == 0 || row == 0 || col == cols - 1 || row == rows - 1;
+                    noise[index] = border || percent(seed, index) < wallPercent ? wall : floor;
+                }
+            }
+        });
+
+        // Smoothing passes, double-buffered
+        byte[] current = noise;
+        byte[] next = new byte[cols * rows];
+        for (int i = 0; i < iterations; i++) {
+            byte[] src = current;
+            byte[] dst = next;
+            StripTask.forEachStrip(strips, cols * rows, strip -> {
+                int[] sums = new int[cols];
+                int end = Math.min(rows, (strip + 1) * STRIP_ROWS);
+                for (int row = strip * STRIP_ROWS; row < end; row++) {
+                    smoothRow(src, dst, sums, cols, rows, row, wall, floor);
+                }
+            });
+            next = current;
+            current = dst;
+        }
+
+        map.load(current);
+    }
+
+    /**
+     * Applies one smoothing step to a row: a wall stays a wall with 4+ wall neighbours,
+     * a floor becomes a wall with 5+. The border stays solid.
+     * Walls are first summed per column over the three rows, so each 3x3 count is three adds.
+     */
+    private static void smoothRow(byte[] src, byte[] dst, int[] sums, int cols, int rows, int row, byte wall, byte floor) {
+        int base = row * cols;
+        if (row == 0 || row == rows - 1) {
+            for (int col = 0; col < cols; col++) {
+                dst[base + col] = wall;
+            }
+            return;
+        }
+        int above = base - cols;
+        int below = base + cols;
+        for (int col = 0; col < cols; col++) {
+            sums[col] = (src[above + col] == wall ? 1 : 0) + (src[base + col] == wall ? 1 : 0) + (src[below + col] == wall ? 1 : 0);
+        }
+
+        dst[base] = wall;
+        dst[base + cols - 1] = wall;
+        for (int col = 1; col < cols - 1; col++) {
+            boolean isWall = src[base + col] == wall;
+            int walls = sums[col - 1] + sums[col] + sums[col + 1] - (isWall ? 1 : 0);
+            dst[base + col] = walls >= 5 || (isWall && walls >= 4) ? wall : floor;
+        }
+    }
+
+    /**
+     * Returns a pseudo-random number in 0..99 for a tile (a SplitMix64 hash of seed and index),
+     * so every tile's noise is independent of which thread computes it.
+     */
+    private static int percent(long seed, int index) {
+        long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (int)(((z >>> 32) * 100) >>> 32); // Multiply-shift instead of a modulo
+    }
+
+    @Override
+    public String name() {
+        return "cave";
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * The Chunk class is one square piece of the endless dungeon (see ChunkManager).
+ * It owns the tiles of its area and the little state that has to survive being evicted
+ * from memory: whether it was already populated with spawners and loot.
+ */
+public class Chunk {
+
+    /** The chunk coordinates (in chunks, not tiles). */
+    public final int chunkX, chunkY;
+    /** The tiles of this chunk, indexed by local column and row. */
+    public final TileMap tiles;
+    /** The floor tiles of this chunk (built by the worker once the tiles are final). */
+    public FloorIndex floor;
+    /** True once spawners and loot were placed here, so revisiting does not place them again. */
+    public boolean populated = false;
+    /** True when the chunk differs from what the generator produces and must be spilled to disk on eviction. */
+    public boolean dirty = false;
+
+    /**
+     * Constructor for Chunk. Every tile starts as a wall.
+     *
+     * @param chunkX The chunk column.
+     * @param chunkY The chunk row.
+     */
+    public Chunk(int chunkX, int chunkY) {
+        this.chunkX = chunkX;
+        this.chunkY = chunkY;
+        this.tiles = new TileMap(ChunkManager.CHUNK_SIZE, ChunkManager.CHUNK_SIZE);
+    }
+}
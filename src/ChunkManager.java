@@ -0,0 +1,568 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The ChunkManager class streams the endless dungeon in fixed-size chunks.
+ * Each chunk is generated on demand from the world seed plus its chunk coordinates, so the
+ * same chunk always comes back the same. Generation runs on a background worker ahead of the
+ * player's direction of travel; only a bounded number of chunks stay in memory (least recently
+ * used ones are evicted) and evicted chunks that hold state are spilled to disk, so memory stays
+ * flat no matter how far the player goes.
+ *
+ * Chunk coordinates are kept in 0..WORLD_CHUNKS-1 and the run starts in the middle, so world
+ * pixel coordinates stay positive and small enough for the float positions of the ECS.
+ *
+ * Only the game thread touches the cache; the worker just produces chunks (and writes spills).
+ * Because the worker is a single thread, a spill is always written before the same chunk is read back.
+ * The ring one chunk beyond the resident area is queued as soon as the player changes chunk, so a
+ * chunk is normally resident before anything walks into it and the game thread never waits on the
+ * worker (only a miss, e.g. right after a reset, blocks behind the worker's queue).
+ */
+public class ChunkManager {
+
+    private static final Log.Site LOG_LOAD_FAILED = Log.site(Log.ERROR, "Error loading chunk {},{}: {}");
+    private static final Log.Site LOG_READ_FAILED = Log.site(Log.ERROR, "Error reading chunk {},{}: {}");
+    private static final Log.Site LOG_SPILL_FAILED = Log.site(Log.ERROR, "Error spilling chunk {},{}: {}");
+
+    /** Tiles per chunk side (a power of two). */
+    public static final int CHUNK_SIZE = 64;
+    public static final int CHUNK_SHIFT = 6;
+    /** Chunks per world side (tiles outside are walls). */
+    public static final int WORLD_CHUNKS = 2048;
+    /** The chunk a run starts in. */
+    public static final int ORIGIN = WORLD_CHUNKS / 2;
+
+    // Chunks around the player that are kept warm, the ring loaded before it is needed,
+    // and how far ahead of travel to prefetch
+    private static final int RESIDENT_RADIUS = 2;
+    private static final int PREFETCH_RADIUS = RESIDENT_RADIUS + 1;
+    private static final int PREFETCH_AHEAD = 3;
+
+    private static final int SPILL_MAGIC = 0x43484E4B; // "CHNK"
+
+    private long seed;
+    private final int maxCached;
+    private final Path spillBase;
+    private final Path spillDir;
+    private final ExecutorService worker;
+
+    // Access-ordered LRU of resident chunks; the eldest one is evicted past maxCached
+    private final LinkedHashMap<Long, Chunk> cache;
+    private final HashMap<Long, Future<Chunk>> pending = new HashMap<>();
+
+    // Direct-mapped front cache so hot tile lookups skip the (boxing) hash map
+    private final Chunk[] recent = new Chunk[64];
+
+    // Last focus (player chunk and travel direction) the prefetch was computed for
+    private int focusX = -1, focusY = -1, focusDirX, focusDirY;
+    private int lastCol, lastRow;
+
+    // Stats (written by the worker, and by the game thread for spills and fallbacks)
+    private final AtomicInteger generated = new AtomicInteger();
+    private final AtomicInteger loaded = new AtomicInteger();
+    private final AtomicInteger spilled = new AtomicInteger();
+
+    /**
+     * Constructor for ChunkManager.
+     * The cache size comes from {@code -Dendless.cachedChunks} (default 64, at least enough for the
+     * chunks around the player) and the spill directory from {@code -Dendless.dir} (default "chunks").
+     * Each game process spills into its own "game-&lt;pid&gt;" folder there, so instances started
+     * from the same directory never delete each other's chunks; folders of processes that are
+     * gone are cleaned up on start.
+     *
+     * @param seed The world seed.
+     */
+    public ChunkManager(long seed) {
+        this.seed = seed;
+        int ring = (2 * PREFETCH_RADIUS + 1) * (2 * PREFETCH_RADIUS + 1);
+        this.maxCached = Math.max(ring + 3 * PREFETCH_AHEAD * 2, Integer.getInteger("endless.cachedChunks", 64));
+        this.spillBase = Paths.get(System.getProperty("endless.dir", "chunks"));
+        this.spillDir = spillBase.resolve("game-" + ProcessHandle.current().pid());
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "chunk-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        this.cache = new LinkedHashMap<>(maxCached * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+                if (size() > maxCached) {
+                    evict(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        worker.execute(this::deleteStaleSpills);
+        prefetchAround(ORIGIN, ORIGIN);
+    }
+
+    /**
+     * Starts a new world: drops every chunk (in memory and on disk) and switches to a new seed.
+     *
+     * @param seed The new world seed.
+     */
+    public void reset(long seed) {
+        this.seed = seed;
+        for (Future<Chunk> f : pending.values()) {
+            f.cancel(false);
+        }
+        pending.clear();
+        cache.clear();
+        Arrays.fill(recent, null);
+        focusX = -1;
+        focusY = -1;
+        worker.execute(() -> deleteSpills(spillDir.toFile()));
+        prefetchAround(ORIGIN, ORIGIN); // Generated while the rest of the run is set up
+    }
+
+    /**
+     * Stops the background worker and deletes this world's spills (after any queued write).
+     */
+    public void shutdown() {
+        worker.execute(() -> deleteSpills(spillDir.toFile()));
+        worker.shutdown();
+    }
+
+    /**
+     * Returns the column of the tile a run starts on (the centre of the origin chunk, always floor).
+     */
+    public int startCol() {
+        return ORIGIN * CHUNK_SIZE + CHUNK_SIZE / 2;
+    }
+
+    /**
+     * Returns the row of the tile a run starts on (the centre of the origin chunk, always floor).
+     */
+    public int startRow() {
+        return ORIGIN * CHUNK_SIZE + CHUNK_SIZE / 2;
+    }
+
+    /**
+     * Checks if a tile blocks movement. Tiles outside the world count as solid.
+     *
+     * @param col The world column.
+     * @param row The world row.
+     * @return True for walls and out-of-bounds tiles.
+     */
+    public boolean isSolid(int col, int row) {
+        int chunkX = col >> CHUNK_SHIFT;
+        int chunkY = row >> CHUNK_SHIFT;
+        if (Integer.compareUnsigned(chunkX, WORLD_CHUNKS) >= 0 || Integer.compareUnsigned(chunkY, WORLD_CHUNKS) >= 0) {
+            return true;
+        }
+        return chunkAt(chunkX, chunkY).tiles.isSolid(col & (CHUNK_SIZE - 1), row & (CHUNK_SIZE - 1));
+    }
+
+    /**
+     * Returns the type of a tile. Tiles outside the world are walls.
+     *
+     * @param col The world column.
+     * @param row The world row.
+     * @return The tile type.
+     */
+    public TileType get(int col, int row) {
+        int chunkX = col >> CHUNK_SHIFT;
+        int chunkY = row >> CHUNK_SHIFT;
+        if (Integer.compareUnsigned(chunkX, WORLD_CHUNKS) >= 0 || Integer.compareUnsigned(chunkY, WORLD_CHUNKS) >= 0) {
+            return TileType.WALL;
+        }
+        return chunkAt(chunkX, chunkY).tiles.get(col & (CHUNK_SIZE - 1), row & (CHUNK_SIZE - 1));
+    }
+
+    /**
+     * Picks a random floor tile whose distance to a point lies between two bounds, looking only at
+     * the chunks near the point. A chunk is picked by its number of candidates and asked first;
+     * if it has no tile in range the other chunks are asked in turn, so the query always terminates.
+     *
+     * @param col The column of the point.
+     * @param row The row of the point.
+     * @param minDist The minimum distance in tiles.
+     * @param maxDist The maximum distance in tiles (capped at two chunks).
+     * @param rand The random generator to use.
+     * @return The packed tile (see FloorIndex), or FloorIndex.NONE if no floor tile is in range.
+     */
+    public long randomFloorInRing(int col, int row, int minDist, int maxDist, Random rand) {
+        maxDist = Math.min(maxDist, 2 * CHUNK_SIZE);
+        int cx0 = Math.max(0, (col - maxDist) >> CHUNK_SHIFT);
+        int cx1 = Math.min(WORLD_CHUNKS - 1, (col + maxDist) >> CHUNK_SHIFT);
+        int cy0 = Math.max(0, (row - maxDist) >> CHUNK_SHIFT);
+        int cy1 = Math.min(WORLD_CHUNKS - 1, (row + maxDist) >> CHUNK_SHIFT);
+        if (cx0 > cx1 || cy0 > cy1) {
+            return FloorIndex.NONE;
+        }
+
+        int total = 0;
+        for (int cy = cy0; cy <= cy1; cy++) {
+            for (int cx = cx0; cx <= cx1; cx++) {
+                total += chunkAt(cx, cy).floor.countNear(col - cx * CHUNK_SIZE, row - cy * CHUNK_SIZE, maxDist);
+            }
+        }
+        if (total == 0) {
+            return FloorIndex.NONE;
+        }
+
+        // Find the chunk holding the k-th candidate, then walk all chunks from there
+        int k = rand.nextInt(total);
+        int width = cx1 - cx0 + 1;
+        int chunks = width * (cy1 - cy0 + 1);
+        int first = 0;
+        for (int i = 0; i < chunks; i++) {
+            int cx = cx0 + i % width;
+            int cy = cy0 + i / width;
+            k -= chunkAt(cx, cy).floor.countNear(col - cx * CHUNK_SIZE, row - cy * CHUNK_SIZE, maxDist);
+            if (k < 0) {
+                first = i;
+                break;
+            }
+        }
+        for (int n = 0; n < chunks; n++) {
+            int i = (first + n) % chunks;
+            int cx = cx0 + i % width;
+            int cy = cy0 + i / width;
+            long tile = chunkAt(cx, cy).floor.randomTileInRing(col - cx * CHUNK_SIZE, row - cy * CHUNK_SIZE, minDist, maxDist, rand);
+            if (tile != FloorIndex.NONE) {
+                return FloorIndex.pack(cx * CHUNK_SIZE + FloorIndex.col(tile), cy * CHUNK_SIZE + FloorIndex.row(tile));
+            }
+        }
+        return FloorIndex.NONE;
+    }
+
+    /**
+     * Marks a chunk as populated (spawners and loot placed).
+     *
+     * @param chunkX The chunk column.
+     * @param chunkY The chunk row.
+     * @return True if the chunk was not populated before, i.e. the caller should populate it now.
+     */
+    public boolean markPopulated(int chunkX, int chunkY) {
+        Chunk chunk = chunkAt(chunkX, chunkY);
+        if (chunk.populated) {
+            return false;
+        }
+        chunk.populated = true;
+        chunk.dirty = true;
+        return true;
+    }
+
+    /**
+     * Called once per tick with the player's tile. Collects chunks the worker has finished and,
+     * when the player changes chunk or direction, refreshes the chunks around the player and
+     * queues the ones ahead of the direction of travel.
+     *
+     * @param col The player's column.
+     * @param row The player's row.
+     */
+    public void update(int col, int row) {
+        if (!pending.isEmpty()) {
+            collectFinished();
+        }
+
+        int dirX = Integer.signum(col - lastCol);
+        int dirY = Integer.signum(row - lastRow);
+        lastCol = col;
+        lastRow = row;
+
+        int chunkX = col >> CHUNK_SHIFT;
+        int chunkY = row >> CHUNK_SHIFT;
+        if (chunkX == focusX && chunkY == focusY && ((dirX == 0 && dirY == 0) || (dirX == focusDirX && dirY == focusDirY))) {
+            return; // Same chunk, same heading
+        }
+        boolean moved = chunkX != focusX || chunkY != focusY;
+        focusX = chunkX;
+        focusY = chunkY;
+        if (dirX != 0 || dirY != 0) {
+            focusDirX = dirX;
+            focusDirY = dirY;
+        }
+
+        if (moved) {
+            prefetchAround(chunkX, chunkY);
+        }
+
+        // Queue the chunks ahead of the player (a band three chunks wide)
+        for (int ahead = RESIDENT_RADIUS + 1; ahead <= RESIDENT_RADIUS + PREFETCH_AHEAD; ahead++) {
+            for (int side = -1; side <= 1; side++) {
+                if (focusDirX != 0) prefetch(chunkX + focusDirX * ahead, chunkY + side);
+                if (focusDirY != 0) prefetch(chunkX + side, chunkY + focusDirY * ahead);
+            }
+        }
+    }
+
+    /**
+     * Checks if a chunk is close enough to the player to be kept warm.
+     * Entities outside this area are dropped so they do not keep far chunks loaded.
+     *
+     * @param chunkX The chunk column.
+     * @param chunkY The chunk row.
+     * @return True if the chunk is within the resident radius of the player's chunk.
+     */
+    public boolean isNearFocus(int chunkX, int chunkY) {
+        return Math.abs(chunkX - focusX) <= RESIDENT_RADIUS && Math.abs(chunkY - focusY) <= RESIDENT_RADIUS;
+    }
+
+    public int getCachedCount() {
+        return cache.size();
+    }
+
+    public int getGeneratedCount() {
+        return generated.get();
+    }
+
+    public int getLoadedCount() {
+        return loaded.get();
+    }
+
+    public int getSpilledCount() {
+        return spilled.get();
+    }
+
+    /**
+     * Returns a resident chunk, loading (or generating) it on the spot if it is not in memory.
+     */
+    private Chunk chunkAt(int chunkX, int chunkY) {
+        int slot = ((chunkX * 31) + chunkY) & (recent.length - 1);
+        Chunk chunk = recent[slot];
+        if (chunk != null && chunk.chunkX == chunkX && chunk.chunkY == chunkY) {
+            return chunk;
+        }
+
+        Long key = key(chunkX, chunkY);
+        chunk = cache.get(key);
+        if (chunk == null) {
+            // Not resident: take the prefetched one, or produce it now on the worker (after any queued spill)
+            Future<Chunk> future = pending.remove(key);
+            if (future == null) {
+                future = submitLoad(chunkX, chunkY);
+            }
+            chunk = await(future, chunkX, chunkY);
+            cache.put(key, chunk);
+        }
+        recent[slot] = chunk;
+        return chunk;
+    }
+
+    /**
+     * Touches the chunks around a chunk so they are the most recently used part of the LRU, and
+     * queues the ones that are not resident, one ring further than the resident area: whatever
+     * the player (or an enemy near it) walks into next is then already loading.
+     */
+    private void prefetchAround(int chunkX, int chunkY) {
+        for (int y = chunkY - PREFETCH_RADIUS; y <= chunkY + PREFETCH_RADIUS; y++) {
+            for (int x = chunkX - PREFETCH_RADIUS; x <= chunkX + PREFETCH_RADIUS; x++) {
+                Chunk chunk = inWorld(x, y) ? cache.get(key(x, y)) : null;
+                if (chunk == null) {
+                    prefetch(x, y);
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues a chunk for background loading unless it is resident, queued or outside the world.
+     */
+    private void prefetch(int chunkX, int chunkY) {
+        if (!inWorld(chunkX, chunkY)) {
+            return;
+        }
+        Long key = key(chunkX, chunkY);
+        if (cache.containsKey(key) || pending.containsKey(key)) {
+            return;
+        }
+        pending.put(key, submitLoad(chunkX, chunkY));
+    }
+
+    /**
+     * Moves chunks the worker has finished into the cache.
+     */
+    private void collectFinished() {
+        Iterator<Map.Entry<Long, Future<Chunk>>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Future<Chunk>> entry = it.next();
+            Future<Chunk> future = entry.getValue();
+            if (future.isDone()) {
+                it.remove();
+                Chunk chunk = await(future, (int)(entry.getKey() >> 32), (int)(long)entry.getKey());
+                cache.put(entry.getKey(), chunk);
+            }
+        }
+    }
+
+    private Future<Chunk> submitLoad(int chunkX, int chunkY) {
+        long chunkSeed = seed;
+        return worker.submit(() -> load(chunkSeed, chunkX, chunkY));
+    }
+
+    private Chunk await(Future<Chunk> future, int chunkX, int chunkY) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOG_LOAD_FAILED.log(chunkX, chunkY, e.getCause());
+        }
+        return generate(seed, chunkX, chunkY); // Fall back to the generator, on this thread
+    }
+
+    /**
+     * Called by the LRU when a chunk falls out of memory.
+     */
+    private void evict(Chunk chunk) {
+        int slot = ((chunk.chunkX * 31) + chunk.chunkY) & (recent.length - 1);
+        if (recent[slot] == chunk) {
+            recent[slot] = null;
+        }
+        if (chunk.dirty) {
+            spilled.incrementAndGet();
+            worker.execute(() -> spill(chunk));
+        }
+    }
+
+    /**
+     * Reads a spilled chunk back from disk, or generates it if it was never spilled. Runs on the worker.
+     */
+    private Chunk load(long chunkSeed, int chunkX, int chunkY) {
+        File file = spillFile(chunkX, chunkY);
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() == SPILL_MAGIC) {
+                    Chunk chunk = new Chunk(chunkX, chunkY);
+                    chunk.populated = in.readBoolean();
+                    chunk.tiles.read(in);
+                    chunk.floor = new FloorIndex(chunk.tiles);
+                    chunk.dirty = true; // Still differs from the generator
+                    loaded.incrementAndGet();
+                    return chunk;
+                }
+            } catch (IOException e) {
+                LOG_READ_FAILED.log(chunkX, chunkY, e.getMessage());
+            }
+        }
+        return generate(chunkSeed, chunkX, chunkY);
+    }
+
+    /**
+     * Writes a chunk to disk. Runs on the worker.
+     */
+    private void spill(Chunk chunk) {
+        try {
+            Files.createDirectories(spillDir);
+            File file = spillFile(chunk.chunkX, chunk.chunkY);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                out.writeInt(SPILL_MAGIC);
+                out.writeBoolean(chunk.populated);
+                chunk.tiles.write(out);
+            }
+        } catch (IOException e) {
+            LOG_SPILL_FAILED.log(chunk.chunkX, chunk.chunkY, e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes the spill folders of this process (left by an earlier process with the same pid)
+     * and of game processes that are no longer running. Runs on the worker.
+     */
+    private void deleteStaleSpills() {
+        File[] dirs = spillBase.toFile().listFiles((dir, name) -> name.startsWith("game-"));
+        if (dirs == null) {
+            return;
+        }
+        long self = ProcessHandle.current().pid();
+        for (File dir : dirs) {
+            long pid;
+            try {
+                pid = Long.parseLong(dir.getName().substring("game-".length()));
+            } catch (NumberFormatException e) {
+                continue; // Not ours
+            }
+            if (pid == self || !ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false)) {
+                deleteSpills(dir);
+            }
+        }
+    }
+
+    /**
+     * Deletes every spilled chunk in a folder, and the folder. Runs on the worker.
+     */
+    private static void deleteSpills(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.startsWith("chunk_"));
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete(); // Only if empty
+    }
+
+    private File spillFile(int chunkX, int chunkY) {
+        return spillDir.resolve("chunk_" + chunkX + "_" + chunkY + ".bin").toFile();
+    }
+
+    /**
+     * Generates a chunk from the seed and its coordinates: a random walker cave around the centre,
+     * plus corridors from the centre to the middle of every edge so neighbouring chunks always connect.
+     */
+    private Chunk generate(long worldSeed, int chunkX, int chunkY) {
+        Chunk chunk = new Chunk(chunkX, chunkY);
+        TileMap tiles = chunk.tiles;
+        Random rand = new Random(worldSeed ^ (chunkX * 0x9E3779B97F4A7C15L) ^ (chunkY * 0xC2B2AE3D27D4EB4FL));
+
+        int mid = CHUNK_SIZE / 2;
+
+        // Random walker, same brush as the fixed dungeon (1500 steps per 100x100 tiles)
+        int x = mid;
+        int y = mid;
+        int steps = 1500 * CHUNK_SIZE * CHUNK_SIZE / (100 * 100);
+        for (int i = 0; i < steps; i++) {
+            int direction = rand.nextInt(4);
+            if (direction == 0) y--;
+            if (direction == 1) y++;
+            if (direction == 2) x--;
+            if (direction == 3) x++;
+
+            if (x < 2) x = 2;
+            if (x > CHUNK_SIZE - 3) x = CHUNK_SIZE - 3;
+            if (y < 2) y = 2;
+            if (y > CHUNK_SIZE - 3) y = CHUNK_SIZE - 3;
+
+            for (int rX = -1; rX <= 1; rX++) {
+                for (int rY = -1; rY <= 1; rY++) {
+                    tiles.set(x + rX, y + rY, TileType.FLOOR);
+                }
+            }
+        }
+
+        // Edge connectors (3 tiles wide)
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            for (int w = -1; w <= 1; w++) {
+                tiles.set(i, mid + w, TileType.FLOOR);
+                tiles.set(mid + w, i, TileType.FLOOR);
+            }
+        }
+
+        chunk.floor = new FloorIndex(tiles);
+        generated.incrementAndGet();
+        return chunk;
+    }
+
+    private static boolean inWorld(int chunkX, int chunkY) {
+        return Integer.compareUnsigned(chunkX, WORLD_CHUNKS) < 0 && Integer.compareUnsigned(chunkY, WORLD_CHUNKS) < 0;
+    }
+
+    private static Long key(int chunkX, int chunkY) {
+        return ((long)chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+    }
+}
@@ -6,17 +6,35 @@ import java.util.Random;
 public class DamageNumber {
     public double x, y;
     public int value;
-    public int lifeTime;
     public int maxLifeTime = 60; // 1 second at 60 FPS
     public boolean active = true;
+    /** Fires when the number has lived maxLifeTime ticks. */
+    public TimerWheel.Timer lifeTime = new TimerWheel.Timer(() -> active = false);
     
     private double motionX, motionY;
+    private final TextBuffer text = new TextBuffer();
     
-    public DamageNumber(int startX, int startY, int value) {
+    /**
+     * Creates an empty damage number for the pool. Call reset() before use.
+     */
+    public DamageNumber() {
+        active = false;
+    }
+    
+    public DamageNumber(TimerWheel timers, Random rand, int startX, int startY, int value) {
+        reset(timers, rand, startX, startY, value);
+    }
+    
+    /**
+     * Re-initialises this instance so it can be reused from the pool.
+     *
+     * @param rand The game's random source, so replays scatter numbers the same way.
+     */
+    public void reset(TimerWheel timers, Random rand, int startX, int startY, int value) {
         this.value = value;
-        this.lifeTime = maxLifeTime;
+        this.active = true;
+        timers.schedule(lifeTime, maxLifeTime);
         
-        Random rand = new Random();
         // Random offset for start location (jitter) - Increased spread
         this.x = startX + rand.nextInt(80) - 40; 
         this.y = startY + rand.nextInt(80) - 40;
@@ -30,18 +48,12 @@ public class DamageNumber {
     }
     
     public void update() {
-        lifeTime--;
-        
         x += motionX;
         y += motionY;
         
         // Friction to slow down the pop - Reduced friction so they travel further
         motionX *= 0.98;
         motionY *= 0.98;
-        
-        if (lifeTime <= 0) {
-            active = false;
-        }
     }
     
     public void draw(Graphics2D g2, GamePanel gp) {
@@ -52,22 +64,22 @@ public class DamageNumber {
             screenY + gp.tileSize > -50 && screenY < gp.screenHeight + 50) {
             
             // Calculate fade out alpha
-            float alpha = (float)lifeTime / maxLifeTime;
+            float alpha = (float)lifeTime.remaining() / maxLifeTime;
             if (alpha < 0) alpha = 0;
             if (alpha > 1) alpha = 1;
             
             // Larger, Bold Font
-            g2.setFont(g2.getFont().deriveFont(Font.BOLD, 32F));
+            g2.setFont(TextBuffer.font(g2, Font.BOLD, 32F));
             
-            String text = "DMG " + value;
+            text.clear().append("DMG ").append(value);
             
             // Shadow (Black with alpha)
-            g2.setColor(new Color(0f, 0f, 0f, alpha));
-            g2.drawString(text, screenX + 2, screenY + 2);
+            g2.setColor(TextBuffer.withAlpha(Color.black, TextBuffer.alpha(alpha)));
+            text.draw(g2, screenX + 2, screenY + 2);
             
             // Text (Red with alpha)
-            g2.setColor(new Color(1f, 0f, 0f, alpha));
-            g2.drawString(text, screenX, screenY);
+            g2.setColor(TextBuffer.withAlpha(Color.red, TextBuffer.alpha(alpha)));
+            text.draw(g2, screenX, screenY);
         }
     }
 }
@@ -0,0 +1,105 @@
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * The DungeonBenchmark class compares the dungeon generators (see DungeonGenerator).
+ * It generates many seeded maps in parallel and reports throughput, time per map, how much of
+ * the map is floor and how connected the raw output is (before TileManager repairs pockets).
+ * Then it times one large map per generator, where the strip-parallel generators pull ahead.
+ *
+ * Usage: {@code java DungeonBenchmark [cols] [rows] [maps] [largeSize] [generator...]}
+ * (defaults: 100 100 5000 2048 and every generator).
+ */
+public class DungeonBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Optional map size, map count, large map size and generator names.
+     */
+    public static void main(String[] args) {
+        int cols = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int rows = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int maps = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+        int largeSize = args.length > 3 ? Integer.parseInt(args[3]) : 2048;
+
+        DungeonGenerator[] generators;
+        if (args.length > 4) {
+            generators = new DungeonGenerator[args.length - 4];
+            for (int i = 4; i < args.length; i++) {
+                generators[i - 4] = DungeonGenerator.byName(args[i]);
+                if (generators[i - 4] == null) {
+                    System.out.println("Unknown generator: " + args[i]);
+                    return;
+                }
+            }
+        } else {
+            generators = DungeonGenerator.all();
+        }
+
+        System.out.println(maps + " maps of " + cols + "x" + rows + " on " + Runtime.getRuntime().availableProcessors() + " cores");
+        System.out.println(String.format("%-12s %10s %10s %8s %10s %10s %8s", "generator", "maps/s", "ms/map", "floor%", "connected%", "regions", "main%"));
+        for (DungeonGenerator generator : generators) {
+            run(generator, cols, rows, Math.min(200, maps), false); // Warm up
+            run(generator, cols, rows, maps, true);
+        }
+
+        System.out.println();
+        System.out.println("One " + largeSize + "x" + largeSize + " map");
+        for (DungeonGenerator generator : generators) {
+            TileMap map = new TileMap(largeSize, largeSize);
+            generator.generate(map, 1); // Warm up
+            long start = System.nanoTime();
+            generator.generate(map, 2);
+            long genNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            RegionMap regions = RegionMap.label(map);
+            long labelNanos = System.nanoTime() - start;
+            System.out.println(String.format("%-12s generate %8.1f ms  label %7.1f ms  regions %d",
+                    generator.name(), genNanos / 1e6, labelNanos / 1e6, regions.count()));
+        }
+    }
+
+    private static void run(DungeonGenerator generator, int cols, int rows, int maps, boolean report) {
+        LongAdder genNanos = new LongAdder();
+        LongAdder floorTiles = new LongAdder();
+        LongAdder mainTiles = new LongAdder();
+        LongAdder regionCount = new LongAdder();
+        LongAdder connected = new LongAdder();
+
+        long start = System.nanoTime();
+        IntStream.range(0, maps).parallel().forEach(seed -> {
+            TileMap map = new TileMap(cols, rows);
+            long t0 = System.nanoTime();
+            generator.generate(map, seed);
+            genNanos.add(System.nanoTime() - t0);
+
+            RegionMap regions = RegionMap.label(map);
+            int floor = 0;
+            for (int region = 1; region <= regions.count(); region++) {
+                floor += regions.sizeOf(region);
+            }
+            floorTiles.add(floor);
+            if (regions.largest() != 0) {
+                mainTiles.add(regions.sizeOf(regions.largest()));
+            }
+            regionCount.add(regions.count());
+            if (regions.count() == 1) {
+                connected.increment();
+            }
+        });
+        long elapsed = System.nanoTime() - start;
+
+        if (report) {
+            double tiles = (double)cols * rows * maps;
+            System.out.println(String.format("%-12s %10.0f %10.3f %8.1f %10.1f %10.1f %8.1f",
+                    generator.name(),
+                    maps / (elapsed / 1e9),
+                    genNanos.sum() / 1e6 / maps,
+                    100.0 * floorTiles.sum() / tiles,
+                    100.0 * connected.sum() / maps,
+                    (double)regionCount.sum() / maps,
+                    floorTiles.sum() == 0 ? 0 : 100.0 * mainTiles.sum() / floorTiles.sum()));
+        }
+    }
+}
@@ -0,0 +1,338 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The DungeonFile class reads and writes dungeons in a compact, versioned binary format.
+ * A file holds one stage: the tiles bit-packed into 64-bit words (one bit per tile while only
+ * floor and wall exist, so a 4096x4096 map is 2 MB) plus the spawn tables of the player,
+ * spawners and loot boxes. Curated maps can be saved once and loaded instantly instead of
+ * being generated (see {@code -Ddungeon.file} in TileManager).
+ *
+ * Files are opened with {@link FileChannel#map}: nothing but the header is read up front (unless
+ * the tile width can hold ids no TileType has, then the tiles are checked once), single tiles can
+ * be queried straight from the mapping ({@link #isSolid}), and {@link #toTileMap()} fills a
+ * TileMap with one bulk copy from the page cache. Spawn tiles are checked when a stage is built.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *  0  int   magic "DOJM"
+ *  4  short version
+ *  6  byte  bits per tile (1, 2, 4 or 8)
+ *  7  byte  reserved (0)
+ *  8  int   cols
+ * 12  int   rows
+ * 16  long  seed
+ * 24  long  offset of the tile words (8-byte aligned)
+ * 32  long  offset of the spawn tables
+ * 40  short length of the generator name, then the name (UTF-8)
+ *     ...   tile words, row-major, lowest bits first
+ *     ...   player col, row; spawner count, col/row pairs; loot count, col/row pairs (ints)
+ * </pre>
+ */
+public class DungeonFile {
+
+    public static final int MAGIC = 0x444F4A4D; // "DOJM"
+    public static final short VERSION = 1;
+    private static final int HEADER_SIZE = 42;
+
+    // Spawn tables larger than this are treated as a corrupt file
+    private static final int MAX_TABLE = 1 << 16;
+
+    public final int version;
+    public final int bitsPerTile;
+    public final int cols, rows;
+    public final long seed;
+    /** The name of the generator that made the layout (may be empty). */
+    public final String generator;
+
+    private final MappedByteBuffer data;
+    private final long tilesOffset;
+    private final long tablesOffset;
+
+    private DungeonFile(MappedByteBuffer data) throws IOException {
+        this.data = data;
+        if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException("Not a dungeon file");
+        }
+        this.version = data.getShort(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported dungeon file version " + version);
+        }
+        this.bitsPerTile = data.get(6);
+        this.cols = data.getInt(8);
+        this.rows = data.getInt(12);
+        this.seed = data.getLong(16);
+        this.tilesOffset = data.getLong(24);
+        this.tablesOffset = data.getLong(32);
+        int nameLength = data.getShort(40) & 0xFFFF;
+
+        if (bitsPerTile != 1 && bitsPerTile != 2 && bitsPerTile != 4 && bitsPerTile != 8) {
+            throw new IOException("Bad bits per tile: " + bitsPerTile);
+        }
+        if (cols <= 0 || rows <= 0 || (long)cols * rows > Integer.MAX_VALUE) {
+            throw new IOException("Bad map size: " + cols + "x" + rows);
+        }
+        long words = TileMap.packedWords(cols * rows, bitsPerTile);
+        if (tilesOffset < HEADER_SIZE + nameLength || (tilesOffset & 7) != 0
+                || tablesOffset != tilesOffset + words * 8 || tablesOffset + 16 > data.capacity()) {
+            throw new IOException("Bad dungeon file offsets");
+        }
+        byte[] name = new byte[nameLength];
+        data.get(HEADER_SIZE, name);
+        this.generator = new String(name, StandardCharsets.UTF_8);
+        checkTileIds();
+    }
+
+    /**
+     * Makes sure every tile id is a known TileType. Skipped when every id the tile width can
+     * hold is known (one bit per tile while only floor and wall exist).
+     */
+    private void checkTileIds() throws IOException {
+        int ids = 1 << bitsPerTile;
+        boolean allKnown = true;
+        for (int id = 0; id < ids && allKnown; id++) {
+            allKnown = TileType.fromId((byte)id) != null;
+        }
+        if (allKnown) {
+            return;
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                if (TileType.fromId((byte)tileId(col, row)) == null) {
+                    throw new IOException("Unknown tile id " + tileId(col, row) + " at " + col + "," + row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens a dungeon file. Only the header is read; the rest is paged in when used.
+     *
+     * @param path The file.
+     * @return The opened file.
+     * @throws IOException If the file cannot be read or is not a valid dungeon file.
+     */
+    public static DungeonFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new DungeonFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Returns the id of one tile, read straight from the mapped file.
+     *
+     * @param col The column.
+     * @param row The row.
+     * @return The tile id (see TileType).
+     */
+    public int tileId(int col, int row) {
+        int index = row * cols + col;
+        int perWord = 64 / bitsPerTile;
+        long word = data.getLong((int)(tilesOffset + (long)(index / perWord) * 8));
+        return (int)((word >>> ((index % perWord) * bitsPerTile)) & ((1L << bitsPerTile) - 1));
+    }
+
+    /**
+     * Checks if a tile blocks movement, read straight from the mapped file.
+     * Anything outside the map counts as solid.
+     *
+     * @param col The column.
+     * @param row The row.
+     * @return True for walls and out-of-bounds tiles.
+     */
+    public boolean isSolid(int col, int row) {
+        if (Integer.compareUnsigned(col, cols) >= 0 || Integer.compareUnsigned(row, rows) >= 0) {
+            return true;
+        }
+        return TileType.fromId((byte)tileId(col, row)).solid;
+    }
+
+    /**
+     * Copies the tiles into a new TileMap.
+     *
+     * @return The map.
+     */
+    public TileMap toTileMap() {
+        TileMap map = new TileMap(cols, rows);
+        ByteBuffer view = data.duplicate();
+        view.position((int)tilesOffset);
+        LongBuffer words = view.slice().asLongBuffer();
+        map.readPacked(words, bitsPerTile);
+        return map;
+    }
+
+    /**
+     * Builds a ready-to-install stage from the file: the tiles, their regions and the spawn tables.
+     *
+     * @return The stage.
+     * @throws IOException If the spawn tables are corrupt or place something off the floor.
+     */
+    public StagePlan toStagePlan() throws IOException {
+        TileMap map = toTileMap();
+        ByteBuffer tables = data.duplicate();
+        tables.position((int)tablesOffset);
+        int playerCol = tables.getInt();
+        int playerRow = tables.getInt();
+        checkSpawnTile(map, "player", playerCol, playerRow);
+
+        int spawnerCount = readCount(tables);
+        int[] spawners = readPairs(tables, spawnerCount);
+        int lootCount = readCount(tables);
+        int[] loot = readPairs(tables, lootCount);
+
+        StagePlan plan = new StagePlan(map, RegionMap.label(map), seed, spawnerCount, lootCount);
+        plan.playerCol = playerCol;
+        plan.playerRow = playerRow;
+        for (int i = 0; i < spawnerCount; i++) {
+            checkSpawnTile(map, "spawner", spawners[i * 2], spawners[i * 2 + 1]);
+            plan.spawnerCols[i] = spawners[i * 2];
+            plan.spawnerRows[i] = spawners[i * 2 + 1];
+        }
+        for (int i = 0; i < lootCount; i++) {
+            checkSpawnTile(map, "loot box", loot[i * 2], loot[i * 2 + 1]);
+            plan.lootCols[i] = loot[i * 2];
+            plan.lootRows[i] = loot[i * 2 + 1];
+        }
+        return plan;
+    }
+
+    /**
+     * Writes a stage to a file.
+     *
+     * @param path The file (replaced if it exists).
+     * @param plan The stage.
+     * @param generator The name of the generator that made it (see DungeonGenerator).
+     * @throws IOException If writing fails.
+     */
+    public static void write(Path path, StagePlan plan, String generator) throws IOException {
+        byte[] name = generator.getBytes(StandardCharsets.UTF_8);
+        if (name.length > 0xFFFF) {
+            throw new IOException("Generator name too long");
+        }
+        int bits = TileMap.bitsPerTile();
+        long tilesOffset = (HEADER_SIZE + name.length + 7) & ~7L;
+        long tablesOffset = tilesOffset + (long)TileMap.packedWords(plan.map.cols * plan.map.rows, bits) * 8;
+
+        try (OutputStream file = Files.newOutputStream(path);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeByte(bits);
+            out.writeByte(0);
+            out.writeInt(plan.map.cols);
+            out.writeInt(plan.map.rows);
+            out.writeLong(plan.seed);
+            out.writeLong(tilesOffset);
+            out.writeLong(tablesOffset);
+            out.writeShort(name.length);
+            out.write(name);
+            for (long pad = HEADER_SIZE + name.length; pad < tilesOffset; pad++) {
+                out.writeByte(0);
+            }
+
+            plan.map.writePacked(out, bits);
+
+            out.writeInt(plan.playerCol);
+            out.writeInt(plan.playerRow);
+            out.writeInt(plan.spawnerCols.length);
+            for (int i = 0; i < plan.spawnerCols.length; i++) {
+                out.writeInt(plan.spawnerCols[i]);
+                out.writeInt(plan.spawnerRows[i]);
+            }
+            out.writeInt(plan.lootCols.length);
+            for (int i = 0; i < plan.lootCols.length; i++) {
+                out.writeInt(plan.lootCols[i]);
+                out.writeInt(plan.lootRows[i]);
+            }
+        }
+    }
+
+    private static void checkSpawnTile(TileMap map, String what, int col, int row) throws IOException {
+        if (map.isSolid(col, row)) { // Out of bounds counts as solid
+            throw new IOException("Bad " + what + " tile " + col + "," + row);
+        }
+    }
+
+    private static int readCount(ByteBuffer tables) throws IOException {
+        int count = tables.remaining() >= 4 ? tables.getInt() : -1;
+        if (count < 0 || count > MAX_TABLE || tables.remaining() < count * 8) {
+            throw new IOException("Bad spawn table");
+        }
+        return count;
+    }
+
+    private static int[] readPairs(ByteBuffer tables, int count) {
+        int[] pairs = new int[count * 2];
+        tables.asIntBuffer().get(pairs);
+        tables.position(tables.position() + count * 8);
+        return pairs;
+    }
+
+    /**
+     * Command-line tool for curating maps.
+     * <pre>
+     * java DungeonFile generate &lt;file&gt; [generator] [cols] [rows] [seed]
+     * java DungeonFile info &lt;file&gt;
+     * </pre>
+     *
+     * @param args The command-line arguments.
+     * @throws Exception If a file cannot be read or written.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 2 && args[0].equals("generate")) {
+            DungeonGenerator generator = args.length > 2 ? DungeonGenerator.byName(args[2]) : TileManager.GENERATOR;
+            if (generator == null) {
+                System.out.println("Unknown generator: " + args[2]);
+                return;
+            }
+            // The game's world size by default (see -Dworld.cols and -Dworld.rows)
+            int cols = args.length > 3 ? Integer.parseInt(args[3]) : GamePanel.worldSize("world.cols");
+            int rows = args.length > 4 ? Integer.parseInt(args[4]) : args.length > 3 ? cols : GamePanel.worldSize("world.rows");
+            long seed = args.length > 5 ? Long.parseLong(args[5]) : System.nanoTime();
+
+            long start = System.nanoTime();
+            StagePlan plan = StagePlan.build(generator, cols, rows, 5, 10, seed);
+            long built = System.nanoTime();
+            write(Paths.get(args[1]), plan, generator.name());
+            long written = System.nanoTime();
+            System.out.printf("%s: %dx%d %s seed=%d, generated in %.1f ms, written in %.1f ms (%d bytes)%n",
+                              args[1], cols, rows, generator.name(), seed,
+                              (built - start) / 1e6, (written - built) / 1e6, Files.size(Paths.get(args[1])));
+        } else if (args.length >= 2 && args[0].equals("info")) {
+            long start = System.nanoTime();
+            DungeonFile file = open(Paths.get(args[1]));
+            long opened = System.nanoTime();
+            int walls = 0;
+            int step = Math.max(1, Math.max(file.cols, file.rows) / 256);
+            int sampled = 0;
+            for (int row = 0; row < file.rows; row += step) {
+                for (int col = 0; col < file.cols; col += step) {
+                    if (file.isSolid(col, row)) walls++;
+                    sampled++;
+                }
+            }
+            long scanned = System.nanoTime();
+            file.toTileMap();
+            long loaded = System.nanoTime();
+            System.out.printf("%s: v%d %dx%d %d bit/tile, generator=%s seed=%d%n",
+                              args[1], file.version, file.cols, file.rows, file.bitsPerTile, file.generator, file.seed);
+            System.out.printf("opened in %.2f ms, sampled %d tiles (%.0f%% wall) in %.2f ms, loaded in %.2f ms%n",
+                              (opened - start) / 1e6, sampled, 100.0 * walls / sampled, (scanned - opened) / 1e6, (loaded - scanned) / 1e6);
+        } else {
+            System.out.println("Usage: java DungeonFile generate <file> [generator] [cols] [rows] [seed]");
+            System.out.println("       java DungeonFile info <file>");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * The DungeonGenerator interface is implemented by every algorithm that can lay out a dungeon.
+ * A generator fills the whole map (walls and floor) from a seed, so the same seed and map size
+ * always give the same layout. Reachability is not required: TileManager labels the regions
+ * afterwards and repairs pockets (see RegionMap).
+ */
+public interface DungeonGenerator {
+
+    Log.Site LOG_UNKNOWN_GENERATOR = Log.site(Log.WARN, "Unknown dungeon.generator value: {}, using walker");
+
+    /**
+     * Lays out a dungeon.
+     *
+     * @param map The map to fill; every tile is overwritten.
+     * @param seed The seed of the layout.
+     */
+    void generate(TileMap map, long seed);
+
+    /**
+     * Returns the short name used on the command line and in {@code -Ddungeon.generator}.
+     */
+    String name();
+
+    /**
+     * Creates a generator by name.
+     *
+     * @param name One of walker, bsp, cave, multiwalker.
+     * @return The generator, or null for an unknown name.
+     */
+    static DungeonGenerator byName(String name) {
+        switch (name.toLowerCase()) {
+            case "walker": return new WalkerGenerator();
+            case "bsp": return new BspGenerator();
+            case "cave": return new CellularAutomataGenerator();
+            case "multiwalker": return new MultiWalkerGenerator();
+            default: return null;
+        }
+    }
+
+    /**
+     * Returns every available generator.
+     */
+    static DungeonGenerator[] all() {
+        return new DungeonGenerator[] {
+            new WalkerGenerator(), new BspGenerator(), new CellularAutomataGenerator(), new MultiWalkerGenerator()
+        };
+    }
+
+    /**
+     * Reads the generator from {@code -Ddungeon.generator} (default walker, the original algorithm).
+     *
+     * @return The configured generator.
+     */
+    static DungeonGenerator fromSystemProperties() {
+        String name = System.getProperty("dungeon.generator", "walker");
+        DungeonGenerator generator = byName(name);
+        if (generator == null) {
+            LOG_UNKNOWN_GENERATOR.log(name);
+            generator = new WalkerGenerator();
+        }
+        return generator;
+    }
+}
@@ -1,22 +1,35 @@
 import java.awt.Color;
+import java.awt.Font;
 import java.awt.Graphics2D;
-import java.awt.Rectangle;
 import java.awt.BasicStroke;
-import java.util.Random;
 
 public class Enemy extends Entity {
     
+    private static final Log.Site LOG_MELEE_HIT = Log.site(Log.DEBUG, "Melee enemy hit! Player HP: {}");
+    private static final Log.Site LOG_BOSS_ACTION = Log.site(Log.DEBUG, "Boss action: {}");
+
+    private static final BasicStroke STROKE_1 = new BasicStroke(1);
+    private static final BasicStroke STROKE_2 = new BasicStroke(2);
+    
+    // Shapes shared by all enemies, painted on first draw (see Sprite)
+    private static Sprite shadowSprite;
+    private static Sprite meleeSprite;
+    private static Sprite rangedSprite;
+    private static final Sprite[] bossSprites = new Sprite[5]; // Idle, then the charge color of each action
+
     public int hp;
     public int maxHp;
     public boolean ranged;
     public int damage;
     GamePanel gp;
+    private final TextBuffer hpText = new TextBuffer();
     
-    public int attackCooldown = 0;
+    public TimerWheel.Timer attackCooldown = new TimerWheel.Timer(() -> {});
     
     // Attack Visuals
     public boolean attacking = false;
-    public int attackVisualCounter = 0;
+    public int attackVisualDuration = 16; // 0.25 seconds visual
+    public TimerWheel.Timer attackVisualTimer = new TimerWheel.Timer(() -> attacking = false);
     
     // Ranged Logic
     public int shotMode = 0; // 0: Single, 1: V-Shape
@@ -25,16 +38,17 @@ public class Enemy extends Entity {
     // Pushback Logic
     public boolean beingPushed = false;
     public double pushDirection = 0;
-    public int pushDuration = 0;
+    public TimerWheel.Timer pushTimer = new TimerWheel.Timer(() -> beingPushed = false);
     public int pushSpeed = 5;
     
     // Boss Logic
     public boolean isBoss = false;
     public int bossAction = 0; // 0: Idle, 1: Jump, 2: Rapid Fire, 3: 360 Shot, 4: Dash
-    public int bossActionTimer = 0;
-    public int bossPhaseTimer = 0;
+    public long bossActionStart = 0; // Tick the current action began, the action timer is derived from it
+    public TimerWheel.Timer bossIdleTimer = new TimerWheel.Timer(this::pickBossAction);
     public boolean bossInAir = false;
     public int bossTargetX, bossTargetY;
+    private GameEvents.BossActionEvent bossActionEvent = null; // Flight recorder (null unless recording)
 
     public Enemy(GamePanel gp, int x, int y, boolean ranged, int difficultyLevel, boolean isBoss) {
         this.gp = gp;
@@ -67,18 +81,29 @@ public class Enemy extends Entity {
         
         // Randomize initial shot mode for ranged enemies
         if (ranged && !isBoss) {
-            Random rand = new Random();
-            shotMode = rand.nextInt(2);
+            shotMode = gp.rand.nextInt(2);
+        }
+
+        if (isBoss) {
+            startBossIdle();
         }
     }
 
     public void update(Player player) {
         if (!alive) return;
+        if (gp.heatmap != null) {
+            gp.heatmap.add(Heatmap.ENEMIES, x + gp.tileSize/2, y + gp.tileSize/2, 1);
+        }
         
         if (isBoss) {
-            updateBoss(player);
+            updateBoss(player); // Pushback never changes the boss's timing
             return;
         }
+
+        // Cooldowns do not recover during pushback, like the countdowns the timers replaced
+        if (beingPushed) {
+            freezeCooldowns();
+        }
         
         // Handle Pushback
         if (beingPushed) {
@@ -90,10 +115,6 @@ public class Enemy extends Entity {
                 y = nextY;
             }
             
-            pushDuration--;
-            if (pushDuration <= 0) {
-                beingPushed = false;
-            }
             return; // Skip normal movement/attack while being pushed
         }
         
@@ -107,22 +128,23 @@ public class Enemy extends Entity {
                 moveAway(player.worldX, player.worldY);
             }
             
-            // Ranged Attack Logic
-            if (attackCooldown == 0 && distance < 400) {
+            // Ranged Attack Logic (only shoot when there is a clear line to the player)
+            if (!attackCooldown.isScheduled() && distance < 400 &&
+                gp.los.canSee(x + gp.tileSize/2, y + gp.tileSize/2, player.worldX + gp.tileSize/2, player.worldY + gp.tileSize/2)) {
                 double angle = Math.atan2(player.worldY - y, player.worldX - x);
                 
                 if (shotMode == 0) {
                     // Single Shot
-                    gp.projectiles.add(new Projectile(gp, x + gp.tileSize/2, y + gp.tileSize/2, angle, damage));
+                    gp.spawnProjectile(x + gp.tileSize/2, y + gp.tileSize/2, angle, damage);
                 } else {
                     // V-Shape Shot (3 projectiles)
-                    gp.projectiles.add(new Projectile(gp, x + gp.tileSize/2, y + gp.tileSize/2, angle, damage));
-                    gp.projectiles.add(new Projectile(gp, x + gp.tileSize/2, y + gp.tileSize/2, angle - 0.3, damage));
-                    gp.projectiles.add(new Projectile(gp, x + gp.tileSize/2, y + gp.tileSize/2, angle + 0.3, damage));
+                    gp.spawnProjectile(x + gp.tileSize/2, y + gp.tileSize/2, angle, damage);
+                    gp.spawnProjectile(x + gp.tileSize/2, y + gp.tileSize/2, angle - 0.3, damage);
+                    gp.spawnProjectile(x + gp.tileSize/2, y + gp.tileSize/2, angle + 0.3, damage);
                 }
                 
-                attacking = true;
-                attackCooldown = 40; // High fire rate (approx 0.66 seconds)
+                startAttackVisual();
+                gp.timers.schedule(attackCooldown, 40); // High fire rate (approx 0.66 seconds)
                 
                 // Switch modes occasionally
                 shotTimer++;
@@ -133,58 +155,79 @@ public class Enemy extends Entity {
             }
             
         } else {
-            // Melee enemies always chase
-            moveTowards(player.worldX, player.worldY);
+            // Melee enemies chase unless the player is in another (unreachable) region
+            int half = gp.tileSize / 2;
+            if (gp.tileM.sameRegion((x + half) / gp.tileSize, (y + half) / gp.tileSize,
+                                    (player.worldX + half) / gp.tileSize, (player.worldY + half) / gp.tileSize)) {
+                moveTowards(player.worldX, player.worldY);
+            }
             
             // Melee Attack Logic (Contact)
-            if (attackCooldown == 0) {
-                Rectangle enemyRect = new Rectangle(x, y, gp.tileSize, gp.tileSize);
-                Rectangle playerRect = new Rectangle(player.worldX, player.worldY, gp.tileSize, gp.tileSize);
-                
-                if (enemyRect.intersects(playerRect)) {
-                    attacking = true;
+            if (!attackCooldown.isScheduled()) {
+                if (overlaps(x, y, gp.tileSize, gp.tileSize, player.worldX, player.worldY, gp.tileSize, gp.tileSize)) {
+                    startAttackVisual();
                     player.takeDamage(damage);
                     
                     // Push player back
                     double angle = Math.atan2(player.worldY - y, player.worldX - x);
                     player.startPushback(angle, 10);
 
-                    attackCooldown = 60; // 1 second cooldown
-                    System.out.println("Melee Enemy hit! Player HP: " + player.hp);
+                    gp.timers.schedule(attackCooldown, 60); // 1 second cooldown
+                    LOG_MELEE_HIT.log(player.hp);
                 }
             }
         }
-        
-        // Cooldown management
-        if (attackCooldown > 0) {
-            attackCooldown--;
-        }
-        
-        // Visual management
-        if (attacking) {
-            attackVisualCounter++;
-            if (attackVisualCounter > 15) { // 0.25 seconds visual
-                attacking = false;
-                attackVisualCounter = 0;
-            }
-        }
+    }
+    
+    /**
+     * Shows the attack visual; the timer wheel turns it off again.
+     */
+    private void startAttackVisual() {
+        attacking = true;
+        gp.timers.schedule(attackVisualTimer, attackVisualDuration);
+    }
+    
+    /**
+     * Holds the attack cooldowns of a (regular) enemy for the current tick.
+     */
+    private void freezeCooldowns() {
+        gp.timers.postpone(attackCooldown, 1);
+        gp.timers.postpone(attackVisualTimer, 1);
+    }
+    
+    /**
+     * Returns the number of ticks spent in the current boss action.
+     */
+    public int bossActionTimer() {
+        return (int)(gp.timers.now() - bossActionStart);
+    }
+    
+    /**
+     * Puts the boss back to idle; the timer wheel picks the next action after 1 second.
+     */
+    private void startBossIdle() {
+        GameEvents.endBossAction(bossActionEvent, bossAction, hp, bossActionTimer());
+        bossActionEvent = null;
+        bossAction = 0;
+        gp.timers.schedule(bossIdleTimer, 61);
+    }
+    
+    /**
+     * Called by the timer wheel when the idle phase is over.
+     */
+    private void pickBossAction() {
+        if (!alive) return;
+        bossAction = gp.rand.nextInt(4) + 1; // Pick action 1-4
+        bossActionStart = gp.timers.now();
+        bossActionEvent = GameEvents.beginBossAction();
+        LOG_BOSS_ACTION.log(bossAction);
     }
     
     private void updateBoss(Player player) {
-        bossPhaseTimer++;
+        int bossActionTimer = bossActionTimer();
         
-        // Boss State Machine
-        if (bossAction == 0) { // Idle / Cooldown
-            if (bossPhaseTimer > 60) { // 1 second idle
-                Random rand = new Random();
-                bossAction = rand.nextInt(4) + 1; // Pick action 1-4
-                bossPhaseTimer = 0;
-                bossActionTimer = 0;
-                System.out.println("Boss Action: " + bossAction);
-            }
-        }
-        else if (bossAction == 1) { // Jump Attack
-            bossActionTimer++;
+        // Boss State Machine (Idle is handled by bossIdleTimer)
+        if (bossAction == 1) { // Jump Attack
             if (bossActionTimer < 60) {
                 // Telegraphed "Crouch" or charge
                 // Visuals handled in draw
@@ -203,54 +246,47 @@ public class Enemy extends Entity {
                 y = bossTargetY;
                 
                 // Check hit
-                Rectangle bossRect = new Rectangle(x - gp.tileSize, y - gp.tileSize, gp.tileSize*3, gp.tileSize*3); // Large AOE
-                Rectangle playerRect = new Rectangle(player.worldX, player.worldY, gp.tileSize, gp.tileSize);
-                
-                if (bossRect.intersects(playerRect)) {
+                if (overlaps(x - gp.tileSize, y - gp.tileSize, gp.tileSize*3, gp.tileSize*3, // Large AOE
+                             player.worldX, player.worldY, gp.tileSize, gp.tileSize)) {
                     player.takeDamage(damage * 2);
                     double angle = Math.atan2(player.worldY - y, player.worldX - x);
                     player.startPushback(angle, 30); // Huge pushback
                 }
                 gp.startShake(20, 20); // Big shake
-            } else if (bossActionTimer > 140) {
-                bossAction = 0;
-                bossPhaseTimer = 0;
+            } else if (bossActionTimer >= 140) {
+                startBossIdle();
             }
         }
         else if (bossAction == 2) { // Rapid Fire
-            bossActionTimer++;
             if (bossActionTimer < 60) {
                 // Telegraph
             } else if (bossActionTimer < 180) {
-                // Fire every 10 frames
-                if (bossActionTimer % 10 == 0) {
+                // Fire every 10 frames, but hold fire while a wall is in the way
+                if (bossActionTimer % 10 == 0 &&
+                    gp.los.canSee(x + gp.tileSize/2, y + gp.tileSize/2, player.worldX + gp.tileSize/2, player.worldY + gp.tileSize/2)) {
                     double angle = Math.atan2(player.worldY - y, player.worldX - x);
                     // Add some spread
-                    angle += (new Random().nextDouble() - 0.5) * 0.5;
-                    gp.projectiles.add(new Projectile(gp, x + gp.tileSize/2, y + gp.tileSize/2, angle, damage));
+                    angle += (gp.rand.nextDouble() - 0.5) * 0.5;
+                    gp.spawnProjectile(x + gp.tileSize/2, y + gp.tileSize/2, angle, damage);
                 }
             } else {
-                bossAction = 0;
-                bossPhaseTimer = 0;
+                startBossIdle();
             }
         }
         else if (bossAction == 3) { // 360 Shot
-            bossActionTimer++;
             if (bossActionTimer < 60) {
                 // Telegraph
             } else if (bossActionTimer == 60) {
                 // Fire 360
                 for (int i = 0; i < 12; i++) {
                     double angle = Math.toRadians(i * 30);
-                    gp.projectiles.add(new Projectile(gp, x + gp.tileSize/2, y + gp.tileSize/2, angle, damage));
+                    gp.spawnProjectile(x + gp.tileSize/2, y + gp.tileSize/2, angle, damage);
                 }
-            } else if (bossActionTimer > 80) {
-                bossAction = 0;
-                bossPhaseTimer = 0;
+            } else if (bossActionTimer >= 80) {
+                startBossIdle();
             }
         }
         else if (bossAction == 4) { // Dash
-            bossActionTimer++;
             if (bossActionTimer < 40) {
                 // Telegraph: Face player
             } else if (bossActionTimer == 40) {
@@ -268,24 +304,31 @@ public class Enemy extends Entity {
                 }
                 
                 // Hit check
-                Rectangle bossRect = new Rectangle(x, y, gp.tileSize, gp.tileSize);
-                Rectangle playerRect = new Rectangle(player.worldX, player.worldY, gp.tileSize, gp.tileSize);
-                if (bossRect.intersects(playerRect)) {
+                if (overlaps(x, y, gp.tileSize, gp.tileSize, player.worldX, player.worldY, gp.tileSize, gp.tileSize)) {
                     player.takeDamage(damage);
                     double angle = Math.atan2(player.worldY - y, player.worldX - x);
                     player.startPushback(angle, 20);
                 }
             } else {
-                bossAction = 0;
-                bossPhaseTimer = 0;
+                startBossIdle();
             }
         }
     }
     
     public void startPushback(double direction, int duration) {
         this.pushDirection = direction;
-        this.pushDuration = duration;
         this.beingPushed = true;
+        gp.timers.schedule(pushTimer, duration);
+    }
+    
+    /**
+     * Cancels every pending timer of this enemy. Called when it is removed from the world.
+     */
+    public void cancelTimers() {
+        gp.timers.cancel(attackCooldown);
+        gp.timers.cancel(attackVisualTimer);
+        gp.timers.cancel(pushTimer);
+        gp.timers.cancel(bossIdleTimer);
     }
     
     private void moveTowards(int targetX, int targetY) {
@@ -319,37 +362,22 @@ public class Enemy extends Entity {
     }
     
     private boolean checkTileCollision(int nextWorldX, int nextWorldY) {
-        // Simple 4-corner collision check
-        int leftCol = nextWorldX / gp.tileSize;
-        int rightCol = (nextWorldX + gp.tileSize - 1) / gp.tileSize;
-        int topRow = nextWorldY / gp.tileSize;
-        int bottomRow = (nextWorldY + gp.tileSize - 1) / gp.tileSize;
-        
-        if (leftCol < 0 || rightCol >= gp.maxWorldCol || topRow < 0 || bottomRow >= gp.maxWorldRow) {
-            return true; // Out of bounds
-        }
-        
-        int tileNum1 = gp.tileM.mapTileNum[leftCol][topRow];
-        int tileNum2 = gp.tileM.mapTileNum[rightCol][topRow];
-        int tileNum3 = gp.tileM.mapTileNum[leftCol][bottomRow];
-        int tileNum4 = gp.tileM.mapTileNum[rightCol][bottomRow];
-        
-        if (tileNum1 == 1 || tileNum2 == 1 || tileNum3 == 1 || tileNum4 == 1) {
-            return true; // Collision with wall
-        }
-        
-        return false;
+        return gp.tileM.collidesWithBox(nextWorldX, nextWorldY, gp.tileSize);
     }
     
     public void takeDamage(int damage) {
         hp -= damage;
+        if (gp.telemetry != null) {
+            gp.telemetry.damageDealt += damage;
+        }
         
         // Spawn Damage Number
-        gp.damageNumbers.add(new DamageNumber(x + gp.tileSize/2, y, damage));
+        gp.spawnDamageNumber(x + gp.tileSize/2, y, damage);
 
         if (hp <= 0) {
             hp = 0;
             alive = false;
+            cancelTimers();
             
             if (isBoss) {
                 gp.bossDefeated();
@@ -359,6 +387,7 @@ public class Enemy extends Entity {
 
     public void draw(Graphics2D g2) {
         if (!alive) return;
+        if (meleeSprite == null) createSprites(gp.tileSize);
         
         if (isBoss && bossInAir) {
             // Draw shadow indicating landing spot
@@ -367,8 +396,7 @@ public class Enemy extends Entity {
             
             if (screenX + gp.tileSize > 0 && screenX < gp.screenWidth &&
                 screenY + gp.tileSize > 0 && screenY < gp.screenHeight) {
-                g2.setColor(new Color(0, 0, 0, 100));
-                g2.fillOval(screenX, screenY, gp.tileSize, gp.tileSize);
+                shadowSprite.draw(g2, screenX, screenY);
 
             }
             return;
@@ -377,55 +405,24 @@ public class Enemy extends Entity {
         int screenX = x - gp.player.worldX + gp.player.screenX;
         int screenY = y - gp.player.worldY + gp.player.screenY;
 
-        if (x + gp.tileSize > gp.player.worldX - gp.player.screenX &&
-            x - gp.tileSize < gp.player.worldX + gp.player.screenX &&
-            y + gp.tileSize > gp.player.worldY - gp.player.screenY &&
-            y - gp.tileSize < gp.player.worldY + gp.player.screenY) {
+        if (isOnScreen(gp)) {
             
             if (isBoss) {
-                // Boss Visuals
-                g2.setColor(new Color(100, 0, 100)); // Purple Boss
+                int bossActionTimer = bossActionTimer();
                 
                 // Telegraphing colors
-                if (bossAction == 1 && bossActionTimer < 60) g2.setColor(Color.yellow); // Jump charge
-                if (bossAction == 2 && bossActionTimer < 60) g2.setColor(Color.orange); // Rapid charge
-                if (bossAction == 3 && bossActionTimer < 60) g2.setColor(Color.cyan); // 360 charge
-                if (bossAction == 4 && bossActionTimer < 40) g2.setColor(Color.white); // Dash charge
+                int look = 0; // Purple Boss
+                if (bossAction == 1 && bossActionTimer < 60) look = 1; // Jump charge
+                if (bossAction == 2 && bossActionTimer < 60) look = 2; // Rapid charge
+                if (bossAction == 3 && bossActionTimer < 60) look = 3; // 360 charge
+                if (bossAction == 4 && bossActionTimer < 40) look = 4; // Dash charge
                 
-                // Big Hexagon
-                int[] xPoints = {screenX + gp.tileSize/2, screenX + gp.tileSize, screenX + gp.tileSize, screenX + gp.tileSize/2, screenX, screenX};
-                int[] yPoints = {screenY - gp.tileSize/2, screenY, screenY + gp.tileSize, (int)(screenY + gp.tileSize*1.5), screenY + gp.tileSize, screenY};
-                
-                g2.fillPolygon(xPoints, yPoints, 6);
-                
-                g2.setColor(Color.white);
-                g2.setStroke(new BasicStroke(3));
-                g2.drawPolygon(xPoints, yPoints, 6);
-                g2.setStroke(new BasicStroke(1));
+                bossSprites[look].draw(g2, screenX, screenY);
             } else if (ranged) {
-                g2.setColor(new Color(200, 50, 50)); // Reddish
-                // Triangle shape for ranged
-                int[] xPoints = {screenX + gp.tileSize/2, screenX, screenX + gp.tileSize};
-                int[] yPoints = {screenY, screenY + gp.tileSize, screenY + gp.tileSize};
-                g2.fillPolygon(xPoints, yPoints, 3);
-                
-                // Outline
-                g2.setColor(new Color(100, 0, 0));
-                g2.setStroke(new BasicStroke(2));
-                g2.drawPolygon(xPoints, yPoints, 3);
+                rangedSprite.draw(g2, screenX, screenY);
             } else {
-                g2.setColor(new Color(200, 150, 50)); // Orange-ish
-                // Diamond shape for melee
-                int[] xPoints = {screenX + gp.tileSize/2, screenX + gp.tileSize, screenX + gp.tileSize/2, screenX};
-                int[] yPoints = {screenY, screenY + gp.tileSize/2, screenY + gp.tileSize, screenY + gp.tileSize/2};
-                g2.fillPolygon(xPoints, yPoints, 4);
-                
-                // Outline
-                g2.setColor(new Color(100, 70, 0));
-                g2.setStroke(new BasicStroke(2));
-                g2.drawPolygon(xPoints, yPoints, 4);
+                meleeSprite.draw(g2, screenX, screenY);
             }
-            g2.setStroke(new BasicStroke(1));
             
             // Draw HP bar
             g2.setColor(Color.black);
@@ -435,20 +432,70 @@ public class Enemy extends Entity {
             
             // Draw HP Text
             g2.setColor(Color.white);
-            g2.setFont(g2.getFont().deriveFont(10F));
-            String hpText = hp + "/" + maxHp;
+            g2.setFont(TextBuffer.font(g2, Font.PLAIN, 10F));
+            hpText.clear().append(hp).append('/').append(maxHp);
             // Center text
-            int textWidth = (int)g2.getFontMetrics().getStringBounds(hpText, g2).getWidth();
-            g2.drawString(hpText, screenX + gp.tileSize/2 - textWidth/2, screenY - 20);
+            int textWidth = hpText.width(g2);
+            hpText.draw(g2, screenX + gp.tileSize/2 - textWidth/2, screenY - 20);
             
             // Draw Melee Attack Visual
             if (attacking && !ranged && !isBoss) {
                 g2.setColor(Color.red);
-                g2.setStroke(new BasicStroke(2));
-                int offset = attackVisualCounter; // Expand slightly
+                g2.setStroke(STROKE_2);
+                int offset = attackVisualDuration - attackVisualTimer.remaining(); // Expand slightly
                 g2.drawRect(screenX - offset, screenY - offset, gp.tileSize + offset*2, gp.tileSize + offset*2);
-                g2.setStroke(new BasicStroke(1));
+                g2.setStroke(STROKE_1);
             }
         }
     }
+
+    /**
+     * Paints the enemy shapes once, for every enemy to share.
+     *
+     * @param tileSize The size of a tile in pixels.
+     */
+    private static void createSprites(int tileSize) {
+        int t = tileSize;
+        shadowSprite = new Sprite(t, t, 0, 0, g2 -> {
+            g2.setColor(new Color(0, 0, 0, 100));
+            g2.fillOval(0, 0, t, t);
+        });
+        
+        // Big Hexagon, outlines need a few pixels of room around the shape
+        int[] hexX = {t/2, t, t, t/2, 0, 0};
+        int[] hexY = {-t/2, 0, t, (int)(t*1.5), t, 0};
+        Color[] bossColors = {new Color(100, 0, 100), Color.yellow, Color.orange, Color.cyan, Color.white};
+        for (int i = 0; i < bossSprites.length; i++) {
+            Color color = bossColors[i];
+            bossSprites[i] = new Sprite(t + 6, t*2 + 6, 3, t/2 + 3, g2 -> {
+                g2.setColor(color);
+                g2.fillPolygon(hexX, hexY, 6);
+                g2.setColor(Color.white);
+                g2.setStroke(new BasicStroke(3));
+                g2.drawPolygon(hexX, hexY, 6);
+            });
+        }
+        
+        // Triangle shape for ranged
+        rangedSprite = new Sprite(t + 4, t + 4, 2, 2, g2 -> {
+            int[] xPoints = {t/2, 0, t};
+            int[] yPoints = {0, t, t};
+            g2.setColor(new Color(200, 50, 50)); // Reddish
+            g2.fillPolygon(xPoints, yPoints, 3);
+            g2.setColor(new Color(100, 0, 0));
+            g2.setStroke(new BasicStroke(2));
+            g2.drawPolygon(xPoints, yPoints, 3);
+        });
+        
+        // Diamond shape for melee
+        meleeSprite = new Sprite(t + 4, t + 4, 2, 2, g2 -> {
+            int[] xPoints = {t/2, t, t/2, 0};
+            int[] yPoints = {0, t/2, t, t/2};
+            g2.setColor(new Color(200, 150, 50)); // Orange-ish
+            g2.fillPolygon(xPoints, yPoints, 4);
+            g2.setColor(new Color(100, 70, 0));
+            g2.setStroke(new BasicStroke(2));
+            g2.drawPolygon(xPoints, yPoints, 4);
+        });
+    }
 }
@@ -1,6 +1,5 @@
 import java.awt.Color;
 import java.awt.Graphics2D;
-import java.util.Random;
 
 /**
  * The EnemySpawner class represents an entity that periodically spawns enemies.
@@ -8,10 +7,14 @@ import java.util.Random;
  */
 public class EnemySpawner extends Entity {
     
+    private static final Log.Site LOG_SPAWNED = Log.site(Log.DEBUG, "Spawned enemy at {}, {}");
+    private static final Color ACTIVE_COLOR = new Color(100, 0, 100); // Purple spawner
+    private static final Color INACTIVE_COLOR = new Color(50, 50, 50); // Inactive Grey
+
     GamePanel gp;
-    int spawnTimer = 0;
     int spawnInterval = 300; // 5 seconds at 60 FPS
     public boolean active = true;
+    TimerWheel.Timer spawnTimer = new TimerWheel.Timer(this::onSpawnTimer);
 
     /**
      * Constructor for EnemySpawner.
@@ -24,20 +27,32 @@ public class EnemySpawner extends Entity {
         this.gp = gp;
         this.x = x;
         this.y = y;
+        if (gp.horde != null) {
+            spawnInterval = gp.horde.spawnInterval;
+            // Stagger the first burst so dozens of spawners don't all fire on the same tick
+            gp.timers.schedule(spawnTimer, 1 + gp.rand.nextInt(spawnInterval));
+        } else {
+            gp.timers.schedule(spawnTimer, spawnInterval);
+        }
     }
 
     /**
-     * Updates the spawner logic.
-     * Increments the timer and spawns an enemy if the interval is reached and the spawner is active.
+     * Called by the timer wheel every spawn interval.
+     * Spawns an enemy and re-arms the timer while the spawner is active; an inactive spawner
+     * simply stops re-arming and costs nothing per tick.
      */
-    public void update() {
+    private void onSpawnTimer() {
         if (!active) return;
         
-        spawnTimer++;
-        if (spawnTimer >= spawnInterval) {
-            spawnEnemy();
-            spawnTimer = 0;
-        }
+        spawnEnemy();
+        gp.timers.schedule(spawnTimer, spawnInterval);
+    }
+
+    /**
+     * Cancels the pending spawn. Called when the spawner is removed from the world.
+     */
+    public void cancelTimers() {
+        gp.timers.cancel(spawnTimer);
     }
     
     /**
@@ -46,12 +61,20 @@ public class EnemySpawner extends Entity {
      * Randomly decides if the enemy is ranged or melee.
      */
     private void spawnEnemy() {
+        if (gp.horde != null) {
+            // Horde Mode: bursts of lightweight swarm enemies, capped by the horde settings
+            for (int i = 0; i < gp.horde.spawnsPerBurst; i++) {
+                gp.spawnSwarmEnemy(x, y);
+            }
+            return;
+        }
+        
         if (gp.enemies.size() < 20) { // Limit total enemies
-            Random rand = new Random();
-            boolean ranged = rand.nextBoolean();
+            boolean ranged = gp.rand.nextBoolean();
             // Pass false for isBoss
             gp.enemies.add(new Enemy(gp, x, y, ranged, gp.difficultyLevel, false));
-            System.out.println("Spawned enemy at " + x + ", " + y);
+            GameEvents.enemySpawned(ranged ? GameEvents.RANGED : GameEvents.MELEE, x, y, gp.difficultyLevel);
+            LOG_SPAWNED.log(x, y);
         }
     }
 
@@ -65,15 +88,12 @@ public class EnemySpawner extends Entity {
         int screenX = x - gp.player.worldX + gp.player.screenX;
         int screenY = y - gp.player.worldY + gp.player.screenY;
 
-        if (x + gp.tileSize > gp.player.worldX - gp.player.screenX &&
-            x - gp.tileSize < gp.player.worldX + gp.player.screenX &&
-            y + gp.tileSize > gp.player.worldY - gp.player.screenY &&
-            y - gp.tileSize < gp.player.worldY + gp.player.screenY) {
+        if (isOnScreen(gp)) {
             
             if (active) {
-                g2.setColor(new Color(100, 0, 100)); // Purple spawner
+                g2.setColor(ACTIVE_COLOR);
             } else {
-                g2.setColor(new Color(50, 50, 50)); // Inactive Grey
+                g2.setColor(INACTIVE_COLOR);
             }
             g2.fillRect(screenX, screenY, gp.tileSize, gp.tileSize);
         }
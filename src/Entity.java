@@ -1,8 +1,9 @@
 import java.awt.image.BufferedImage;
 
 /**
- * The Entity class serves as the base class for all game objects that have a position and movement.
- * This includes the Player, Enemies, Projectiles, LootBoxes, and Spawners.
+ * The Entity class serves as the base class for the game objects that have their own class:
+ * the Player, Enemies, LootBoxes, and Spawners.
+ * Bulk objects such as projectiles live in the EntityWorld (ECS) instead.
  */
 public class Entity {
     /** The x-coordinate of the entity in the world. */
@@ -24,4 +25,27 @@ public class Entity {
     
     /** Flag indicating if the entity is alive/active. If false, it may be removed from the game. */
     public boolean alive = true;
+
+    /**
+     * Checks if the entity is within the player's view (camera), with a one tile buffer.
+     * 
+     * @param gp The GamePanel instance (for camera position).
+     * @return True if the entity should be drawn.
+     */
+    public boolean isOnScreen(GamePanel gp) {
+        return x + gp.tileSize > gp.player.worldX - gp.player.screenX &&
+               x - gp.tileSize < gp.player.worldX + gp.player.screenX &&
+               y + gp.tileSize > gp.player.worldY - gp.player.screenY &&
+               y - gp.tileSize < gp.player.worldY + gp.player.screenY;
+    }
+
+    /**
+     * Checks if two rectangles overlap, like Rectangle.intersects but without creating them
+     * (collision checks run every tick, see AllocationCheck).
+     *
+     * @return True if the rectangles share at least one pixel.
+     */
+    public static boolean overlaps(int ax, int ay, int aw, int ah, int bx, int by, int bw, int bh) {
+        return ax < bx + bw && bx < ax + aw && ay < by + bh && by < ay + ah;
+    }
 }
@@ -0,0 +1,176 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The EntityWorld class is the entity-component-system (ECS) store for bulk game objects.
+ * An entity is just an int id; its data lives in the Archetype that matches its component mask.
+ * Systems (MovementSystem, LifetimeSystem, ...) ask for the archetypes that have the components
+ * they need and iterate their dense arrays linearly.
+ *
+ * Destruction is deferred: systems call destroy() while iterating and flush() applies all
+ * removals at the end of the tick with swap-remove, so rows never move under a running system.
+ */
+public class EntityWorld {
+
+    // Component bits
+    public static final int POSITION = 1;
+    public static final int VELOCITY = 1 << 1;
+    public static final int HEALTH = 1 << 2;
+    public static final int COLLIDER = 1 << 3;
+    public static final int AI = 1 << 4;
+    public static final int RENDERABLE = 1 << 5;
+    public static final int LIFETIME = 1 << 6;
+    public static final int DAMAGE = 1 << 7;
+    private static final int COMPONENT_COMBINATIONS = 1 << 8;
+
+    /** Enemy projectile: flies straight, dies on walls, hurts the player on contact. */
+    public static final int PROJECTILE = POSITION | VELOCITY | COLLIDER | RENDERABLE | LIFETIME | DAMAGE;
+
+    private final Archetype[] archetypeByMask = new Archetype[COMPONENT_COMBINATIONS];
+    /** Archetypes in creation order, for systems to iterate. */
+    public final ArrayList<Archetype> archetypes = new ArrayList<>();
+
+    // Entity id -> location (mask -1 means the id is free)
+    private int[] entityMask = new int[256];
+    private int[] entityRow = new int[256];
+    private boolean[] dying = new boolean[256];
+    private int nextId = 0;
+    private int[] freeIds = new int[256];
+    private int freeCount = 0;
+
+    private int[] pendingDestroy = new int[256];
+    private int pendingCount = 0;
+
+    /**
+     * Constructor for EntityWorld.
+     */
+    public EntityWorld() {
+        Arrays.fill(entityMask, -1);
+    }
+
+    /**
+     * Returns the archetype for a component mask, creating it on first use.
+     *
+     * @param mask The component mask.
+     * @return The archetype storing entities with exactly that mask.
+     */
+    public Archetype archetype(int mask) {
+        Archetype a = archetypeByMask[mask];
+        if (a == null) {
+            a = new Archetype(mask, 64);
+            archetypeByMask[mask] = a;
+            archetypes.add(a);
+        }
+        return a;
+    }
+
+    /**
+     * Creates an entity with the given components. All component values start at zero.
+     *
+     * @param mask The component mask.
+     * @return The new entity id. Use rowOf() to find where to write its components.
+     */
+    public int create(int mask) {
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            id = nextId++;
+            if (id == entityMask.length) {
+                int size = entityMask.length * 2;
+                entityMask = Arrays.copyOf(entityMask, size);
+                Arrays.fill(entityMask, id, size, -1);
+                entityRow = Arrays.copyOf(entityRow, size);
+                dying = Arrays.copyOf(dying, size);
+            }
+        }
+        entityMask[id] = mask;
+        entityRow[id] = archetype(mask).add(id);
+        dying[id] = false;
+        return id;
+    }
+
+    /**
+     * Returns the row of an entity inside its archetype.
+     *
+     * @param id The entity id.
+     * @return The row index, valid until the next flush().
+     */
+    public int rowOf(int id) {
+        return entityRow[id];
+    }
+
+    /**
+     * Checks if an id refers to a live entity that is not already marked for destruction.
+     *
+     * @param id The entity id.
+     * @return True if the entity exists.
+     */
+    public boolean isAlive(int id) {
+        return id >= 0 && id < nextId && entityMask[id] != -1 && !dying[id];
+    }
+
+    /**
+     * Marks an entity for destruction. It stays in place until flush() so systems can keep iterating.
+     *
+     * @param id The entity id.
+     */
+    public void destroy(int id) {
+        if (entityMask[id] == -1 || dying[id]) return;
+        dying[id] = true;
+        if (pendingCount == pendingDestroy.length) {
+            pendingDestroy = Arrays.copyOf(pendingDestroy, pendingCount * 2);
+        }
+        pendingDestroy[pendingCount++] = id;
+    }
+
+    /**
+     * Applies all pending destructions using swap-remove. Call once per tick after the systems ran.
+     */
+    public void flush() {
+        for (int i = 0; i < pendingCount; i++) {
+            int id = pendingDestroy[i];
+            Archetype a = archetypeByMask[entityMask[id]];
+            int moved = a.swapRemove(entityRow[id]);
+            if (moved != -1) {
+                entityRow[moved] = entityRow[id];
+            }
+            entityMask[id] = -1;
+            dying[id] = false;
+            if (freeCount == freeIds.length) {
+                freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+            }
+            freeIds[freeCount++] = id;
+        }
+        pendingCount = 0;
+    }
+
+    /**
+     * Counts the live entities that have every component in the mask.
+     *
+     * @param required The components to match.
+     * @return The number of matching entities (including ones pending destruction).
+     */
+    public int count(int required) {
+        int total = 0;
+        for (int i = 0; i < archetypes.size(); i++) {
+            Archetype a = archetypes.get(i);
+            if (a.has(required)) total += a.count;
+        }
+        return total;
+    }
+
+    /**
+     * Removes every entity. Archetype arrays are kept so the next run does not reallocate them.
+     */
+    public void clear() {
+        for (int i = 0; i < archetypes.size(); i++) {
+            archetypes.get(i).count = 0;
+        }
+        Arrays.fill(entityMask, -1);
+        Arrays.fill(dying, false);
+        nextId = 0;
+        freeCount = 0;
+        pendingCount = 0;
+    }
+}
@@ -6,24 +6,36 @@ public class FloatingText {
     public int x, y;
     public String text;
     public Color color;
-    public int lifeTime;
     public int maxLifeTime = 120; // 2 seconds
     public boolean active = true;
+    /** Fires when the text has lived maxLifeTime ticks. */
+    public TimerWheel.Timer lifeTime = new TimerWheel.Timer(() -> active = false);
+
+    /**
+     * Creates an empty floating text for the pool. Call reset() before use.
+     */
+    public FloatingText() {
+        active = false;
+    }
+
+    public FloatingText(TimerWheel timers, int x, int y, String text, Color color) {
+        reset(timers, x, y, text, color);
+    }
 
-    public FloatingText(int x, int y, String text, Color color) {
+    /**
+     * Re-initialises this instance so it can be reused from the pool.
+     */
+    public void reset(TimerWheel timers, int x, int y, String text, Color color) {
+        this.active = true;
         this.x = x;
         this.y = y;
         this.text = text;
         this.color = color;
-        this.lifeTime = maxLifeTime;
+        timers.schedule(lifeTime, maxLifeTime);
     }
 
     public void update() {
-        lifeTime--;
         y--; // Float up slowly
-        if (lifeTime <= 0) {
-            active = false;
-        }
     }
 
     public void draw(Graphics2D g2, GamePanel gp) {
@@ -33,18 +45,18 @@ public class FloatingText {
         if (screenX + gp.tileSize > -100 && screenX < gp.screenWidth + 100 &&
                 screenY + gp.tileSize > -100 && screenY < gp.screenHeight + 100) {
 
-            float alpha = (float)lifeTime / maxLifeTime;
+            float alpha = (float)lifeTime.remaining() / maxLifeTime;
             if (alpha < 0) alpha = 0;
             if (alpha > 1) alpha = 1;
 
-            g2.setFont(g2.getFont().deriveFont(Font.BOLD, 18F));
+            g2.setFont(TextBuffer.font(g2, Font.BOLD, 18F));
 
             // Shadow
-            g2.setColor(new Color(0f, 0f, 0f, alpha));
+            g2.setColor(TextBuffer.withAlpha(Color.black, TextBuffer.alpha(alpha)));
             g2.drawString(text, screenX + 1, screenY + 1);
 
             // Text
-            g2.setColor(new Color(color.getRed()/255f, color.getGreen()/255f, color.getBlue()/255f, alpha));
+            g2.setColor(TextBuffer.withAlpha(color, TextBuffer.alpha(alpha)));
             g2.drawString(text, screenX, screenY);
         }
     }
@@ -0,0 +1,245 @@
+import java.util.Random;
+
+/**
+ * The FloorIndex class lists every floor tile of a TileMap, grouped into square buckets of
+ * BUCKET_SIZE x BUCKET_SIZE tiles. Buckets are stored row-major in one flat array, so a row of
+ * buckets is a contiguous slice and counting the candidates of an area only costs one step per
+ * bucket row.
+ *
+ * Queries pick random floor tiles without rejection sampling over the whole map:
+ * "any floor tile" is a single array read, and ring queries ("within R of a point", "at least D
+ * from a point") sample the buckets overlapping the ring a few times and then fall back to an
+ * exact scan of those buckets, so they always terminate and only fail when no such tile exists.
+ *
+ * Results are packed as {@code (long)col << 32 | row}, see {@link #col} and {@link #row}.
+ */
+public class FloorIndex {
+
+    /** Tiles per bucket side (a power of two). */
+    public static final int BUCKET_SHIFT = 3;
+    public static final int BUCKET_SIZE = 1 << BUCKET_SHIFT;
+    /** Returned when no tile matches a query. */
+    public static final long NONE = -1L;
+
+    // Tries before a ring query switches from sampling to an exact scan
+    private static final int SAMPLE_TRIES = 16;
+
+    private final int cols, rows;
+    private final int bucketCols, bucketRows;
+    /** Floor tile indices (row * cols + col), sorted by bucket. */
+    private final int[] tiles;
+    /** Where each bucket's tiles start in {@link #tiles}; one extra entry marks the end. */
+    private final int[] bucketStart;
+
+    /**
+     * Constructor for FloorIndex. Indexes every floor tile of the map.
+     *
+     * @param map The map to index. Later changes to the map are not tracked.
+     */
+    public FloorIndex(TileMap map) {
+        this(map, null, 0);
+    }
+
+    /**
+     * Constructor for FloorIndex. Builds the index with a two-pass counting sort over the map.
+     *
+     * @param map The map to index. Later changes to the map are not tracked.
+     * @param regions The regions of the map, or null to index all floor.
+     * @param region The only region to index (ignored when regions is null).
+     */
+    public FloorIndex(TileMap map, RegionMap regions, int region) {
+        this.cols = map.cols;
+        this.rows = map.rows;
+        this.bucketCols = (cols + BUCKET_SIZE - 1) >> BUCKET_SHIFT;
+        this.bucketRows = (rows + BUCKET_SIZE - 1) >> BUCKET_SHIFT;
+        this.bucketStart = new int[bucketCols * bucketRows + 1];
+
+        // Pass 1: count floor tiles per bucket
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            int bucketRow = (row >> BUCKET_SHIFT) * bucketCols;
+            for (int col = 0; col < cols; col++) {
+                if (isIndexed(map, regions, region, row * cols + col)) {
+                    bucketStart[bucketRow + (col >> BUCKET_SHIFT) + 1]++;
+                    count++;
+                }
+            }
+        }
+        for (int b = 1; b < bucketStart.length; b++) {
+            bucketStart[b] += bucketStart[b - 1];
+        }
+
+        // Pass 2: drop each tile into its bucket
+        tiles = new int[count];
+        int[] fill = new int[bucketCols * bucketRows];
+        System.arraycopy(bucketStart, 0, fill, 0, fill.length);
+        for (int row = 0; row < rows; row++) {
+            int bucketRow = (row >> BUCKET_SHIFT) * bucketCols;
+            for (int col = 0; col < cols; col++) {
+                int index = row * cols + col;
+                if (isIndexed(map, regions, region, index)) {
+                    tiles[fill[bucketRow + (col >> BUCKET_SHIFT)]++] = index;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of floor tiles.
+     */
+    public int count() {
+        return tiles.length;
+    }
+
+    /**
+     * Picks a uniformly random floor tile.
+     *
+     * @param rand The random generator to use.
+     * @return The packed tile, or NONE if the map has no floor.
+     */
+    public long randomTile(Random rand) {
+        if (tiles.length == 0) {
+            return NONE;
+        }
+        return pack(tiles[rand.nextInt(tiles.length)]);
+    }
+
+    /**
+     * Picks a random floor tile whose distance to a point lies between two bounds.
+     * The point may be outside the map (e.g. in a neighbouring chunk).
+     *
+     * @param col The column of the point.
+     * @param row The row of the point.
+     * @param minDist The minimum distance in tiles (0 for none).
+     * @param maxDist The maximum distance in tiles (Integer.MAX_VALUE for none).
+     * @param rand The random generator to use.
+     * @return The packed tile, or NONE if no floor tile is in range.
+     */
+    public long randomTileInRing(int col, int row, int minDist, int maxDist, Random rand) {
+        // Bucket rectangle covering the ring's bounding square, clamped to the map
+        int bx0 = bucketCol(clamp((long)col - maxDist, cols));
+        int bx1 = bucketCol(clamp((long)col + maxDist, cols));
+        int by0 = bucketRow(clamp((long)row - maxDist, rows));
+        int by1 = bucketRow(clamp((long)row + maxDist, rows));
+        if ((long)col + maxDist < 0 || (long)col - maxDist >= cols || (long)row + maxDist < 0 || (long)row - maxDist >= rows) {
+            return NONE; // The square does not touch the map
+        }
+
+        int candidates = countInBuckets(bx0, bx1, by0, by1);
+        if (candidates == 0) {
+            return NONE;
+        }
+        long minSq = (long)minDist * minDist;
+        long maxSq = (long)maxDist * maxDist;
+
+        // Sample the candidates a few times...
+        for (int attempt = 0; attempt < SAMPLE_TRIES; attempt++) {
+            int index = candidateAt(bx0, bx1, by0, by1, rand.nextInt(candidates));
+            if (inRing(index, col, row, minSq, maxSq)) {
+                return pack(index);
+            }
+        }
+
+        // ...then scan them all (reservoir sampling keeps the pick uniform)
+        int found = -1;
+        int matches = 0;
+        for (int by = by0; by <= by1; by++) {
+            int start = bucketStart[by * bucketCols + bx0];
+            int end = bucketStart[by * bucketCols + bx1 + 1];
+            for (int i = start; i < end; i++) {
+                if (inRing(tiles[i], col, row, minSq, maxSq) && rand.nextInt(++matches) == 0) {
+                    found = tiles[i];
+                }
+            }
+        }
+        return found < 0 ? NONE : pack(found);
+    }
+
+    /**
+     * Counts the floor tiles in the buckets overlapping the bounding square of a radius.
+     * This is an upper bound of the tiles actually within the radius.
+     *
+     * @param col The column of the centre (may be outside the map).
+     * @param row The row of the centre (may be outside the map).
+     * @param radius The radius in tiles.
+     * @return The number of candidate tiles.
+     */
+    public int countNear(int col, int row, int radius) {
+        if ((long)col + radius < 0 || (long)col - radius >= cols || (long)row + radius < 0 || (long)row - radius >= rows) {
+            return 0;
+        }
+        return countInBuckets(bucketCol(clamp((long)col - radius, cols)), bucketCol(clamp((long)col + radius, cols)),
+                              bucketRow(clamp((long)row - radius, rows)), bucketRow(clamp((long)row + radius, rows)));
+    }
+
+    /**
+     * Returns the column of a packed tile.
+     */
+    public static int col(long tile) {
+        return (int)(tile >> 32);
+    }
+
+    /**
+     * Returns the row of a packed tile.
+     */
+    public static int row(long tile) {
+        return (int)tile;
+    }
+
+    /**
+     * Packs a column and row into one value (the format query results use).
+     */
+    public static long pack(int col, int row) {
+        return ((long)col << 32) | (row & 0xFFFFFFFFL);
+    }
+
+    private static boolean isIndexed(TileMap map, RegionMap regions, int region, int index) {
+        return !map.isSolidIndex(index) && (regions == null || regions.regionOfIndex(index) == region);
+    }
+
+    private long pack(int index) {
+        return pack(index % cols, index / cols);
+    }
+
+    private int countInBuckets(int bx0, int bx1, int by0, int by1) {
+        int total = 0;
+        for (int by = by0; by <= by1; by++) {
+            total += bucketStart[by * bucketCols + bx1 + 1] - bucketStart[by * bucketCols + bx0];
+        }
+        return total;
+    }
+
+    /**
+     * Returns the k-th candidate tile of a bucket rectangle (one contiguous slice per bucket row).
+     */
+    private int candidateAt(int bx0, int bx1, int by0, int by1, int k) {
+        for (int by = by0; by <= by1; by++) {
+            int start = bucketStart[by * bucketCols + bx0];
+            int size = bucketStart[by * bucketCols + bx1 + 1] - start;
+            if (k < size) {
+                return tiles[start + k];
+            }
+            k -= size;
+        }
+        throw new IllegalStateException("Candidate out of range");
+    }
+
+    private boolean inRing(int index, int col, int row, long minSq, long maxSq) {
+        long dx = index % cols - col;
+        long dy = index / cols - row;
+        long distSq = dx * dx + dy * dy;
+        return distSq >= minSq && distSq <= maxSq;
+    }
+
+    private int bucketCol(int col) {
+        return col >> BUCKET_SHIFT;
+    }
+
+    private int bucketRow(int row) {
+        return row >> BUCKET_SHIFT;
+    }
+
+    private static int clamp(long value, int size) {
+        return (int)Math.max(0, Math.min(size - 1, value));
+    }
+}
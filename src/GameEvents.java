@@ -0,0 +1,356 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The GameEvents class holds the game's Java Flight Recorder events, so a recording of a real
+ * session can be opened in JDK Mission Control and stalls lined up with GC, I/O and what was
+ * happening in the game (spawns, boss actions, stage changes, leaderboard writes).
+ *
+ * Every event is disabled by default. The helpers below check a cached EventType first, so
+ * while recording is off an event costs a single field read and no allocation. Enable them
+ * when starting a recording, e.g.:
+ * <pre>
+ * java -XX:StartFlightRecording:filename=session.jfr,+depths.Tick#enabled=true,+depths.Frame#enabled=true,
+ *      +depths.EnemySpawn#enabled=true,+depths.BossAction#enabled=true,
+ *      +depths.StageTransition#enabled=true,+depths.LeaderboardWrite#enabled=true Main
+ * </pre>
+ * or turn them on in a custom .jfc template.
+ */
+public class GameEvents {
+
+    private static final EventType TICK = EventType.getEventType(TickEvent.class);
+    private static final EventType FRAME = EventType.getEventType(FrameEvent.class);
+    private static final EventType SPAWN = EventType.getEventType(EnemySpawnEvent.class);
+    private static final EventType BOSS_ACTION = EventType.getEventType(BossActionEvent.class);
+    private static final EventType STAGE = EventType.getEventType(StageTransitionEvent.class);
+    private static final EventType LEADERBOARD = EventType.getEventType(LeaderboardWriteEvent.class);
+
+    private static final String[] ENEMY_KINDS = {"melee", "ranged", "boss", "swarm"};
+    private static final String[] BOSS_ACTIONS = {"idle", "jump", "rapid-fire", "360-shot", "dash"};
+
+    public static final int MELEE = 0;
+    public static final int RANGED = 1;
+    public static final int BOSS = 2;
+    public static final int SWARM = 3;
+
+    @Name("depths.Tick")
+    @Label("Game Tick")
+    @Category("Depths of Java")
+    @Description("One update of the game loop, with the time spent in each phase")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class TickEvent extends Event {
+        @Label("Tick")
+        long tick;
+        @Label("Game State")
+        int gameState;
+        @Label("Enemies")
+        int enemies;
+        @Label("ECS Entities")
+        int ecsEntities;
+        @Label("Enemy Update")
+        @Timespan(Timespan.NANOSECONDS)
+        long enemiesTime;
+        @Label("ECS AI")
+        @Timespan(Timespan.NANOSECONDS)
+        long ecsAiTime;
+        @Label("ECS Movement")
+        @Timespan(Timespan.NANOSECONDS)
+        long ecsMoveTime;
+        @Label("ECS Collisions")
+        @Timespan(Timespan.NANOSECONDS)
+        long ecsCollideTime;
+    }
+
+    @Name("depths.Frame")
+    @Label("Frame")
+    @Category("Depths of Java")
+    @Description("One paint of the game panel")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class FrameEvent extends Event {
+        @Label("Game State")
+        int gameState;
+        @Label("Tiles")
+        @Timespan(Timespan.NANOSECONDS)
+        long tilesTime;
+        @Label("Entities")
+        @Timespan(Timespan.NANOSECONDS)
+        long entitiesTime;
+    }
+
+    @Name("depths.EnemySpawn")
+    @Label("Enemy Spawn")
+    @Category("Depths of Java")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class EnemySpawnEvent extends Event {
+        @Label("Kind")
+        String kind;
+        @Label("X")
+        int x;
+        @Label("Y")
+        int y;
+        @Label("Difficulty")
+        int difficulty;
+    }
+
+    @Name("depths.BossAction")
+    @Label("Boss Action")
+    @Category("Depths of Java")
+    @Description("One boss attack, from the telegraph to the return to idle")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class BossActionEvent extends Event {
+        @Label("Action")
+        String action;
+        @Label("Boss HP")
+        int hp;
+        @Label("Ticks")
+        int ticks;
+    }
+
+    @Name("depths.StageTransition")
+    @Label("Stage Transition")
+    @Category("Depths of Java")
+    @Description("Swapping in the next stage: taking the prepared plan (or generating one) and placing entities")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class StageTransitionEvent extends Event {
+        @Label("Stage")
+        int stage;
+        @Label("Difficulty")
+        int difficulty;
+        @Label("Prepared")
+        @Description("True if the stage was built in the background during the boss fight")
+        boolean prepared;
+    }
+
+    @Name("depths.LeaderboardWrite")
+    @Label("Leaderboard Write")
+    @Category("Depths of Java")
+    @Description("A journal append or a snapshot compaction on the leaderboard I/O thread")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class LeaderboardWriteEvent extends Event {
+        @Label("Kind")
+        String kind;
+        @Label("Entries")
+        int entries;
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+
+    /**
+     * Starts timing a tick.
+     *
+     * @return The event, or null while the event is disabled.
+     */
+    public static TickEvent beginTick() {
+        if (!TICK.isEnabled()) {
+            return null;
+        }
+        TickEvent event = new TickEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits a tick event with the phase times the tick just recorded in PerfStats.
+     *
+     * @param event The event from {@link #beginTick()}, or null.
+     * @param gp The GamePanel instance.
+     * @param played True if the tick ran the simulation (the phase times are from this tick).
+     */
+    public static void endTick(TickEvent event, GamePanel gp, boolean played) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.tick = gp.timers.now();
+            event.gameState = gp.gameState;
+            event.enemies = gp.enemies.size();
+            event.ecsEntities = gp.world.count(EntityWorld.POSITION);
+            if (played) {
+                event.enemiesTime = gp.perf.getLastNanos(PerfStats.ENEMIES);
+                event.ecsAiTime = gp.perf.getLastNanos(PerfStats.ECS_AI);
+                event.ecsMoveTime = gp.perf.getLastNanos(PerfStats.ECS_MOVE);
+                event.ecsCollideTime = gp.perf.getLastNanos(PerfStats.ECS_COLLIDE);
+            }
+            event.commit();
+        }
+    }
+
+    /**
+     * Starts timing a frame.
+     *
+     * @return The event, or null while the event is disabled.
+     */
+    public static FrameEvent beginFrame() {
+        if (!FRAME.isEnabled()) {
+            return null;
+        }
+        FrameEvent event = new FrameEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits a frame event.
+     *
+     * @param event The event from {@link #beginFrame()}, or null.
+     * @param gp The GamePanel instance.
+     * @param drewGame True if the frame drew the game (the phase times are from this frame).
+     */
+    public static void endFrame(FrameEvent event, GamePanel gp, boolean drewGame) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.gameState = gp.gameState;
+            if (drewGame) {
+                event.tilesTime = gp.perf.getLastNanos(PerfStats.RENDER_TILES);
+                event.entitiesTime = gp.perf.getLastNanos(PerfStats.RENDER_ENTITIES);
+            }
+            event.commit();
+        }
+    }
+
+    /**
+     * Records that an enemy was spawned.
+     *
+     * @param kind MELEE, RANGED, BOSS or SWARM.
+     * @param x The x-coordinate in the world.
+     * @param y The y-coordinate in the world.
+     * @param difficulty The difficulty level it was spawned at.
+     */
+    public static void enemySpawned(int kind, int x, int y, int difficulty) {
+        if (!SPAWN.isEnabled()) {
+            return;
+        }
+        EnemySpawnEvent event = new EnemySpawnEvent();
+        if (event.shouldCommit()) {
+            event.kind = ENEMY_KINDS[kind];
+            event.x = x;
+            event.y = y;
+            event.difficulty = difficulty;
+            event.commit();
+        }
+    }
+
+    /**
+     * Starts timing a boss action.
+     *
+     * @return The event, or null while the event is disabled.
+     */
+    public static BossActionEvent beginBossAction() {
+        if (!BOSS_ACTION.isEnabled()) {
+            return null;
+        }
+        BossActionEvent event = new BossActionEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits a boss action event when the boss goes back to idle.
+     *
+     * @param event The event from {@link #beginBossAction()}, or null.
+     * @param action The action that ended (1-4).
+     * @param hp The boss's HP.
+     * @param ticks How many ticks the action lasted.
+     */
+    public static void endBossAction(BossActionEvent event, int action, int hp, int ticks) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.action = action >= 0 && action < BOSS_ACTIONS.length ? BOSS_ACTIONS[action] : Integer.toString(action);
+            event.hp = hp;
+            event.ticks = ticks;
+            event.commit();
+        }
+    }
+
+    /**
+     * Starts timing a stage transition.
+     *
+     * @return The event, or null while the event is disabled.
+     */
+    public static StageTransitionEvent beginStageTransition() {
+        if (!STAGE.isEnabled()) {
+            return null;
+        }
+        StageTransitionEvent event = new StageTransitionEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits a stage transition event.
+     *
+     * @param event The event from {@link #beginStageTransition()}, or null.
+     * @param stage The new stage number.
+     * @param difficulty The difficulty level.
+     * @param prepared True if the stage was built in the background.
+     */
+    public static void endStageTransition(StageTransitionEvent event, int stage, int difficulty, boolean prepared) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.stage = stage;
+            event.difficulty = difficulty;
+            event.prepared = prepared;
+            event.commit();
+        }
+    }
+
+    /**
+     * Starts timing a leaderboard write.
+     *
+     * @return The event, or null while the event is disabled.
+     */
+    public static LeaderboardWriteEvent beginLeaderboardWrite() {
+        if (!LEADERBOARD.isEnabled()) {
+            return null;
+        }
+        LeaderboardWriteEvent event = new LeaderboardWriteEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits a leaderboard write event.
+     *
+     * @param event The event from {@link #beginLeaderboardWrite()}, or null.
+     * @param kind "journal" or "snapshot".
+     * @param entries The number of scores written.
+     * @param bytes The number of bytes written (0 if unknown).
+     */
+    public static void endLeaderboardWrite(LeaderboardWriteEvent event, String kind, int entries, long bytes) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.kind = kind;
+            event.entries = entries;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+}
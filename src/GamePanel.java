@@ -9,12 +9,19 @@ import java.awt.Graphics2D;
 import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
 import java.awt.BasicStroke;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class GamePanel extends JPanel implements Runnable {
 
+    private static final Log.Site LOG_LOAD_FAILED = Log.site(Log.WARN, "Could not load game: {}");
+    private static final Log.Site LOG_LOAD_WRONG_SIZE = Log.site(Log.WARN, "Could not load game: it was saved in a {}x{} world");
+    private static final Log.Site LOG_LOAD_CORRUPT = Log.site(Log.WARN, "Could not load game: corrupt save ({})");
+    private static final Log.Site LOG_BOSS_SPAWNED = Log.site(Log.INFO, "BOSS SPAWNED!");
+    private static final Log.Site LOG_STAGE_FAILED = Log.site(Log.ERROR, "Error building next stage: {}");
+
     final int originalTileSize = 16;
     final int scale = 3;
     public final int tileSize = originalTileSize * scale;
@@ -23,26 +30,58 @@ public class GamePanel extends JPanel implements Runnable {
     public final int screenWidth = tileSize * maxScreenCol;
     public final int screenHeight = tileSize * maxScreenRow;
 
-    // WORLD SETTINGS
-    public final int maxWorldCol = 100;
-    public final int maxWorldRow = 100;
+    // WORLD SETTINGS (override with -Dworld.cols / -Dworld.rows, up to 4096x4096)
+    public final int maxWorldCol = worldSize("world.cols");
+    public final int maxWorldRow = worldSize("world.rows");
     public final int worldWidth = tileSize * maxWorldCol;
     public final int worldHeight = tileSize * maxWorldRow;
 
     int FPS = 60;
 
+    // Spawners are placed at least this many tiles away from the player's start
+    public static final int SPAWNER_MIN_DISTANCE = 10;
+
     KeyHandler keyH = new KeyHandler();
     Thread gameThread;
+    public TimerWheel timers = new TimerWheel(); // Must exist before the entities below schedule timers
+    public GameRandom rand = GameRandom.fromSystemProperties(); // All simulation randomness (before tileM, which uses it)
     public TileManager tileM = new TileManager(this);
     public Player player = new Player(this, keyH);
+    public LineOfSight los = new LineOfSight(this);
     public Leaderboard leaderboard = new Leaderboard();
+    public SaveGame saves = new SaveGame(this);
+    public RewindBuffer rewind = RewindBuffer.fromSystemProperties(this); // Debug builds only (null otherwise)
+    public StateHash stateHash = StateHash.fromSystemProperties(this); // Only when -Dhash.log is set
+    public Telemetry telemetry = Telemetry.fromSystemProperties(this); // Only when -Dtelemetry.dir is set
+    public Heatmap heatmap = Heatmap.fromSystemProperties(this); // Only when -Dheatmap.file is set
+    public Metrics metrics = Metrics.fromSystemProperties(); // Only when -Dmetrics.port is set
+    public StallWatchdog watchdog = StallWatchdog.fromSystemProperties(this); // Only when -Dwatchdog.file is set
 
     public ArrayList<LootBox> lootBoxes = new ArrayList<>();
     public ArrayList<Enemy> enemies = new ArrayList<>();
-    public ArrayList<Projectile> projectiles = new ArrayList<>();
     public ArrayList<EnemySpawner> spawners = new ArrayList<>();
     public ArrayList<DamageNumber> damageNumbers = new ArrayList<>();
     public ArrayList<FloatingText> floatingTexts = new ArrayList<>();
+
+    // ECS world for bulk entities (projectiles) and the systems that run over it
+    public EntityWorld world = new EntityWorld();
+    MovementSystem movementSystem = new MovementSystem(this);
+    ProjectileSystem projectileSystem = new ProjectileSystem(this);
+    LifetimeSystem lifetimeSystem = new LifetimeSystem();
+    SwarmSystem swarmSystem = new SwarmSystem(this);
+    RenderSystem renderSystem = new RenderSystem(this);
+
+    // Horde Mode (null when playing the normal game)
+    public HordeMode horde = null;
+    // Endless Descent (chunk-streamed world, see ChunkManager)
+    public boolean endless = false;
+    private int playerChunkX = -1, playerChunkY = -1;
+    public PerfStats perf = new PerfStats();
+
+    // Pools for short-lived entities (reused instead of allocated per hit)
+    public ObjectPool<DamageNumber> damageNumberPool = new ObjectPool<>(DamageNumber::new, 32);
+    public ObjectPool<FloatingText> floatingTextPool = new ObjectPool<>(FloatingText::new, 16);
+
     public int difficultyLevel = 0;
     public int score = 0;
     public int totalScore = 0;
@@ -53,15 +92,24 @@ public class GamePanel extends JPanel implements Runnable {
     public boolean bossActive = false;
     public int nextBossScore = 5000;
     public boolean bossSpawnPending = false;
-    public int bossSpawnTimer = 0;
+    public TimerWheel.Timer bossSpawnTimer = new TimerWheel.Timer(this::spawnBoss);
 
     // Stage Transition
     public boolean stageTransitionPending = false;
-    public int stageTransitionTimer = 0;
+    public TimerWheel.Timer stageTransitionTimer = new TimerWheel.Timer(this::startNextStage);
+    private Future<StagePlan> nextStagePlan = null; // Built in the background during the boss fight
 
     // Stage Message
     public int stageMessageTimer = 0;
 
+    // HUD, drawn without allocating (see Sprite, TextBuffer)
+    private final Sprite hudBar = new Sprite(screenWidth, 40, 0, 0, g2 -> {
+        g2.setColor(new Color(0, 0, 0, 150));
+        g2.fillRect(0, 0, screenWidth, 40);
+    });
+    private final TextBuffer hudText = new TextBuffer();
+    private final TextBuffer stageCompleteText = new TextBuffer().append("STAGE COMPLETE!");
+
     // GAME STATE
     public int gameState;
     public int previousState; // To return from settings
@@ -91,6 +139,20 @@ public class GamePanel extends JPanel implements Runnable {
         this.setDoubleBuffered(true);
         this.addKeyListener(keyH);
         this.setFocusable(true);
+        if (metrics != null) {
+            leaderboard.ioMicros = metrics.leaderboardIoSeconds;
+        }
+    }
+
+    /**
+     * Reads a world dimension (in tiles) from a system property.
+     *
+     * @param property The system property name.
+     * @return The configured size clamped to 16..4096, or 100 if unset.
+     */
+    static int worldSize(String property) {
+        int size = Integer.getInteger(property, 100);
+        return Math.max(16, Math.min(4096, size));
     }
 
     public void setupGame() {
@@ -103,18 +165,56 @@ public class GamePanel extends JPanel implements Runnable {
         bossSpawnPending = false;
         stageTransitionPending = false;
         nextBossScore = 5000;
+        if (horde != null) {
+            nextBossScore = Integer.MAX_VALUE; // No boss fights in horde mode
+        }
 
-        // Find a valid spawn point for player
-        placePlayerOnFloor();
+        // Player, spawners and loot boxes
+        placeStageEntities(horde != null ? horde.spawnerCount : 5, 10);
+    }
 
-        // Add Spawners
-        for (int i = 0; i < 5; i++) {
-            placeSpawnerOnFloor();
+    /**
+     * Places the player, spawners and loot boxes of a fresh stage: at the spots saved with a
+     * curated stage (see DungeonFile) when one is in use, at random floor tiles otherwise.
+     *
+     * @param spawnerCount The number of spawners.
+     * @param lootCount The number of loot boxes.
+     */
+    private void placeStageEntities(int spawnerCount, int lootCount) {
+        StagePlan plan = tileM.chunks == null ? tileM.fixedStage : null;
+        if (plan != null) {
+            placePlannedEntities(plan, spawnerCount, lootCount);
+            return;
         }
+        placePlayerOnFloor();
+        for (int i = 0; i < spawnerCount; i++) placeSpawnerOnFloor();
+        for (int i = 0; i < lootCount; i++) placeLootBoxOnFloor();
+    }
 
-        // Add LootBoxes
-        for (int i = 0; i < 10; i++) {
-            placeLootBoxOnFloor();
+    /**
+     * Places the player, spawners and loot boxes where a stage plan says. Counts beyond the
+     * plan's tables are placed at random floor tiles.
+     *
+     * @param plan The stage.
+     * @param spawnerCount The number of spawners.
+     * @param lootCount The number of loot boxes.
+     */
+    private void placePlannedEntities(StagePlan plan, int spawnerCount, int lootCount) {
+        player.worldX = plan.playerCol * tileSize;
+        player.worldY = plan.playerRow * tileSize;
+        for (int i = 0; i < spawnerCount; i++) {
+            if (i < plan.spawnerCols.length) {
+                spawners.add(new EnemySpawner(this, plan.spawnerCols[i] * tileSize, plan.spawnerRows[i] * tileSize));
+            } else {
+                placeSpawnerOnFloor();
+            }
+        }
+        for (int i = 0; i < lootCount; i++) {
+            if (i < plan.lootCols.length) {
+                lootBoxes.add(new LootBox(plan.lootCols[i] * tileSize, plan.lootRows[i] * tileSize, rand));
+            } else {
+                placeLootBoxOnFloor();
+            }
         }
     }
 
@@ -124,58 +224,125 @@ public class GamePanel extends JPanel implements Runnable {
     }
 
     private void placePlayerOnFloor() {
-        Random rand = new Random();
-        while(true) {
-            int col = rand.nextInt(maxWorldCol);
-            int row = rand.nextInt(maxWorldRow);
-            if (tileM.mapTileNum[col][row] == 0) {
-                player.worldX = col * tileSize;
-                player.worldY = row * tileSize;
-                break;
-            }
+        if (tileM.chunks != null) {
+            // Endless Descent always starts in the middle of the origin chunk
+            player.worldX = tileM.chunks.startCol() * tileSize;
+            player.worldY = tileM.chunks.startRow() * tileSize;
+            playerChunkX = -1;
+            playerChunkY = -1;
+            return;
         }
+        long tile = tileM.randomFloor(rand);
+        player.worldX = FloorIndex.col(tile) * tileSize;
+        player.worldY = FloorIndex.row(tile) * tileSize;
     }
 
     private void placeSpawnerOnFloor() {
-        Random rand = new Random();
-        while(true) {
-            int col = rand.nextInt(maxWorldCol);
-            int row = rand.nextInt(maxWorldRow);
-            if (tileM.mapTileNum[col][row] == 0) {
-                // Ensure not too close to player spawn (optional but good practice)
-                spawners.add(new EnemySpawner(this, col * tileSize, row * tileSize));
-                break;
-            }
+        // Not too close to the player
+        long tile = tileM.randomFloorInRing(player.worldX / tileSize, player.worldY / tileSize, SPAWNER_MIN_DISTANCE, Integer.MAX_VALUE, rand);
+        if (tile == FloorIndex.NONE) {
+            tile = tileM.randomFloor(rand); // Nothing is that far away
+        }
+        if (tile != FloorIndex.NONE) {
+            spawners.add(new EnemySpawner(this, FloorIndex.col(tile) * tileSize, FloorIndex.row(tile) * tileSize));
         }
     }
 
     private void placeLootBoxOnFloor() {
-        Random rand = new Random();
-        while(true) {
-            int col = rand.nextInt(maxWorldCol);
-            int row = rand.nextInt(maxWorldRow);
-            if (tileM.mapTileNum[col][row] == 0) {
-                lootBoxes.add(new LootBox(col * tileSize, row * tileSize));
-                break;
-            }
+        long tile = tileM.randomFloor(rand);
+        if (tile != FloorIndex.NONE) {
+            lootBoxes.add(new LootBox(FloorIndex.col(tile) * tileSize, FloorIndex.row(tile) * tileSize, rand));
         }
     }
 
     public void resetGame() {
+        rand.newRun();
+        timers.clear(); // Drop every pending timer of the old run
+        if (nextStagePlan != null) {
+            nextStagePlan.cancel(false);
+            nextStagePlan = null;
+        }
         tileM.generateDungeon(); // New dungeon
         player.setDefaultValues();
-        lootBoxes.clear();
-        enemies.clear();
-        projectiles.clear();
-        spawners.clear();
-        damageNumbers.clear();
-        floatingTexts.clear();
+        clearEntities();
+        if (rewind != null) {
+            rewind.clear();
+        }
         score = 0;
         totalScore = 0;
         setupGame();
+        if (telemetry != null) {
+            telemetry.startRun();
+        }
+        if (heatmap != null) {
+            heatmap.paused = tileM.chunks != null; // The endless world is not on the grid
+        }
         // gameState is set to titleState by setupGame(), we will override it where needed
     }
 
+    /**
+     * Replaces the current run with the one in the save file (see SaveGame) and resumes play.
+     *
+     * @return True if the save was loaded.
+     */
+    public boolean loadGame() {
+        SaveGame.Snapshot snapshot;
+        try {
+            snapshot = saves.load();
+        } catch (IOException e) {
+            LOG_LOAD_FAILED.log(e.getMessage());
+            return false;
+        }
+        if (snapshot.map.cols != maxWorldCol || snapshot.map.rows != maxWorldRow) {
+            LOG_LOAD_WRONG_SIZE.log(snapshot.map.cols, snapshot.map.rows);
+            return false;
+        }
+        if (!restoreSnapshot(snapshot)) {
+            return false;
+        }
+        if (rewind != null) {
+            rewind.clear(); // The frames belong to another run
+        }
+        if (telemetry != null) {
+            telemetry.startRun();
+        }
+        if (heatmap != null) {
+            heatmap.paused = false; // Endless Descent is never saved
+        }
+        gameState = playState;
+        return true;
+    }
+
+    /**
+     * Replaces the whole world with a snapshot (see SaveGame), e.g. a loaded save or a frame
+     * of the rewind buffer. The game state is left as it is.
+     *
+     * @param snapshot The snapshot.
+     * @return False if the snapshot was corrupt; the game was reset instead.
+     */
+    public boolean restoreSnapshot(SaveGame.Snapshot snapshot) {
+        timers.clear();
+        if (nextStagePlan != null) {
+            nextStagePlan.cancel(false);
+            nextStagePlan = null;
+        }
+        if (tileM.chunks != null) {
+            tileM.chunks.shutdown();
+            tileM.chunks = null;
+        }
+        clearEntities();
+        try {
+            saves.restore(snapshot);
+        } catch (RuntimeException e) {
+            // Records missing or out of range: start over instead of playing a half-restored world
+            LOG_LOAD_CORRUPT.log(e);
+            endless = false;
+            resetGame();
+            return false;
+        }
+        return true;
+    }
+
     public void addScore(int value) {
         score += value;
         difficultyLevel = (totalScore + score) / 1000;
@@ -189,9 +356,18 @@ public class GamePanel extends JPanel implements Runnable {
 
     private void prepareBossSpawn() {
         bossSpawnPending = true;
-        bossSpawnTimer = 300; // 5 seconds at 60 FPS
+        timers.schedule(bossSpawnTimer, 300); // 5 seconds at 60 FPS
+
+        // The next stage is known from now on: build it while the boss fight runs
+        // (Endless Descent streams its chunks instead, and a curated stage is already loaded)
+        if (tileM.chunks == null && tileM.fixedStage == null && nextStagePlan == null) {
+            nextStagePlan = StagePlan.buildAsync(maxWorldCol, maxWorldRow, 5, 10, rand.nextLong());
+        }
 
         // Kill all existing enemies
+        for (Enemy e : enemies) {
+            e.cancelTimers();
+        }
         enemies.clear();
 
         // Deactivate spawners
@@ -204,23 +380,19 @@ public class GamePanel extends JPanel implements Runnable {
         bossActive = true;
         bossSpawnPending = false;
 
-        // Spawn Boss near player but not on top
-        // Simple logic: find a spot 5-10 tiles away
-        Random rand = new Random();
-        int bossX, bossY;
-        while(true) {
-            int col = (player.worldX / tileSize) + rand.nextInt(10) - 5;
-            int row = (player.worldY / tileSize) + rand.nextInt(10) - 5;
-
-            if (col > 0 && col < maxWorldCol && row > 0 && row < maxWorldRow && tileM.mapTileNum[col][row] == 0) {
-                bossX = col * tileSize;
-                bossY = row * tileSize;
-                break;
-            }
+        // Spawn Boss near player but not on top: a floor tile 2-6 tiles away
+        int playerCol = player.worldX / tileSize;
+        int playerRow = player.worldY / tileSize;
+        long tile = tileM.randomFloorInRing(playerCol, playerRow, 2, 6, rand);
+        if (tile == FloorIndex.NONE) {
+            tile = FloorIndex.pack(playerCol, playerRow); // Cramped spot: share the player's tile
         }
+        int bossX = FloorIndex.col(tile) * tileSize;
+        int bossY = FloorIndex.row(tile) * tileSize;
 
         enemies.add(new Enemy(this, bossX, bossY, true, difficultyLevel, true));
-        System.out.println("BOSS SPAWNED!");
+        GameEvents.enemySpawned(GameEvents.BOSS, bossX, bossY, difficultyLevel);
+        LOG_BOSS_SPAWNED.log();
     }
 
     public void bossDefeated() {
@@ -236,28 +408,30 @@ public class GamePanel extends JPanel implements Runnable {
 
         // Start delay before next stage
         stageTransitionPending = true;
-        stageTransitionTimer = 150; // 2.5 seconds at 60 FPS
+        timers.schedule(stageTransitionTimer, 150); // 2.5 seconds at 60 FPS
     }
 
     public void startNextStage() {
+        GameEvents.StageTransitionEvent stageEvent = GameEvents.beginStageTransition();
         stage++;
         stageTransitionPending = false;
 
-        // Regenerate Level
-        tileM.generateDungeon();
+        StagePlan plan = takeNextStagePlan();
+        if (plan != null) {
+            // Swap in the pre-built level and put everything where the plan says
+            tileM.install(plan.map, plan.regions, plan.floor);
+            clearEntities();
+            placePlannedEntities(plan, plan.spawnerCols.length, plan.lootCols.length);
+        } else {
+            // Regenerate Level
+            tileM.generateDungeon();
 
-        // Clear entities
-        lootBoxes.clear();
-        enemies.clear();
-        projectiles.clear();
-        spawners.clear();
-        damageNumbers.clear();
-        floatingTexts.clear();
+            // Clear entities
+            clearEntities();
 
-        // Place entities
-        placePlayerOnFloor();
-        for (int i = 0; i < 5; i++) placeSpawnerOnFloor();
-        for (int i = 0; i < 10; i++) placeLootBoxOnFloor();
+            // Place entities
+            placeStageEntities(5, 10);
+        }
 
         // Reset Boss Logic
         bossActive = false;
@@ -269,6 +443,159 @@ public class GamePanel extends JPanel implements Runnable {
 
         // Stage Message
         stageMessageTimer = 180; // 3 seconds
+
+        GameEvents.endStageTransition(stageEvent, stage, difficultyLevel, plan != null);
+    }
+
+    /**
+     * Returns the stage prepared during the boss fight, waiting for it if the worker is not done yet.
+     *
+     * @return The prepared stage, or null if none was prepared (or building it failed).
+     */
+    private StagePlan takeNextStagePlan() {
+        if (nextStagePlan == null) {
+            return null;
+        }
+        Future<StagePlan> future = nextStagePlan;
+        nextStagePlan = null;
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOG_STAGE_FAILED.log(e.getCause());
+        }
+        return null;
+    }
+
+    /**
+     * Streams the Endless Descent world around the player. When the player enters another chunk,
+     * entities left far behind are dropped (so they do not keep old chunks loaded) and chunks
+     * visited for the first time get their own spawner and loot.
+     */
+    private void updateChunks() {
+        int col = player.worldX / tileSize;
+        int row = player.worldY / tileSize;
+        tileM.chunks.update(col, row);
+
+        int chunkX = col >> ChunkManager.CHUNK_SHIFT;
+        int chunkY = row >> ChunkManager.CHUNK_SHIFT;
+        if (chunkX == playerChunkX && chunkY == playerChunkY) {
+            return;
+        }
+        boolean firstChunk = playerChunkX == -1;
+        playerChunkX = chunkX;
+        playerChunkY = chunkY;
+
+        // Drop what the player left behind (the boss follows the player, so it stays)
+        int live = 0;
+        for (int i = 0; i < enemies.size(); i++) {
+            Enemy e = enemies.get(i);
+            if (e.isBoss || isNearPlayerChunk(e.x, e.y)) {
+                enemies.set(live++, e);
+            } else {
+                e.cancelTimers();
+            }
+        }
+        truncate(enemies, live);
+        live = 0;
+        for (int i = 0; i < spawners.size(); i++) {
+            EnemySpawner s = spawners.get(i);
+            if (isNearPlayerChunk(s.x, s.y)) {
+                spawners.set(live++, s);
+            } else {
+                s.cancelTimers();
+            }
+        }
+        truncate(spawners, live);
+        live = 0;
+        for (int i = 0; i < lootBoxes.size(); i++) {
+            LootBox box = lootBoxes.get(i);
+            if (isNearPlayerChunk(box.x, box.y)) {
+                lootBoxes.set(live++, box);
+            }
+        }
+        truncate(lootBoxes, live);
+
+        // New ground: give it something to fight and something to find
+        if (tileM.chunks.markPopulated(chunkX, chunkY) && !firstChunk) {
+            placeSpawnerOnFloor();
+            placeLootBoxOnFloor();
+            placeLootBoxOnFloor();
+        }
+    }
+
+    private boolean isNearPlayerChunk(int worldX, int worldY) {
+        return tileM.chunks.isNearFocus((worldX / tileSize) >> ChunkManager.CHUNK_SHIFT, (worldY / tileSize) >> ChunkManager.CHUNK_SHIFT);
+    }
+
+    /**
+     * Fires a projectile (an ECS entity, see ProjectileSystem).
+     */
+    public void spawnProjectile(int startX, int startY, double angle, int damage) {
+        projectileSystem.spawn(world, startX, startY, angle, damage);
+    }
+
+    /**
+     * Spawns a horde mode swarm enemy (an ECS entity, see SwarmSystem) if the horde cap allows it.
+     */
+    public void spawnSwarmEnemy(int x, int y) {
+        if (world.count(SwarmSystem.SWARM) < horde.maxEnemies) {
+            swarmSystem.spawn(world, x, y);
+            GameEvents.enemySpawned(GameEvents.SWARM, x, y, difficultyLevel);
+        }
+    }
+
+    /**
+     * Returns the number of enemies alive, including horde mode swarm enemies.
+     */
+    public int getEnemyCount() {
+        return enemies.size() + world.count(SwarmSystem.SWARM);
+    }
+
+    /**
+     * Shows a damage number, reusing a pooled instance when one is available.
+     */
+    public void spawnDamageNumber(int startX, int startY, int value) {
+        DamageNumber dn = damageNumberPool.obtain();
+        dn.reset(timers, rand, startX, startY, value);
+        damageNumbers.add(dn);
+    }
+
+    /**
+     * Shows a floating text, reusing a pooled instance when one is available.
+     */
+    public void spawnFloatingText(int x, int y, String text, Color color) {
+        FloatingText ft = floatingTextPool.obtain();
+        ft.reset(timers, x, y, text, color);
+        floatingTexts.add(ft);
+    }
+
+    /**
+     * Removes every entity from the world, cancels their pending timers and
+     * returns the pooled ones to their pools.
+     */
+    private void clearEntities() {
+        for (Enemy e : enemies) {
+            e.cancelTimers();
+        }
+        for (EnemySpawner s : spawners) {
+            s.cancelTimers();
+        }
+        for (DamageNumber dn : damageNumbers) {
+            timers.cancel(dn.lifeTime);
+            damageNumberPool.release(dn);
+        }
+        for (FloatingText ft : floatingTexts) {
+            timers.cancel(ft.lifeTime);
+            floatingTextPool.release(ft);
+        }
+        lootBoxes.clear();
+        enemies.clear();
+        world.clear();
+        spawners.clear();
+        damageNumbers.clear();
+        floatingTexts.clear();
     }
 
     public void setFullScreen() {
@@ -318,6 +645,14 @@ public class GamePanel extends JPanel implements Runnable {
     }
 
     public void update() {
+        if (watchdog != null) {
+            watchdog.tickStarted();
+        }
+        long tickStart = perf.begin(PerfStats.TICK);
+        long allocStart = perf.currentThreadAllocatedBytes();
+        boolean played = gameState == playState;
+        GameEvents.TickEvent tickEvent = GameEvents.beginTick();
+
         if (shakeDuration > 0) {
             shakeDuration--;
         }
@@ -327,31 +662,51 @@ public class GamePanel extends JPanel implements Runnable {
         }
 
         if (gameState == titleState) {
+            if (keyH.loadPressed) {
+                loadGame();
+                keyH.loadPressed = false;
+            }
             if (keyH.upPressed) {
                 commandNum--;
-                if (commandNum < 0) commandNum = 3;
+                if (commandNum < 0) commandNum = 5;
                 keyH.upPressed = false;
             }
             if (keyH.downPressed) {
                 commandNum++;
-                if (commandNum > 3) commandNum = 0;
+                if (commandNum > 5) commandNum = 0;
                 keyH.downPressed = false;
             }
             if (keyH.enterPressed) {
                 if (commandNum == 0) {
+                    horde = null;
+                    endless = false;
                     resetGame(); // Ensure fresh game
                     gameState = nameInputState;
                     playerName = "";
                 }
-                if (commandNum == 1) {
+                else if (commandNum == 1) { // Horde Mode
+                    horde = HordeMode.fromSystemProperties();
+                    endless = false;
+                    resetGame();
+                    gameState = nameInputState;
+                    playerName = "";
+                }
+                else if (commandNum == 2) { // Endless Descent
+                    horde = null;
+                    endless = true;
+                    resetGame();
+                    gameState = nameInputState;
+                    playerName = "";
+                }
+                else if (commandNum == 3) {
                     gameState = leaderboardState;
                 }
-                if (commandNum == 2) {
+                else if (commandNum == 4) {
                     previousState = titleState;
                     gameState = settingsState;
                     commandNum = 0; // Reset for settings menu
                 }
-                if (commandNum == 3) {
+                else if (commandNum == 5) {
                     System.exit(0);
                 }
                 keyH.enterPressed = false;
@@ -380,88 +735,119 @@ public class GamePanel extends JPanel implements Runnable {
             }
         }
         else if (gameState == playState) {
-            player.update();
+            // Fire due timers (cooldowns, spawners, boss spawn, stage transition...)
+            long phaseStart = perf.begin(PerfStats.TIMERS);
+            timers.advance();
+            perf.record(PerfStats.TIMERS, System.nanoTime() - phaseStart);
 
-            // Boss Spawn Timer
-            if (bossSpawnPending) {
-                bossSpawnTimer--;
-                if (bossSpawnTimer <= 0) {
-                    spawnBoss();
-                }
-            }
+            phaseStart = perf.begin(PerfStats.PLAYER);
+            player.update();
+            perf.record(PerfStats.PLAYER, System.nanoTime() - phaseStart);
 
-            // Stage Transition Timer
-            if (stageTransitionPending) {
-                stageTransitionTimer--;
-                if (stageTransitionTimer <= 0) {
-                    startNextStage();
-                }
+            // Endless Descent: stream chunks around the player
+            if (tileM.chunks != null) {
+                phaseStart = perf.begin(PerfStats.CHUNKS);
+                updateChunks();
+                perf.record(PerfStats.CHUNKS, System.nanoTime() - phaseStart);
             }
 
-            // Update Spawners
-            for (EnemySpawner spawner : spawners) {
-                spawner.update();
-            }
+            // Each list below is updated and compacted in a single sweep:
+            // survivors are shifted down in place and the dead tail is cut off once,
+            // instead of an O(n) Iterator.remove() per dead entity.
 
             // Update Enemies
-            Iterator<Enemy> enemyIt = enemies.iterator();
-            while(enemyIt.hasNext()) {
-                Enemy enemy = enemyIt.next();
+            phaseStart = perf.begin(PerfStats.ENEMIES);
+            int live = 0;
+            for (int i = 0; i < enemies.size(); i++) {
+                Enemy enemy = enemies.get(i);
                 if (enemy.alive) {
                     enemy.update(player);
-                } else {
-                    enemyIt.remove();
+                    enemies.set(live++, enemy);
                 }
             }
+            truncate(enemies, live);
+            perf.record(PerfStats.ENEMIES, System.nanoTime() - phaseStart);
 
-            // Update Projectiles
-            Iterator<Projectile> it = projectiles.iterator();
-            while(it.hasNext()) {
-                Projectile p = it.next();
-                if(p.active) {
-                    p.update();
-                } else {
-                    it.remove();
-                }
-            }
+            // Update ECS entities (projectiles, swarm); dead ones are swap-removed in flush()
+            phaseStart = perf.begin(PerfStats.ECS_AI);
+            swarmSystem.updateAI(world);
+            perf.record(PerfStats.ECS_AI, System.nanoTime() - phaseStart);
+
+            phaseStart = perf.begin(PerfStats.ECS_MOVE);
+            movementSystem.update(world);
+            perf.record(PerfStats.ECS_MOVE, System.nanoTime() - phaseStart);
+
+            phaseStart = perf.begin(PerfStats.ECS_COLLIDE);
+            projectileSystem.update(world);
+            swarmSystem.updateContact(world);
+            lifetimeSystem.update(world);
+            world.flush();
+            perf.record(PerfStats.ECS_COLLIDE, System.nanoTime() - phaseStart);
 
             // Update LootBoxes (Respawn logic)
+            phaseStart = perf.begin(PerfStats.EFFECTS);
             int boxesToSpawn = 0;
-            Iterator<LootBox> boxIt = lootBoxes.iterator();
-            while(boxIt.hasNext()) {
-                LootBox box = boxIt.next();
-                if (box.opened) {
-                    if (isOffScreen(box)) {
-                        boxIt.remove();
-                        boxesToSpawn++;
-                    }
+            live = 0;
+            for (int i = 0; i < lootBoxes.size(); i++) {
+                LootBox box = lootBoxes.get(i);
+                if (box.opened && isOffScreen(box)) {
+                    boxesToSpawn++;
+                } else {
+                    lootBoxes.set(live++, box);
                 }
             }
+            truncate(lootBoxes, live);
             for(int i=0; i<boxesToSpawn; i++) {
                 placeLootBoxOnFloor();
             }
 
             // Update Damage Numbers
-            Iterator<DamageNumber> dnIt = damageNumbers.iterator();
-            while(dnIt.hasNext()) {
-                DamageNumber dn = dnIt.next();
+            live = 0;
+            for (int i = 0; i < damageNumbers.size(); i++) {
+                DamageNumber dn = damageNumbers.get(i);
                 if (dn.active) {
                     dn.update();
+                    damageNumbers.set(live++, dn);
                 } else {
-                    dnIt.remove();
+                    damageNumberPool.release(dn);
                 }
             }
+            truncate(damageNumbers, live);
 
             // Update Floating Texts
-            Iterator<FloatingText> ftIt = floatingTexts.iterator();
-            while(ftIt.hasNext()) {
-                FloatingText ft = ftIt.next();
+            live = 0;
+            for (int i = 0; i < floatingTexts.size(); i++) {
+                FloatingText ft = floatingTexts.get(i);
                 if (ft.active) {
                     ft.update();
+                    floatingTexts.set(live++, ft);
                 } else {
-                    ftIt.remove();
+                    floatingTextPool.release(ft);
                 }
             }
+            truncate(floatingTexts, live);
+            perf.record(PerfStats.EFFECTS, System.nanoTime() - phaseStart);
+
+            // State hash log, rewind buffer (debug), autosave, quick save and quick load
+            phaseStart = perf.begin(PerfStats.UPKEEP);
+            if (stateHash != null) {
+                stateHash.tick();
+            }
+            if (rewind != null) {
+                rewind.record();
+            }
+            saves.tick();
+            if (keyH.savePressed) {
+                if (saves.save()) {
+                    spawnFloatingText(player.worldX, player.worldY, "Game Saved", Color.WHITE);
+                }
+                keyH.savePressed = false;
+            }
+            if (keyH.loadPressed) {
+                loadGame();
+                keyH.loadPressed = false;
+            }
+            perf.record(PerfStats.UPKEEP, System.nanoTime() - phaseStart);
 
             if (keyH.escPressed) {
                 gameState = pauseState;
@@ -470,6 +856,18 @@ public class GamePanel extends JPanel implements Runnable {
             }
         }
         else if (gameState == pauseState) {
+            if (keyH.loadPressed) {
+                loadGame();
+                keyH.loadPressed = false;
+            }
+            // Scrub through the rewind buffer while LEFT / RIGHT is held; resuming continues from there
+            if (rewind != null) {
+                if (keyH.leftPressed) {
+                    rewind.stepBack();
+                } else if (keyH.rightPressed) {
+                    rewind.stepForward();
+                }
+            }
             if (keyH.upPressed) {
                 commandNum--;
                 if (commandNum < 0) commandNum = 2;
@@ -490,6 +888,7 @@ public class GamePanel extends JPanel implements Runnable {
                     commandNum = 0;
                 }
                 if (commandNum == 2) { // Main Menu
+                    saves.save(); // Continue later with F9
                     gameState = titleState;
                     commandNum = 0;
                 }
@@ -542,6 +941,7 @@ public class GamePanel extends JPanel implements Runnable {
             }
         }
         else if (gameState == leaderboardState) {
+            leaderboard.refresh(); // Scores from other game instances
             if (keyH.escPressed || keyH.enterPressed) {
                 gameState = titleState;
                 keyH.escPressed = false;
@@ -561,6 +961,9 @@ public class GamePanel extends JPanel implements Runnable {
             }
             if (keyH.enterPressed) {
                 leaderboard.addScore(playerName, totalScore + score);
+                if (heatmap != null) {
+                    heatmap.save();
+                }
 
                 if (commandNum == 0) { // Retry
                     resetGame();
@@ -579,6 +982,35 @@ public class GamePanel extends JPanel implements Runnable {
                 keyH.enterPressed = false;
             }
         }
+
+        long tickNanos = System.nanoTime() - tickStart;
+        perf.record(PerfStats.TICK, tickNanos);
+        if (telemetry != null && played) {
+            telemetry.record(tickNanos);
+            if (gameState == gameOverState) {
+                telemetry.endRun(); // The run is over with its last row; the file can be read now
+            }
+        }
+        long allocated = perf.currentThreadAllocatedBytes() - allocStart;
+        perf.recordAllocation(allocated);
+        if (metrics != null) {
+            metrics.tick(this, tickNanos, allocated);
+        }
+        GameEvents.endTick(tickEvent, this, played);
+        if (watchdog != null) {
+            watchdog.tickEnded();
+        }
+    }
+
+    /**
+     * Drops every element from index size onwards, in one removeRange of the tail (which
+     * shifts nothing). Called only on ticks where something was removed, as the sublist view
+     * is a small allocation.
+     */
+    private static void truncate(ArrayList<?> list, int size) {
+        if (size < list.size()) {
+            list.subList(size, list.size()).clear(); // One removeRange for the whole tail
+        }
     }
 
     private boolean isOffScreen(Entity entity) {
@@ -592,6 +1024,9 @@ public class GamePanel extends JPanel implements Runnable {
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
         Graphics2D g2 = (Graphics2D) g;
+        long renderStart = perf.begin(PerfStats.RENDER);
+        long allocStart = perf.currentThreadAllocatedBytes();
+        GameEvents.FrameEvent frameEvent = GameEvents.beginFrame();
 
         // Handle scaling for different screen sizes
         double widthScale = (double)getWidth() / screenWidth;
@@ -636,11 +1071,25 @@ public class GamePanel extends JPanel implements Runnable {
         }
 
         g2.dispose();
+
+        long renderNanos = System.nanoTime() - renderStart;
+        perf.record(PerfStats.RENDER, renderNanos);
+        if (telemetry != null) {
+            telemetry.frameRendered(renderNanos);
+        }
+        if (metrics != null) {
+            metrics.renderSeconds.record(renderNanos / 1000);
+        }
+        GameEvents.endFrame(frameEvent, this, gameState == playState || gameState == pauseState || gameState == gameOverState);
+        perf.recordAllocation(perf.currentThreadAllocatedBytes() - allocStart);
     }
 
     public void drawGame(Graphics2D g2) {
 
+        long phaseStart = perf.begin(PerfStats.RENDER_TILES);
         tileM.draw(g2);
+        perf.record(PerfStats.RENDER_TILES, System.nanoTime() - phaseStart);
+        phaseStart = perf.begin(PerfStats.RENDER_ENTITIES);
 
         // Draw Spawners
         for (EnemySpawner spawner : spawners) {
@@ -657,10 +1106,8 @@ public class GamePanel extends JPanel implements Runnable {
             enemy.draw(g2);
         }
 
-        // Draw Projectiles
-        for (Projectile p : projectiles) {
-            p.draw(g2);
-        }
+        // Draw ECS entities (projectiles)
+        renderSystem.draw(g2, world);
 
         player.draw(g2);
 
@@ -673,15 +1120,16 @@ public class GamePanel extends JPanel implements Runnable {
         for (FloatingText ft : floatingTexts) {
             ft.draw(g2, this);
         }
+        perf.record(PerfStats.RENDER_ENTITIES, System.nanoTime() - phaseStart);
 
         // --- UI OVERLAY ---
+        phaseStart = perf.begin(PerfStats.RENDER_HUD);
 
         // Top Bar
-        g2.setColor(new Color(0, 0, 0, 150));
-        g2.fillRect(0, 0, screenWidth, 40);
+        hudBar.draw(g2, 0, 0);
 
         // Bottom Bar
-        g2.fillRect(0, screenHeight - 40, screenWidth, 40);
+        hudBar.draw(g2, 0, screenHeight - 40);
 
         // Boss Health Bar (Top Center)
         if (bossActive && !enemies.isEmpty()) {
@@ -697,36 +1145,35 @@ public class GamePanel extends JPanel implements Runnable {
                 g2.fillRect(barX, barY, (int)((double)boss.hp/boss.maxHp * barWidth), 20);
                 g2.setColor(Color.white);
                 g2.drawRect(barX, barY, barWidth, 20);
-                g2.setFont(g2.getFont().deriveFont(Font.BOLD, 12F));
+                g2.setFont(TextBuffer.font(g2, Font.BOLD, 12F));
                 g2.drawString("BOSS", barX + 5, barY + 15);
             }
         }
 
         // Stage (Bottom Center)
         g2.setColor(Color.white);
-        g2.setFont(g2.getFont().deriveFont(Font.BOLD, 20F));
-        String stageText = "Stage: " + stage;
-        int stageWidth = (int)g2.getFontMetrics().getStringBounds(stageText, g2).getWidth();
-        g2.drawString(stageText, screenWidth/2 - stageWidth/2, screenHeight - 12);
+        g2.setFont(TextBuffer.font(g2, Font.BOLD, 20F));
+        hudText.clear().append("Stage: ").append(stage);
+        int stageWidth = hudText.width(g2);
+        hudText.draw(g2, screenWidth/2 - stageWidth/2, screenHeight - 12);
 
         // Draw Stage Message (Center Screen)
         if (stageMessageTimer > 0) {
-            g2.setColor(new Color(255, 255, 255, Math.min(255, stageMessageTimer * 5))); // Fade out
-            g2.setFont(g2.getFont().deriveFont(Font.BOLD, 60F));
-            String text = "STAGE " + stage;
-            int x = getXforCenteredText(text, g2);
+            g2.setColor(TextBuffer.withAlpha(Color.white, Math.min(255, stageMessageTimer * 5))); // Fade out
+            g2.setFont(TextBuffer.font(g2, Font.BOLD, 60F));
+            hudText.clear().append("STAGE ").append(stage);
+            int x = screenWidth/2 - hudText.width(g2)/2;
             int y = screenHeight / 2;
-            g2.drawString(text, x, y);
+            hudText.draw(g2, x, y);
         }
 
         // Draw Stage Complete Message
         if (stageTransitionPending) {
             g2.setColor(Color.yellow);
-            g2.setFont(g2.getFont().deriveFont(Font.BOLD, 50F));
-            String text = "STAGE COMPLETE!";
-            int x = getXforCenteredText(text, g2);
+            g2.setFont(TextBuffer.font(g2, Font.BOLD, 50F));
+            int x = screenWidth/2 - stageCompleteText.width(g2)/2;
             int y = screenHeight / 2;
-            g2.drawString(text, x, y);
+            stageCompleteText.draw(g2, x, y);
         }
 
         // Player Stats (Bottom Left)
@@ -734,20 +1181,29 @@ public class GamePanel extends JPanel implements Runnable {
 
         // Score (Bottom Right)
         g2.setColor(Color.white);
-        g2.setFont(g2.getFont().deriveFont(Font.BOLD, 16F));
-        String scoreText = "Score: " + score;
-        int scoreWidth = (int)g2.getFontMetrics().getStringBounds(scoreText, g2).getWidth();
-        g2.drawString(scoreText, screenWidth - scoreWidth - 10, screenHeight - 12);
+        g2.setFont(TextBuffer.font(g2, Font.BOLD, 16F));
+        hudText.clear().append("Score: ").append(score);
+        int scoreWidth = hudText.width(g2);
+        hudText.draw(g2, screenWidth - scoreWidth - 10, screenHeight - 12);
+
+        // Horde Mode performance overlay (Top Left)
+        if (horde != null) {
+            g2.setColor(Color.green);
+            g2.setFont(TextBuffer.font(g2, Font.PLAIN, 12F));
+            perf.summary(hudText, getEnemyCount()).draw(g2, 10, 25);
+        }
+        perf.record(PerfStats.RENDER_HUD, System.nanoTime() - phaseStart);
     }
 
     private void drawPlayerStats(Graphics2D g2) {
-        g2.setFont(g2.getFont().deriveFont(Font.BOLD, 14F));
+        g2.setFont(TextBuffer.font(g2, Font.BOLD, 14F));
         int uiX = 10;
         int uiY = screenHeight - 12;
 
         g2.setColor(Color.white);
-        String stats = "HP: " + player.hp + "/" + player.maxHp + " | DMG: " + player.damage + " | ARM: " + player.armor;
-        g2.drawString(stats, uiX, uiY);
+        hudText.clear().append("HP: ").append(player.hp).append('/').append(player.maxHp)
+                .append(" | DMG: ").append(player.damage).append(" | ARM: ").append(player.armor);
+        hudText.draw(g2, uiX, uiY);
     }
 
     public void drawTitleScreen(Graphics2D g2) {
@@ -785,7 +1241,7 @@ public class GamePanel extends JPanel implements Runnable {
         int menuX = screenWidth / 2 - tileSize * 4;
         int menuY = tileSize * 5;
         int menuWidth = tileSize * 8;
-        int menuHeight = tileSize * 6;
+        int menuHeight = tileSize * 7;
 
         // Semi-transparent box behind menu
         g2.setColor(new Color(0, 0, 0, 150));
@@ -803,7 +1259,7 @@ public class GamePanel extends JPanel implements Runnable {
             g2.drawString(">", x - tileSize, y);
         }
 
-        text = "LEADERBOARD";
+        text = "HORDE MODE";
         x = getXforCenteredText(text, g2);
         y += tileSize;
         g2.drawString(text, x, y);
@@ -811,7 +1267,7 @@ public class GamePanel extends JPanel implements Runnable {
             g2.drawString(">", x - tileSize, y);
         }
 
-        text = "SETTINGS";
+        text = "ENDLESS DESCENT";
         x = getXforCenteredText(text, g2);
         y += tileSize;
         g2.drawString(text, x, y);
@@ -819,13 +1275,29 @@ public class GamePanel extends JPanel implements Runnable {
             g2.drawString(">", x - tileSize, y);
         }
 
-        text = "QUIT";
+        text = "LEADERBOARD";
         x = getXforCenteredText(text, g2);
         y += tileSize;
         g2.drawString(text, x, y);
         if (commandNum == 3) {
             g2.drawString(">", x - tileSize, y);
         }
+
+        text = "SETTINGS";
+        x = getXforCenteredText(text, g2);
+        y += tileSize;
+        g2.drawString(text, x, y);
+        if (commandNum == 4) {
+            g2.drawString(">", x - tileSize, y);
+        }
+
+        text = "QUIT";
+        x = getXforCenteredText(text, g2);
+        y += tileSize;
+        g2.drawString(text, x, y);
+        if (commandNum == 5) {
+            g2.drawString(">", x - tileSize, y);
+        }
     }
 
     public void drawNameInputScreen(Graphics2D g2) {
@@ -884,6 +1356,14 @@ public class GamePanel extends JPanel implements Runnable {
             g2.drawString(text, x, y);
         }
 
+        // The current player's place, even when it is far below the top
+        int rank = playerName.isEmpty() ? 0 : leaderboard.rankOf(playerName);
+        if (rank > 0) {
+            text = "Your rank: " + rank + " of " + leaderboard.size();
+            x = getXforCenteredText(text, g2);
+            g2.drawString(text, x, screenHeight - tileSize * 3);
+        }
+
         text = "Press ENTER to return";
         x = getXforCenteredText(text, g2);
         y = screenHeight - tileSize * 2;
@@ -926,6 +1406,14 @@ public class GamePanel extends JPanel implements Runnable {
         if (commandNum == 2) {
             g2.drawString(">", x - tileSize, y);
         }
+
+        if (rewind != null) {
+            g2.setFont(g2.getFont().deriveFont(Font.PLAIN, 16F));
+            text = String.format("REWIND %.1f s of %.1f s (%d KB)   LEFT / RIGHT to scrub",
+                                 rewind.secondsBehind(), rewind.secondsBuffered(), rewind.usedBytes() / 1024);
+            x = getXforCenteredText(text, g2);
+            g2.drawString(text, x, screenHeight - tileSize);
+        }
     }
 
     public void drawSettingsScreen(Graphics2D g2) {
@@ -1012,7 +1500,9 @@ public class GamePanel extends JPanel implements Runnable {
                 "SPACE : Attack",
                 "SHIFT : Dash",
                 "ENTER : Select / Pause",
-                "ESC : Pause / Back"
+                "ESC : Pause / Back",
+                "F5 : Quick Save",
+                "F9 : Load Game"
         };
 
         for (String line : controls) {
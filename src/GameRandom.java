@@ -0,0 +1,77 @@
+import java.util.Random;
+
+/**
+ * The GameRandom class is the random number generator of the simulation. Everything that
+ * changes the game world (enemy stats, boss actions, spawns, loot, dungeon seeds) draws from
+ * the one instance in GamePanel, so a run started from the same seed with the same input plays
+ * out the same way, and the generator's state can be saved, restored and hashed (see SaveGame
+ * and StateHash). Screen shake does not use it; damage number jitter does, so a seeded
+ * run also shows the same numbers in the same places.
+ *
+ * It is a SplitMix64 generator: a single long of state that can be read back, and no
+ * synchronization, since the simulation only runs on the game thread.
+ */
+public class GameRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    private long state;
+    private final Long fixedSeed;
+
+    /**
+     * Creates the generator, seeded with {@code -Dgame.seed} when it is set (every run then
+     * starts from that seed, see {@link #newRun()}) and from the clock otherwise.
+     *
+     * @return The generator.
+     */
+    public static GameRandom fromSystemProperties() {
+        Long seed = Long.getLong("game.seed");
+        return new GameRandom(seed != null ? seed : System.nanoTime(), seed);
+    }
+
+    /**
+     * Constructor for GameRandom.
+     *
+     * @param seed The initial state.
+     * @param fixedSeed The seed every new run restarts from, or null to keep going.
+     */
+    public GameRandom(long seed, Long fixedSeed) {
+        super(seed); // Calls setSeed
+        this.fixedSeed = fixedSeed;
+    }
+
+    /**
+     * Called when a new run starts. With a fixed seed the generator restarts from it, so
+     * every run plays out the same way given the same input.
+     */
+    public void newRun() {
+        if (fixedSeed != null) {
+            state = fixedSeed;
+        }
+    }
+
+    /**
+     * Returns the current state. Passing it to {@link #setSeed} continues the exact sequence.
+     */
+    public long state() {
+        return state;
+    }
+
+    /**
+     * Sets the state (no scrambling, so {@code setSeed(state())} is a no-op).
+     *
+     * @param seed The new state.
+     */
+    @Override
+    public void setSeed(long seed) {
+        state = seed;
+    }
+
+    @Override
+    protected int next(int bits) {
+        long z = (state += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (int)((z ^ (z >>> 31)) >>> (64 - bits));
+    }
+}
@@ -0,0 +1,418 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+
+/**
+ * The Heatmap class counts where things happen on the tile grid: player deaths, damage taken,
+ * enemy presence (one count per enemy per tick) and projectile impacts. Each layer is an int
+ * array laid out like the TileMap (row * cols + col), so the game code only pays one array
+ * add per event.
+ *
+ * With {@code -Dheatmap.file=<file>} the counts of earlier sessions are loaded at startup,
+ * and the file is rewritten (in the background) whenever a run ends and again on exit, so it
+ * keeps accumulating. It needs a curated stage ({@code -Ddungeon.file}, see DungeonFile):
+ * random stages differ from run to run, so their counts would not line up. The file records
+ * the seed of that stage, and counts saved for another stage are dropped. Endless Descent is
+ * not counted, its world does not fit the grid.
+ *
+ * {@code java Heatmap merge <out> <in>...} adds up heatmap files from several machines or
+ * sessions, reading them and summing the layers in parallel. {@code java Heatmap export
+ * <file> <directory> [dungeon]} writes one PNG per layer, drawn over the walls of a curated
+ * dungeon (see DungeonFile) when one is given.
+ *
+ * File layout (big-endian): int magic "DOJG", int version, int cols, int rows, int layer
+ * count, long seed of the stage, then each layer's counts in tile order.
+ */
+public class Heatmap {
+
+    private static final Log.Site LOG_WRONG_SIZE = Log.site(Log.WARN, "Heatmap {} is for a {}x{} world, starting over");
+    private static final Log.Site LOG_NO_STAGE = Log.site(Log.WARN, "Heatmap {} needs a curated stage (-Ddungeon.file), not counting");
+    private static final Log.Site LOG_OTHER_STAGE = Log.site(Log.WARN, "Heatmap {} is for another stage (seed {}), starting over");
+    private static final Log.Site LOG_READ_FAILED = Log.site(Log.WARN, "Could not read heatmap: {}");
+    private static final Log.Site LOG_SAVE_TIMEOUT = Log.site(Log.WARN, "Heatmap save did not finish in time");
+    private static final Log.Site LOG_SAVE_FAILED = Log.site(Log.ERROR, "Could not save heatmap: {}");
+
+    public static final int MAGIC = 0x444F4A47; // "DOJG"
+    public static final int VERSION = 2;
+    private static final int HEADER_BYTES = 28;
+
+    // Layers
+    public static final int DEATHS = 0;
+    public static final int DAMAGE = 1;
+    public static final int ENEMIES = 2;
+    public static final int IMPACTS = 3;
+    public static final String[] LAYER_NAMES = {"deaths", "damage", "enemies", "impacts"};
+
+    // Rows per strip when layers are merged in parallel
+    private static final int STRIP_ROWS = 64;
+
+    public final int cols, rows;
+    /** The seed of the curated stage the counts belong to. */
+    public final long stageSeed;
+    private final int tileSize;
+    /** The counts of each layer, indexed like the TileMap. */
+    public final int[][] layers;
+    /** Set while a run is not on the grid (Endless Descent); nothing is counted then. */
+    public boolean paused = false;
+
+    private final Path path;
+    private final ExecutorService io;
+    // The copy of the counts being saved (owned by the I/O thread)
+    private int[][] saved;
+
+    /**
+     * Creates the heatmap if {@code -Dheatmap.file} is set and the game plays a curated stage,
+     * with the counts already in that file for the same stage.
+     *
+     * @param gp The GamePanel instance.
+     * @return The heatmap, or null when heatmaps are off.
+     */
+    public static Heatmap fromSystemProperties(GamePanel gp) {
+        String file = System.getProperty("heatmap.file");
+        if (file == null) {
+            return null;
+        }
+        StagePlan stage = gp.tileM.fixedStage;
+        if (stage == null) {
+            LOG_NO_STAGE.log(file);
+            return null;
+        }
+        Heatmap heatmap = new Heatmap(stage.map.cols, stage.map.rows, stage.seed, gp.tileSize, Paths.get(file));
+        if (Files.exists(heatmap.path)) {
+            try {
+                Heatmap saved = read(heatmap.path);
+                if (saved.cols != heatmap.cols || saved.rows != heatmap.rows) {
+                    LOG_WRONG_SIZE.log(file, saved.cols, saved.rows);
+                } else if (saved.stageSeed != heatmap.stageSeed) {
+                    LOG_OTHER_STAGE.log(file, saved.stageSeed);
+                } else {
+                    heatmap.merge(saved);
+                }
+            } catch (IOException e) {
+                LOG_READ_FAILED.log(e.getMessage());
+            }
+        }
+        return heatmap;
+    }
+
+    /**
+     * Constructor for Heatmap.
+     *
+     * @param cols The width of the grid in tiles.
+     * @param rows The height of the grid in tiles.
+     * @param stageSeed The seed of the curated stage that is counted (see DungeonFile).
+     * @param tileSize The tile size in world pixels.
+     * @param path The file it is saved to, or null to keep it in memory only.
+     */
+    public Heatmap(int cols, int rows, long stageSeed, int tileSize, Path path) {
+        this.cols = cols;
+        this.rows = rows;
+        this.stageSeed = stageSeed;
+        this.tileSize = tileSize;
+        this.path = path;
+        this.layers = new int[LAYER_NAMES.length][cols * rows];
+        if (path != null) {
+            io = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "heatmap-io");
+                t.setDaemon(true);
+                return t;
+            });
+            // Keep this session's counts when the game exits
+            Runtime.getRuntime().addShutdownHook(new Thread(this::close, "heatmap-flush"));
+        } else {
+            io = null;
+        }
+    }
+
+    /**
+     * Counts an event at a world position. Positions off the grid are ignored.
+     *
+     * @param layer The layer constant.
+     * @param worldX The x-coordinate in world pixels.
+     * @param worldY The y-coordinate in world pixels.
+     * @param amount What to add (1 for a single event, the damage for DAMAGE).
+     */
+    public void add(int layer, int worldX, int worldY, int amount) {
+        int col = worldX / tileSize;
+        int row = worldY / tileSize;
+        if (paused || worldX < 0 || worldY < 0 || col >= cols || row >= rows) {
+            return;
+        }
+        layers[layer][row * cols + col] += amount;
+    }
+
+    /**
+     * Adds another heatmap's counts to this one, in parallel strips of rows.
+     *
+     * @param other A heatmap of the same size and stage.
+     */
+    public void merge(Heatmap other) {
+        if (other.cols != cols || other.rows != rows) {
+            throw new IllegalArgumentException("Heatmap sizes differ: " + other.cols + "x" + other.rows
+                    + " and " + cols + "x" + rows);
+        }
+        if (other.stageSeed != stageSeed) {
+            throw new IllegalArgumentException("Heatmap stages differ: seed " + other.stageSeed + " and " + stageSeed);
+        }
+        int strips = (rows + STRIP_ROWS - 1) / STRIP_ROWS;
+        StripTask.forEachStrip(strips, cols * rows * layers.length, strip -> {
+            int from = strip * STRIP_ROWS * cols;
+            int to = Math.min(rows, (strip + 1) * STRIP_ROWS) * cols;
+            for (int layer = 0; layer < layers.length; layer++) {
+                int[] mine = layers[layer];
+                int[] theirs = other.layers[layer];
+                for (int i = from; i < to; i++) {
+                    mine[i] += theirs[i];
+                }
+            }
+        });
+    }
+
+    /**
+     * Saves the counts in the background. Called when a run ends.
+     */
+    public void save() {
+        if (io == null || io.isShutdown()) {
+            return;
+        }
+        io.execute(this::saveCopy);
+    }
+
+    /**
+     * Copies the counts and writes the copy, on the I/O thread. Counts the next run adds
+     * meanwhile may or may not make it into this save; the next one has them.
+     */
+    private void saveCopy() {
+        if (saved == null) {
+            saved = new int[layers.length][cols * rows];
+        }
+        for (int layer = 0; layer < layers.length; layer++) {
+            System.arraycopy(layers[layer], 0, saved[layer], 0, saved[layer].length);
+        }
+        writeQuietly(saved);
+    }
+
+    /**
+     * Waits for a save in progress and writes the final counts. Also runs on exit.
+     */
+    public synchronized void close() {
+        if (io == null || io.isShutdown()) {
+            return;
+        }
+        io.shutdown();
+        try {
+            if (!io.awaitTermination(2, TimeUnit.SECONDS)) {
+                LOG_SAVE_TIMEOUT.log();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeQuietly(layers);
+    }
+
+    private void writeQuietly(int[][] counts) {
+        try {
+            write(path, cols, rows, stageSeed, counts);
+        } catch (IOException e) {
+            LOG_SAVE_FAILED.log(e.getMessage());
+        }
+    }
+
+    /**
+     * Writes heatmap counts to a temporary file, then renames it over the old one.
+     *
+     * @param path The file.
+     * @param cols The width of the grid.
+     * @param rows The height of the grid.
+     * @param stageSeed The seed of the stage the counts belong to.
+     * @param counts The layers.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path path, int cols, int rows, long stageSeed, int[][] counts) throws IOException {
+        Path temp = Paths.get(path + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(cols).putInt(rows).putInt(counts.length).putLong(stageSeed).flip();
+            writeFully(out, header);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+            IntBuffer ints = buffer.asIntBuffer();
+            for (int[] layer : counts) {
+                for (int i = 0; i < layer.length; i += ints.capacity()) {
+                    int n = Math.min(ints.capacity(), layer.length - i);
+                    ints.clear();
+                    ints.put(layer, i, n);
+                    buffer.clear().limit(n * 4);
+                    writeFully(out, buffer);
+                }
+            }
+            out.force(false);
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            out.write(data);
+        }
+    }
+
+    /**
+     * Reads a heatmap file (memory-mapped).
+     *
+     * @param path The file.
+     * @return A heatmap holding the counts, not tied to the file.
+     * @throws IOException If the file cannot be read or is not a heatmap.
+     */
+    public static Heatmap read(Path path) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("Not a heatmap: " + path);
+            }
+            MappedByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (data.getInt() != MAGIC || data.getInt() != VERSION) {
+                throw new IOException("Not a heatmap (or an unknown version): " + path);
+            }
+            int cols = data.getInt();
+            int rows = data.getInt();
+            int layerCount = data.getInt();
+            long stageSeed = data.getLong();
+            if (cols <= 0 || rows <= 0 || layerCount != LAYER_NAMES.length
+                    || size != HEADER_BYTES + (long)cols * rows * layerCount * 4) {
+                throw new IOException("Corrupt heatmap: " + path);
+            }
+            Heatmap heatmap = new Heatmap(cols, rows, stageSeed, 1, null);
+            IntBuffer ints = data.asIntBuffer();
+            for (int[] layer : heatmap.layers) {
+                ints.get(layer);
+            }
+            return heatmap;
+        }
+    }
+
+    /**
+     * Draws a layer as an image, one pixel per tile. Counts are scaled logarithmically so a
+     * few very hot tiles do not wash out the rest: black (never), then blue, red, yellow and
+     * white for the hottest tile. Walls of the given map are drawn dark gray.
+     *
+     * @param layer The layer constant.
+     * @param walls The map to draw the walls of, or null.
+     * @return The image.
+     */
+    public BufferedImage toImage(int layer, TileMap walls) {
+        int[] counts = layers[layer];
+        int max = 0;
+        for (int count : counts) {
+            max = Math.max(max, count);
+        }
+        BufferedImage image = new BufferedImage(cols, rows, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+        double scale = max > 0 ? 1.0 / Math.log1p(max) : 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                pixels[i] = heatColor(Math.log1p(counts[i]) * scale);
+            } else if (walls != null && walls.isSolidIndex(i)) {
+                pixels[i] = 0x303030;
+            }
+        }
+        return image;
+    }
+
+    private static int heatColor(double t) {
+        int r, g, b;
+        if (t < 1 / 3.0) { // Blue to red
+            double u = t * 3;
+            r = (int)(255 * u);
+            g = 0;
+            b = (int)(160 + 95 * (1 - u));
+        } else if (t < 2 / 3.0) { // Red to yellow
+            double u = t * 3 - 1;
+            r = 255;
+            g = (int)(255 * u);
+            b = 0;
+        } else { // Yellow to white
+            double u = t * 3 - 2;
+            r = 255;
+            g = 255;
+            b = (int)(255 * u);
+        }
+        return r << 16 | g << 8 | b;
+    }
+
+    /**
+     * Writes every layer as "&lt;layer&gt;.png".
+     *
+     * @param directory The output directory (created if needed).
+     * @param walls The map to draw the walls of, or null.
+     * @throws IOException If an image cannot be written.
+     */
+    public void exportImages(Path directory, TileMap walls) throws IOException {
+        Files.createDirectories(directory);
+        for (int layer = 0; layer < layers.length; layer++) {
+            ImageIO.write(toImage(layer, walls), "png", directory.resolve(LAYER_NAMES[layer] + ".png").toFile());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 3 && args[0].equals("merge")) {
+            ArrayList<Path> inputs = new ArrayList<>();
+            for (int i = 2; i < args.length; i++) {
+                inputs.add(Paths.get(args[i]));
+            }
+            long start = System.nanoTime();
+            Heatmap total = inputs.parallelStream().map(path -> {
+                try {
+                    return read(path);
+                } catch (IOException e) {
+                    throw new IllegalArgumentException(e.getMessage());
+                }
+            }).reduce((a, b) -> {
+                a.merge(b);
+                return a;
+            }).get();
+            write(Paths.get(args[1]), total.cols, total.rows, total.stageSeed, total.layers);
+            System.out.printf("Merged %d heatmaps (%dx%d) in %.0f ms%n", inputs.size(), total.cols, total.rows,
+                    (System.nanoTime() - start) / 1_000_000.0);
+        } else if ((args.length == 3 || args.length == 4) && args[0].equals("export")) {
+            Heatmap heatmap = read(Paths.get(args[1]));
+            DungeonFile dungeon = args.length == 4 ? DungeonFile.open(Paths.get(args[3])) : null;
+            TileMap walls = dungeon != null ? dungeon.toTileMap() : null;
+            if (walls != null && (walls.cols != heatmap.cols || walls.rows != heatmap.rows)) {
+                System.out.println("The dungeon is " + walls.cols + "x" + walls.rows + ", the heatmap "
+                        + heatmap.cols + "x" + heatmap.rows);
+                System.exit(1);
+            }
+            if (dungeon != null && dungeon.seed != heatmap.stageSeed) {
+                System.out.println("The dungeon has seed " + dungeon.seed + ", the heatmap " + heatmap.stageSeed);
+                System.exit(1);
+            }
+            heatmap.exportImages(Paths.get(args[2]), walls);
+            for (int layer = 0; layer < LAYER_NAMES.length; layer++) {
+                long sum = 0;
+                for (int count : heatmap.layers[layer]) {
+                    sum += count;
+                }
+                System.out.println(LAYER_NAMES[layer] + ": " + sum);
+            }
+        } else {
+            System.out.println("Usage: java Heatmap merge <out> <in>...");
+            System.out.println("       java Heatmap export <heatmap> <directory> [dungeon]");
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * The HordeBenchmark class runs horde mode headless as a stress scenario.
+ * It plays a fixed number of simulated seconds with an invincible, attacking player,
+ * renders every frame into an offscreen image, and prints the PerfStats summary once per
+ * simulated second so the subsystem that breaks down first is easy to spot.
+ *
+ * Usage: {@code java -Djava.awt.headless=true HordeBenchmark [seconds]}
+ * (horde settings come from the {@code horde.*} system properties, see HordeMode).
+ */
+public class HordeBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Optional number of simulated seconds (default 60).
+     */
+    public static void main(String[] args) {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+
+        GamePanel gp = new GamePanel();
+        gp.horde = HordeMode.fromSystemProperties();
+        gp.resetGame();
+        gp.playerName = "benchmark";
+        gp.gameState = gp.playState;
+        gp.player.invincible = true; // No timer scheduled, so it never wears off
+
+        BufferedImage frame = new BufferedImage(gp.screenWidth, gp.screenHeight, BufferedImage.TYPE_INT_RGB);
+        int peakEnemies = 0;
+
+        for (int tick = 1; tick <= seconds * gp.FPS; tick++) {
+            gp.keyH.spacePressed = tick % 20 == 0; // Swing regularly so the attack path is exercised
+
+            gp.update();
+
+            long renderStart = gp.perf.begin(PerfStats.RENDER);
+            long allocStart = gp.perf.currentThreadAllocatedBytes();
+            Graphics2D g2 = frame.createGraphics();
+            gp.drawGame(g2);
+            g2.dispose();
+            gp.perf.record(PerfStats.RENDER, System.nanoTime() - renderStart);
+            gp.perf.recordAllocation(gp.perf.currentThreadAllocatedBytes() - allocStart);
+
+            peakEnemies = Math.max(peakEnemies, gp.getEnemyCount());
+            if (tick % gp.FPS == 0) {
+                System.out.println("[" + (tick / gp.FPS) + "s] " + gp.perf.summary(gp.getEnemyCount()));
+            }
+        }
+
+        System.out.println("Peak enemies: " + peakEnemies);
+    }
+}
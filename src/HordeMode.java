@@ -0,0 +1,31 @@
+/**
+ * The HordeMode class holds the settings of the horde game mode, where many spawners flood the
+ * dungeon with thousands of swarm enemies (ECS entities, see SwarmSystem).
+ * It doubles as a stress/benchmark scenario, so every value can be overridden with a system
+ * property, e.g. {@code -Dhorde.maxEnemies=10000}.
+ */
+public class HordeMode {
+
+    /** Number of spawners placed in the dungeon. */
+    public int spawnerCount = 50;
+    /** Ticks between two bursts of one spawner. */
+    public int spawnInterval = 30;
+    /** Enemies created per spawner burst. */
+    public int spawnsPerBurst = 4;
+    /** Maximum number of swarm enemies alive at once. */
+    public int maxEnemies = 6000;
+
+    /**
+     * Creates the horde settings, applying any {@code horde.*} system property overrides.
+     *
+     * @return The horde settings.
+     */
+    public static HordeMode fromSystemProperties() {
+        HordeMode horde = new HordeMode();
+        horde.spawnerCount = Integer.getInteger("horde.spawners", horde.spawnerCount);
+        horde.spawnInterval = Math.max(1, Integer.getInteger("horde.spawnInterval", horde.spawnInterval));
+        horde.spawnsPerBurst = Integer.getInteger("horde.spawnsPerBurst", horde.spawnsPerBurst);
+        horde.maxEnemies = Integer.getInteger("horde.maxEnemies", horde.maxEnemies);
+        return horde;
+    }
+}
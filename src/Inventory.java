@@ -6,6 +6,8 @@ import java.util.ArrayList;
  * This class is kept for potential future features or legacy support.
  */
 public class Inventory {
+    private static final Log.Site LOG_FULL = Log.site(Log.INFO, "Inventory full!");
+
     /** List of item names in the inventory. */
     public ArrayList<String> items = new ArrayList<>();
     /** Maximum number of slots in the inventory. */
@@ -36,7 +38,7 @@ public class Inventory {
                 return;
             }
         }
-        System.out.println("Inventory full!");
+        LOG_FULL.log();
     }
 
     /**
@@ -10,6 +10,7 @@ public class KeyHandler implements KeyListener {
     // Movement and Action Keys
     public boolean upPressed, downPressed, leftPressed, rightPressed;
     public boolean enterPressed, escPressed, spacePressed, shiftPressed;
+    public boolean savePressed, loadPressed;
     
     // Text Input
     public boolean charTyped = false;
@@ -69,6 +70,13 @@ public class KeyHandler implements KeyListener {
         if (code == KeyEvent.VK_SHIFT || code == KeyEvent.VK_X || code == KeyEvent.VK_K) {
             shiftPressed = true;
         }
+        // Quick save / load
+        if (code == KeyEvent.VK_F5) {
+            savePressed = true;
+        }
+        if (code == KeyEvent.VK_F9) {
+            loadPressed = true;
+        }
         
         // Specific Text Input
         if (code == KeyEvent.VK_BACK_SPACE) {
@@ -110,6 +118,12 @@ public class KeyHandler implements KeyListener {
         if (code == KeyEvent.VK_SHIFT || code == KeyEvent.VK_X || code == KeyEvent.VK_K) {
             shiftPressed = false;
         }
+        if (code == KeyEvent.VK_F5) {
+            savePressed = false;
+        }
+        if (code == KeyEvent.VK_F9) {
+            loadPressed = false;
+        }
         if (code == KeyEvent.VK_BACK_SPACE) {
             backspacePressed = false;
         }
@@ -1,115 +1,752 @@
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The Leaderboard class manages the high scores of the game.
- * It handles loading, saving, adding, and sorting scores.
+ * It handles loading, saving, adding, and ranking scores.
  * Scores are persisted to a local file named "leaderboard.txt".
+ *
+ * Every player keeps their best score. Players are found through a name table and kept in rank
+ * order by a ScoreIndex, so adding a score, finding a player's rank and reading any page of
+ * the ranking are O(log n) even with millions of players.
+ *
+ * Saving never blocks the caller: every new score is appended to "leaderboard.journal" on a
+ * background I/O thread, and the journal is regularly compacted into a new snapshot
+ * (written to a temporary file, synced, then atomically renamed over the old one). The I/O
+ * thread keeps its own copy of the last snapshot and merges the journaled scores into it, so
+ * compacting never copies the ranking on the thread that adds scores. Loading
+ * reads the snapshot and replays the journal, so a crash at any point loses at most the
+ * scores that were still queued.
+ *
+ * With {@code -Dleaderboard.shared=<file>}, scores go to a SharedLeaderboard instead, which
+ * every game instance on the host updates concurrently; the text files are then only read
+ * once, to seed a new shared file. Submitting to it and rescanning it happen on the I/O
+ * thread as well.
  */
 public class Leaderboard {
-    
-    private final String filePath = "leaderboard.txt";
-    private ArrayList<ScoreEntry> scores;
+
+    private static final Log.Site LOG_OPEN_SHARED_FAILED = Log.site(Log.WARN, "Could not open shared leaderboard {}: {}");
+    private static final Log.Site LOG_SUBMIT_SHARED_FAILED = Log.site(Log.WARN, "Could not submit shared score for {}: {}");
+    private static final Log.Site LOG_READ_SHARED_FAILED = Log.site(Log.WARN, "Could not read shared leaderboard: {}");
+    private static final Log.Site LOG_JOURNAL_FAILED = Log.site(Log.ERROR, "Could not write leaderboard journal: {}");
+    private static final Log.Site LOG_COMPACT_FAILED = Log.site(Log.ERROR, "Could not compact leaderboard: {}");
+    private static final Log.Site LOG_CLOSE_TIMEOUT = Log.site(Log.WARN, "Leaderboard writes did not finish in time");
+
+    /** The number of scores shown on the leaderboard screen. */
+    public static final int TOP_SIZE = 10;
+
+    private final String filePath;
+    private final String journalPath;
+    // Players by name: an open-addressing table of the entries themselves, no wrapper per player.
+    // The name hashes are kept alongside, so probing rarely has to look at the entries.
+    private ScoreEntry[] table = new ScoreEntry[64];
+    private int[] hashes = new int[64];
+    private int tableSize = 0;
+    private final ScoreIndex index = new ScoreIndex();
+
+    // The top scores for the UI, rebuilt only after the ranking changed
+    private final ArrayList<ScoreEntry> topScores = new ArrayList<>(TOP_SIZE);
+    private boolean topDirty = true;
+
+    // Journal entries written since the last snapshot; compacting costs a copy of every entry,
+    // so bigger leaderboards compact less often
+    private int journalEntries = 0;
+    private static final int COMPACT_EVERY = 16;
+
+    // Journal entries and compaction requests waiting for the I/O thread, in order
+    private final ConcurrentLinkedQueue<Object> pending = new ConcurrentLinkedQueue<>();
+    private static final Object COMPACT = new Object();
+    // Owned by the I/O thread: the scores of the last snapshot, best first, and the best
+    // journaled score of every player since
+    private Snapshot written;
+    private final HashMap<String, Integer> journaled = new HashMap<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final AtomicBoolean forceScheduled = new AtomicBoolean();
+    // All file access happens on this thread
+    private final ExecutorService io = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "leaderboard-io");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // The leaderboard shared by all game instances (null to use the text files), and what of
+    // it the I/O thread has already handed over: its update counter, mapping and the score
+    // and name of every slot
+    private SharedLeaderboard shared = null;
+    private long sharedUpdates = -1;
+    private int sharedMapping = -1;
+    private int[] slotScores;
+    private String[] slotNames;
+
+    // Scores the I/O thread found in the shared leaderboard, waiting for the thread that adds scores
+    private final ConcurrentLinkedQueue<ScoreEntry> sharedScores = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean rescanScheduled = new AtomicBoolean();
+
+    /** Receives how long every journal write and compaction took, in microseconds (null for none). */
+    public Metrics.Histogram ioMicros = null;
 
     /**
      * Constructor for Leaderboard.
-     * Initializes the scores list and loads existing scores from the file.
+     * Loads existing scores from "leaderboard.txt" and its journal, or from the shared
+     * leaderboard file given by {@code -Dleaderboard.shared}.
      */
     public Leaderboard() {
-        scores = new ArrayList<>();
+        this("leaderboard.txt", "leaderboard.journal", System.getProperty("leaderboard.shared"));
+    }
+
+    /**
+     * Constructor for Leaderboard.
+     * Initializes the index and loads existing scores from the files.
+     *
+     * @param filePath The snapshot file.
+     * @param journalPath The journal file.
+     */
+    public Leaderboard(String filePath, String journalPath) {
+        this(filePath, journalPath, null);
+    }
+
+    /**
+     * Constructor for Leaderboard.
+     * Initializes the index and loads existing scores from the files.
+     *
+     * @param filePath The snapshot file.
+     * @param journalPath The journal file.
+     * @param sharedPath The shared leaderboard file, or null to keep scores in the text files.
+     */
+    public Leaderboard(String filePath, String journalPath, String sharedPath) {
+        this.filePath = filePath;
+        this.journalPath = journalPath;
         loadScores();
+        if (sharedPath != null) {
+            openShared(Paths.get(sharedPath));
+        }
+        if (shared == null) {
+            written = snapshot(); // Once, before the I/O thread takes over
+            if (journalEntries > 0) {
+                compact();
+            }
+        }
+        // Let queued writes finish when the game exits
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "leaderboard-flush"));
     }
 
     /**
      * Adds a new score to the leaderboard.
      * If the player already exists, their score is updated only if the new score is higher.
-     * The leaderboard is then sorted and saved.
-     * 
+     * A changed score is saved in the background.
+     *
      * @param name The player's name.
      * @param score The score achieved.
      */
     public void addScore(String name, int score) {
-        // Check if player already exists
-        boolean updated = false;
-        for (ScoreEntry entry : scores) {
-            if (entry.name.equals(name)) {
-                if (score > entry.score) {
-                    entry.score = score; // Update high score
+        if (shared != null) {
+            submitShared(name, score);
+            addScoreInMemory(name, score);
+        } else if (addScoreInMemory(name, score)) {
+            appendToJournal(name, score);
+        }
+    }
+
+    /**
+     * Opens the shared leaderboard. A new shared file is seeded with the scores loaded from
+     * the text files.
+     */
+    private void openShared(Path path) {
+        try {
+            shared = SharedLeaderboard.open(path, index.size() * 2);
+            if (shared.updates() == 0) {
+                for (ScoreEntry entry = index.first(); entry != null; entry = entry.next) {
+                    submitShared(entry.name, entry.score);
                 }
-                updated = true;
-                break;
             }
+            refresh();
+        } catch (IOException e) {
+            LOG_OPEN_SHARED_FAILED.log(path, e.getMessage());
+            shared = null;
         }
-        
-        if (!updated) {
-            scores.add(new ScoreEntry(name, score));
+    }
+
+    /**
+     * Has the I/O thread submit a score to the shared leaderboard (which may compact and remap
+     * the file) and then flush it to disk (other instances see it right away; the flush only
+     * matters if the host crashes).
+     */
+    private void submitShared(String name, int score) {
+        if (io.isShutdown()) {
+            return; // The game is exiting
         }
+        io.execute(() -> {
+            try {
+                if (shared.submit(name, score) && !io.isShutdown() && forceScheduled.compareAndSet(false, true)) {
+                    io.execute(() -> {
+                        forceScheduled.set(false);
+                        shared.force();
+                    });
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                LOG_SUBMIT_SHARED_FAILED.log(name, e.getMessage());
+            }
+        });
+    }
 
-        sortScores();
-        saveScores();
+    /**
+     * Picks up the scores other game instances submitted to the shared leaderboard: adds the
+     * ones the I/O thread found since the last call and has it look again. Call it from the
+     * thread that adds scores. Does nothing without a shared leaderboard.
+     */
+    public void refresh() {
+        if (shared == null) {
+            return;
+        }
+        ScoreEntry found;
+        while ((found = sharedScores.poll()) != null) {
+            addScoreInMemory(found.name, found.score);
+        }
+        if (!io.isShutdown() && rescanScheduled.compareAndSet(false, true)) {
+            io.execute(this::rescanShared);
+        }
     }
 
     /**
-     * Sorts the scores in descending order and keeps only the top 10.
+     * Queues every shared score that is new or higher since the last rescan (on the I/O
+     * thread). Only rescans the file when its update counter changed.
      */
-    private void sortScores() {
-        Collections.sort(scores);
-        // Keep only top 10
-        if (scores.size() > 10) {
-            scores.remove(scores.size() - 1);
+    private void rescanShared() {
+        rescanScheduled.set(false);
+        try {
+            long updates = shared.updates();
+            if (updates == sharedUpdates && shared.mapping() == sharedMapping) {
+                return;
+            }
+            if (shared.mapping() != sharedMapping) {
+                // The file was compacted: every player may sit in a different slot now
+                sharedMapping = shared.mapping();
+                slotScores = new int[shared.capacity()];
+                slotNames = new String[shared.capacity()];
+                Arrays.fill(slotScores, Integer.MIN_VALUE);
+            }
+            sharedUpdates = updates;
+            for (int slot = 0; slot < slotScores.length; slot++) {
+                int score = shared.scoreAt(slot);
+                if (score <= slotScores[slot]) {
+                    continue;
+                }
+                if (slotNames[slot] == null) {
+                    slotNames[slot] = shared.nameAt(slot);
+                }
+                slotScores[slot] = score;
+                sharedScores.add(new ScoreEntry(slotNames[slot], score));
+            }
+        } catch (IOException e) {
+            LOG_READ_SHARED_FAILED.log(e.getMessage());
         }
     }
 
     /**
-     * Loads scores from the "leaderboard.txt" file.
+     * Records a score in the name table and the ranking.
+     *
+     * @return True if the leaderboard changed.
+     */
+    private boolean addScoreInMemory(String name, int score) {
+        ScoreEntry entry = find(name);
+        if (entry == null) {
+            entry = new ScoreEntry(name, score);
+            put(entry);
+        } else if (score > entry.score) {
+            index.remove(entry); // The index is ordered by score, so re-insert under the new one
+            entry.score = score;
+        } else {
+            return false;
+        }
+        index.insert(entry);
+        topDirty = true;
+        return true;
+    }
+
+    /**
+     * Returns the number of players on the leaderboard.
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Returns the rank of a player.
+     *
+     * @param name The player's name.
+     * @return The rank (1 for the best score), or 0 if the player has no score.
+     */
+    public int rankOf(String name) {
+        ScoreEntry entry = find(name);
+        return entry == null ? 0 : index.rankOf(entry);
+    }
+
+    /**
+     * Returns the best score of a player.
+     *
+     * @param name The player's name.
+     * @return The score, or 0 if the player has no score.
+     */
+    public int scoreOf(String name) {
+        ScoreEntry entry = find(name);
+        return entry == null ? 0 : entry.score;
+    }
+
+    /**
+     * Returns one page of the ranking.
+     *
+     * @param page The page number (0 for the best scores).
+     * @param pageSize The number of scores per page.
+     * @return The scores of the page, best first (empty past the last page).
+     */
+    public ArrayList<ScoreEntry> getPage(int page, int pageSize) {
+        ArrayList<ScoreEntry> result = new ArrayList<>(pageSize);
+        long first = (long)page * pageSize + 1;
+        if (page >= 0 && pageSize > 0 && first <= index.size()) {
+            index.range((int)first, pageSize, result);
+        }
+        return result;
+    }
+
+    /**
+     * Loads scores from the "leaderboard.txt" snapshot and replays the journal on top of it.
+     * Snapshots are written best first, so the index is normally built in one linear pass.
      */
     private void loadScores() {
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(":");
-                if (parts.length == 2) {
-                    scores.add(new ScoreEntry(parts[0], Integer.parseInt(parts[1])));
+        File snapshotFile = new File(filePath);
+        int expected = (int)Math.min(1 << 28, snapshotFile.length() / 12); // Lines are rarely shorter
+        ArrayList<ScoreEntry> loaded = new ArrayList<>(expected);
+        resizeTable(Integer.highestOneBit(Math.max(32, expected)) * 2);
+        boolean[] sorted = { true };
+        try {
+            readScores(snapshotFile, false, (name, score) -> {
+                ScoreEntry old = find(name);
+                if (old != null) {
+                    old.score = Math.max(old.score, score); // Only hand-edited files have duplicates
+                    sorted[0] = false;
+                    return;
                 }
-            }
-            Collections.sort(scores);
+                ScoreEntry entry = new ScoreEntry(name, score);
+                put(entry);
+                if (!loaded.isEmpty() && loaded.get(loaded.size() - 1).compareTo(entry) > 0) {
+                    sorted[0] = false;
+                }
+                loaded.add(entry);
+            });
         } catch (IOException e) {
             // File might not exist yet, which is fine
         }
+        if (!sorted[0]) {
+            Collections.sort(loaded);
+        }
+        index.build(loaded);
+        replayJournal();
+    }
+
+    /**
+     * Applies every complete journal entry. An entry without its line break was cut off by a
+     * crash and is ignored. Entries already in the snapshot are harmless: a score only replaces
+     * a lower one.
+     */
+    private void replayJournal() {
+        try {
+            readScores(new File(journalPath), true, (name, score) -> {
+                journalEntries++;
+                addScoreInMemory(name, score);
+            });
+        } catch (IOException e) {
+            // No journal: everything is in the snapshot
+        }
     }
 
     /**
-     * Saves the current scores to the "leaderboard.txt" file.
+     * Receives the lines of a score file.
      */
-    private void saveScores() {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(filePath))) {
-            for (ScoreEntry entry : scores) {
-                bw.write(entry.name + ":" + entry.score);
-                bw.newLine();
+    private interface ScoreLine {
+        void accept(String name, int score);
+    }
+
+    /**
+     * Reads "name:score" lines straight from the file's bytes, without a String per line.
+     * Malformed lines are skipped.
+     *
+     * @param file The file.
+     * @param completeOnly True to ignore a last line that has no line break.
+     * @param handler Called for every line.
+     * @throws IOException If the file cannot be read.
+     */
+    private static void readScores(File file, boolean completeOnly, ScoreLine handler) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buf = new byte[1 << 16];
+            int length = 0;
+            int read;
+            while ((read = in.read(buf, length, buf.length - length)) > 0) {
+                length += read;
+                int start = 0;
+                for (int i = length - read; i < length; i++) {
+                    if (buf[i] == '\n') {
+                        parseScore(buf, start, i, handler);
+                        start = i + 1;
+                    }
+                }
+                // Keep the unfinished line for the next read
+                System.arraycopy(buf, start, buf, 0, length - start);
+                length -= start;
+                if (length == buf.length) {
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                }
             }
+            if (length > 0 && !completeOnly) {
+                parseScore(buf, 0, length, handler);
+            }
+        }
+    }
+
+    private static void parseScore(byte[] buf, int start, int end, ScoreLine handler) {
+        if (end > start && buf[end - 1] == '\r') {
+            end--;
+        }
+        int colon = end - 1;
+        while (colon > start && buf[colon] != ':') {
+            colon--;
+        }
+        if (colon <= start || colon == end - 1 || end - colon > 12) {
+            return;
+        }
+        int i = colon + 1;
+        boolean negative = buf[i] == '-';
+        if (negative && ++i == end) {
+            return;
+        }
+        long score = 0;
+        for (; i < end; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return;
+            }
+            score = score * 10 + digit;
+        }
+        score = negative ? -score : score;
+        if (score >= Integer.MIN_VALUE && score <= Integer.MAX_VALUE) {
+            handler.accept(new String(buf, start, colon - start, StandardCharsets.UTF_8), (int)score);
+        }
+    }
+
+    /**
+     * Finds a player's entry in the name table.
+     *
+     * @return The entry, or null if the player has no score.
+     */
+    private ScoreEntry find(String name) {
+        int hash = mix(name.hashCode());
+        int mask = table.length - 1;
+        for (int slot = hash & mask; table[slot] != null; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && table[slot].name.equals(name)) {
+                return table[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds the entry of a new player to the name table (linear probing, kept at most 3/4 full).
+     */
+    private void put(ScoreEntry entry) {
+        if (++tableSize * 4 > table.length * 3) {
+            resizeTable(table.length * 2);
+        }
+        insertSlot(entry, mix(entry.name.hashCode()));
+    }
+
+    private void resizeTable(int capacity) {
+        if (capacity <= table.length) {
+            return;
+        }
+        ScoreEntry[] oldTable = table;
+        int[] oldHashes = hashes;
+        table = new ScoreEntry[capacity];
+        hashes = new int[capacity];
+        for (int slot = 0; slot < oldTable.length; slot++) {
+            if (oldTable[slot] != null) {
+                insertSlot(oldTable[slot], oldHashes[slot]);
+            }
+        }
+    }
+
+    private void insertSlot(ScoreEntry entry, int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = entry;
+        hashes[slot] = hash;
+    }
+
+    // Spreads the hash bits so similar names do not cluster in the table
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Queues a score for the journal and, every COMPACT_EVERY entries, a compaction.
+     */
+    private void appendToJournal(String name, int score) {
+        enqueue(new ScoreEntry(name, score));
+        if (++journalEntries >= Math.max(COMPACT_EVERY, index.size() / 8)) {
+            compact();
+        }
+    }
+
+    /**
+     * Copies the current ranking, best first. Only done once at startup; the I/O thread keeps
+     * its copy up to date from then on.
+     */
+    private Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot(index.size());
+        int i = 0;
+        for (ScoreEntry entry = index.first(); entry != null; entry = entry.next) {
+            snapshot.names[i] = entry.name;
+            snapshot.scores[i++] = entry.score;
+        }
+        return snapshot;
+    }
+
+    /**
+     * The scores to write to a snapshot file, as parallel arrays.
+     */
+    private static class Snapshot {
+        final String[] names;
+        final int[] scores;
+
+        Snapshot(int size) {
+            names = new String[size];
+            scores = new int[size];
+        }
+    }
+
+    /**
+     * Queues writing a new snapshot: a temporary file is written and synced, then renamed over
+     * "leaderboard.txt" in one atomic step, and only then is the journal emptied. A crash before
+     * the rename keeps the old snapshot plus the journal; a crash after it replays entries the
+     * snapshot already has.
+     */
+    private void compact() {
+        journalEntries = 0;
+        enqueue(COMPACT);
+    }
+
+    /**
+     * Queues a journal entry or a compaction and makes sure the I/O thread will drain the queue.
+     * Does nothing once the game is exiting (see {@link #close()}).
+     */
+    private void enqueue(Object item) {
+        if (io.isShutdown()) {
+            return;
+        }
+        pending.add(item);
+        if (drainScheduled.compareAndSet(false, true)) {
+            io.execute(this::drain);
+        }
+    }
+
+    /**
+     * Writes everything queued so far (on the I/O thread). All journal lines of one drain share
+     * a single write and fsync, so a burst of scores costs one disk flush; lines queued before
+     * a snapshot are already part of it and are not written at all.
+     */
+    private void drain() {
+        drainScheduled.set(false);
+        StringBuilder lines = new StringBuilder();
+        int lineCount = 0;
+        Object item;
+        while ((item = pending.poll()) != null) {
+            if (item == COMPACT) {
+                long start = System.nanoTime();
+                GameEvents.LeaderboardWriteEvent event = GameEvents.beginLeaderboardWrite();
+                written = mergeJournaled(written);
+                if (writeSnapshot(written)) {
+                    lines.setLength(0);
+                    lineCount = 0;
+                }
+                GameEvents.endLeaderboardWrite(event, "snapshot", written.names.length, 0);
+                recordIo(start);
+            } else {
+                ScoreEntry entry = (ScoreEntry)item;
+                journaled.merge(entry.name, entry.score, Math::max);
+                lines.append(entry.name).append(':').append(entry.score).append('\n');
+                lineCount++;
+            }
+        }
+        if (lines.length() == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        GameEvents.LeaderboardWriteEvent event = GameEvents.beginLeaderboardWrite();
+        byte[] bytes = lines.toString().getBytes(StandardCharsets.UTF_8);
+        try (FileOutputStream out = new FileOutputStream(journalPath, true)) {
+            out.write(bytes);
+            out.getFD().sync();
+        } catch (IOException e) {
+            LOG_JOURNAL_FAILED.log(e.getMessage());
+        }
+        GameEvents.endLeaderboardWrite(event, "journal", lineCount, bytes.length);
+        recordIo(start);
+    }
+
+    /**
+     * Merges the journaled scores into a snapshot (on the I/O thread). The snapshot is already
+     * in rank order, so only the players whose score changed are sorted, then both sequences
+     * are merged in one pass.
+     *
+     * @param base The last snapshot.
+     * @return The new snapshot (the base itself if nothing changed).
+     */
+    private Snapshot mergeJournaled(Snapshot base) {
+        if (journaled.isEmpty()) {
+            return base;
+        }
+        ArrayList<ScoreEntry> changed = new ArrayList<>(journaled.size());
+        BitSet moved = new BitSet(base.names.length);
+        for (int i = 0; i < base.names.length; i++) {
+            Integer score = journaled.remove(base.names[i]);
+            if (score != null && score > base.scores[i]) {
+                changed.add(new ScoreEntry(base.names[i], score));
+                moved.set(i);
+            }
+        }
+        for (Map.Entry<String, Integer> entry : journaled.entrySet()) {
+            changed.add(new ScoreEntry(entry.getKey(), entry.getValue())); // New players
+        }
+        journaled.clear();
+        Collections.sort(changed);
+
+        Snapshot merged = new Snapshot(base.names.length - moved.cardinality() + changed.size());
+        int i = moved.nextClearBit(0);
+        int c = 0;
+        for (int out = 0; out < merged.names.length; out++) {
+            boolean takeBase = c == changed.size() || (i < base.names.length
+                    && ranksBefore(base.names[i], base.scores[i], changed.get(c)));
+            if (takeBase) {
+                merged.names[out] = base.names[i];
+                merged.scores[out] = base.scores[i];
+                i = moved.nextClearBit(i + 1);
+            } else {
+                merged.names[out] = changed.get(c).name;
+                merged.scores[out] = changed.get(c++).score;
+            }
+        }
+        return merged;
+    }
+
+    // The order of ScoreEntry.compareTo: best score first, then by name
+    private static boolean ranksBefore(String name, int score, ScoreEntry other) {
+        return score != other.score ? score > other.score : name.compareTo(other.name) < 0;
+    }
+
+    private void recordIo(long startNanos) {
+        Metrics.Histogram histogram = ioMicros;
+        if (histogram != null) {
+            histogram.record((System.nanoTime() - startNanos) / 1000);
+        }
+    }
+
+    /**
+     * Writes a snapshot to a temporary file, syncs it, renames it over the old one and
+     * empties the journal.
+     *
+     * @return True if the snapshot replaced the old one.
+     */
+    private boolean writeSnapshot(Snapshot snapshot) {
+        Path target = Paths.get(filePath);
+        Path temp = Paths.get(filePath + ".tmp");
+        try {
+            try (FileOutputStream file = new FileOutputStream(temp.toFile());
+                 BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(file, StandardCharsets.UTF_8), 1 << 16)) {
+                for (int i = 0; i < snapshot.names.length; i++) {
+                    bw.write(snapshot.names[i]);
+                    bw.write(':');
+                    bw.write(Integer.toString(snapshot.scores[i]));
+                    bw.newLine();
+                }
+                bw.flush();
+                file.getFD().sync();
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            new FileOutputStream(journalPath).close(); // Truncate
+            return true;
         } catch (IOException e) {
-            e.printStackTrace();
+            LOG_COMPACT_FAILED.log(e.getMessage());
+            return false;
         }
     }
 
     /**
-     * Returns the list of high scores.
-     * 
-     * @return An ArrayList of ScoreEntry objects.
+     * Waits (briefly) for every queued write to reach the disk and stops the I/O thread.
+     * Scores added afterwards (the game keeps running while the shutdown hook does this) stay
+     * in memory only.
+     */
+    public void close() {
+        io.shutdown();
+        try {
+            if (!io.awaitTermination(2, TimeUnit.SECONDS)) {
+                LOG_CLOSE_TIMEOUT.log();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (shared != null) {
+            shared.close(); // After the queued submissions
+        }
+    }
+
+    /**
+     * Returns the top scores, best first (at most TOP_SIZE). The list is only rebuilt after a
+     * score changed, so the leaderboard screen can call this every frame.
+     *
+     * @return An ArrayList of ScoreEntry objects (do not modify).
      */
     public ArrayList<ScoreEntry> getScores() {
-        return scores;
+        if (topDirty) {
+            topScores.clear();
+            for (ScoreEntry entry = index.first(); entry != null && topScores.size() < TOP_SIZE; entry = entry.next) {
+                topScores.add(entry);
+            }
+            topDirty = false;
+        }
+        return topScores;
     }
 
     /**
-     * Inner class representing a single score entry.
-     * Implements Comparable to allow sorting by score.
+     * Class representing a single score entry.
+     * Implements Comparable to sort by score (best first), then by name.
+     * Entries also serve as the nodes of the ScoreIndex that ranks them.
      */
-    public class ScoreEntry implements Comparable<ScoreEntry> {
-        String name;
+    public static class ScoreEntry implements Comparable<ScoreEntry> {
+        final String name;
         int score;
 
+        // ScoreIndex links: level 0, then the higher levels and their spans (null unless promoted)
+        ScoreEntry next;
+        ScoreEntry[] up;
+        int[] upSpan;
+
         public ScoreEntry(String name, int score) {
             this.name = name;
             this.score = score;
@@ -117,7 +754,8 @@ public class Leaderboard {
 
         @Override
         public int compareTo(ScoreEntry other) {
-            return other.score - this.score; // Descending order
+            int byScore = Integer.compare(other.score, this.score); // Descending order
+            return byScore != 0 ? byScore : this.name.compareTo(other.name);
         }
     }
 }
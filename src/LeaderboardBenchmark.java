@@ -0,0 +1,78 @@
+import java.io.File;
+import java.util.Random;
+
+/**
+ * The LeaderboardBenchmark class fills a Leaderboard with many players and times the
+ * operations the game relies on: adding scores, rank and page queries, and loading the
+ * saved leaderboard again (snapshot plus journal).
+ *
+ * Usage: {@code java -Xmx4g LeaderboardBenchmark [players] [dir]}
+ */
+public class LeaderboardBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Optional number of players (default 1,000,000) and directory for the files.
+     */
+    public static void main(String[] args) {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        File dir = new File(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"));
+        File snapshot = new File(dir, "leaderboard-benchmark.txt");
+        File journal = new File(dir, "leaderboard-benchmark.journal");
+        snapshot.delete();
+        journal.delete();
+
+        Random rand = new Random(42);
+        Leaderboard leaderboard = new Leaderboard(snapshot.getPath(), journal.getPath());
+        long start = System.nanoTime();
+        for (int i = 0; i < players; i++) {
+            leaderboard.addScore("player" + i, rand.nextInt(10_000_000));
+        }
+        long added = System.nanoTime();
+        report("add", players, start, added);
+
+        // Improve random players' scores: remove and re-insert in the index
+        int updates = Math.min(players, 1_000_000);
+        for (int i = 0; i < updates; i++) {
+            String name = "player" + rand.nextInt(players);
+            leaderboard.addScore(name, leaderboard.scoreOf(name) + 1 + rand.nextInt(1000));
+        }
+        long updated = System.nanoTime();
+        report("update", updates, added, updated);
+
+        int queries = 1_000_000;
+        long checksum = 0;
+        for (int i = 0; i < queries; i++) {
+            checksum += leaderboard.rankOf("player" + rand.nextInt(players));
+        }
+        long ranked = System.nanoTime();
+        report("rankOf", queries, updated, ranked);
+
+        int pages = Math.max(1, players / 20);
+        for (int i = 0; i < 100_000; i++) {
+            checksum += leaderboard.getPage(rand.nextInt(pages), 20).size();
+        }
+        long paged = System.nanoTime();
+        report("getPage(20)", 100_000, ranked, paged);
+
+        leaderboard.close(); // Wait for the journal and snapshots to reach the disk
+        long closed = System.nanoTime();
+        System.out.printf("flush: %.1f ms (snapshot %d KB, journal %d KB)%n",
+                          (closed - paged) / 1e6, snapshot.length() / 1024, journal.length() / 1024);
+
+        leaderboard = null;
+        System.gc();
+        long loadStart = System.nanoTime();
+        Leaderboard reloaded = new Leaderboard(snapshot.getPath(), journal.getPath());
+        long loaded = System.nanoTime();
+        System.out.printf("load: %.1f ms for %d players (checksum %d)%n",
+                          (loaded - loadStart) / 1e6, reloaded.size(), checksum);
+        reloaded.close();
+    }
+
+    private static void report(String operation, int count, long start, long end) {
+        double ms = (end - start) / 1e6;
+        System.out.printf("%s: %d in %.1f ms (%.0f ns/op)%n", operation, count, ms, ms * 1e6 / count);
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * The LifetimeSystem class counts down the Lifetime component and destroys entities when it runs out.
+ * A dense decrement over an int array is cheaper than one timer per entity, so bulk ECS entities
+ * use this instead of the TimerWheel.
+ */
+public class LifetimeSystem {
+
+    /**
+     * Ages all entities with a Lifetime by one tick.
+     *
+     * @param world The ECS world.
+     */
+    public void update(EntityWorld world) {
+        for (int i = 0; i < world.archetypes.size(); i++) {
+            Archetype a = world.archetypes.get(i);
+            if (!a.has(EntityWorld.LIFETIME)) continue;
+
+            int[] lifetime = a.lifetime;
+            for (int row = 0; row < a.count; row++) {
+                if (--lifetime[row] <= 0) {
+                    world.destroy(a.entityIds[row]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.Arrays;
+
+/**
+ * The LineOfSight class answers "can this point see that point" queries for the enemy AI.
+ * It ray-marches over the tile solidity (the TileMap bitset, or the streamed chunks in Endless
+ * Descent) and caches the answer per tile pair, so a shooter standing still re-uses the result
+ * until either end moves tile.
+ */
+public class LineOfSight {
+
+    GamePanel gp;
+
+    private int builtVersion = -1;
+
+    // Direct-mapped cache of (fromTile, toTile) -> visible
+    private static final int CACHE_SIZE = 1024; // Must be a power of two
+    private final long[] cacheFrom = new long[CACHE_SIZE];
+    private final long[] cacheTo = new long[CACHE_SIZE];
+    private final boolean[] cacheVisible = new boolean[CACHE_SIZE];
+
+    /**
+     * Constructor for LineOfSight.
+     *
+     * @param gp The GamePanel instance.
+     */
+    public LineOfSight(GamePanel gp) {
+        this.gp = gp;
+    }
+
+    /**
+     * Checks if there is an unobstructed line between two world positions.
+     * Both points are snapped to the tile they are in; any wall tile on the line blocks sight.
+     *
+     * @param fromX The x-coordinate of the viewer in the world.
+     * @param fromY The y-coordinate of the viewer in the world.
+     * @param toX The x-coordinate of the target in the world.
+     * @param toY The y-coordinate of the target in the world.
+     * @return True if no wall lies between the two points.
+     */
+    public boolean canSee(int fromX, int fromY, int toX, int toY) {
+        if (builtVersion != gp.tileM.mapVersion) {
+            invalidate();
+        }
+        if (fromX < 0 || fromY < 0 || toX < 0 || toY < 0) {
+            return false; // Outside the map
+        }
+
+        int fromCol = fromX / gp.tileSize;
+        int fromRow = fromY / gp.tileSize;
+        int toCol = toX / gp.tileSize;
+        int toRow = toY / gp.tileSize;
+
+        long fromKey = ((long)fromCol << 32) | fromRow;
+        long toKey = ((long)toCol << 32) | toRow;
+        long mix = fromKey * 0x9E3779B97F4A7C15L ^ toKey;
+        int slot = (int)(mix ^ (mix >>> 29)) * 0x9E3779B9 >>> 22; // 10 bits -> CACHE_SIZE
+        if (cacheFrom[slot] == fromKey && cacheTo[slot] == toKey) {
+            return cacheVisible[slot];
+        }
+
+        boolean visible = march(fromCol, fromRow, toCol, toRow);
+        cacheFrom[slot] = fromKey;
+        cacheTo[slot] = toKey;
+        cacheVisible[slot] = visible;
+        return visible;
+    }
+
+    /**
+     * Walks the tiles between two tile coordinates (Bresenham) and stops at the first wall.
+     */
+    private boolean march(int col, int row, int toCol, int toRow) {
+        TileManager tiles = gp.tileM;
+        int dCol = Math.abs(toCol - col);
+        int dRow = -Math.abs(toRow - row);
+        int stepCol = col < toCol ? 1 : -1;
+        int stepRow = row < toRow ? 1 : -1;
+        int err = dCol + dRow;
+
+        while (true) {
+            if (tiles.isSolid(col, row)) { // Out of bounds counts as a wall
+                return false;
+            }
+            if (col == toCol && row == toRow) {
+                return true;
+            }
+            int e2 = 2 * err;
+            if (e2 >= dRow) {
+                err += dRow;
+                col += stepCol;
+            }
+            if (e2 <= dCol) {
+                err += dCol;
+                row += stepRow;
+            }
+        }
+    }
+
+    /**
+     * Drops every cached answer. Called lazily whenever the TileManager generates a new dungeon.
+     */
+    private void invalidate() {
+        Arrays.fill(cacheFrom, -1L);
+        builtVersion = gp.tileM.mapVersion;
+    }
+}
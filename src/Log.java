@@ -0,0 +1,424 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The Log class is the game's logger. Messages go into a lock-free ring buffer and are
+ * formatted and written by a background thread, so logging from the game thread never waits
+ * on a terminal or a file and never builds a string there.
+ *
+ * Every place that logs declares a Site once, with its level, a message template ("{}" marks
+ * where each argument goes) and how many messages per second it may write; the rest of a
+ * burst is counted and reported with the next message that gets through. Arguments are
+ * passed through overloads (numbers as longs, anything else as an object that is only
+ * turned into text on the writer thread, so it should not change afterwards): a disabled
+ * level costs one comparison, and an enabled one copies the arguments into a preallocated
+ * slot of the ring. If the writer falls behind and the ring fills up, messages are dropped
+ * and counted instead of blocking the caller.
+ *
+ * Settings: {@code -Dlog.level} (trace, debug, info, warn, error or off; info by default),
+ * {@code -Dlog.file} (append to a file instead of standard output) and {@code -Dlog.buffer}
+ * (ring size in messages, 8192 by default).
+ */
+public class Log {
+
+    public static final int TRACE = 0;
+    public static final int DEBUG = 1;
+    public static final int INFO = 2;
+    public static final int WARN = 3;
+    public static final int ERROR = 4;
+    public static final int OFF = 5;
+    private static final String[] LEVEL_NAMES = {"TRACE", "DEBUG", "INFO", "WARN", "ERROR", "OFF"};
+
+    /** Messages a site may write per second unless it says otherwise. */
+    public static final int DEFAULT_RATE = 20;
+
+    private static final int MAX_ARGS = 3;
+    // Argument kinds, two bits per argument
+    private static final int NONE = 0, NUMBER = 1, OBJECT = 2;
+
+    private static volatile int threshold = parseLevel(System.getProperty("log.level", "info"));
+
+    // The ring: a bounded multi-producer, single-consumer queue. A slot is free for the
+    // producer claiming position p when its sequence is p, and holds a message for the
+    // consumer at position p when its sequence is p + 1.
+    private static final int CAPACITY = Integer.highestOneBit(Math.max(64, Integer.getInteger("log.buffer", 8192)));
+    private static final int MASK = CAPACITY - 1;
+    private static final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private static final AtomicLong tail = new AtomicLong();
+    private static final Site[] sites = new Site[CAPACITY];
+    private static final long[] times = new long[CAPACITY];
+    private static final String[] threads = new String[CAPACITY];
+    private static final int[] kinds = new int[CAPACITY];
+    private static final int[] suppressedCounts = new int[CAPACITY];
+    private static final long[] numbers = new long[CAPACITY * MAX_ARGS];
+    private static final Object[] objects = new Object[CAPACITY * MAX_ARGS];
+    private static final LongAdder dropped = new LongAdder();
+
+    // Owned by the writer thread
+    private static long head = 0;
+    private static long reportedDrops = 0;
+    private static final StringBuilder line = new StringBuilder(256);
+    private static final Writer out = openOutput();
+    private static volatile boolean closing = false;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences.set(i, i);
+        }
+        Thread writer = new Thread(Log::writeLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        // Write what is still queued when the game exits
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::close, "log-flush"));
+    }
+
+    /**
+     * A place in the code that logs: its level, message template and rate limit.
+     * Declare it once (as a static final field) and call one of the log methods.
+     */
+    public static class Site {
+        final int level;
+        final String template;
+        private final int perSecond;
+        // Rate limit window; only touched when the level is enabled. A site used from several
+        // threads at once may let a message more or less through, nothing worse.
+        private long windowStart;
+        private int windowCount = 0;
+        private int suppressed = 0;
+
+        Site(int level, String template, int perSecond) {
+            this.level = level;
+            this.template = template;
+            this.perSecond = perSecond;
+            this.windowStart = System.nanoTime() - 1_000_000_000L;
+        }
+
+        /**
+         * Checks if messages of this site are written at the current level.
+         */
+        public boolean enabled() {
+            return level >= threshold;
+        }
+
+        /**
+         * Applies the rate limit.
+         *
+         * @return The number of messages suppressed since the last one written, or -1 if this
+         *         one must be suppressed as well.
+         */
+        private int admit() {
+            long now = System.nanoTime();
+            if (now - windowStart >= 1_000_000_000L) {
+                windowStart = now;
+                windowCount = 0;
+            }
+            if (++windowCount > perSecond) {
+                suppressed++;
+                return -1;
+            }
+            int count = suppressed;
+            suppressed = 0;
+            return count;
+        }
+
+        public void log() {
+            if (level >= threshold) enqueue(this, NONE, 0, 0, 0, null, null, null);
+        }
+
+        public void log(long a) {
+            if (level >= threshold) enqueue(this, NUMBER, a, 0, 0, null, null, null);
+        }
+
+        public void log(long a, long b) {
+            if (level >= threshold) enqueue(this, NUMBER | NUMBER << 2, a, b, 0, null, null, null);
+        }
+
+        public void log(Object a) {
+            if (level >= threshold) enqueue(this, OBJECT, 0, 0, 0, a, null, null);
+        }
+
+        public void log(long a, long b, long c) {
+            if (level >= threshold) enqueue(this, NUMBER | NUMBER << 2 | NUMBER << 4, a, b, c, null, null, null);
+        }
+
+        public void log(Object a, Object b) {
+            if (level >= threshold) enqueue(this, OBJECT | OBJECT << 2, 0, 0, 0, a, b, null);
+        }
+
+        public void log(long a, Object b) {
+            if (level >= threshold) enqueue(this, NUMBER | OBJECT << 2, a, 0, 0, null, b, null);
+        }
+
+        public void log(long a, long b, Object c) {
+            if (level >= threshold) enqueue(this, NUMBER | NUMBER << 2 | OBJECT << 4, a, b, 0, null, null, c);
+        }
+
+        public void log(Object a, long b, long c) {
+            if (level >= threshold) enqueue(this, OBJECT | NUMBER << 2 | NUMBER << 4, 0, b, c, a, null, null);
+        }
+    }
+
+    /**
+     * Declares a log site with the default rate limit.
+     *
+     * @param level The level constant.
+     * @param template The message, with "{}" for each argument.
+     * @return The site.
+     */
+    public static Site site(int level, String template) {
+        return new Site(level, template, DEFAULT_RATE);
+    }
+
+    /**
+     * Declares a log site.
+     *
+     * @param level The level constant.
+     * @param template The message, with "{}" for each argument.
+     * @param perSecond How many messages it may write per second.
+     * @return The site.
+     */
+    public static Site site(int level, String template, int perSecond) {
+        return new Site(level, template, Math.max(1, perSecond));
+    }
+
+    /**
+     * Changes the level; messages below it are skipped.
+     *
+     * @param level The level constant (OFF to skip everything).
+     */
+    public static void setLevel(int level) {
+        threshold = level;
+    }
+
+    /**
+     * Returns the current level.
+     */
+    public static int getLevel() {
+        return threshold;
+    }
+
+    /**
+     * Returns the number of messages dropped because the ring was full.
+     */
+    public static long droppedCount() {
+        return dropped.sum();
+    }
+
+    private static int parseLevel(String name) {
+        for (int level = 0; level < LEVEL_NAMES.length; level++) {
+            if (LEVEL_NAMES[level].equalsIgnoreCase(name)) {
+                return level;
+            }
+        }
+        System.out.println("Unknown log.level value: " + name + ", using info");
+        return INFO;
+    }
+
+    private static Writer openOutput() {
+        String file = System.getProperty("log.file");
+        if (file != null) {
+            try {
+                return Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                System.out.println("Could not open log file " + file + ": " + e.getMessage() + ", using standard output");
+            }
+        }
+        PrintStream stdout = System.out;
+        return new BufferedWriter(new OutputStreamWriter(stdout, StandardCharsets.UTF_8), 1 << 14);
+    }
+
+    /**
+     * Claims a slot and copies the message into it (any thread). Never blocks: when the ring
+     * is full the message is dropped.
+     */
+    private static void enqueue(Site site, int argKinds, long a, long b, long c, Object x, Object y, Object z) {
+        int suppressedBefore = site.admit();
+        if (suppressedBefore < 0) {
+            return;
+        }
+        if (closing) {
+            // The writer thread is done; write it here (only during shutdown)
+            synchronized (line) {
+                format(site, System.currentTimeMillis(), Thread.currentThread().getName(), argKinds,
+                       a, b, c, x, y, z, suppressedBefore);
+                flushLine();
+            }
+            return;
+        }
+        long position = tail.get();
+        int slot;
+        while (true) {
+            slot = (int)position & MASK;
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                dropped.increment(); // Full
+                return;
+            } else {
+                position = tail.get(); // Another producer took it
+            }
+        }
+        sites[slot] = site;
+        times[slot] = System.currentTimeMillis();
+        threads[slot] = Thread.currentThread().getName();
+        kinds[slot] = argKinds;
+        suppressedCounts[slot] = suppressedBefore;
+        int args = slot * MAX_ARGS;
+        numbers[args] = a;
+        numbers[args + 1] = b;
+        numbers[args + 2] = c;
+        objects[args] = x;
+        objects[args + 1] = y;
+        objects[args + 2] = z;
+        sequences.lazySet(slot, position + 1); // Publish
+    }
+
+    /**
+     * Formats and writes everything in the ring (writer thread only).
+     *
+     * @return The number of messages written.
+     */
+    private static int drain() {
+        int count = 0;
+        while (true) {
+            int slot = (int)head & MASK;
+            if (sequences.get(slot) != head + 1) {
+                break;
+            }
+            int args = slot * MAX_ARGS;
+            format(sites[slot], times[slot], threads[slot], kinds[slot], numbers[args], numbers[args + 1],
+                   numbers[args + 2], objects[args], objects[args + 1], objects[args + 2], suppressedCounts[slot]);
+            sites[slot] = null;
+            objects[args] = null;
+            objects[args + 1] = null;
+            objects[args + 2] = null;
+            sequences.lazySet(slot, head + CAPACITY); // Free for the producer one lap later
+            head++;
+            writeLine();
+            count++;
+        }
+        long drops = dropped.sum();
+        if (drops != reportedDrops) {
+            appendPrefix(System.currentTimeMillis(), WARN, "log-writer");
+            line.append("Log buffer full, dropped ").append(drops - reportedDrops).append(" messages");
+            reportedDrops = drops;
+            writeLine();
+        }
+        if (count > 0) {
+            flush();
+        }
+        return count;
+    }
+
+    private static void writeLoop() {
+        while (true) {
+            int written;
+            synchronized (line) {
+                written = drain();
+            }
+            if (written == 0) {
+                LockSupport.parkNanos(1_000_000); // Idle: look again in a millisecond
+            }
+        }
+    }
+
+    /**
+     * Formats one message into the line buffer: time, level, thread, message.
+     */
+    private static void format(Site site, long millis, String thread, int argKinds, long a, long b, long c,
+                               Object x, Object y, Object z, int suppressedBefore) {
+        appendPrefix(millis, site.level, thread);
+
+        String template = site.template;
+        int from = 0;
+        for (int arg = 0; arg < MAX_ARGS; arg++) {
+            int kind = (argKinds >>> (arg * 2)) & 3;
+            if (kind == NONE) continue;
+            int marker = template.indexOf("{}", from);
+            if (marker < 0) break;
+            line.append(template, from, marker);
+            if (kind == NUMBER) {
+                line.append(arg == 0 ? a : arg == 1 ? b : c);
+            } else {
+                line.append(arg == 0 ? x : arg == 1 ? y : z);
+            }
+            from = marker + 2;
+        }
+        line.append(template, from, template.length());
+        if (suppressedBefore > 0) {
+            line.append(" (").append(suppressedBefore).append(" similar messages suppressed)");
+        }
+    }
+
+    /**
+     * Starts a new line with the time, level and thread.
+     */
+    private static void appendPrefix(long millis, int level, String thread) {
+        line.setLength(0);
+        long ofDay = Math.floorMod(millis, 86_400_000L); // UTC
+        appendPadded(ofDay / 3_600_000, 2);
+        line.append(':');
+        appendPadded(ofDay / 60_000 % 60, 2);
+        line.append(':');
+        appendPadded(ofDay / 1000 % 60, 2);
+        line.append('.');
+        appendPadded(ofDay % 1000, 3);
+        line.append(' ').append(LEVEL_NAMES[level]).append(" [").append(thread).append("] ");
+    }
+
+    private static void appendPadded(long value, int digits) {
+        for (long limit = 10; digits > 1; digits--, limit *= 10) {
+            if (value < limit) line.append('0');
+        }
+        line.append(value);
+    }
+
+    private static void writeLine() {
+        try {
+            out.append(line).append(System.lineSeparator());
+        } catch (IOException e) {
+            // Nowhere left to report it
+        }
+    }
+
+    private static void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            // Nowhere left to report it
+        }
+    }
+
+    private static void flushLine() {
+        writeLine();
+        flush();
+    }
+
+    /**
+     * Writes everything still queued. Messages logged after this are written directly by the
+     * calling thread. Runs on exit.
+     */
+    public static void close() {
+        closing = true;
+        synchronized (line) {
+            drain();
+            flush();
+        }
+    }
+}
@@ -9,6 +9,12 @@ import java.util.Random;
  */
 public class LootBox extends Entity {
     
+    private static final Color BASE_COLOR = new Color(100, 50, 0);
+    private static final Color LID_COLOR = new Color(150, 75, 0);
+    private static final Color TRIM_COLOR = new Color(255, 215, 0);
+    private static final BasicStroke STROKE_1 = new BasicStroke(1);
+    private static final BasicStroke STROKE_2 = new BasicStroke(2);
+    
     /** Flag indicating if the box has been opened. */
     public boolean opened = false;
     /** The name of the item contained in the box. */
@@ -19,18 +25,18 @@ public class LootBox extends Entity {
      * 
      * @param x The x-coordinate of the box in the world.
      * @param y The y-coordinate of the box in the world.
+     * @param rand The random number generator (the game's, see GameRandom).
      */
-    public LootBox(int x, int y) {
+    public LootBox(int x, int y, Random rand) {
         this.x = x;
         this.y = y;
-        determineLoot();
+        determineLoot(rand);
     }
 
     /**
      * Randomly determines the loot item contained in this box.
      */
-    private void determineLoot() {
-        Random rand = new Random();
+    private void determineLoot(Random rand) {
         int r = rand.nextInt(4);
         if (r == 0) lootItem = "Weapon";
         else if (r == 1) lootItem = "Armor";
@@ -58,28 +64,25 @@ public class LootBox extends Entity {
         int screenX = x - gp.player.worldX + gp.player.screenX;
         int screenY = y - gp.player.worldY + gp.player.screenY;
 
-        if (x + gp.tileSize > gp.player.worldX - gp.player.screenX &&
-            x - gp.tileSize < gp.player.worldX + gp.player.screenX &&
-            y + gp.tileSize > gp.player.worldY - gp.player.screenY &&
-            y - gp.tileSize < gp.player.worldY + gp.player.screenY) {
+        if (isOnScreen(gp)) {
             
             if (!opened) {
                 // Stylized Chest
                 
                 // Base (Dark Brown)
-                g2.setColor(new Color(100, 50, 0));
+                g2.setColor(BASE_COLOR);
                 g2.fillRect(screenX + 2, screenY + 4, gp.tileSize - 4, gp.tileSize - 8);
                 
                 // Lid (Lighter Brown)
-                g2.setColor(new Color(150, 75, 0));
+                g2.setColor(LID_COLOR);
                 g2.fillRect(screenX + 2, screenY + 4, gp.tileSize - 4, (gp.tileSize - 8) / 2);
                 
                 // Gold Trim/Lock
-                g2.setColor(new Color(255, 215, 0));
-                g2.setStroke(new BasicStroke(2));
+                g2.setColor(TRIM_COLOR);
+                g2.setStroke(STROKE_2);
                 g2.drawRect(screenX + 2, screenY + 4, gp.tileSize - 4, gp.tileSize - 8);
                 g2.fillRect(screenX + gp.tileSize/2 - 2, screenY + gp.tileSize/2 - 2, 4, 4); // Lock
-                g2.setStroke(new BasicStroke(1));
+                g2.setStroke(STROKE_1);
             }
         }
     }
@@ -0,0 +1,439 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * The Metrics class is a small registry of counters, gauges and histograms that a running
+ * game serves in the Prometheus text format, so it can be watched without a debugger or the
+ * profiler overlay.
+ *
+ * Turned on with {@code -Dmetrics.port=<port>}; the numbers are then served at
+ * {@code http://127.0.0.1:<port>/metrics} (loopback only). Recording is cheap from any thread:
+ * counters are LongAdders, histograms keep one set of atomic buckets per stripe (picked by
+ * thread), gauges are single-writer volatiles, and nothing is formatted until a scrape.
+ *
+ * Histograms are log-linear (8 buckets per power of two, like HdrHistogram with about 12%
+ * precision) and are exported with one cumulative bucket per power of two.
+ */
+public class Metrics {
+
+    private static final Log.Site LOG_START_FAILED = Log.site(Log.WARN, "Could not start metrics endpoint on port {}: {}");
+
+    private static final String PREFIX = "depths_";
+
+    /**
+     * A registered metric: a name, optional labels and how to print its samples.
+     */
+    private abstract static class Metric {
+        final String name;
+        final String labels; // e.g. type="swarm", or "" for none
+        final String help;
+
+        Metric(String name, String labels, String help) {
+            this.name = PREFIX + name;
+            this.labels = labels;
+            this.help = help;
+        }
+
+        abstract String type();
+
+        abstract void write(StringBuilder out);
+
+        String series(String suffix, String extraLabel) {
+            String all = labels.isEmpty() ? extraLabel : extraLabel.isEmpty() ? labels : labels + "," + extraLabel;
+            return all.isEmpty() ? name + suffix : name + suffix + "{" + all + "}";
+        }
+    }
+
+    /**
+     * A value that only goes up, summed over stripes so any thread can add to it cheaply.
+     */
+    public static class Counter extends Metric {
+        private final LongAdder value = new LongAdder();
+
+        Counter(String name, String labels, String help) {
+            super(name, labels, help);
+        }
+
+        /** Adds one. */
+        public void inc() {
+            value.increment();
+        }
+
+        /**
+         * Adds to the counter.
+         *
+         * @param amount A non-negative amount.
+         */
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        @Override
+        String type() {
+            return "counter";
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            out.append(series("", "")).append(' ').append(value.sum()).append('\n');
+        }
+    }
+
+    /**
+     * A value that goes up and down: set by one thread, or read from a supplier at scrape time.
+     */
+    public static class Gauge extends Metric {
+        private volatile long value;
+        private final LongSupplier supplier;
+        private final boolean counter;
+
+        Gauge(String name, String labels, String help, LongSupplier supplier, boolean counter) {
+            super(name, labels, help);
+            this.supplier = supplier;
+            this.counter = counter;
+        }
+
+        /**
+         * Sets the value. Meant for a single writing thread.
+         *
+         * @param value The new value.
+         */
+        public void set(long value) {
+            this.value = value;
+        }
+
+        @Override
+        String type() {
+            return counter ? "counter" : "gauge";
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            out.append(series("", "")).append(' ').append(supplier != null ? supplier.getAsLong() : value).append('\n');
+        }
+    }
+
+    /**
+     * A distribution of non-negative values (microseconds, bytes...). Each stripe has its own
+     * atomic bucket array, so threads recording at the same time rarely touch the same memory.
+     */
+    public static class Histogram extends Metric {
+        private static final int SUB_BUCKETS = 8;
+        private static final int BUCKETS = SUB_BUCKETS * 62;
+        private static final int STRIPES = Integer.highestOneBit(
+                Math.max(1, Math.min(16, Runtime.getRuntime().availableProcessors())) * 2 - 1);
+
+        private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+        private final LongAdder sum = new LongAdder();
+        private final double unitsPerExported;
+        private final int minExponent, maxExponent;
+
+        Histogram(String name, String labels, String help, double unitsPerExported, int minExponent, int maxExponent) {
+            super(name, labels, help);
+            this.unitsPerExported = unitsPerExported;
+            this.minExponent = Math.max(3, minExponent);
+            this.maxExponent = Math.min(62, maxExponent);
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new AtomicLongArray(BUCKETS);
+            }
+        }
+
+        /**
+         * Returns the bucket of a value. Buckets hold (lower, upper] ranges, so every power of
+         * two is the upper end of a bucket and the exported "le" bounds are exact.
+         */
+        static int bucket(long value) {
+            long v = Math.max(0, value - 1);
+            if (v < 2 * SUB_BUCKETS) {
+                return (int)v;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(v);
+            return SUB_BUCKETS * (exponent - 2) + (int)((v >>> (exponent - 3)) & (SUB_BUCKETS - 1));
+        }
+
+        /**
+         * Records a value.
+         *
+         * @param value The value, in the histogram's base unit.
+         */
+        public void record(long value) {
+            int stripe = (int)Thread.currentThread().getId() & (STRIPES - 1);
+            stripes[stripe].getAndIncrement(bucket(value));
+            sum.add(value);
+        }
+
+        @Override
+        String type() {
+            return "histogram";
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            long[] merged = new long[BUCKETS];
+            for (AtomicLongArray stripe : stripes) {
+                for (int i = 0; i < BUCKETS; i++) {
+                    merged[i] += stripe.get(i);
+                }
+            }
+            // Values up to 2^e are in the buckets below the first bucket of exponent e
+            long cumulative = 0;
+            int next = 0;
+            for (int exponent = minExponent; exponent <= maxExponent; exponent++) {
+                int end = SUB_BUCKETS * (exponent - 2);
+                while (next < end) {
+                    cumulative += merged[next++];
+                }
+                out.append(series("_bucket", "le=\"" + (1L << exponent) / unitsPerExported + "\""))
+                   .append(' ').append(cumulative).append('\n');
+            }
+            long total = 0;
+            for (long bucketCount : merged) {
+                total += bucketCount;
+            }
+            out.append(series("_bucket", "le=\"+Inf\"")).append(' ').append(total).append('\n');
+            out.append(series("_sum", "")).append(' ').append(sum.sum() / unitsPerExported).append('\n');
+            out.append(series("_count", "")).append(' ').append(total).append('\n');
+        }
+    }
+
+    private final ArrayList<Metric> metrics = new ArrayList<>();
+    private HttpServer server;
+
+    // The game's metrics
+    public final Histogram tickSeconds = histogram("tick_seconds", "", "Time spent in one game tick.", 1e6, 4, 26);
+    public final Histogram renderSeconds = histogram("render_seconds", "", "Time spent painting one frame.", 1e6, 4, 26);
+    public final Histogram tickAllocatedBytes = histogram("tick_allocated_bytes", "",
+            "Bytes allocated by the game thread during one tick.", 1, 4, 30);
+    public final Counter projectilesSpawned = counter("projectiles_spawned_total", "", "Enemy projectiles fired.");
+    public final Histogram leaderboardIoSeconds = histogram("leaderboard_io_seconds", "",
+            "Time taken by one leaderboard journal write or compaction.", 1e6, 4, 26);
+    private final Gauge enemies = gauge("entities", "type=\"enemy\"", "Entities alive, by type.");
+    private final Gauge bosses = gauge("entities", "type=\"boss\"", "Entities alive, by type.");
+    private final Gauge swarm = gauge("entities", "type=\"swarm\"", "Entities alive, by type.");
+    private final Gauge projectiles = gauge("entities", "type=\"projectile\"", "Entities alive, by type.");
+    private final Gauge spawnerCount = gauge("entities", "type=\"spawner\"", "Entities alive, by type.");
+    private final Gauge lootBoxes = gauge("entities", "type=\"lootbox\"", "Entities alive, by type.");
+    private final Gauge[] poolAvailable = {
+            gauge("pool_available", "pool=\"damage_number\"", "Objects waiting in a pool for reuse."),
+            gauge("pool_available", "pool=\"floating_text\"", "Objects waiting in a pool for reuse.")
+    };
+    private final Gauge[] poolHits = {
+            counterGauge("pool_hits_total", "pool=\"damage_number\"", "Objects handed out from a pool."),
+            counterGauge("pool_hits_total", "pool=\"floating_text\"", "Objects handed out from a pool.")
+    };
+    private final Gauge[] poolMisses = {
+            counterGauge("pool_misses_total", "pool=\"damage_number\"", "Objects a pool had to create."),
+            counterGauge("pool_misses_total", "pool=\"floating_text\"", "Objects a pool had to create.")
+    };
+
+    /**
+     * Creates the registry and starts its HTTP endpoint if {@code -Dmetrics.port} is set.
+     *
+     * @return The registry, or null when metrics are off.
+     */
+    public static Metrics fromSystemProperties() {
+        Integer port = Integer.getInteger("metrics.port");
+        if (port == null) {
+            return null;
+        }
+        Metrics metrics = new Metrics();
+        try {
+            metrics.start(port);
+        } catch (IOException e) {
+            LOG_START_FAILED.log(port, e.getMessage());
+        }
+        return metrics;
+    }
+
+    /**
+     * Constructor for Metrics. Registers the game's metrics and the JVM's GC counters.
+     */
+    public Metrics() {
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String label = "gc=\"" + gc.getName() + "\"";
+            metrics.add(new Gauge("gc_collections_total", label, "Garbage collections, by collector.",
+                    gc::getCollectionCount, true));
+        }
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String label = "gc=\"" + gc.getName() + "\"";
+            metrics.add(new Gauge("gc_collection_milliseconds_total", label, "Time spent in garbage collections, by collector.",
+                    gc::getCollectionTime, true));
+        }
+    }
+
+    /**
+     * Registers a counter.
+     *
+     * @param name The name (prefixed with "depths_").
+     * @param labels The labels in Prometheus syntax, or "".
+     * @param help The description.
+     * @return The counter.
+     */
+    public Counter counter(String name, String labels, String help) {
+        Counter counter = new Counter(name, labels, help);
+        metrics.add(counter);
+        return counter;
+    }
+
+    /**
+     * Registers a gauge that is set by one thread.
+     *
+     * @param name The name (prefixed with "depths_").
+     * @param labels The labels in Prometheus syntax, or "".
+     * @param help The description.
+     * @return The gauge.
+     */
+    public Gauge gauge(String name, String labels, String help) {
+        Gauge gauge = new Gauge(name, labels, help, null, false);
+        metrics.add(gauge);
+        return gauge;
+    }
+
+    /**
+     * Registers a counter whose total is kept elsewhere and copied in by one thread.
+     */
+    private Gauge counterGauge(String name, String labels, String help) {
+        Gauge gauge = new Gauge(name, labels, help, null, true);
+        metrics.add(gauge);
+        return gauge;
+    }
+
+    /**
+     * Registers a histogram.
+     *
+     * @param name The name (prefixed with "depths_").
+     * @param labels The labels in Prometheus syntax, or "".
+     * @param help The description.
+     * @param unitsPerExported Recorded units per exported unit (1e6 for microseconds exported as seconds).
+     * @param minExponent The smallest exported bucket bound, as a power of two of recorded units.
+     * @param maxExponent The largest exported bucket bound, as a power of two of recorded units.
+     * @return The histogram.
+     */
+    public Histogram histogram(String name, String labels, String help, double unitsPerExported, int minExponent, int maxExponent) {
+        Histogram histogram = new Histogram(name, labels, help, unitsPerExported, minExponent, maxExponent);
+        metrics.add(histogram);
+        return histogram;
+    }
+
+    /**
+     * Records the end of a tick and publishes the entity counts and pool usage.
+     * Called by the game loop once per tick.
+     *
+     * @param gp The GamePanel instance.
+     * @param tickNanos How long the tick took.
+     * @param allocatedBytes How much the tick allocated.
+     */
+    public void tick(GamePanel gp, long tickNanos, long allocatedBytes) {
+        tickSeconds.record(tickNanos / 1000);
+        tickAllocatedBytes.record(allocatedBytes);
+        int bossCount = gp.bossActive ? 1 : 0;
+        enemies.set(gp.enemies.size() - bossCount);
+        bosses.set(bossCount);
+        swarm.set(gp.world.archetype(SwarmSystem.SWARM).count);
+        projectiles.set(gp.world.archetype(EntityWorld.PROJECTILE).count);
+        spawnerCount.set(gp.spawners.size());
+        lootBoxes.set(gp.lootBoxes.size());
+        publishPool(0, gp.damageNumberPool);
+        publishPool(1, gp.floatingTextPool);
+    }
+
+    private void publishPool(int pool, ObjectPool<?> objects) {
+        poolAvailable[pool].set(objects.getAvailable());
+        poolHits[pool].set(objects.getHits());
+        poolMisses[pool].set(objects.getMisses());
+    }
+
+    /**
+     * Formats every metric in the Prometheus text format.
+     *
+     * @return The exposition text.
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        String previous = null;
+        for (Metric metric : metrics) {
+            if (!metric.name.equals(previous)) {
+                out.append("# HELP ").append(metric.name).append(' ').append(metric.help).append('\n');
+                out.append("# TYPE ").append(metric.name).append(' ').append(metric.type()).append('\n');
+                previous = metric.name;
+            }
+            metric.write(out);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Starts serving {@code /metrics} on the loopback interface.
+     *
+     * @param port The TCP port (0 for any free port).
+     * @throws IOException If the port cannot be bound.
+     */
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", this::handle);
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "metrics-http");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        // Started from the daemon thread so the server's dispatcher thread is a daemon too
+        // and never keeps the JVM alive
+        try {
+            executor.submit(server::start).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IOException("Could not start metrics endpoint", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the port the endpoint listens on, or -1 if it is not running.
+     */
+    public int port() {
+        return server != null ? server.getAddress().getPort() : -1;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Stops the HTTP endpoint.
+     */
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+import java.util.stream.IntStream;
+
+/**
+ * The MovementSystem class moves every ECS entity that has a Position and a Velocity.
+ * Entities that also have a Collider are stopped by walls and get their hitWall flag set,
+ * so later systems can react (projectiles die, enemies slide or turn).
+ *
+ * Each row only touches its own data and reads the (immutable during the tick) map,
+ * so large archetypes are split into chunks and moved in parallel. Endless Descent is the
+ * exception: its tile lookups go through the ChunkManager cache, which only the game thread
+ * may touch, so there everything moves on the game thread.
+ */
+public class MovementSystem {
+
+    private static final int REQUIRED = EntityWorld.POSITION | EntityWorld.VELOCITY;
+    private static final int PARALLEL_THRESHOLD = 4096; // Below this, threading costs more than it saves
+    private static final int CHUNK_SIZE = 1024;
+
+    GamePanel gp;
+
+    /**
+     * Constructor for MovementSystem.
+     *
+     * @param gp The GamePanel instance.
+     */
+    public MovementSystem(GamePanel gp) {
+        this.gp = gp;
+    }
+
+    /**
+     * Moves all matching entities by one tick.
+     *
+     * @param world The ECS world.
+     */
+    public void update(EntityWorld world) {
+        for (int i = 0; i < world.archetypes.size(); i++) {
+            Archetype a = world.archetypes.get(i);
+            if (!a.has(REQUIRED) || a.count == 0) continue;
+
+            if (a.count >= PARALLEL_THRESHOLD && gp.tileM.chunks == null) {
+                int chunks = (a.count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+                IntStream.range(0, chunks).parallel().forEach(c ->
+                        move(a, c * CHUNK_SIZE, Math.min(a.count, (c + 1) * CHUNK_SIZE)));
+            } else {
+                move(a, 0, a.count);
+            }
+        }
+    }
+
+    private void move(Archetype a, int from, int to) {
+        boolean collides = a.has(EntityWorld.COLLIDER);
+        float[] posX = a.posX, posY = a.posY, velX = a.velX, velY = a.velY;
+
+        for (int row = from; row < to; row++) {
+            float nextX = posX[row] + velX[row];
+            float nextY = posY[row] + velY[row];
+
+            if (collides) {
+                boolean blocked = gp.tileM.collidesWithBox((int)nextX, (int)nextY, a.colliderSize[row]);
+                a.hitWall[row] = blocked;
+                if (blocked) continue;
+            }
+
+            posX[row] = nextX;
+            posY[row] = nextY;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The MultiWalkerGenerator class runs one random walker per vertical strip of the map in parallel
+ * (fork/join, see StripTask). Each walker only carves inside its own strip, so no two threads
+ * write the same tile, and every strip also carves its part of a corridor along the middle row,
+ * which the walkers start on, so the whole map stays connected.
+ *
+ * With the same step budget as the single walker it spreads caves over the whole width of big maps
+ * instead of one blob around the centre, and it scales with the number of cores.
+ */
+public class MultiWalkerGenerator implements DungeonGenerator {
+
+    /** Columns per strip (the strip count depends only on the map size, so results are reproducible). */
+    public static final int STRIP_COLS = 32;
+
+    /** Steps per 100x100 tiles, shared between all walkers. */
+    public int stepsPer10k = 1500;
+    /** Brush radius: 1 carves 3x3 tiles per step. */
+    public int brushSize = 1;
+
+    @Override
+    public void generate(TileMap map, long seed) {
+        int cols = map.cols;
+        int rows = map.rows;
+        byte floor = TileType.FLOOR.id;
+        int strips = Math.max(1, cols / STRIP_COLS);
+        int width = cols / strips;
+        int margin = brushSize + 1; // Keep a wall border around the map
+        int steps = (int)((long)stepsPer10k * cols * rows / (100 * 100) / strips);
+        int mid = rows / 2;
+
+        byte[] ids = new byte[cols * rows];
+        Arrays.fill(ids, TileType.WALL.id);
+
+        StripTask.forEachStrip(strips, cols * rows, strip -> {
+            int x0 = strip * width;
+            int x1 = strip == strips - 1 ? cols : x0 + width; // Exclusive
+
+            // This strip's part of the middle corridor
+            for (int col = Math.max(x0, margin); col < Math.min(x1, cols - margin); col++) {
+                ids[mid * cols + col] = floor;
+            }
+
+            // Walker confined so its brush never leaves the strip
+            int lo = Math.max(x0 + brushSize, margin);
+            int hi = Math.min(x1 - 1 - brushSize, cols - 1 - margin);
+            if (lo > hi) return; // Strip too narrow for the brush
+            Random rand = new Random(seed ^ (strip * 0x9E3779B97F4A7C15L));
+            int x = (lo + hi) / 2;
+            int y = mid;
+            for (int i = 0; i < steps; i++) {
+                int direction = rand.nextInt(4);
+                if (direction == 0) y--;
+                if (direction == 1) y++;
+                if (direction == 2) x--;
+                if (direction == 3) x++;
+
+                if (x < lo) x = lo;
+                if (x > hi) x = hi;
+                if (y < margin) y = margin;
+                if (y > rows - 1 - margin) y = rows - 1 - margin;
+
+                for (int rY = -brushSize; rY <= brushSize; rY++) {
+                    int base = (y + rY) * cols + x;
+                    for (int rX = -brushSize; rX <= brushSize; rX++) {
+                        ids[base + rX] = floor;
+                    }
+                }
+            }
+        });
+
+        map.load(ids);
+    }
+
+    @Override
+    public String name() {
+        return "multiwalker";
+    }
+}
@@ -0,0 +1,75 @@
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * The ObjectPool class keeps released objects around so short-lived entities (damage numbers,
+ * floating texts) can be reused instead of allocated on every hit.
+ * Pooled classes provide a reset method that re-initialises an instance obtained from the pool.
+ *
+ * @param <T> The type of pooled object.
+ */
+public class ObjectPool<T> {
+
+    private final Supplier<T> factory;
+    private Object[] free;
+    private int freeCount = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Constructor for ObjectPool.
+     *
+     * @param factory Creates a new instance when the pool is empty.
+     * @param capacity The initial number of released objects the pool can hold (grows as needed).
+     */
+    public ObjectPool(Supplier<T> factory, int capacity) {
+        this.factory = factory;
+        this.free = new Object[Math.max(1, capacity)];
+    }
+
+    /**
+     * Takes an instance from the pool, or creates one if the pool is empty.
+     * The caller must reset the returned instance before use.
+     *
+     * @return A pooled or freshly created instance.
+     */
+    @SuppressWarnings("unchecked")
+    public T obtain() {
+        if (freeCount > 0) {
+            hits++;
+            T obj = (T) free[--freeCount];
+            free[freeCount] = null;
+            return obj;
+        }
+        misses++;
+        return factory.get();
+    }
+
+    /**
+     * Returns an instance to the pool so it can be reused.
+     *
+     * @param obj The instance that is no longer in the world.
+     */
+    public void release(T obj) {
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, free.length * 2);
+        }
+        free[freeCount++] = obj;
+    }
+
+    /** @return The number of obtain() calls served from the pool. */
+    public long getHits() {
+        return hits;
+    }
+
+    /** @return The number of obtain() calls that had to allocate. */
+    public long getMisses() {
+        return misses;
+    }
+
+    /** @return The number of released instances waiting to be reused. */
+    public int getAvailable() {
+        return freeCount;
+    }
+}
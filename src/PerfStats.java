@@ -0,0 +1,212 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * The PerfStats class measures how long each phase of a tick and a frame takes, and how many
+ * bytes the game and render threads allocate. Values are averaged over one-second windows
+ * (60 ticks) so the overlay and the horde benchmark can show stable numbers and point at the
+ * phase that costs the most, i.e. the current bottleneck.
+ *
+ * Each phase is written by exactly one thread (update phases by the game thread, render
+ * phases by the paint thread); the published averages are only read for display.
+ */
+public class PerfStats {
+
+    // Phases. TICK and RENDER are totals; the others are their parts.
+    public static final int TICK = 0;
+    public static final int ENEMIES = 1;
+    public static final int ECS_AI = 2;
+    public static final int ECS_MOVE = 3;
+    public static final int ECS_COLLIDE = 4;
+    public static final int RENDER = 5;
+    public static final int RENDER_TILES = 6;
+    public static final int RENDER_ENTITIES = 7;
+    public static final int TIMERS = 8;
+    public static final int PLAYER = 9;
+    public static final int CHUNKS = 10;
+    public static final int EFFECTS = 11;
+    public static final int UPKEEP = 12;
+    public static final int RENDER_HUD = 13;
+    public static final String[] PHASE_NAMES = {
+            "tick", "enemies", "ecs-ai", "ecs-move", "ecs-collide", "render", "render-tiles", "render-entities",
+            "timers", "player", "chunks", "effects", "upkeep", "render-hud"
+    };
+
+    private static final int WINDOW_TICKS = 60;
+
+    private final long[] windowNanos = new long[PHASE_NAMES.length];
+    private final int[] windowSamples = new int[PHASE_NAMES.length];
+    private final double[] averageMillis = new double[PHASE_NAMES.length];
+    private final long[] lastNanos = new long[PHASE_NAMES.length];
+
+    /**
+     * Also measures the bytes each phase allocates (see {@link #getLastAllocatedBytes}). Costs
+     * two counter reads per phase, so it is off in the game; AllocationCheck turns it on.
+     */
+    public boolean trackAllocations = false;
+    private final long[] phaseAllocatedStart = new long[PHASE_NAMES.length];
+    private final long[] lastAllocatedBytes = new long[PHASE_NAMES.length];
+
+    private final com.sun.management.ThreadMXBean threadBean;
+    private long windowAllocatedBytes = 0;
+    private long windowStartNanos = System.nanoTime();
+    private volatile double allocatedBytesPerSecond = 0;
+
+    /**
+     * Constructor for PerfStats.
+     */
+    public PerfStats() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean &&
+            ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threadBean = (com.sun.management.ThreadMXBean) bean;
+        } else {
+            threadBean = null;
+        }
+    }
+
+    /**
+     * Starts a phase sample.
+     *
+     * @param phase The phase constant.
+     * @return The start time to pass (as now minus start) to {@link #record}.
+     */
+    public long begin(int phase) {
+        if (trackAllocations) {
+            phaseAllocatedStart[phase] = currentThreadAllocatedBytes();
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the duration of one phase sample.
+     *
+     * @param phase The phase constant.
+     * @param nanos The measured duration in nanoseconds.
+     */
+    public void record(int phase, long nanos) {
+        if (trackAllocations) {
+            lastAllocatedBytes[phase] = currentThreadAllocatedBytes() - phaseAllocatedStart[phase];
+        }
+        lastNanos[phase] = nanos;
+        windowNanos[phase] += nanos;
+        windowSamples[phase]++;
+        if (windowSamples[phase] >= WINDOW_TICKS) {
+            averageMillis[phase] = windowNanos[phase] / (double) windowSamples[phase] / 1_000_000.0;
+            windowNanos[phase] = 0;
+            windowSamples[phase] = 0;
+        }
+    }
+
+    /**
+     * Returns the bytes allocated so far by the calling thread, or 0 if the JVM cannot tell.
+     *
+     * @return The allocated byte counter of the current thread.
+     */
+    public long currentThreadAllocatedBytes() {
+        return threadBean != null ? threadBean.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    /**
+     * Adds to the allocation counter and publishes the rate once per second.
+     * Called from the game thread only; the render thread reports through it via GamePanel.
+     *
+     * @param bytes Bytes allocated since the last call.
+     */
+    public synchronized void recordAllocation(long bytes) {
+        windowAllocatedBytes += bytes;
+        long now = System.nanoTime();
+        long elapsed = now - windowStartNanos;
+        if (elapsed >= 1_000_000_000L) {
+            allocatedBytesPerSecond = windowAllocatedBytes * 1_000_000_000.0 / elapsed;
+            windowAllocatedBytes = 0;
+            windowStartNanos = now;
+        }
+    }
+
+    /**
+     * Returns the average duration of a phase over the last complete window.
+     *
+     * @param phase The phase constant.
+     * @return The average in milliseconds.
+     */
+    public double getAverageMillis(int phase) {
+        return averageMillis[phase];
+    }
+
+    /**
+     * Returns the duration of the latest sample of a phase (read by the thread that records it).
+     *
+     * @param phase The phase constant.
+     * @return The duration in nanoseconds.
+     */
+    public long getLastNanos(int phase) {
+        return lastNanos[phase];
+    }
+
+    /**
+     * Returns the bytes the latest sample of a phase allocated (only while trackAllocations is on).
+     *
+     * @param phase The phase constant.
+     * @return The allocated bytes.
+     */
+    public long getLastAllocatedBytes(int phase) {
+        return lastAllocatedBytes[phase];
+    }
+
+    /**
+     * Forgets the allocated bytes of every phase, so phases that do not run in the next tick
+     * (a state without rendering, a skipped system) read 0 instead of an older sample.
+     */
+    public void clearLastAllocated() {
+        Arrays.fill(lastAllocatedBytes, 0);
+    }
+
+    /** @return The allocation rate over the last second, in bytes per second. */
+    public double getAllocatedBytesPerSecond() {
+        return allocatedBytesPerSecond;
+    }
+
+    /**
+     * Returns the most expensive phase, ignoring the TICK and RENDER totals.
+     *
+     * @return The phase constant of the current bottleneck.
+     */
+    public int getBottleneck() {
+        int worst = ENEMIES;
+        for (int phase = 0; phase < PHASE_NAMES.length; phase++) {
+            if (phase == TICK || phase == RENDER) continue;
+            if (averageMillis[phase] > averageMillis[worst]) worst = phase;
+        }
+        return worst;
+    }
+
+    /**
+     * Formats a one-line summary for the benchmark output.
+     *
+     * @param entityCount The number of enemies alive.
+     * @return The summary text.
+     */
+    public String summary(int entityCount) {
+        return summary(new TextBuffer(), entityCount).toString();
+    }
+
+    /**
+     * Writes the one-line summary into a buffer, so the overlay can show it every frame
+     * without formatting a new String.
+     *
+     * @param out The buffer to fill (cleared first).
+     * @param entityCount The number of enemies alive.
+     * @return The buffer.
+     */
+    public TextBuffer summary(TextBuffer out, int entityCount) {
+        int bottleneck = getBottleneck();
+        return out.clear()
+                .append("Enemies: ").append(entityCount)
+                .append(" | Tick: ").append(averageMillis[TICK], 2)
+                .append(" ms | Render: ").append(averageMillis[RENDER], 2)
+                .append(" ms | Alloc: ").append(allocatedBytesPerSecond / (1024 * 1024), 1)
+                .append(" MB/s | Bottleneck: ").append(PHASE_NAMES[bottleneck])
+                .append(" (").append(averageMillis[bottleneck], 2).append(" ms)");
+    }
+}
@@ -1,7 +1,6 @@
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics2D;
-import java.awt.Rectangle;
 import java.awt.BasicStroke;
 import java.awt.AlphaComposite;
 import java.util.ArrayList;
@@ -13,6 +12,10 @@ import java.util.Random;
  */
 public class Player extends Entity {
 
+    private static final Log.Site LOG_HIT_ENEMY = Log.site(Log.DEBUG, "Hit enemy! HP: {}");
+    private static final Log.Site LOG_PICKED_UP = Log.site(Log.INFO, "Picked up: {}");
+    private static final AlphaComposite BLINK_COMPOSITE = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.4f);
+
     GamePanel gp;
     KeyHandler keyH;
 
@@ -32,28 +35,37 @@ public class Player extends Entity {
     // Attack
     public int baseAttackRange;
     public int attackRange;
-    public int rangePotionTimer = 0;
+    public TimerWheel.Timer rangePotionTimer = new TimerWheel.Timer(this::endRangePotion);
     public boolean attacking = false;
     public int attackCounter = 0;
     public int attackDuration = 10; // Faster attack (was 20)
+    private final ArrayList<Enemy> attackTargets = new ArrayList<>(); // Scratch list of performAttack()
+
+    // Drawing, the shapes are painted on first draw (see Sprite)
+    private Sprite bodySprite;
+    private Sprite dashTrailSprite;
+    private Sprite[] baseAttackSprites; // The attack circle at each step of its growth
+    private Sprite[] boostAttackSprites; // The same with a range potion
+    private int boostAttackRange;
+    private final TextBuffer timerText = new TextBuffer();
 
     // Pushback Logic
     public boolean beingPushed = false;
     public double pushDirection = 0;
-    public int pushDuration = 0;
+    public TimerWheel.Timer pushTimer = new TimerWheel.Timer(() -> beingPushed = false);
     public int pushSpeed = 5;
 
     // Dash Logic
     public boolean dashing = false;
     public int dashCounter = 0;
-    public int dashCooldown = 0;
+    public TimerWheel.Timer dashCooldown = new TimerWheel.Timer(() -> {});
     public int dashSpeed = 12;
     public int dashDuration = 10;
     public int dashCooldownDuration = 60; // 1 second
 
     // Invulnerability Logic
     public boolean invincible = false;
-    public int invincibleTimer = 0;
+    public TimerWheel.Timer invincibleTimer = new TimerWheel.Timer(() -> invincible = false);
 
     // Message for pickups (Legacy, now using FloatingText)
     public String message = "";
@@ -92,9 +104,11 @@ public class Player extends Entity {
         alive = true;
         beingPushed = false;
         invincible = false;
-        invincibleTimer = 0;
         dashing = false;
-        dashCooldown = 0;
+        gp.timers.cancel(pushTimer);
+        gp.timers.cancel(invincibleTimer);
+        gp.timers.cancel(dashCooldown);
+        gp.timers.cancel(rangePotionTimer);
     }
 
     /**
@@ -103,14 +117,6 @@ public class Player extends Entity {
     public void update() {
         if (!alive) return;
 
-        // Invulnerability Timer
-        if (invincible) {
-            invincibleTimer--;
-            if (invincibleTimer <= 0) {
-                invincible = false;
-            }
-        }
-
         // Handle Pushback
         if (beingPushed) {
             int nextX = worldX + (int)(Math.cos(pushDirection) * pushSpeed);
@@ -125,10 +131,6 @@ public class Player extends Entity {
             x = worldX;
             y = worldY;
 
-            pushDuration--;
-            if (pushDuration <= 0) {
-                beingPushed = false;
-            }
             return; // Skip normal movement/attack while being pushed
         }
 
@@ -156,13 +158,9 @@ public class Player extends Entity {
             return; // Skip normal movement while dashing
         }
 
-        if (dashCooldown > 0) {
-            dashCooldown--;
-        }
-
-        if (keyH.shiftPressed && dashCooldown == 0 && !dashing) {
+        if (keyH.shiftPressed && !dashCooldown.isScheduled() && !dashing) {
             dashing = true;
-            dashCooldown = dashCooldownDuration;
+            gp.timers.schedule(dashCooldown, dashDuration + dashCooldownDuration); // Cooldown starts after the dash
             setInvincible(dashDuration);
         }
 
@@ -180,15 +178,6 @@ public class Player extends Entity {
             }
         }
 
-        // Range Potion Timer
-        if (rangePotionTimer > 0) {
-            rangePotionTimer--;
-            if (rangePotionTimer == 0) {
-                attackRange = baseAttackRange;
-                gp.floatingTexts.add(new FloatingText(worldX, worldY, "Range Normal", Color.WHITE));
-            }
-        }
-
         int tempWorldX = worldX;
         int tempWorldY = worldY;
         boolean moving = false;
@@ -238,8 +227,8 @@ public class Player extends Entity {
      */
     public void startPushback(double direction, int duration) {
         this.pushDirection = direction;
-        this.pushDuration = duration;
         this.beingPushed = true;
+        gp.timers.schedule(pushTimer, duration);
     }
 
     /**
@@ -249,7 +238,15 @@ public class Player extends Entity {
      */
     public void setInvincible(int duration) {
         this.invincible = true;
-        this.invincibleTimer = duration;
+        gp.timers.schedule(invincibleTimer, duration);
+    }
+
+    /**
+     * Called by the timer wheel when the range potion wears off.
+     */
+    private void endRangePotion() {
+        attackRange = baseAttackRange;
+        gp.spawnFloatingText(worldX, worldY, "Range Normal", Color.WHITE);
     }
 
     /**
@@ -260,40 +257,27 @@ public class Player extends Entity {
      * @return True if a collision occurs, false otherwise.
      */
     private boolean checkTileCollision(int nextWorldX, int nextWorldY) {
-        // Simple 4-corner collision check
-        int leftCol = nextWorldX / gp.tileSize;
-        int rightCol = (nextWorldX + gp.tileSize - 1) / gp.tileSize;
-        int topRow = nextWorldY / gp.tileSize;
-        int bottomRow = (nextWorldY + gp.tileSize - 1) / gp.tileSize;
-
-        if (leftCol < 0 || rightCol >= gp.maxWorldCol || topRow < 0 || bottomRow >= gp.maxWorldRow) {
-            return true; // Out of bounds
-        }
-
-        int tileNum1 = gp.tileM.mapTileNum[leftCol][topRow];
-        int tileNum2 = gp.tileM.mapTileNum[rightCol][topRow];
-        int tileNum3 = gp.tileM.mapTileNum[leftCol][bottomRow];
-        int tileNum4 = gp.tileM.mapTileNum[rightCol][bottomRow];
-
-        if (tileNum1 == 1 || tileNum2 == 1 || tileNum3 == 1 || tileNum4 == 1) {
-            return true; // Collision with wall
-        }
-
-        return false;
+        return gp.tileM.collidesWithBox(nextWorldX, nextWorldY, gp.tileSize);
     }
 
     /**
      * Performs an attack, checking for collisions with enemies within range.
      */
     private void performAttack() {
-        Rectangle attackArea = new Rectangle(worldX - attackRange/2, worldY - attackRange/2, attackRange + gp.tileSize, attackRange + gp.tileSize);
-
-        // Use a copy of the list to avoid ConcurrentModificationException
-        // because addScore() might trigger spawnBoss() which clears the enemies list
-        for (Enemy enemy : new ArrayList<>(gp.enemies)) {
+        int areaX = worldX - attackRange/2;
+        int areaY = worldY - attackRange/2;
+        int areaSize = attackRange + gp.tileSize;
+
+        // Go over a copy of the list because addScore() might trigger spawnBoss() which clears
+        // the enemies list (the copy is a reused scratch list, so attacking allocates nothing)
+        attackTargets.clear();
+        for (int i = 0; i < gp.enemies.size(); i++) {
+            attackTargets.add(gp.enemies.get(i));
+        }
+        for (int i = 0; i < attackTargets.size(); i++) {
+            Enemy enemy = attackTargets.get(i);
             if (enemy.alive) {
-                Rectangle enemyRect = new Rectangle(enemy.x, enemy.y, gp.tileSize, gp.tileSize);
-                if (attackArea.intersects(enemyRect)) {
+                if (overlaps(areaX, areaY, areaSize, areaSize, enemy.x, enemy.y, gp.tileSize, gp.tileSize)) {
                     enemy.takeDamage(damage);
                     pushBack(enemy);
 
@@ -305,10 +289,15 @@ public class Player extends Entity {
                         }
                     }
 
-                    System.out.println("Hit enemy! HP: " + enemy.hp);
+                    LOG_HIT_ENEMY.log(enemy.hp);
                 }
             }
         }
+
+        attackTargets.clear();
+
+        // Horde Mode swarm enemies (ECS)
+        gp.swarmSystem.hitArea(gp.world, areaX, areaY, areaSize, areaSize, damage, worldX, worldY);
     }
 
     /**
@@ -325,11 +314,10 @@ public class Player extends Entity {
      * Checks for collision with loot boxes and applies their effects.
      */
     private void checkLootBoxCollision() {
-        Rectangle playerRect = new Rectangle(worldX, worldY, gp.tileSize, gp.tileSize);
-        for (LootBox box : gp.lootBoxes) {
+        for (int i = 0; i < gp.lootBoxes.size(); i++) {
+            LootBox box = gp.lootBoxes.get(i);
             if (!box.opened) {
-                Rectangle boxRect = new Rectangle(box.x, box.y, gp.tileSize, gp.tileSize);
-                if (playerRect.intersects(boxRect)) {
+                if (overlaps(worldX, worldY, gp.tileSize, gp.tileSize, box.x, box.y, gp.tileSize, gp.tileSize)) {
                     box.opened = true;
                     applyLootEffect(box.lootItem);
                 }
@@ -345,27 +333,27 @@ public class Player extends Entity {
     private void applyLootEffect(String item) {
         if (item.equals("Weapon")) {
             damage += 2;
-            gp.floatingTexts.add(new FloatingText(worldX, worldY, "Damage Up!", Color.ORANGE));
+            gp.spawnFloatingText(worldX, worldY, "Damage Up!", Color.ORANGE);
         } else if (item.equals("Armor")) {
             armor += 1;
-            gp.floatingTexts.add(new FloatingText(worldX, worldY, "Armor Up!", Color.GRAY));
+            gp.spawnFloatingText(worldX, worldY, "Armor Up!", Color.GRAY);
         } else if (item.equals("Potion")) {
             hp += 20;
             if (hp > maxHp) hp = maxHp;
-            gp.floatingTexts.add(new FloatingText(worldX, worldY, "HP Restored!", Color.GREEN));
+            gp.spawnFloatingText(worldX, worldY, "HP Restored!", Color.GREEN);
         } else if (item.equals("Range Potion")) {
-            Random rand = new Random();
+            Random rand = gp.rand;
             // 50% to 250% increase
             double increase = 0.5 + (rand.nextDouble() * 2.0);
             int addedRange = (int)(baseAttackRange * increase);
             attackRange = baseAttackRange + addedRange;
 
             // 5 to 7 seconds (300 to 420 frames at 60 FPS)
-            rangePotionTimer = 300 + rand.nextInt(121);
+            gp.timers.schedule(rangePotionTimer, 300 + rand.nextInt(121));
 
-            gp.floatingTexts.add(new FloatingText(worldX, worldY, "Range Up! (" + (int)(increase * 100) + "%)", Color.CYAN));
+            gp.spawnFloatingText(worldX, worldY, "Range Up! (" + (int)(increase * 100) + "%)", Color.CYAN);
         }
-        System.out.println("Picked up: " + item);
+        LOG_PICKED_UP.log(item);
     }
 
     /**
@@ -384,11 +372,20 @@ public class Player extends Entity {
         if (actualDamage < 1 && incomingDamage > 0) actualDamage = 1;
 
         hp -= actualDamage;
+        if (gp.telemetry != null) {
+            gp.telemetry.damageTaken += actualDamage;
+        }
+        if (gp.heatmap != null) {
+            gp.heatmap.add(Heatmap.DAMAGE, worldX + gp.tileSize/2, worldY + gp.tileSize/2, actualDamage);
+        }
         gp.startShake(10, 20); // Keep shake on taking damage
 
         if (hp <= 0) {
             hp = 0;
             alive = false;
+            if (gp.heatmap != null) {
+                gp.heatmap.add(Heatmap.DEATHS, worldX + gp.tileSize/2, worldY + gp.tileSize/2, 1);
+            }
             gp.gameState = gp.gameOverState;
             gp.commandNum = 0; // Reset menu selection for Game Over screen
         }
@@ -402,37 +399,29 @@ public class Player extends Entity {
     public void draw(Graphics2D g2) {
         if (!alive) return;
 
+        if (bodySprite == null) createSprites();
+        Sprite[] attackSprites = attackSprites(); // Painted as soon as a range potion is picked up
+
         // Visual effect for invincibility (blinking)
         if (invincible) {
-            if (invincibleTimer % 20 > 10) {
-                g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.4f));
+            if (invincibleTimer.remaining() % 20 > 10) {
+                g2.setComposite(BLINK_COMPOSITE);
             }
         }
 
         // Dash Trail (Simple)
         if (dashing) {
-            g2.setColor(new Color(255, 255, 255, 100));
-            g2.fillOval(screenX - (int)(Math.cos(Math.toRadians(getAngleFromDirection())) * 20),
-                    screenY - (int)(Math.sin(Math.toRadians(getAngleFromDirection())) * 20),
-                    gp.tileSize, gp.tileSize);
+            dashTrailSprite.draw(g2, screenX - (int)(Math.cos(Math.toRadians(getAngleFromDirection())) * 20),
+                    screenY - (int)(Math.sin(Math.toRadians(getAngleFromDirection())) * 20));
         }
 
         // Draw Player (Stylized)
-        g2.setColor(Color.white);
-        g2.fillOval(screenX, screenY, gp.tileSize, gp.tileSize); // Round player
-
-        // Outline
-        g2.setColor(Color.lightGray);
-        g2.setStroke(new BasicStroke(2));
-        g2.drawOval(screenX, screenY, gp.tileSize, gp.tileSize);
-        g2.setStroke(new BasicStroke(1));
+        bodySprite.draw(g2, screenX, screenY);
 
         // Reset composite
-        g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1f));
+        g2.setComposite(AlphaComposite.SrcOver);
 
         if (attacking) {
-            g2.setColor(new Color(200, 200, 255, 100)); // Bluish attack
-
             // Calculate current size based on animation progress
             double progress = (double)attackCounter / attackDuration;
             int currentRange = (int)(attackRange * progress);
@@ -442,36 +431,86 @@ public class Player extends Entity {
             int drawX = screenX + gp.tileSize/2 - currentSize/2;
             int drawY = screenY + gp.tileSize/2 - currentSize/2;
 
-            g2.fillOval(drawX, drawY, currentSize, currentSize);
-
-            // Draw border
-            g2.setColor(new Color(200, 200, 255));
-            g2.drawOval(drawX, drawY, currentSize, currentSize);
+            attackSprites[attackCounter].draw(g2, drawX, drawY);
         }
 
         // Draw Range Timer if active
-        if (rangePotionTimer > 0) {
+        if (rangePotionTimer.isScheduled()) {
             g2.setColor(Color.cyan);
-            g2.setFont(g2.getFont().deriveFont(14F));
-            String timerText = "Range Boost: " + (rangePotionTimer/60 + 1) + "s";
-            g2.drawString(timerText, screenX - 20, screenY - 40);
+            g2.setFont(TextBuffer.font(g2, Font.PLAIN, 14F));
+            timerText.clear().append("Range Boost: ").append(rangePotionTimer.remaining()/60 + 1).append('s');
+            timerText.draw(g2, screenX - 20, screenY - 40);
         }
 
         // Draw Invincibility Timer
         if (invincible) {
             g2.setColor(Color.green);
-            g2.setFont(g2.getFont().deriveFont(14F));
-            String timerText = "Shield: " + (invincibleTimer/60 + 1) + "s";
-            g2.drawString(timerText, screenX - 20, screenY - 60);
+            g2.setFont(TextBuffer.font(g2, Font.PLAIN, 14F));
+            timerText.clear().append("Shield: ").append(invincibleTimer.remaining()/60 + 1).append('s');
+            timerText.draw(g2, screenX - 20, screenY - 60);
         }
 
         // Draw Dash Cooldown
-        if (dashCooldown > 0) {
+        if (dashCooldown.isScheduled()) {
+            int cooldownLeft = Math.min(dashCooldown.remaining(), dashCooldownDuration);
             g2.setColor(Color.gray);
             g2.fillRect(screenX, screenY + gp.tileSize + 5, gp.tileSize, 5);
             g2.setColor(Color.white);
-            g2.fillRect(screenX, screenY + gp.tileSize + 5, (int)((double)(dashCooldownDuration - dashCooldown)/dashCooldownDuration * gp.tileSize), 5);
+            g2.fillRect(screenX, screenY + gp.tileSize + 5, (int)((double)(dashCooldownDuration - cooldownLeft)/dashCooldownDuration * gp.tileSize), 5);
+        }
+    }
+
+    /**
+     * Paints the player shapes once (see Sprite).
+     */
+    private void createSprites() {
+        int t = gp.tileSize;
+        dashTrailSprite = new Sprite(t, t, 0, 0, g2 -> {
+            g2.setColor(new Color(255, 255, 255, 100));
+            g2.fillOval(0, 0, t, t);
+        });
+        // Round player with an outline, which needs room around it
+        bodySprite = new Sprite(t + 4, t + 4, 2, 2, g2 -> {
+            g2.setColor(Color.white);
+            g2.fillOval(0, 0, t, t);
+            g2.setColor(Color.lightGray);
+            g2.setStroke(new BasicStroke(2));
+            g2.drawOval(0, 0, t, t);
+        });
+    }
+
+    /**
+     * Returns the attack circle at each step of its growth for the current attack range,
+     * painted when the range changes. The base range keeps its sprites, a range potion paints
+     * its own.
+     *
+     * @return The sprites, indexed by attackCounter.
+     */
+    private Sprite[] attackSprites() {
+        if (attackRange == baseAttackRange) {
+            if (baseAttackSprites == null) baseAttackSprites = createAttackSprites(attackRange);
+            return baseAttackSprites;
+        }
+        if (boostAttackSprites == null || boostAttackRange != attackRange) {
+            boostAttackSprites = createAttackSprites(attackRange);
+            boostAttackRange = attackRange;
+        }
+        return boostAttackSprites;
+    }
+
+    private Sprite[] createAttackSprites(int range) {
+        Sprite[] sprites = new Sprite[attackDuration + 1];
+        for (int counter = 0; counter <= attackDuration; counter++) {
+            // Same size as draw() computes from the animation progress
+            int size = (int)(range * ((double)counter / attackDuration)) + gp.tileSize;
+            sprites[counter] = new Sprite(size + 1, size + 1, 0, 0, g2 -> {
+                g2.setColor(new Color(200, 200, 255, 100)); // Bluish attack
+                g2.fillOval(0, 0, size, size);
+                g2.setColor(new Color(200, 200, 255)); // Border
+                g2.drawOval(0, 0, size, size);
+            });
         }
+        return sprites;
     }
 
     /**
@@ -0,0 +1,84 @@
+/**
+ * The ProjectileSystem class handles enemy projectiles stored in the EntityWorld.
+ * It spawns them and, after the MovementSystem has moved them, removes the ones that hit
+ * a wall and applies damage to the player on contact.
+ */
+public class ProjectileSystem {
+
+    private static final Log.Site LOG_PLAYER_HIT = Log.site(Log.DEBUG, "Player hit by projectile!");
+
+    public static final int SPEED = 6;
+    public static final int SIZE = 10; // Projectile size 10x10
+    public static final int MAX_LIFETIME = 600; // 10 seconds, in case one never hits anything
+
+    GamePanel gp;
+
+    /**
+     * Constructor for ProjectileSystem.
+     *
+     * @param gp The GamePanel instance.
+     */
+    public ProjectileSystem(GamePanel gp) {
+        this.gp = gp;
+    }
+
+    /**
+     * Creates a projectile entity.
+     *
+     * @param world The ECS world.
+     * @param startX The starting x-coordinate.
+     * @param startY The starting y-coordinate.
+     * @param angle The angle of trajectory in radians.
+     * @param damage The damage this projectile deals.
+     */
+    public void spawn(EntityWorld world, int startX, int startY, double angle, int damage) {
+        int id = world.create(EntityWorld.PROJECTILE);
+        Archetype a = world.archetype(EntityWorld.PROJECTILE);
+        int row = world.rowOf(id);
+
+        a.posX[row] = startX;
+        a.posY[row] = startY;
+        a.velX[row] = (float)(Math.cos(angle) * SPEED);
+        a.velY[row] = (float)(Math.sin(angle) * SPEED);
+        a.colliderSize[row] = SIZE;
+        a.renderKind[row] = RenderSystem.PROJECTILE;
+        a.lifetime[row] = MAX_LIFETIME;
+        a.damage[row] = damage;
+        if (gp.metrics != null) {
+            gp.metrics.projectilesSpawned.inc();
+        }
+    }
+
+    /**
+     * Resolves wall and player collisions for all projectiles.
+     *
+     * @param world The ECS world.
+     */
+    public void update(EntityWorld world) {
+        Archetype a = world.archetype(EntityWorld.PROJECTILE);
+        Player player = gp.player;
+        Heatmap heatmap = gp.heatmap;
+
+        for (int row = 0; row < a.count; row++) {
+            int x = (int)a.posX[row];
+            int y = (int)a.posY[row];
+            if (a.hitWall[row]) {
+                if (heatmap != null) {
+                    heatmap.add(Heatmap.IMPACTS, x + SIZE / 2, y + SIZE / 2, 1);
+                }
+                world.destroy(a.entityIds[row]);
+                continue;
+            }
+
+            if (x < player.worldX + gp.tileSize && x + SIZE > player.worldX &&
+                y < player.worldY + gp.tileSize && y + SIZE > player.worldY) {
+                if (heatmap != null) {
+                    heatmap.add(Heatmap.IMPACTS, x + SIZE / 2, y + SIZE / 2, 1);
+                }
+                player.takeDamage(a.damage[row]);
+                world.destroy(a.entityIds[row]);
+                LOG_PLAYER_HIT.log();
+            }
+        }
+    }
+}
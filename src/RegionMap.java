@@ -0,0 +1,232 @@
+import java.util.Arrays;
+
+/**
+ * The RegionMap class labels the connected floor regions of a TileMap (4-connected, like movement).
+ * Labeling is a two-pass connected-component scan with a union-find over provisional labels, so
+ * it is linear in the number of tiles. Two tiles in different regions cannot reach each other,
+ * which makes the region id a cheap reachability filter for placement and AI.
+ *
+ * It can also repair a map so all floor is reachable, by pruning or connecting the pockets
+ * outside the largest region (see Pockets).
+ */
+public class RegionMap {
+
+    private static final Log.Site LOG_UNKNOWN_POCKETS = Log.site(Log.WARN, "Unknown dungeon.pockets value: {}, using connect");
+
+    /**
+     * What to do with floor regions other than the largest one.
+     */
+    public enum Pockets {
+        /** Leave them as they are (placement still only uses the largest region). */
+        KEEP,
+        /** Turn them into walls. */
+        PRUNE,
+        /** Carve a corridor from each of them to the largest region. */
+        CONNECT
+    }
+
+    public final int cols, rows;
+    /** The region of every tile (row-major): 0 for walls, 1..count for floor. */
+    private final int[] labels;
+    /** The number of tiles in each region (index 0 unused). */
+    private final int[] sizes;
+    /** One tile (row-major index) of each region (index 0 unused). */
+    private final int[] firstTile;
+    private final int largest;
+
+    private RegionMap(int cols, int rows, int[] labels, int[] sizes, int[] firstTile) {
+        this.cols = cols;
+        this.rows = rows;
+        this.labels = labels;
+        this.sizes = sizes;
+        this.firstTile = firstTile;
+        int best = 0;
+        for (int region = 1; region < sizes.length; region++) {
+            if (best == 0 || sizes[region] > sizes[best]) {
+                best = region;
+            }
+        }
+        this.largest = best;
+    }
+
+    /**
+     * Labels the floor regions of a map.
+     *
+     * @param map The map to label.
+     * @return The region map.
+     */
+    public static RegionMap label(TileMap map) {
+        int cols = map.cols;
+        int rows = map.rows;
+        int[] labels = new int[cols * rows];
+        int[] parent = new int[64];
+        int next = 1;
+
+        // Pass 1: provisional labels from the left and upper neighbours, merging where they meet
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int index = row * cols + col;
+                if (map.isSolidIndex(index)) continue;
+
+                int left = col > 0 ? labels[index - 1] : 0;
+                int up = row > 0 ? labels[index - cols] : 0;
+                if (left == 0 && up == 0) {
+                    if (next == parent.length) {
+                        parent = Arrays.copyOf(parent, parent.length * 2);
+                    }
+                    parent[next] = next;
+                    labels[index] = next++;
+                } else if (left == 0 || up == 0) {
+                    labels[index] = left + up;
+                } else {
+                    labels[index] = left;
+                    union(parent, left, up);
+                }
+            }
+        }
+
+        // Pass 2: resolve to final ids 1..count and measure the regions
+        int[] finalId = new int[next];
+        int count = 0;
+        for (int label = 1; label < next; label++) {
+            int root = find(parent, label);
+            if (finalId[root] == 0) {
+                finalId[root] = ++count;
+            }
+            finalId[label] = finalId[root];
+        }
+        int[] sizes = new int[count + 1];
+        int[] firstTile = new int[count + 1];
+        Arrays.fill(firstTile, -1);
+        for (int index = 0; index < labels.length; index++) {
+            if (labels[index] == 0) continue;
+            int region = finalId[labels[index]];
+            labels[index] = region;
+            if (sizes[region]++ == 0) {
+                firstTile[region] = index;
+            }
+        }
+        return new RegionMap(cols, rows, labels, sizes, firstTile);
+    }
+
+    /**
+     * Labels a map and deals with its unreachable pockets, relabeling if the map changed.
+     *
+     * @param map The map to check (modified by PRUNE and CONNECT).
+     * @param pockets What to do with regions other than the largest one.
+     * @return The region map of the (possibly repaired) map.
+     */
+    public static RegionMap repair(TileMap map, Pockets pockets) {
+        RegionMap regions = label(map);
+        if (pockets == Pockets.KEEP || regions.count() <= 1) {
+            return regions;
+        }
+
+        int main = regions.largest;
+        if (pockets == Pockets.PRUNE) {
+            for (int index = 0; index < regions.labels.length; index++) {
+                int region = regions.labels[index];
+                if (region != 0 && region != main) {
+                    map.set(index % map.cols, index / map.cols, TileType.WALL);
+                }
+            }
+        } else {
+            // L-shaped corridor from each pocket to the main region (it may pass through other pockets)
+            int toCol = regions.firstTile[main] % map.cols;
+            int toRow = regions.firstTile[main] / map.cols;
+            for (int region = 1; region <= regions.count(); region++) {
+                if (region == main) continue;
+                int col = regions.firstTile[region] % map.cols;
+                int row = regions.firstTile[region] / map.cols;
+                while (col != toCol) {
+                    map.set(col, row, TileType.FLOOR);
+                    col += col < toCol ? 1 : -1;
+                }
+                while (row != toRow) {
+                    map.set(col, row, TileType.FLOOR);
+                    row += row < toRow ? 1 : -1;
+                }
+            }
+        }
+        return label(map);
+    }
+
+    /**
+     * Reads the pocket handling from {@code -Ddungeon.pockets=keep|prune|connect} (default connect).
+     *
+     * @return The configured pocket handling.
+     */
+    public static Pockets pocketsFromSystemProperties() {
+        String value = System.getProperty("dungeon.pockets", "connect");
+        for (Pockets pockets : Pockets.values()) {
+            if (pockets.name().equalsIgnoreCase(value)) {
+                return pockets;
+            }
+        }
+        LOG_UNKNOWN_POCKETS.log(value);
+        return Pockets.CONNECT;
+    }
+
+    /**
+     * Returns the region of a tile.
+     *
+     * @param col The column.
+     * @param row The row.
+     * @return The region id (1..count), or 0 for walls and out-of-bounds tiles.
+     */
+    public int regionOf(int col, int row) {
+        if (Integer.compareUnsigned(col, cols) >= 0 || Integer.compareUnsigned(row, rows) >= 0) {
+            return 0;
+        }
+        return labels[row * cols + col];
+    }
+
+    /**
+     * Returns the region of a tile by row-major index (which must be inside the map).
+     */
+    public int regionOfIndex(int index) {
+        return labels[index];
+    }
+
+    /**
+     * Returns the number of regions.
+     */
+    public int count() {
+        return sizes.length - 1;
+    }
+
+    /**
+     * Returns the number of tiles in a region.
+     *
+     * @param region The region id (1..count).
+     * @return The size in tiles.
+     */
+    public int sizeOf(int region) {
+        return sizes[region];
+    }
+
+    /**
+     * Returns the id of the largest region, or 0 if the map has no floor.
+     */
+    public int largest() {
+        return largest;
+    }
+
+    private static int find(int[] parent, int label) {
+        while (parent[label] != label) {
+            parent[label] = parent[parent[label]]; // Path halving
+            label = parent[label];
+        }
+        return label;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA < rootB) {
+            parent[rootB] = rootA;
+        } else if (rootB < rootA) {
+            parent[rootA] = rootB;
+        }
+    }
+}
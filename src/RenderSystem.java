@@ -0,0 +1,73 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+
+/**
+ * The RenderSystem class draws every ECS entity that has a Position and a Renderable.
+ * Entities outside the player's view (camera) are skipped with a single bounds check per row.
+ */
+public class RenderSystem {
+
+    // Render kinds
+    public static final int PROJECTILE = 0;
+    public static final int SWARM = 1;
+
+    private final Color swarmColor = new Color(200, 150, 50);
+    private final Color swarmOutline = new Color(100, 70, 0);
+    // Filling an oval allocates inside Java2D, copying a sprite does not
+    private final Sprite projectileSprite = new Sprite(ProjectileSystem.SIZE, ProjectileSystem.SIZE, 0, 0, g2 -> {
+        g2.setColor(Color.yellow);
+        g2.fillOval(0, 0, ProjectileSystem.SIZE, ProjectileSystem.SIZE);
+    });
+
+    private static final int REQUIRED = EntityWorld.POSITION | EntityWorld.RENDERABLE;
+
+    GamePanel gp;
+
+    /**
+     * Constructor for RenderSystem.
+     *
+     * @param gp The GamePanel instance.
+     */
+    public RenderSystem(GamePanel gp) {
+        this.gp = gp;
+    }
+
+    /**
+     * Draws all visible entities.
+     *
+     * @param g2 The Graphics2D context.
+     * @param world The ECS world.
+     */
+    public void draw(Graphics2D g2, EntityWorld world) {
+        int offsetX = gp.player.screenX - gp.player.worldX;
+        int offsetY = gp.player.screenY - gp.player.worldY;
+        int minX = gp.player.worldX - gp.player.screenX - gp.tileSize;
+        int maxX = gp.player.worldX + gp.player.screenX + gp.tileSize;
+        int minY = gp.player.worldY - gp.player.screenY - gp.tileSize;
+        int maxY = gp.player.worldY + gp.player.screenY + gp.tileSize;
+
+        for (int i = 0; i < world.archetypes.size(); i++) {
+            Archetype a = world.archetypes.get(i);
+            if (!a.has(REQUIRED)) continue;
+
+            for (int row = 0; row < a.count; row++) {
+                int x = (int)a.posX[row];
+                int y = (int)a.posY[row];
+                if (x < minX || x > maxX || y < minY || y > maxY) continue;
+
+                int screenX = x + offsetX;
+                int screenY = y + offsetY;
+
+                if (a.renderKind[row] == PROJECTILE) {
+                    projectileSprite.draw(g2, screenX, screenY);
+                } else if (a.renderKind[row] == SWARM) {
+                    // Plain squares: thousands of these can be on screen at once
+                    g2.setColor(swarmColor);
+                    g2.fillRect(screenX, screenY, SwarmSystem.SIZE, SwarmSystem.SIZE);
+                    g2.setColor(swarmOutline);
+                    g2.drawRect(screenX, screenY, SwarmSystem.SIZE, SwarmSystem.SIZE);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,468 @@
+import java.util.Arrays;
+
+/**
+ * The RewindBuffer class keeps the last seconds of play in memory, one frame per recorded
+ * tick, so balance problems and perf spikes can be inspected after the fact: pause the game
+ * and hold LEFT / RIGHT to scrub back and forth; resuming continues from the frame on screen.
+ * It is a debugging aid and only exists when enabled with {@code -Ddebug.rewind=true}.
+ *
+ * A frame is the world as SaveGame captures it, flattened into an int image. Every
+ * {@code keyframeEvery}-th frame is a keyframe that stands on its own; the frames in between
+ * store only their XOR with the previous image. Either way the result is mostly zeros, which
+ * are run-length encoded: a zero run, a literal count, the literals, repeated. The encoded
+ * frames sit back to back in one preallocated int ring whose size is the memory cap, so
+ * recording allocates nothing once the buffers have grown to the world's size; the oldest
+ * frames (back to the next keyframe) are dropped to make room. Maps are never modified
+ * once installed, so frames only keep references to them.
+ *
+ * Settings: {@code -Drewind.seconds} (default 60), {@code -Drewind.memoryMB} (default 64),
+ * {@code -Drewind.every} (ticks per frame, default 1) and {@code -Drewind.keyframeEvery}
+ * (frames per keyframe, default 60).
+ */
+public class RewindBuffer {
+
+    private static final Log.Site LOG_DISABLED = Log.site(Log.WARN, "Rewind buffer disabled: a frame needs more than {} MB");
+
+    GamePanel gp;
+    private final int every;
+    private final int keyframeEvery;
+    private final int maxFrames;
+
+    // Encoded frames, back to back; a frame that does not fit before the end starts at 0
+    private final int[] arena;
+    private int writePos = 0;
+
+    // The frames, oldest first: a ring of maxFrames slots starting at slot first
+    private final long[] frameTick;
+    private final int[] frameStart, frameLength, frameImageLength;
+    private final boolean[] frameKey;
+    private final TileMap[] frameMap;
+    private final RegionMap[] frameRegions;
+    private final FloorIndex[] frameFloor;
+    private int first = 0, count = 0;
+    private int sinceKeyframe = 0;
+    private int ticksSinceFrame = 0;
+
+    // The world being recorded, its image and the previous image (deltas are taken against it)
+    private final SaveGame.Snapshot snapshot = new SaveGame.Snapshot();
+    private int[] image = new int[4096], previous = new int[4096];
+    private int imageLength = 0, previousLength = 0;
+    private int[] delta = new int[4096];
+
+    // Scrubbing: the frame on screen (-1 while playing live), its image and its snapshot
+    private int cursor = -1;
+    private int[] scratch = new int[4096];
+    private int scratchLength = 0;
+    private final SaveGame.Snapshot restored = new SaveGame.Snapshot();
+
+    private boolean disabled = false;
+    /** How long the last recorded frame took on the game thread, in nanoseconds. */
+    public long lastRecordNanos = 0;
+
+    /**
+     * Creates the rewind buffer if it is enabled with {@code -Ddebug.rewind=true}.
+     *
+     * @param gp The GamePanel instance.
+     * @return The buffer, or null when rewinding is off.
+     */
+    public static RewindBuffer fromSystemProperties(GamePanel gp) {
+        if (!Boolean.getBoolean("debug.rewind")) {
+            return null;
+        }
+        return new RewindBuffer(gp,
+                Math.max(1, Integer.getInteger("rewind.seconds", 60)),
+                Math.max(1, Integer.getInteger("rewind.memoryMB", 64)),
+                Math.max(1, Integer.getInteger("rewind.every", 1)),
+                Math.max(1, Integer.getInteger("rewind.keyframeEvery", 60)));
+    }
+
+    /**
+     * Constructor for RewindBuffer.
+     *
+     * @param gp The GamePanel instance.
+     * @param seconds How much play to keep.
+     * @param memoryMB The memory for the encoded frames.
+     * @param every The ticks between two frames.
+     * @param keyframeEvery The frames between two keyframes.
+     */
+    public RewindBuffer(GamePanel gp, int seconds, int memoryMB, int every, int keyframeEvery) {
+        this.gp = gp;
+        this.every = every;
+        this.keyframeEvery = keyframeEvery;
+        this.maxFrames = seconds * gp.FPS / every + 1;
+        this.arena = new int[(int)Math.min(Integer.MAX_VALUE - 8, memoryMB * (1L << 20) / 4)];
+        frameTick = new long[maxFrames];
+        frameStart = new int[maxFrames];
+        frameLength = new int[maxFrames];
+        frameImageLength = new int[maxFrames];
+        frameKey = new boolean[maxFrames];
+        frameMap = new TileMap[maxFrames];
+        frameRegions = new RegionMap[maxFrames];
+        frameFloor = new FloorIndex[maxFrames];
+    }
+
+    /**
+     * Records a frame every {@code every} ticks. Called by the game loop once per tick in the
+     * play state. After scrubbing, the frames newer than the one on screen are dropped first.
+     */
+    public void record() {
+        if (disabled || gp.tileM.chunks != null || ++ticksSinceFrame < every) {
+            return; // Endless Descent cannot be restored (see SaveGame)
+        }
+        ticksSinceFrame = 0;
+        long start = System.nanoTime();
+        if (cursor != -1) {
+            resumeAt(cursor);
+        }
+
+        gp.saves.capture(snapshot);
+        buildImage(snapshot);
+
+        // Worst case of the encoding: alternating zero and non-zero values
+        int reserve = imageLength + imageLength / 2 + 4;
+        if (reserve > arena.length) {
+            LOG_DISABLED.log(arena.length * 4L / (1 << 20));
+            disabled = true;
+            clear();
+            return;
+        }
+        int at = writePos + reserve <= arena.length ? writePos : 0;
+        makeRoom(at, at + reserve);
+        boolean key = count == 0 || sinceKeyframe >= keyframeEvery;
+
+        int slot = slot(count);
+        frameTick[slot] = gp.timers.now();
+        frameStart[slot] = at;
+        frameLength[slot] = encode(at, key);
+        frameImageLength[slot] = imageLength;
+        frameKey[slot] = key;
+        frameMap[slot] = snapshot.map;
+        frameRegions[slot] = snapshot.regions;
+        frameFloor[slot] = snapshot.floor;
+        count++;
+        writePos = at + frameLength[slot];
+        sinceKeyframe = key ? 1 : sinceKeyframe + 1;
+
+        int[] swap = previous;
+        previous = image;
+        image = swap;
+        previousLength = imageLength;
+        lastRecordNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Shows the frame before the one on screen (the newest frame is the live world).
+     *
+     * @return False if there is no older frame.
+     */
+    public boolean stepBack() {
+        int target = (cursor == -1 ? count - 1 : cursor) - 1;
+        if (target < 0) {
+            return false;
+        }
+        show(target);
+        return true;
+    }
+
+    /**
+     * Shows the frame after the one on screen.
+     *
+     * @return False if the newest frame is already on screen.
+     */
+    public boolean stepForward() {
+        if (cursor == -1 || cursor + 1 >= count) {
+            return false;
+        }
+        show(cursor + 1);
+        return true;
+    }
+
+    /**
+     * Drops every frame, e.g. when a new run starts.
+     */
+    public void clear() {
+        Arrays.fill(frameMap, null);
+        Arrays.fill(frameRegions, null);
+        Arrays.fill(frameFloor, null);
+        first = 0;
+        count = 0;
+        writePos = 0;
+        cursor = -1;
+        sinceKeyframe = 0;
+        previousLength = 0;
+    }
+
+    /**
+     * Returns how far the frame on screen is behind the newest frame, in seconds.
+     */
+    public double secondsBehind() {
+        if (cursor == -1 || count == 0) {
+            return 0;
+        }
+        return (frameTick[slot(count - 1)] - frameTick[slot(cursor)]) / (double)gp.FPS;
+    }
+
+    /**
+     * Returns how much play the buffer holds, in seconds.
+     */
+    public double secondsBuffered() {
+        if (count == 0) {
+            return 0;
+        }
+        return (frameTick[slot(count - 1)] - frameTick[first]) / (double)gp.FPS;
+    }
+
+    /**
+     * Returns the memory used by the encoded frames, in bytes.
+     */
+    public long usedBytes() {
+        long ints = 0;
+        for (int i = 0; i < count; i++) {
+            ints += frameLength[slot(i)];
+        }
+        return ints * 4;
+    }
+
+    /**
+     * Returns the number of frames held.
+     */
+    public int frameCount() {
+        return count;
+    }
+
+    private int slot(int index) {
+        return (first + index) % maxFrames;
+    }
+
+    /**
+     * Drops the oldest frames until [from, to) of the arena is free and a frame slot is free.
+     * Frames are stored in the order they were recorded, so when writing wraps to the start
+     * the frames left at the end are the oldest and go first.
+     */
+    private void makeRoom(int from, int to) {
+        if (from == 0 && writePos != 0) {
+            while (count > 0 && frameStart[first] >= writePos) {
+                dropOldest();
+            }
+        }
+        while (count > 0 && frameStart[first] < to && from < frameStart[first] + frameLength[first]) {
+            dropOldest();
+        }
+        if (count == maxFrames) {
+            dropOldest();
+        }
+        // Deltas are useless without the keyframe they start from
+        while (count > 0 && !frameKey[first]) {
+            dropOldest();
+        }
+    }
+
+    private void dropOldest() {
+        frameMap[first] = null;
+        frameRegions[first] = null;
+        frameFloor[first] = null;
+        first = (first + 1) % maxFrames;
+        count--;
+        if (cursor != -1) {
+            cursor--;
+        }
+    }
+
+    /**
+     * Flattens a snapshot into the image: the record counts, the ints, the longs (two ints
+     * each), the floats (as bits) and the strings (length, then the chars).
+     */
+    private void buildImage(SaveGame.Snapshot s) {
+        int length = 4 + s.intCount + 2 * s.longCount + s.floatCount;
+        for (int i = 0; i < s.stringCount; i++) {
+            length += 1 + (s.strings[i] == null ? 0 : s.strings[i].length());
+        }
+        if (image.length < length) {
+            image = new int[Math.max(length, image.length * 2)];
+        }
+        int[] img = image;
+        int p = 0;
+        img[p++] = s.intCount;
+        img[p++] = s.longCount;
+        img[p++] = s.floatCount;
+        img[p++] = s.stringCount;
+        System.arraycopy(s.ints, 0, img, p, s.intCount);
+        p += s.intCount;
+        for (int i = 0; i < s.longCount; i++) {
+            img[p++] = (int)(s.longs[i] >>> 32);
+            img[p++] = (int)s.longs[i];
+        }
+        for (int i = 0; i < s.floatCount; i++) {
+            img[p++] = Float.floatToRawIntBits(s.floats[i]);
+        }
+        for (int i = 0; i < s.stringCount; i++) {
+            String str = s.strings[i];
+            if (str == null) {
+                img[p++] = -1;
+                continue;
+            }
+            img[p++] = str.length();
+            for (int c = 0; c < str.length(); c++) {
+                img[p++] = str.charAt(c);
+            }
+        }
+        imageLength = p;
+    }
+
+    /**
+     * Turns an image back into a snapshot (the inverse of buildImage).
+     */
+    private static void readImage(int[] img, SaveGame.Snapshot s) {
+        s.clear();
+        int p = 0;
+        s.intCount = img[p++];
+        s.longCount = img[p++];
+        s.floatCount = img[p++];
+        int strings = img[p++];
+        if (s.ints.length < s.intCount) s.ints = new int[s.intCount];
+        if (s.longs.length < s.longCount) s.longs = new long[s.longCount];
+        if (s.floats.length < s.floatCount) s.floats = new float[s.floatCount];
+        if (s.strings.length < strings) s.strings = new String[strings];
+        System.arraycopy(img, p, s.ints, 0, s.intCount);
+        p += s.intCount;
+        for (int i = 0; i < s.longCount; i++) {
+            s.longs[i] = ((long)img[p] << 32) | (img[p + 1] & 0xFFFFFFFFL);
+            p += 2;
+        }
+        for (int i = 0; i < s.floatCount; i++) {
+            s.floats[i] = Float.intBitsToFloat(img[p++]);
+        }
+        for (int i = 0; i < strings; i++) {
+            int length = img[p++];
+            if (length < 0) {
+                s.strings[i] = null;
+                continue;
+            }
+            char[] chars = new char[length];
+            for (int c = 0; c < length; c++) {
+                chars[c] = (char)img[p++];
+            }
+            s.strings[i] = new String(chars);
+        }
+        s.stringCount = strings;
+    }
+
+    /**
+     * Encodes the image into the arena: as is for a keyframe, XORed with the previous image
+     * otherwise, then zero-run-length encoded.
+     *
+     * @return The encoded length (in ints).
+     */
+    private int encode(int at, boolean key) {
+        int n = imageLength;
+        int[] d = image;
+        if (!key) {
+            if (delta.length < n) {
+                delta = new int[Math.max(n, delta.length * 2)];
+            }
+            d = delta;
+            int shared = Math.min(n, previousLength);
+            for (int i = 0; i < shared; i++) {
+                d[i] = image[i] ^ previous[i];
+            }
+            System.arraycopy(image, shared, d, shared, n - shared);
+        }
+
+        int[] out = arena;
+        int p = at;
+        int i = 0;
+        while (i < n) {
+            int zeros = i;
+            while (i < n && d[i] == 0) i++;
+            zeros = i - zeros;
+            int literals = i;
+            while (i < n && d[i] != 0) i++;
+            out[p++] = zeros;
+            out[p++] = i - literals;
+            System.arraycopy(d, literals, out, p, i - literals);
+            p += i - literals;
+        }
+        return p - at;
+    }
+
+    /**
+     * Applies one encoded frame to the scratch image (XOR for a delta, replace for a keyframe).
+     */
+    private void apply(int slot) {
+        int n = frameImageLength[slot];
+        if (scratch.length < n) {
+            scratch = Arrays.copyOf(scratch, Math.max(n, scratch.length * 2));
+        }
+        if (frameKey[slot]) {
+            Arrays.fill(scratch, 0, n, 0);
+        } else if (n > scratchLength) {
+            Arrays.fill(scratch, scratchLength, n, 0);
+        }
+        int p = frameStart[slot];
+        int end = p + frameLength[slot];
+        int i = 0;
+        while (p < end) {
+            i += arena[p++];
+            int literals = arena[p++];
+            for (int k = 0; k < literals; k++) {
+                scratch[i++] ^= arena[p++];
+            }
+        }
+        scratchLength = n;
+    }
+
+    /**
+     * Decodes a frame into the scratch image and puts the world back the way it was then.
+     * Stepping forward onto a delta frame applies just that delta; anything else decodes
+     * from the frame's keyframe.
+     */
+    private void show(int index) {
+        int slot = slot(index);
+        if (cursor != -1 && index == cursor + 1 && !frameKey[slot]) {
+            apply(slot);
+        } else {
+            int key = index;
+            while (!frameKey[slot(key)]) {
+                key--;
+            }
+            for (int i = key; i <= index; i++) {
+                apply(slot(i));
+            }
+        }
+        cursor = index;
+
+        readImage(scratch, restored);
+        restored.map = frameMap[slot];
+        restored.regions = frameRegions[slot];
+        restored.floor = frameFloor[slot];
+        gp.restoreSnapshot(restored);
+    }
+
+    /**
+     * Continues recording from a scrubbed-to frame: the newer frames are dropped and the next
+     * delta is taken against the frame's image.
+     */
+    private void resumeAt(int index) {
+        for (int i = count - 1; i > index; i--) {
+            int slot = slot(i);
+            frameMap[slot] = null;
+            frameRegions[slot] = null;
+            frameFloor[slot] = null;
+        }
+        count = index + 1;
+        int last = slot(index);
+        writePos = frameStart[last] + frameLength[last];
+
+        if (previous.length < scratchLength) {
+            previous = new int[scratchLength];
+        }
+        System.arraycopy(scratch, 0, previous, 0, scratchLength);
+        previousLength = scratchLength;
+
+        sinceKeyframe = 1;
+        for (int i = index; !frameKey[slot(i)]; i--) {
+            sinceKeyframe++;
+        }
+        cursor = -1;
+    }
+}
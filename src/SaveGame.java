@@ -0,0 +1,617 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The SaveGame class saves and restores the whole world: the player, every enemy (including
+ * the boss state machine), spawners, loot boxes, projectiles and swarm enemies, the pending
+ * boss and stage timers, stage and score, the state of the game's random number generator
+ * (see GameRandom) and the map.
+ *
+ * Saving is split in two so the game never waits for the disk. On the game thread,
+ * {@link #save()} copies the world into a Snapshot: flat primitive arrays, filled in the same
+ * order that {@link #restore} reads them back. The map is not copied at all, only referenced,
+ * because installed maps are never modified (TileManager generates each stage into a fresh
+ * TileMap). The snapshot is then encoded and written on a background thread, to a temporary
+ * file that is synced and renamed over the old save. The snapshot's arrays are reused, so
+ * steady-state autosaves do not allocate on the game thread.
+ *
+ * Timers are saved as the ticks they have left and the timer wheel is restored to the saved
+ * tick, so cooldowns, spawn timers and boss actions continue exactly where they stopped.
+ * Damage numbers and floating texts are not saved. Endless Descent runs are not saved either:
+ * their chunks already stream to disk (see ChunkManager).
+ *
+ * Configure with {@code -Dsave.file} (default savegame.bin) and {@code -Dsave.autosaveSeconds}
+ * (default 30, 0 to turn autosave off).
+ *
+ * File layout (big-endian): int magic "DOJS", short version, int map cols, int map rows,
+ * the counts of the int, long, float and string records, the records themselves, then the
+ * map bit-packed as in DungeonFile.
+ */
+public class SaveGame {
+
+    private static final Log.Site LOG_SAVE_FAILED = Log.site(Log.ERROR, "Could not save game: {}");
+    private static final Log.Site LOG_CLOSE_TIMEOUT = Log.site(Log.WARN, "Save did not finish in time");
+
+    public static final int MAGIC = 0x444F4A53; // "DOJS"
+    public static final short VERSION = 2;
+
+    // Record counts larger than this are treated as a corrupt file
+    private static final int MAX_RECORDS = 1 << 26;
+
+    private static final String[] DIRECTIONS = {"up", "down", "left", "right"};
+
+    GamePanel gp;
+    private final Path path;
+    /** The ticks between autosaves (0 when autosave is off). */
+    public final int autosaveTicks;
+    private int ticksSinceSave = 0;
+    /** How long the last capture took on the game thread, in nanoseconds. */
+    public long lastCaptureNanos = 0;
+
+    // Owned by the writer thread while writing is set, by the game thread otherwise
+    private final Snapshot snapshot = new Snapshot();
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private final Runnable writeTask = this::writeSnapshot;
+    private final ExecutorService io = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "save-io");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Constructor for SaveGame, configured from the system properties.
+     *
+     * @param gp The GamePanel instance.
+     */
+    public SaveGame(GamePanel gp) {
+        this(gp, Paths.get(System.getProperty("save.file", "savegame.bin")),
+             Integer.getInteger("save.autosaveSeconds", 30) * gp.FPS);
+    }
+
+    /**
+     * Constructor for SaveGame.
+     *
+     * @param gp The GamePanel instance.
+     * @param path The save file.
+     * @param autosaveTicks The ticks between autosaves (0 to turn autosave off).
+     */
+    public SaveGame(GamePanel gp, Path path, int autosaveTicks) {
+        this.gp = gp;
+        this.path = path;
+        this.autosaveTicks = Math.max(0, autosaveTicks);
+        // Let a save in progress finish when the game exits
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "save-flush"));
+    }
+
+    /**
+     * Checks if a save file exists.
+     */
+    public boolean exists() {
+        return Files.exists(path);
+    }
+
+    /**
+     * Reads the save file.
+     *
+     * @return The snapshot, ready for {@link #restore}.
+     * @throws IOException If the file cannot be read or is not a valid save.
+     */
+    public Snapshot load() throws IOException {
+        return read(path);
+    }
+
+    /**
+     * Counts a played tick and saves when the autosave interval has passed.
+     * Called by the game loop once per tick in the play state.
+     */
+    public void tick() {
+        if (autosaveTicks > 0 && ++ticksSinceSave >= autosaveTicks && save()) {
+            ticksSinceSave = 0;
+        }
+    }
+
+    /**
+     * Captures the world and writes it in the background. Must run on the game thread.
+     *
+     * @return False if nothing was saved: the run cannot be saved (Endless Descent) or the
+     *         previous save is still being written.
+     */
+    public boolean save() {
+        if (gp.tileM.chunks != null || !writing.compareAndSet(false, true)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        capture(snapshot);
+        lastCaptureNanos = System.nanoTime() - start;
+        io.execute(writeTask);
+        return true;
+    }
+
+    /**
+     * Copies the world into a snapshot. Must run on the game thread.
+     *
+     * @param s The snapshot to fill (its previous contents are dropped, its arrays reused).
+     */
+    void capture(Snapshot s) {
+        s.clear();
+        s.map = gp.tileM.map;
+        s.regions = gp.tileM.regions;
+        s.floor = gp.tileM.floor;
+        s.putLong(gp.timers.now());
+        s.putLong(gp.rand.state());
+
+        s.putInt(gp.stage);
+        s.putInt(gp.score);
+        s.putInt(gp.totalScore);
+        s.putInt(gp.difficultyLevel);
+        s.putInt(gp.nextBossScore);
+        s.putInt(gp.stageMessageTimer);
+        s.putBoolean(gp.bossActive);
+        s.putBoolean(gp.bossSpawnPending);
+        s.putInt(gp.bossSpawnTimer.remaining());
+        s.putBoolean(gp.stageTransitionPending);
+        s.putInt(gp.stageTransitionTimer.remaining());
+        s.putString(gp.playerName);
+        s.putBoolean(gp.horde != null);
+        if (gp.horde != null) {
+            s.putInt(gp.horde.spawnerCount);
+            s.putInt(gp.horde.spawnInterval);
+            s.putInt(gp.horde.spawnsPerBurst);
+            s.putInt(gp.horde.maxEnemies);
+        }
+
+        Player p = gp.player;
+        s.putInt(p.worldX);
+        s.putInt(p.worldY);
+        s.putInt(direction(p.direction));
+        s.putInt(p.speed);
+        s.putBoolean(p.alive);
+        s.putInt(p.hp);
+        s.putInt(p.maxHp);
+        s.putInt(p.armor);
+        s.putInt(p.damage);
+        s.putInt(p.baseAttackRange);
+        s.putInt(p.attackRange);
+        s.putInt(p.rangePotionTimer.remaining());
+        s.putBoolean(p.attacking);
+        s.putInt(p.attackCounter);
+        s.putBoolean(p.beingPushed);
+        s.putDouble(p.pushDirection);
+        s.putInt(p.pushTimer.remaining());
+        s.putBoolean(p.dashing);
+        s.putInt(p.dashCounter);
+        s.putInt(p.dashCooldown.remaining());
+        s.putBoolean(p.invincible);
+        s.putInt(p.invincibleTimer.remaining());
+
+        s.putInt(gp.enemies.size());
+        for (int i = 0; i < gp.enemies.size(); i++) {
+            Enemy e = gp.enemies.get(i);
+            s.putInt(e.x);
+            s.putInt(e.y);
+            s.putBoolean(e.ranged);
+            s.putBoolean(e.isBoss);
+            s.putBoolean(e.alive);
+            s.putInt(e.speed);
+            s.putInt(e.hp);
+            s.putInt(e.maxHp);
+            s.putInt(e.damage);
+            s.putInt(e.attackCooldown.remaining());
+            s.putBoolean(e.attacking);
+            s.putInt(e.attackVisualTimer.remaining());
+            s.putInt(e.shotMode);
+            s.putInt(e.shotTimer);
+            s.putBoolean(e.beingPushed);
+            s.putDouble(e.pushDirection);
+            s.putInt(e.pushTimer.remaining());
+            s.putInt(e.bossAction);
+            s.putLong(e.bossActionStart);
+            s.putInt(e.bossIdleTimer.remaining());
+            s.putBoolean(e.bossInAir);
+            s.putInt(e.bossTargetX);
+            s.putInt(e.bossTargetY);
+        }
+
+        s.putInt(gp.spawners.size());
+        for (int i = 0; i < gp.spawners.size(); i++) {
+            EnemySpawner sp = gp.spawners.get(i);
+            s.putInt(sp.x);
+            s.putInt(sp.y);
+            s.putBoolean(sp.active);
+            s.putInt(sp.spawnInterval);
+            s.putInt(sp.spawnTimer.remaining());
+        }
+
+        s.putInt(gp.lootBoxes.size());
+        for (int i = 0; i < gp.lootBoxes.size(); i++) {
+            LootBox box = gp.lootBoxes.get(i);
+            s.putInt(box.x);
+            s.putInt(box.y);
+            s.putBoolean(box.opened);
+            s.putString(box.lootItem);
+        }
+
+        // ECS entities: whole columns per archetype
+        s.putInt(gp.world.archetypes.size());
+        for (int i = 0; i < gp.world.archetypes.size(); i++) {
+            Archetype a = gp.world.archetypes.get(i);
+            s.putInt(a.mask);
+            s.putInt(a.count);
+            if (a.posX != null) { s.putFloats(a.posX, a.count); s.putFloats(a.posY, a.count); }
+            if (a.velX != null) { s.putFloats(a.velX, a.count); s.putFloats(a.velY, a.count); }
+            if (a.hp != null) { s.putInts(a.hp, a.count); s.putInts(a.maxHp, a.count); }
+            if (a.colliderSize != null) {
+                s.putInts(a.colliderSize, a.count);
+                for (int row = 0; row < a.count; row++) s.putBoolean(a.hitWall[row]);
+            }
+            if (a.aiType != null) { s.putInts(a.aiType, a.count); s.putInts(a.aiCooldown, a.count); }
+            if (a.renderKind != null) s.putInts(a.renderKind, a.count);
+            if (a.lifetime != null) s.putInts(a.lifetime, a.count);
+            if (a.damage != null) s.putInts(a.damage, a.count);
+        }
+    }
+
+    /**
+     * Puts the world back the way a snapshot recorded it. Must run on the game thread, after
+     * the old entities were removed and the timer wheel was cleared (see GamePanel.loadGame).
+     *
+     * @param s The snapshot (as returned by {@link #read} or filled by {@link #capture}).
+     */
+    public void restore(Snapshot s) {
+        s.rewind();
+        TimerWheel timers = gp.timers;
+        timers.restart(s.getLong());
+        long randState = s.getLong(); // Set last: rebuilding the entities below draws from it
+
+        FloorIndex floor = s.floor != null ? s.floor : new FloorIndex(s.map, s.regions, s.regions.largest());
+        gp.tileM.install(s.map, s.regions, floor);
+
+        gp.stage = s.getInt();
+        gp.score = s.getInt();
+        gp.totalScore = s.getInt();
+        gp.difficultyLevel = s.getInt();
+        gp.nextBossScore = s.getInt();
+        gp.stageMessageTimer = s.getInt();
+        gp.bossActive = s.getBoolean();
+        gp.bossSpawnPending = s.getBoolean();
+        schedule(gp.bossSpawnTimer, s.getInt());
+        gp.stageTransitionPending = s.getBoolean();
+        schedule(gp.stageTransitionTimer, s.getInt());
+        gp.playerName = s.getString();
+        gp.endless = false;
+        gp.horde = null;
+        if (s.getBoolean()) {
+            gp.horde = new HordeMode();
+            gp.horde.spawnerCount = s.getInt();
+            gp.horde.spawnInterval = s.getInt();
+            gp.horde.spawnsPerBurst = s.getInt();
+            gp.horde.maxEnemies = s.getInt();
+        }
+
+        Player p = gp.player;
+        p.setDefaultValues();
+        p.worldX = p.x = s.getInt();
+        p.worldY = p.y = s.getInt();
+        p.direction = DIRECTIONS[s.getInt()];
+        p.speed = s.getInt();
+        p.alive = s.getBoolean();
+        p.hp = s.getInt();
+        p.maxHp = s.getInt();
+        p.armor = s.getInt();
+        p.damage = s.getInt();
+        p.baseAttackRange = s.getInt();
+        p.attackRange = s.getInt();
+        schedule(p.rangePotionTimer, s.getInt());
+        p.attacking = s.getBoolean();
+        p.attackCounter = s.getInt();
+        p.beingPushed = s.getBoolean();
+        p.pushDirection = s.getDouble();
+        schedule(p.pushTimer, s.getInt());
+        p.dashing = s.getBoolean();
+        p.dashCounter = s.getInt();
+        schedule(p.dashCooldown, s.getInt());
+        p.invincible = s.getBoolean();
+        schedule(p.invincibleTimer, s.getInt());
+
+        int enemyCount = s.getInt();
+        for (int i = 0; i < enemyCount; i++) {
+            int x = s.getInt();
+            int y = s.getInt();
+            boolean ranged = s.getBoolean();
+            boolean isBoss = s.getBoolean();
+            Enemy e = new Enemy(gp, x, y, ranged, 0, isBoss);
+            e.cancelTimers(); // The constructor starts the boss idle phase
+            e.alive = s.getBoolean();
+            e.speed = s.getInt();
+            e.hp = s.getInt();
+            e.maxHp = s.getInt();
+            e.damage = s.getInt();
+            schedule(e.attackCooldown, s.getInt());
+            e.attacking = s.getBoolean();
+            schedule(e.attackVisualTimer, s.getInt());
+            e.shotMode = s.getInt();
+            e.shotTimer = s.getInt();
+            e.beingPushed = s.getBoolean();
+            e.pushDirection = s.getDouble();
+            schedule(e.pushTimer, s.getInt());
+            e.bossAction = s.getInt();
+            e.bossActionStart = s.getLong();
+            schedule(e.bossIdleTimer, s.getInt());
+            e.bossInAir = s.getBoolean();
+            e.bossTargetX = s.getInt();
+            e.bossTargetY = s.getInt();
+            gp.enemies.add(e);
+        }
+
+        int spawnerCount = s.getInt();
+        for (int i = 0; i < spawnerCount; i++) {
+            EnemySpawner sp = new EnemySpawner(gp, s.getInt(), s.getInt());
+            sp.cancelTimers();
+            sp.active = s.getBoolean();
+            sp.spawnInterval = s.getInt();
+            schedule(sp.spawnTimer, s.getInt());
+            gp.spawners.add(sp);
+        }
+
+        int lootCount = s.getInt();
+        for (int i = 0; i < lootCount; i++) {
+            LootBox box = new LootBox(s.getInt(), s.getInt(), gp.rand);
+            box.opened = s.getBoolean();
+            box.lootItem = s.getString();
+            gp.lootBoxes.add(box);
+        }
+
+        int archetypeCount = s.getInt();
+        for (int i = 0; i < archetypeCount; i++) {
+            int mask = s.getInt();
+            int count = s.getInt();
+            for (int row = 0; row < count; row++) {
+                gp.world.create(mask);
+            }
+            // Rows 0..count-1 of the cleared archetype; read its arrays after they have grown
+            Archetype a = gp.world.archetype(mask);
+            if (a.posX != null) { s.getFloats(a.posX, count); s.getFloats(a.posY, count); }
+            if (a.velX != null) { s.getFloats(a.velX, count); s.getFloats(a.velY, count); }
+            if (a.hp != null) { s.getInts(a.hp, count); s.getInts(a.maxHp, count); }
+            if (a.colliderSize != null) {
+                s.getInts(a.colliderSize, count);
+                for (int row = 0; row < count; row++) a.hitWall[row] = s.getBoolean();
+            }
+            if (a.aiType != null) { s.getInts(a.aiType, count); s.getInts(a.aiCooldown, count); }
+            if (a.renderKind != null) s.getInts(a.renderKind, count);
+            if (a.lifetime != null) s.getInts(a.lifetime, count);
+            if (a.damage != null) s.getInts(a.damage, count);
+        }
+
+        gp.rand.setSeed(randState);
+    }
+
+    private void schedule(TimerWheel.Timer timer, int remaining) {
+        if (remaining > 0) {
+            gp.timers.schedule(timer, remaining);
+        }
+    }
+
+    private static int direction(String name) {
+        for (int i = 0; i < DIRECTIONS.length; i++) {
+            if (DIRECTIONS[i].equals(name)) return i;
+        }
+        return 1; // down
+    }
+
+    /**
+     * Encodes the captured snapshot to a temporary file, syncs it and renames it over the
+     * old save. Runs on the I/O thread.
+     */
+    private void writeSnapshot() {
+        Path temp = Paths.get(path + ".tmp");
+        try {
+            try (FileOutputStream file = new FileOutputStream(temp.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+                write(snapshot, out);
+                out.flush();
+                file.getFD().sync();
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOG_SAVE_FAILED.log(e.getMessage());
+        } finally {
+            writing.set(false);
+        }
+    }
+
+    private static void write(Snapshot s, DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(s.map.cols);
+        out.writeInt(s.map.rows);
+        out.writeInt(s.intCount);
+        out.writeInt(s.longCount);
+        out.writeInt(s.floatCount);
+        out.writeInt(s.stringCount);
+        for (int i = 0; i < s.intCount; i++) out.writeInt(s.ints[i]);
+        for (int i = 0; i < s.longCount; i++) out.writeLong(s.longs[i]);
+        for (int i = 0; i < s.floatCount; i++) out.writeFloat(s.floats[i]);
+        for (int i = 0; i < s.stringCount; i++) out.writeUTF(s.strings[i]);
+        s.map.writePacked(out, TileMap.bitsPerTile());
+    }
+
+    /**
+     * Reads a save file.
+     *
+     * @param path The file.
+     * @return The snapshot, ready for {@link #restore}.
+     * @throws IOException If the file cannot be read or is not a valid save.
+     */
+    public static Snapshot read(Path path) throws IOException {
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a save file");
+            }
+            int version = in.readShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported save file version " + version);
+            }
+            int cols = in.readInt();
+            int rows = in.readInt();
+            if (cols <= 0 || rows <= 0 || (long)cols * rows > Integer.MAX_VALUE) {
+                throw new IOException("Bad map size: " + cols + "x" + rows);
+            }
+            Snapshot s = new Snapshot();
+            s.intCount = readCount(in);
+            s.longCount = readCount(in);
+            s.floatCount = readCount(in);
+            s.stringCount = readCount(in);
+            s.ints = new int[s.intCount];
+            s.longs = new long[s.longCount];
+            s.floats = new float[s.floatCount];
+            s.strings = new String[s.stringCount];
+            for (int i = 0; i < s.intCount; i++) s.ints[i] = in.readInt();
+            for (int i = 0; i < s.longCount; i++) s.longs[i] = in.readLong();
+            for (int i = 0; i < s.floatCount; i++) s.floats[i] = in.readFloat();
+            for (int i = 0; i < s.stringCount; i++) s.strings[i] = in.readUTF();
+
+            long[] words = new long[TileMap.packedWords(cols * rows, TileMap.bitsPerTile())];
+            for (int i = 0; i < words.length; i++) words[i] = in.readLong();
+            s.map = new TileMap(cols, rows);
+            s.map.readPacked(LongBuffer.wrap(words), TileMap.bitsPerTile());
+            s.regions = RegionMap.label(s.map);
+            return s;
+        }
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > MAX_RECORDS) {
+            throw new IOException("Bad record count: " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Waits (briefly) for a save in progress to reach the disk and stops the I/O thread.
+     */
+    public void close() {
+        io.shutdown();
+        try {
+            if (!io.awaitTermination(2, TimeUnit.SECONDS)) {
+                LOG_CLOSE_TIMEOUT.log();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A captured world: typed record streams that are written in capture order and read back
+     * in the same order, plus the (shared, never modified) map.
+     */
+    public static class Snapshot {
+        int[] ints = new int[1024];
+        long[] longs = new long[256];
+        float[] floats = new float[1024];
+        String[] strings = new String[64];
+        int intCount, longCount, floatCount, stringCount;
+        private int intPos, longPos, floatPos, stringPos;
+
+        /** The map and its regions (shared with the game when captured, read from the file when loaded). */
+        public TileMap map;
+        public RegionMap regions;
+        /** The floor index of the map (null when loaded, it is rebuilt on restore). */
+        public FloorIndex floor;
+
+        void clear() {
+            intCount = longCount = floatCount = 0;
+            Arrays.fill(strings, 0, stringCount, null);
+            stringCount = 0;
+            map = null;
+            regions = null;
+            floor = null;
+        }
+
+        void rewind() {
+            intPos = longPos = floatPos = stringPos = 0;
+        }
+
+        void putInt(int value) {
+            if (intCount == ints.length) ints = Arrays.copyOf(ints, intCount * 2);
+            ints[intCount++] = value;
+        }
+
+        void putBoolean(boolean value) {
+            putInt(value ? 1 : 0);
+        }
+
+        void putLong(long value) {
+            if (longCount == longs.length) longs = Arrays.copyOf(longs, longCount * 2);
+            longs[longCount++] = value;
+        }
+
+        void putDouble(double value) {
+            putLong(Double.doubleToRawLongBits(value));
+        }
+
+        void putString(String value) {
+            if (stringCount == strings.length) strings = Arrays.copyOf(strings, stringCount * 2);
+            strings[stringCount++] = value;
+        }
+
+        void putInts(int[] values, int count) {
+            if (intCount + count > ints.length) ints = Arrays.copyOf(ints, Math.max(ints.length * 2, intCount + count));
+            System.arraycopy(values, 0, ints, intCount, count);
+            intCount += count;
+        }
+
+        void putFloats(float[] values, int count) {
+            if (floatCount + count > floats.length) floats = Arrays.copyOf(floats, Math.max(floats.length * 2, floatCount + count));
+            System.arraycopy(values, 0, floats, floatCount, count);
+            floatCount += count;
+        }
+
+        int getInt() {
+            return ints[intPos++];
+        }
+
+        boolean getBoolean() {
+            return getInt() != 0;
+        }
+
+        long getLong() {
+            return longs[longPos++];
+        }
+
+        double getDouble() {
+            return Double.longBitsToDouble(getLong());
+        }
+
+        String getString() {
+            return strings[stringPos++];
+        }
+
+        void getInts(int[] into, int count) {
+            System.arraycopy(ints, intPos, into, 0, count);
+            intPos += count;
+        }
+
+        void getFloats(float[] into, int count) {
+            System.arraycopy(floats, floatPos, into, 0, count);
+            floatPos += count;
+        }
+    }
+}
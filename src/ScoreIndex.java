@@ -0,0 +1,260 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The ScoreIndex class keeps leaderboard entries in rank order as an indexable skip list:
+ * every link also stores how many entries it skips (its span), so inserting, removing,
+ * finding the rank of an entry and finding the entry at a rank are all O(log n).
+ *
+ * The entries are the skip list nodes themselves (see Leaderboard.ScoreEntry). Level 0 is a
+ * plain field and only the quarter of entries that are promoted carry arrays for the higher
+ * levels, which keeps millions of entries cheap. Ranks are 1-based, best score first.
+ */
+public class ScoreIndex {
+
+    private static final int MAX_LEVEL = 32;
+
+    // Sentinel before the first entry; it is never compared
+    private final Leaderboard.ScoreEntry head = new Leaderboard.ScoreEntry("", Integer.MAX_VALUE);
+    private int level = 1;
+    private int size = 0;
+    private long seed = 0x9E3779B97F4A7C15L;
+
+    // Search paths, reused by every insert and remove
+    private final Leaderboard.ScoreEntry[] update = new Leaderboard.ScoreEntry[MAX_LEVEL];
+    private final int[] rank = new int[MAX_LEVEL];
+
+    /**
+     * Constructor for ScoreIndex. Starts empty.
+     */
+    public ScoreIndex() {
+        head.up = new Leaderboard.ScoreEntry[MAX_LEVEL - 1];
+        head.upSpan = new int[MAX_LEVEL - 1];
+    }
+
+    /**
+     * Returns the number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds an entry. Its score must not change while it is in the index.
+     *
+     * @param entry The entry (not already in the index).
+     */
+    public void insert(Leaderboard.ScoreEntry entry) {
+        Leaderboard.ScoreEntry cur = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            Leaderboard.ScoreEntry n;
+            while ((n = next(cur, i)) != null && n.compareTo(entry) < 0) {
+                rank[i] += span(cur, i);
+                cur = n;
+            }
+            update[i] = cur;
+        }
+
+        int entryLevel = randomLevel();
+        if (entryLevel > level) {
+            for (int i = level; i < entryLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                setSpan(head, i, size);
+            }
+            level = entryLevel;
+        }
+        link(entry, entryLevel);
+        for (int i = 0; i < entryLevel; i++) {
+            setNext(entry, i, next(update[i], i));
+            setNext(update[i], i, entry);
+            setSpan(entry, i, span(update[i], i) - (rank[0] - rank[i]));
+            setSpan(update[i], i, rank[0] - rank[i] + 1);
+        }
+        for (int i = entryLevel; i < level; i++) {
+            setSpan(update[i], i, span(update[i], i) + 1);
+        }
+        size++;
+    }
+
+    /**
+     * Removes an entry.
+     *
+     * @param entry The entry (must be in the index, with the score it was inserted with).
+     */
+    public void remove(Leaderboard.ScoreEntry entry) {
+        Leaderboard.ScoreEntry cur = head;
+        for (int i = level - 1; i >= 0; i--) {
+            Leaderboard.ScoreEntry n;
+            while ((n = next(cur, i)) != null && n.compareTo(entry) < 0) {
+                cur = n;
+            }
+            update[i] = cur;
+        }
+        if (next(update[0], 0) != entry) {
+            throw new IllegalStateException("Entry is not in the index: " + entry.name);
+        }
+
+        for (int i = 0; i < level; i++) {
+            if (next(update[i], i) == entry) {
+                setSpan(update[i], i, span(update[i], i) + span(entry, i) - 1);
+                setNext(update[i], i, next(entry, i));
+            } else {
+                setSpan(update[i], i, span(update[i], i) - 1);
+            }
+        }
+        while (level > 1 && next(head, level - 1) == null) {
+            level--;
+        }
+        link(entry, 0);
+        size--;
+    }
+
+    /**
+     * Returns the rank of an entry.
+     *
+     * @param entry The entry.
+     * @return The rank (1 for the best score), or 0 if the entry is not in the index.
+     */
+    public int rankOf(Leaderboard.ScoreEntry entry) {
+        int traversed = 0;
+        Leaderboard.ScoreEntry cur = head;
+        for (int i = level - 1; i >= 0; i--) {
+            Leaderboard.ScoreEntry n;
+            while ((n = next(cur, i)) != null && n.compareTo(entry) <= 0) {
+                traversed += span(cur, i);
+                cur = n;
+            }
+            if (cur == entry) {
+                return traversed;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the entry at a rank.
+     *
+     * @param target The rank (1 for the best score).
+     * @return The entry, or null if the rank is out of range.
+     */
+    public Leaderboard.ScoreEntry get(int target) {
+        if (target < 1 || target > size) {
+            return null;
+        }
+        int traversed = 0;
+        Leaderboard.ScoreEntry cur = head;
+        for (int i = level - 1; i >= 0; i--) {
+            Leaderboard.ScoreEntry n;
+            while ((n = next(cur, i)) != null && traversed + span(cur, i) <= target) {
+                traversed += span(cur, i);
+                cur = n;
+            }
+            if (traversed == target) {
+                return cur;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Copies a run of consecutive ranks: O(log n) to find the first, then one step per entry.
+     *
+     * @param fromRank The first rank (1 for the best score).
+     * @param count The maximum number of entries.
+     * @param into The list to add the entries to.
+     */
+    public void range(int fromRank, int count, List<Leaderboard.ScoreEntry> into) {
+        Leaderboard.ScoreEntry cur = get(fromRank);
+        for (int i = 0; i < count && cur != null; i++) {
+            into.add(cur);
+            cur = cur.next;
+        }
+    }
+
+    /**
+     * Returns the best entry, or null if the index is empty.
+     */
+    public Leaderboard.ScoreEntry first() {
+        return head.next;
+    }
+
+    /**
+     * Replaces the contents with entries that are already in rank order, in O(n)
+     * (much faster than inserting them one by one when loading millions).
+     *
+     * @param sorted The entries, best first, with no duplicates.
+     */
+    public void build(ArrayList<Leaderboard.ScoreEntry> sorted) {
+        Leaderboard.ScoreEntry[] last = new Leaderboard.ScoreEntry[MAX_LEVEL];
+        int[] lastRank = new int[MAX_LEVEL];
+        Arrays.fill(last, head);
+        Arrays.fill(head.up, null);
+        head.next = null;
+        level = 1;
+
+        int r = 0;
+        for (Leaderboard.ScoreEntry entry : sorted) {
+            r++;
+            int entryLevel = randomLevel();
+            level = Math.max(level, entryLevel);
+            link(entry, entryLevel);
+            for (int i = 0; i < entryLevel; i++) {
+                setNext(last[i], i, entry);
+                setSpan(last[i], i, r - lastRank[i]);
+                last[i] = entry;
+                lastRank[i] = r;
+            }
+        }
+        // The last entry of each level spans to the end of the list
+        for (int i = 0; i < MAX_LEVEL; i++) {
+            setSpan(last[i], i, r - lastRank[i]);
+        }
+        size = r;
+    }
+
+    private static Leaderboard.ScoreEntry next(Leaderboard.ScoreEntry entry, int i) {
+        return i == 0 ? entry.next : entry.up[i - 1];
+    }
+
+    private static void setNext(Leaderboard.ScoreEntry entry, int i, Leaderboard.ScoreEntry next) {
+        if (i == 0) {
+            entry.next = next;
+        } else {
+            entry.up[i - 1] = next;
+        }
+    }
+
+    // Level 0 links always skip exactly one entry, so their span is not stored
+    private static int span(Leaderboard.ScoreEntry entry, int i) {
+        return i == 0 ? 1 : entry.upSpan[i - 1];
+    }
+
+    private static void setSpan(Leaderboard.ScoreEntry entry, int i, int span) {
+        if (i > 0) {
+            entry.upSpan[i - 1] = span;
+        }
+    }
+
+    /**
+     * Gives an entry the link arrays for a level (dropping all links when the level is 0).
+     */
+    private static void link(Leaderboard.ScoreEntry entry, int entryLevel) {
+        entry.next = null;
+        entry.up = entryLevel > 1 ? new Leaderboard.ScoreEntry[entryLevel - 1] : null;
+        entry.upSpan = entryLevel > 1 ? new int[entryLevel - 1] : null;
+    }
+
+    /**
+     * Returns 1 with probability 3/4, 2 with 3/16 and so on (xorshift, no allocation).
+     */
+    private int randomLevel() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        int entryLevel = 1 + Long.numberOfTrailingZeros(seed | (1L << 62)) / 2;
+        return Math.min(entryLevel, MAX_LEVEL);
+    }
+}
@@ -0,0 +1,552 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * The SharedLeaderboard class stores best scores in a memory-mapped file that any number of
+ * game processes on the same host can update at the same time without clobbering each other.
+ *
+ * The file is a fixed-layout hash table of 64-byte slots. A new player claims an empty slot
+ * with a compare-and-set on its key, and a score only ever replaces a lower one through a
+ * compare-and-set loop, so submitting is lock-free and two processes can never undo each
+ * other's scores. The only lock (a FileLock on a separate ".lock" file) is taken to create
+ * the file and to compact it into a bigger table when it fills up.
+ *
+ * Compaction first marks the old file as moved, then copies every slot into a new file and
+ * renames it over the old one. A process that finds the moved mark after writing simply
+ * writes again into the new file; since a score only replaces a lower one, writing twice is
+ * harmless and nothing written during a compaction is lost.
+ *
+ * Layout (big-endian):
+ * <pre>
+ * Header (64 bytes):
+ *  0  int   magic "DOJL"
+ *  4  int   version
+ *  8  int   capacity (slots, a power of two)
+ * 12  int   state (0 open, 1 moved)
+ * 16  long  claimed slots
+ * 24  long  update counter (changes whenever any score changes)
+ * Slot (64 bytes):
+ *  0  long  key: name hash &lt;&lt; 32 | state (0 empty, 1 being written, 2 ready)
+ *  8  int   score
+ * 12  short name length (UTF-8 bytes)
+ * 14  ...   name (up to MAX_NAME_BYTES)
+ * </pre>
+ */
+public class SharedLeaderboard {
+
+    private static final Log.Site LOG_BAD_LINE = Log.site(Log.WARN, "Skipping bad leaderboard line: {}");
+
+    public static final int MAGIC = 0x444F4A4C; // "DOJL"
+    public static final int VERSION = 1;
+    public static final int MAX_NAME_BYTES = 50;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 64;
+    private static final int MIN_CAPACITY = 1 << 10;
+    private static final int MAX_CAPACITY = 1 << 24; // 1 GB, the mapping must stay below 2 GB
+
+    private static final int CAPACITY = 8, STATE = 12, CLAIMED = 16, UPDATES = 24;
+    private static final int OPEN = 0, MOVED = 1;
+    private static final long BUSY = 1, READY = 2;
+
+    // How long to wait for a slot another process is writing (it may have crashed)
+    private static final long BUSY_TIMEOUT_NANOS = 50_000_000L;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Path path;
+    private final Path lockPath;
+    private volatile MappedByteBuffer data;
+    private int capacity;
+    /** Incremented every time the file is remapped (slot numbers of older mappings are invalid). */
+    private int mapping = 0;
+
+    private SharedLeaderboard(Path path, int initialCapacity) throws IOException {
+        this.path = path;
+        this.lockPath = Paths.get(path + ".lock");
+        try (FileChannel lockChannel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = lockChannel.lock();
+            try {
+                if (!Files.exists(path) || Files.size(path) == 0) {
+                    create(path, initialCapacity);
+                }
+                map();
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Opens a shared leaderboard file, creating it if needed.
+     *
+     * @param path The file.
+     * @param initialCapacity The number of slots if the file is created (rounded up to a power of two).
+     * @return The opened leaderboard.
+     * @throws IOException If the file cannot be opened or is not a leaderboard file.
+     */
+    public static SharedLeaderboard open(Path path, int initialCapacity) throws IOException {
+        return new SharedLeaderboard(path, initialCapacity);
+    }
+
+    /**
+     * Submits a score. The player's stored score only changes if the new one is higher.
+     * Lock-free; only blocks while another process compacts the file.
+     *
+     * @param name The player's name (at most MAX_NAME_BYTES in UTF-8).
+     * @param score The score.
+     * @return True if the stored score changed.
+     * @throws IOException If the file has to be compacted or remapped and that fails, or if a
+     *         new player does not fit because the table is full at its maximum capacity.
+     */
+    public boolean submit(String name, int score) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Name too long for the shared leaderboard: " + name);
+        }
+        int hash = hash(nameBytes);
+        boolean changed = false;
+        while (true) {
+            MappedByteBuffer buf = data;
+            int result = submit(buf, capacity, hash, nameBytes, score);
+            if (result == FULL) {
+                if (capacity == MAX_CAPACITY) {
+                    throw new IOException("Leaderboard is full: " + path);
+                }
+                compact(capacity * 2);
+                continue;
+            }
+            changed |= result != UNCHANGED;
+            if ((int)INTS.getVolatile(buf, STATE) == OPEN) {
+                if (result == FULL_AFTER_INSERT && capacity < MAX_CAPACITY) {
+                    compact(capacity * 2);
+                }
+                return changed;
+            }
+            // The file was compacted meanwhile: the write may have missed the copy, so repeat it
+            remap();
+        }
+    }
+
+    // Results of a slot write; FULL_AFTER_INSERT stored the score but left the table over 3/4 full
+    private static final int UNCHANGED = 0, CHANGED = 1, FULL = 2, FULL_AFTER_INSERT = 3;
+
+    private static int submit(MappedByteBuffer buf, int capacity, int hash, byte[] nameBytes, int score) {
+        int mask = capacity - 1;
+        long busyKey = ((long)hash << 32) | BUSY;
+        for (int probe = 0; probe < capacity; probe++) {
+            int offset = slotOffset((hash + probe) & mask);
+            long key = (long)LONGS.getVolatile(buf, offset);
+            if (key == 0) {
+                if (!LONGS.compareAndSet(buf, offset, 0L, busyKey)) {
+                    probe--; // Someone else claimed it first: look at the slot again
+                    continue;
+                }
+                long claimed = (long)LONGS.getAndAdd(buf, CLAIMED, 1L) + 1;
+                INTS.setVolatile(buf, offset + 8, score);
+                buf.putShort(offset + 12, (short)nameBytes.length);
+                buf.put(offset + 14, nameBytes);
+                LONGS.setVolatile(buf, offset, ((long)hash << 32) | READY); // Publishes the name
+                LONGS.getAndAdd(buf, UPDATES, 1L);
+                return claimed * 4 > (long)capacity * 3 ? FULL_AFTER_INSERT : CHANGED;
+            }
+            if ((int)(key >>> 32) != hash || !awaitReady(buf, offset) || !nameEquals(buf, offset, nameBytes)) {
+                continue;
+            }
+            // Raise the score; a concurrent higher score wins
+            int current;
+            do {
+                current = (int)INTS.getVolatile(buf, offset + 8);
+                if (score <= current) {
+                    return UNCHANGED;
+                }
+            } while (!INTS.compareAndSet(buf, offset + 8, current, score));
+            LONGS.getAndAdd(buf, UPDATES, 1L);
+            return CHANGED;
+        }
+        return FULL;
+    }
+
+    /**
+     * Returns the stored score of a player.
+     *
+     * @param name The player's name.
+     * @return The score, or Integer.MIN_VALUE if the player has none.
+     * @throws IOException If the file has to be remapped and that fails.
+     */
+    public int scoreOf(String name) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(nameBytes);
+        syncMapping();
+        MappedByteBuffer buf = data;
+        int mask = capacity - 1;
+        for (int probe = 0; probe < capacity; probe++) {
+            int offset = slotOffset((hash + probe) & mask);
+            long key = (long)LONGS.getVolatile(buf, offset);
+            if (key == 0) {
+                break;
+            }
+            if ((int)(key >>> 32) == hash && awaitReady(buf, offset) && nameEquals(buf, offset, nameBytes)) {
+                return (int)INTS.getVolatile(buf, offset + 8);
+            }
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    /**
+     * Returns a counter that changes whenever any process changes a score, so readers can
+     * skip rescanning an unchanged file. Remaps first if the file was compacted.
+     *
+     * @throws IOException If the file has to be remapped and that fails.
+     */
+    public long updates() throws IOException {
+        syncMapping();
+        return (long)LONGS.getVolatile(data, UPDATES);
+    }
+
+    /**
+     * Returns the number of slots of the current mapping.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns a number that changes whenever the file is remapped; slot numbers from an older
+     * mapping no longer refer to the same players.
+     */
+    public int mapping() {
+        return mapping;
+    }
+
+    /**
+     * Returns the score in a slot.
+     *
+     * @param slot The slot (0 to capacity - 1).
+     * @return The score, or Integer.MIN_VALUE if the slot holds no (finished) player.
+     */
+    public int scoreAt(int slot) {
+        MappedByteBuffer buf = data;
+        int offset = slotOffset(slot);
+        if (((long)LONGS.getVolatile(buf, offset) & 3) != READY) {
+            return Integer.MIN_VALUE;
+        }
+        return (int)INTS.getVolatile(buf, offset + 8);
+    }
+
+    /**
+     * Returns the player name in a slot (only meaningful if {@link #scoreAt} found a player).
+     *
+     * @param slot The slot (0 to capacity - 1).
+     * @return The name.
+     */
+    public String nameAt(int slot) {
+        MappedByteBuffer buf = data;
+        int offset = slotOffset(slot);
+        byte[] name = new byte[buf.getShort(offset + 12)];
+        buf.get(offset + 14, name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Asks the OS to write the mapped pages to disk (they are already visible to every process).
+     */
+    public void force() {
+        data.force();
+    }
+
+    /**
+     * Imports a text leaderboard ("name:score" lines). Scores merge like submissions.
+     *
+     * @param text The text file.
+     * @return The number of lines imported.
+     * @throws IOException If a file cannot be read or written.
+     */
+    public int importText(Path text) throws IOException {
+        int count = 0;
+        for (String line : Files.readAllLines(text, StandardCharsets.UTF_8)) {
+            int colon = line.lastIndexOf(':');
+            if (colon <= 0) continue;
+            try {
+                submit(line.substring(0, colon), Integer.parseInt(line.substring(colon + 1).trim()));
+                count++;
+            } catch (NumberFormatException e) {
+                LOG_BAD_LINE.log(line);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Exports every score as a text leaderboard, best first (the format Leaderboard loads).
+     * The file is written to a temporary file first and renamed into place.
+     *
+     * @param text The text file.
+     * @return The number of scores exported.
+     * @throws IOException If the file cannot be written.
+     */
+    public int exportText(Path text) throws IOException {
+        syncMapping();
+        ArrayList<Leaderboard.ScoreEntry> entries = new ArrayList<>();
+        for (int slot = 0; slot < capacity; slot++) {
+            int score = scoreAt(slot);
+            if (score != Integer.MIN_VALUE) {
+                entries.add(new Leaderboard.ScoreEntry(nameAt(slot), score));
+            }
+        }
+        Collections.sort(entries);
+        Path temp = Paths.get(text + ".tmp");
+        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(temp), StandardCharsets.UTF_8))) {
+            for (Leaderboard.ScoreEntry entry : entries) {
+                bw.write(entry.name + ":" + entry.score);
+                bw.newLine();
+            }
+        }
+        Files.move(temp, text, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return entries.size();
+    }
+
+    /**
+     * Grows the table: marks the file as moved, copies every player into a new file with the
+     * given capacity and renames it over the old one, all under the compaction lock.
+     *
+     * @param newCapacity The number of slots of the new file.
+     * @throws IOException If the new file cannot be written.
+     */
+    public void compact(int newCapacity) throws IOException {
+        try (FileChannel lockChannel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = lockChannel.lock();
+            try {
+                // Someone else may have compacted while we waited for the lock
+                map();
+                MappedByteBuffer old = data;
+                boolean moved = (int)INTS.getVolatile(old, STATE) != OPEN; // Its compactor died
+                if (!moved && (long)LONGS.getVolatile(old, CLAIMED) * 4 <= (long)capacity * 3) {
+                    return;
+                }
+                newCapacity = Math.min(MAX_CAPACITY, Math.max(newCapacity, capacity));
+                // From here on, every writer repeats its write in the new file
+                INTS.setVolatile(old, STATE, MOVED);
+
+                Path temp = Paths.get(path + ".tmp");
+                create(temp, newCapacity);
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    MappedByteBuffer copy = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                    for (int slot = 0; slot < capacity; slot++) {
+                        int offset = slotOffset(slot);
+                        long key = (long)LONGS.getVolatile(old, offset);
+                        if (key == 0 || !awaitReady(old, offset)) {
+                            continue; // Empty, or its writer died mid-insert
+                        }
+                        byte[] name = new byte[old.getShort(offset + 12)];
+                        old.get(offset + 14, name);
+                        if (submit(copy, newCapacity, (int)(key >>> 32), name, (int)INTS.getVolatile(old, offset + 8)) == FULL) {
+                            throw new IOException("Leaderboard is full");
+                        }
+                    }
+                    LONGS.setVolatile(copy, UPDATES, (long)LONGS.getVolatile(old, UPDATES) + 1);
+                    copy.force();
+                }
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                map();
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Closes the leaderboard, flushing the mapped pages.
+     */
+    public void close() {
+        force();
+    }
+
+    /**
+     * Remaps if another process compacted the file.
+     */
+    private void syncMapping() throws IOException {
+        if ((int)INTS.getVolatile(data, STATE) != OPEN) {
+            remap();
+        }
+    }
+
+    /**
+     * Waits for a running compaction (by taking the lock) and maps the file again. If the file
+     * is still marked as moved, its compactor died, so the compaction is finished here.
+     */
+    private void remap() throws IOException {
+        try (FileChannel lockChannel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = lockChannel.lock();
+            try {
+                map();
+            } finally {
+                lock.release();
+            }
+        }
+        if ((int)INTS.getVolatile(data, STATE) != OPEN) {
+            compact(capacity);
+        }
+    }
+
+    private void map() throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if (buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+                throw new IOException("Not a shared leaderboard file: " + path);
+            }
+            int slots = buf.getInt(CAPACITY);
+            if (Integer.bitCount(slots) != 1 || buf.capacity() != HEADER_SIZE + (long)slots * SLOT_SIZE) {
+                throw new IOException("Corrupt shared leaderboard file: " + path);
+            }
+            capacity = slots;
+            data = buf;
+            mapping++;
+        }
+    }
+
+    private static void create(Path file, int slots) throws IOException {
+        slots = Integer.highestOneBit(Math.max(MIN_CAPACITY, Math.min(MAX_CAPACITY, slots)) * 2 - 1);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long)slots * SLOT_SIZE);
+            buf.putInt(0, MAGIC);
+            buf.putInt(4, VERSION);
+            buf.putInt(CAPACITY, slots);
+            buf.putInt(STATE, OPEN);
+            buf.force();
+        }
+    }
+
+    /**
+     * Waits until a claimed slot is fully written.
+     *
+     * @return True once the slot is ready, false if its writer seems to have died.
+     */
+    private static boolean awaitReady(MappedByteBuffer buf, int offset) {
+        long deadline = 0;
+        while (((long)LONGS.getVolatile(buf, offset) & 3) != READY) {
+            if (deadline == 0) {
+                deadline = System.nanoTime() + BUSY_TIMEOUT_NANOS;
+            } else if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.onSpinWait();
+        }
+        return true;
+    }
+
+    private static boolean nameEquals(MappedByteBuffer buf, int offset, byte[] name) {
+        if (buf.getShort(offset + 12) != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (buf.get(offset + 14 + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Same in every process (String.hashCode would be too, but this avoids decoding the name)
+    private static int hash(byte[] name) {
+        int hash = 0;
+        for (byte b : name) {
+            hash = hash * 31 + b;
+        }
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int slotOffset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    /**
+     * Command-line tool for the shared leaderboard file.
+     * <pre>
+     * java SharedLeaderboard import &lt;file&gt; &lt;text&gt;
+     * java SharedLeaderboard export &lt;file&gt; &lt;text&gt;
+     * java SharedLeaderboard info &lt;file&gt;
+     * java SharedLeaderboard stress &lt;file&gt; &lt;players&gt; &lt;submissions&gt;
+     * </pre>
+     * Running several stress processes at once shows that concurrent writers keep every best score.
+     *
+     * @param args The command-line arguments.
+     * @throws Exception If a file cannot be read or written.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: java SharedLeaderboard import|export <file> <text>");
+            System.out.println("       java SharedLeaderboard info <file>");
+            System.out.println("       java SharedLeaderboard stress <file> <players> <submissions>");
+            return;
+        }
+        SharedLeaderboard shared = open(Paths.get(args[1]), MIN_CAPACITY);
+        switch (args[0]) {
+            case "import":
+                System.out.println("Imported " + shared.importText(Paths.get(args[2])) + " scores");
+                break;
+            case "export":
+                System.out.println("Exported " + shared.exportText(Paths.get(args[2])) + " scores");
+                break;
+            case "info":
+                int players = 0;
+                long best = Long.MIN_VALUE;
+                for (int slot = 0; slot < shared.capacity(); slot++) {
+                    int score = shared.scoreAt(slot);
+                    if (score != Integer.MIN_VALUE) {
+                        players++;
+                        best = Math.max(best, score);
+                    }
+                }
+                System.out.printf("%s: %d players in %d slots, best %d, %d updates%n",
+                                  args[1], players, shared.capacity(), best, shared.updates());
+                break;
+            case "stress":
+                int count = Integer.parseInt(args[2]);
+                int submissions = Integer.parseInt(args[3]);
+                Random rand = new Random();
+                long start = System.nanoTime();
+                for (int i = 0; i < submissions; i++) {
+                    // Every player's best is exactly its number, whoever submits it last
+                    int player = rand.nextInt(count);
+                    shared.submit("p" + player, rand.nextInt(player + 1));
+                    shared.submit("p" + player, player);
+                }
+                long end = System.nanoTime();
+                System.out.printf("%d submissions in %.1f ms (%.2f us each)%n",
+                                  submissions * 2, (end - start) / 1e6, (end - start) / 1e3 / (submissions * 2));
+                int wrong = 0;
+                for (int player = 0; player < count; player++) {
+                    int score = shared.scoreOf("p" + player);
+                    if (score != Integer.MIN_VALUE && score != player) {
+                        wrong++;
+                    }
+                }
+                System.out.println(wrong == 0 ? "All scores consistent" : wrong + " players have a wrong score");
+                break;
+            default:
+                System.out.println("Unknown command: " + args[0]);
+        }
+        shared.close();
+    }
+}
@@ -0,0 +1,47 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.function.Consumer;
+
+/**
+ * The Sprite class is a shape painted once into an image and copied to the screen every
+ * frame after that. Java2D allocates on every fill of a translucent shape (kilobytes each) and
+ * of every oval or outlined polygon, but not when it copies a premultiplied image, so entities
+ * and HUD parts drawn as sprites keep rendering from feeding the garbage collector (see
+ * AllocationCheck).
+ */
+public class Sprite {
+
+    private final BufferedImage image;
+    private final int originX;
+    private final int originY;
+
+    /**
+     * Paints a sprite.
+     *
+     * @param width The image width.
+     * @param height The image height.
+     * @param originX Where x = 0 of the painter falls in the image (room for outlines).
+     * @param originY Where y = 0 of the painter falls in the image.
+     * @param painter Draws the shape as it would on screen at (0, 0).
+     */
+    public Sprite(int width, int height, int originX, int originY, Consumer<Graphics2D> painter) {
+        this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        this.originX = originX;
+        this.originY = originY;
+        Graphics2D g2 = image.createGraphics();
+        g2.translate(originX, originY);
+        painter.accept(g2);
+        g2.dispose();
+    }
+
+    /**
+     * Draws the sprite with the painter's (0, 0) at the given screen position.
+     *
+     * @param g2 The Graphics2D context.
+     * @param x The screen x-coordinate.
+     * @param y The screen y-coordinate.
+     */
+    public void draw(Graphics2D g2, int x, int y) {
+        g2.drawImage(image, x - originX, y - originY, null);
+    }
+}
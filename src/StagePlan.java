@@ -0,0 +1,105 @@
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The StagePlan class is a fully prepared stage: the dungeon map plus where the player,
+ * spawners and loot boxes go. It is built off the game thread while the boss fight runs, so
+ * the stage transition only has to swap the map and create the entities at known spots.
+ */
+public class StagePlan {
+
+    // One background thread is plenty: at most one stage is prepared at a time
+    private static final ExecutorService builder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "stage-builder");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** The carved dungeon. */
+    public final TileMap map;
+    /** The seed the dungeon was generated from (0 if unknown). */
+    public final long seed;
+    /** The connected floor regions of the dungeon. */
+    public final RegionMap regions;
+    /** The floor tiles of the main region. */
+    public final FloorIndex floor;
+    /** The player's start tile. */
+    public int playerCol, playerRow;
+    /** The spawner tiles. */
+    public final int[] spawnerCols, spawnerRows;
+    /** The loot box tiles. */
+    public final int[] lootCols, lootRows;
+
+    /**
+     * Constructor for StagePlan. The spawn tiles start at 0,0 and are filled in by the caller.
+     *
+     * @param map The dungeon.
+     * @param regions The regions of the dungeon (see RegionMap).
+     * @param seed The seed the dungeon was generated from.
+     * @param spawnerCount The number of spawners.
+     * @param lootCount The number of loot boxes.
+     */
+    public StagePlan(TileMap map, RegionMap regions, long seed, int spawnerCount, int lootCount) {
+        this.map = map;
+        this.regions = regions;
+        this.seed = seed;
+        this.floor = new FloorIndex(map, regions, regions.largest());
+        this.spawnerCols = new int[spawnerCount];
+        this.spawnerRows = new int[spawnerCount];
+        this.lootCols = new int[lootCount];
+        this.lootRows = new int[lootCount];
+    }
+
+    /**
+     * Starts building a stage in the background.
+     *
+     * @param cols The map width in tiles.
+     * @param rows The map height in tiles.
+     * @param spawnerCount The number of spawners to place.
+     * @param lootCount The number of loot boxes to place.
+     * @param seed The seed for the layout and placement.
+     * @return The stage, once it is ready.
+     */
+    public static Future<StagePlan> buildAsync(int cols, int rows, int spawnerCount, int lootCount, long seed) {
+        return builder.submit(() -> build(TileManager.GENERATOR, cols, rows, spawnerCount, lootCount, seed));
+    }
+
+    /**
+     * Builds a stage on the calling thread.
+     *
+     * @param generator The layout algorithm.
+     * @param cols The map width in tiles.
+     * @param rows The map height in tiles.
+     * @param spawnerCount The number of spawners to place.
+     * @param lootCount The number of loot boxes to place.
+     * @param seed The seed for the layout and placement.
+     * @return The stage.
+     */
+    public static StagePlan build(DungeonGenerator generator, int cols, int rows, int spawnerCount, int lootCount, long seed) {
+        Random rand = new Random(seed);
+        TileMap map = new TileMap(cols, rows);
+        RegionMap regions = TileManager.generateLayout(generator, map, rand.nextLong());
+
+        StagePlan plan = new StagePlan(map, regions, seed, spawnerCount, lootCount);
+        // generateLayout guarantees a floor region, and spawning only uses that main region
+        long tile = plan.floor.randomTile(rand);
+        plan.playerCol = FloorIndex.col(tile);
+        plan.playerRow = FloorIndex.row(tile);
+        for (int i = 0; i < spawnerCount; i++) {
+            tile = plan.floor.randomTileInRing(plan.playerCol, plan.playerRow, GamePanel.SPAWNER_MIN_DISTANCE, Integer.MAX_VALUE, rand);
+            if (tile == FloorIndex.NONE) {
+                tile = plan.floor.randomTile(rand); // Tiny dungeon: nothing is that far away
+            }
+            plan.spawnerCols[i] = FloorIndex.col(tile);
+            plan.spawnerRows[i] = FloorIndex.row(tile);
+        }
+        for (int i = 0; i < lootCount; i++) {
+            tile = plan.floor.randomTile(rand);
+            plan.lootCols[i] = FloorIndex.col(tile);
+            plan.lootRows[i] = FloorIndex.row(tile);
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,382 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The StallWatchdog class finds out why a tick took far longer than it should. The game
+ * thread only notes when each tick starts and ends (two volatile writes); a watchdog thread
+ * looks every few milliseconds, and while a tick is over budget it samples the game thread's
+ * stack through ThreadMXBean, together with a summary of the game state and the GC time spent
+ * during the stall. Identical stacks are counted together, so the report shows where the
+ * thread spent the stall (a loop, a lock held by an I/O thread, a write to the console...).
+ *
+ * Turned on with {@code -Dwatchdog.file=<file>}; the reports are written there when the game
+ * exits and every stall is logged as it ends. {@code -Dwatchdog.budgetMs} (50 by default) is
+ * the tick time that counts as a stall, {@code -Dwatchdog.sampleMs} how often the watchdog
+ * looks (a fifth of the budget by default) and {@code -Dwatchdog.maxReports} how many stalls
+ * are kept (100 by default; later ones are only counted).
+ *
+ * A tick that ends before the watchdog looked (or while a GC pause stopped every thread) is
+ * still reported, with its duration but without samples.
+ */
+public class StallWatchdog {
+
+    private static final Log.Site LOG_STALL = Log.site(Log.WARN, "Tick {} stalled for {} ms, {} stack samples", 5);
+    private static final Log.Site LOG_WRITE_FAILED = Log.site(Log.ERROR, "Could not write stall reports: {}");
+
+    private static final int MAX_STACKS = 10; // Per report, most sampled first
+
+    private static final String[] STATE_NAMES = {
+            "title", "play", "pause", "settings", "game over", "leaderboard", "name input", "controls"
+    };
+
+    GamePanel gp;
+    private final Path file;
+    private final long budgetNanos;
+    private final long sampleNanos;
+    private final int maxReports;
+
+    // Written by the game thread
+    private volatile Thread gameThread;
+    private volatile long tickStart = 0; // 0 between ticks
+    private volatile long tick = 0;
+    private volatile long overrunTick = -1; // The last tick that went over budget...
+    private volatile long overrunNanos = 0; // ...and how long it took
+    private long ticks = 0;
+
+    // Owned by the watchdog thread
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private Report current;
+    private long lastReportedTick = -1;
+    private final ArrayList<Report> reports = new ArrayList<>();
+    private int stalls = 0;
+    private volatile boolean closed = false;
+
+    /**
+     * One stall: the game state when it was noticed and the stacks sampled while it lasted.
+     */
+    private static class Report {
+        long tick;
+        long startMillis;
+        long nanos;
+        String state;
+        long gcCount;
+        long gcMillis;
+        int samples = 0;
+        // Distinct stacks, with how often each was sampled
+        final LinkedHashMap<List<StackTraceElement>, int[]> stacks = new LinkedHashMap<>();
+        // The innermost frame of the game's own code in each sample (the library code below it varies)
+        final LinkedHashMap<StackTraceElement, int[]> gameFrames = new LinkedHashMap<>();
+        // Thread state of every sample (e.g. "BLOCKED on java.lang.Object@1f owned by save-io")
+        final LinkedHashMap<String, int[]> threadStates = new LinkedHashMap<>();
+    }
+
+    /**
+     * Creates and starts the watchdog if {@code -Dwatchdog.file} is set.
+     *
+     * @param gp The GamePanel instance.
+     * @return The watchdog, or null when it is off.
+     */
+    public static StallWatchdog fromSystemProperties(GamePanel gp) {
+        String file = System.getProperty("watchdog.file");
+        if (file == null) {
+            return null;
+        }
+        double budgetMs = Double.parseDouble(System.getProperty("watchdog.budgetMs", "50"));
+        double sampleMs = Double.parseDouble(System.getProperty("watchdog.sampleMs", Double.toString(budgetMs / 5)));
+        int maxReports = Integer.getInteger("watchdog.maxReports", 100);
+        StallWatchdog watchdog = new StallWatchdog(gp, Paths.get(file), (long)(budgetMs * 1_000_000),
+                                                   (long)(sampleMs * 1_000_000), maxReports);
+        watchdog.start();
+        return watchdog;
+    }
+
+    /**
+     * Constructor for StallWatchdog.
+     *
+     * @param gp The GamePanel instance.
+     * @param file Where the reports are written on exit.
+     * @param budgetNanos Ticks longer than this are stalls.
+     * @param sampleNanos How often the watchdog looks at the game thread.
+     * @param maxReports How many stalls are kept.
+     */
+    public StallWatchdog(GamePanel gp, Path file, long budgetNanos, long sampleNanos, int maxReports) {
+        this.gp = gp;
+        this.file = file;
+        this.budgetNanos = budgetNanos;
+        this.sampleNanos = Math.max(1_000_000, sampleNanos);
+        this.maxReports = maxReports;
+    }
+
+    /**
+     * Starts the watchdog thread; the reports are written when the game exits.
+     */
+    public void start() {
+        Thread watchdog = new Thread(this::watch, "stall-watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "watchdog-flush"));
+    }
+
+    /**
+     * Notes that a tick started. Called by the game loop at the start of every tick, on the
+     * thread that runs the ticks.
+     */
+    public void tickStarted() {
+        Thread current = Thread.currentThread();
+        if (gameThread != current) {
+            gameThread = current;
+        }
+        tick = ++ticks;
+        tickStart = System.nanoTime();
+    }
+
+    /**
+     * Notes that the tick ended. Called by the game loop at the end of every tick.
+     */
+    public void tickEnded() {
+        long nanos = System.nanoTime() - tickStart;
+        if (nanos > budgetNanos) {
+            overrunNanos = nanos;
+            overrunTick = ticks; // Before the tick is marked as over, so the watchdog sees it
+        }
+        tickStart = 0;
+    }
+
+    private void watch() {
+        while (!closed) {
+            LockSupport.parkNanos(sampleNanos);
+            long start = tickStart;
+            long running = tick;
+            synchronized (this) {
+                if (current != null && (start == 0 || running != current.tick)) {
+                    finish(current); // The stalled tick is over
+                    current = null;
+                }
+                long overrun = overrunTick;
+                if (overrun > lastReportedTick && (current == null || current.tick != overrun)) {
+                    // Over budget and already over: too short (or too paused) to be sampled
+                    Report missed = begin(overrun, System.currentTimeMillis() - overrunNanos / 1_000_000);
+                    finish(missed);
+                }
+                if (start != 0 && System.nanoTime() - start > budgetNanos) {
+                    if (current == null) {
+                        current = begin(running, System.currentTimeMillis() - (System.nanoTime() - start) / 1_000_000);
+                    }
+                    sample(current);
+                }
+            }
+        }
+    }
+
+    private Report begin(long stalledTick, long startMillis) {
+        Report report = new Report();
+        report.tick = stalledTick;
+        report.startMillis = startMillis;
+        report.state = summary();
+        report.gcCount = -gcCount();
+        report.gcMillis = -gcMillis();
+        lastReportedTick = stalledTick;
+        return report;
+    }
+
+    /**
+     * Samples the game thread's stack and what it is waiting for.
+     */
+    private void sample(Report report) {
+        Thread thread = gameThread;
+        if (thread == null) {
+            return;
+        }
+        ThreadInfo[] infos = threads.getThreadInfo(new long[] {thread.getId()}, true, false);
+        ThreadInfo info = infos.length > 0 ? infos[0] : null;
+        if (info == null) {
+            return;
+        }
+        report.samples++;
+        StackTraceElement[] stack = info.getStackTrace();
+        report.stacks.computeIfAbsent(Arrays.asList(stack), k -> new int[1])[0]++;
+        for (StackTraceElement frame : stack) {
+            if ("app".equals(frame.getClassLoaderName())) {
+                report.gameFrames.computeIfAbsent(frame, k -> new int[1])[0]++;
+                break;
+            }
+        }
+        StringBuilder state = new StringBuilder(info.getThreadState().toString());
+        LockInfo lock = info.getLockInfo();
+        if (lock != null) {
+            state.append(" on ").append(lock);
+            if (info.getLockOwnerName() != null) {
+                state.append(" owned by ").append(info.getLockOwnerName());
+            }
+        }
+        report.threadStates.computeIfAbsent(state.toString(), k -> new int[1])[0]++;
+    }
+
+    private void finish(Report report) {
+        if (overrunTick == report.tick) {
+            report.nanos = overrunNanos;
+        } else {
+            report.nanos = (System.currentTimeMillis() - report.startMillis) * 1_000_000; // Estimate
+        }
+        report.gcCount += gcCount();
+        report.gcMillis += gcMillis();
+        stalls++;
+        if (reports.size() < maxReports) {
+            reports.add(report);
+        }
+        LOG_STALL.log(report.tick, report.nanos / 1_000_000, report.samples);
+    }
+
+    /**
+     * Describes the game state. Read while the game thread may be changing it, so the numbers
+     * are only approximate (and a summary that could not be read says so).
+     */
+    private String summary() {
+        try {
+            StringBuilder sb = new StringBuilder();
+            int state = gp.gameState;
+            sb.append(state >= 0 && state < STATE_NAMES.length ? STATE_NAMES[state] : Integer.toString(state));
+            sb.append(gp.horde != null ? " (horde)" : gp.endless ? " (endless)" : "");
+            sb.append(", stage ").append(gp.stage);
+            sb.append(", difficulty ").append(gp.difficultyLevel);
+            sb.append(", enemies ").append(gp.enemies.size());
+            sb.append(", swarm ").append(gp.world.archetype(SwarmSystem.SWARM).count);
+            sb.append(", projectiles ").append(gp.world.archetype(EntityWorld.PROJECTILE).count);
+            sb.append(", loot boxes ").append(gp.lootBoxes.size());
+            sb.append(", player hp ").append(gp.player.hp);
+            sb.append(", game tick ").append(gp.timers.now());
+            return sb.toString();
+        } catch (RuntimeException e) {
+            return "unavailable (" + e + ")";
+        }
+    }
+
+    private long gcCount() {
+        long total = 0;
+        for (int i = 0; i < collectors.size(); i++) {
+            total += Math.max(0, collectors.get(i).getCollectionCount());
+        }
+        return total;
+    }
+
+    private long gcMillis() {
+        long total = 0;
+        for (int i = 0; i < collectors.size(); i++) {
+            total += Math.max(0, collectors.get(i).getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of stalls seen so far (including those not kept).
+     */
+    public synchronized int stallCount() {
+        return stalls;
+    }
+
+    /**
+     * Writes the reports to a text file.
+     *
+     * @param path The file (replaced).
+     * @throws IOException If it cannot be written.
+     */
+    public synchronized void writeReports(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write(stalls + " stalls over " + budgetNanos / 1_000_000.0 + " ms in " + ticks + " ticks");
+            if (stalls > reports.size()) {
+                out.write(" (the first " + reports.size() + " are shown)");
+            }
+            out.newLine();
+            int number = 1;
+            for (Report report : reports) {
+                out.newLine();
+                out.write("=== Stall " + number++ + ": tick " + report.tick + " took "
+                          + String.format("%.1f", report.nanos / 1_000_000.0) + " ms, at "
+                          + Instant.ofEpochMilli(report.startMillis));
+                out.newLine();
+                out.write("State: " + report.state);
+                out.newLine();
+                out.write("GC during the stall: " + report.gcCount + " collections, " + report.gcMillis + " ms");
+                out.newLine();
+                if (report.samples == 0) {
+                    out.write("No samples (the tick ended before the watchdog looked)");
+                    out.newLine();
+                    continue;
+                }
+                out.write(report.samples + " samples, every " + sampleNanos / 1_000_000.0 + " ms:");
+                for (Map.Entry<String, int[]> state : report.threadStates.entrySet()) {
+                    out.write(" " + state.getKey() + " x" + state.getValue()[0]);
+                }
+                out.newLine();
+                out.write("Innermost game frames:");
+                out.newLine();
+                for (Map.Entry<StackTraceElement, int[]> frame : mostSampled(report.gameFrames)) {
+                    out.write(String.format("  %5d  %s.%s(%s:%d)", frame.getValue()[0], frame.getKey().getClassName(),
+                              frame.getKey().getMethodName(), frame.getKey().getFileName(), frame.getKey().getLineNumber()));
+                    out.newLine();
+                }
+                List<Map.Entry<List<StackTraceElement>, int[]>> stacks = mostSampled(report.stacks);
+                for (int i = 0; i < Math.min(MAX_STACKS, stacks.size()); i++) {
+                    out.write("  " + stacks.get(i).getValue()[0] + " of " + report.samples + " samples:");
+                    out.newLine();
+                    for (StackTraceElement frame : stacks.get(i).getKey()) {
+                        out.write("    at " + frame);
+                        out.newLine();
+                    }
+                }
+                if (stacks.size() > MAX_STACKS) {
+                    out.write("  (" + (stacks.size() - MAX_STACKS) + " other stacks)");
+                    out.newLine();
+                }
+            }
+        }
+    }
+
+    private static <K> List<Map.Entry<K, int[]>> mostSampled(Map<K, int[]> counts) {
+        ArrayList<Map.Entry<K, int[]>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort((a, b) -> Integer.compare(b.getValue()[0], a.getValue()[0]));
+        return entries;
+    }
+
+    /**
+     * Stops the watchdog (closing a stall still in progress) and writes the reports. Runs on exit.
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (current != null) {
+                finish(current);
+                current = null;
+            }
+        }
+        try {
+            writeReports(file);
+        } catch (IOException e) {
+            LOG_WRITE_FAILED.log(e.getMessage());
+        }
+    }
+}
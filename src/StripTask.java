@@ -0,0 +1,57 @@
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The StripTask class runs a piece of work once per map strip on the common fork/join pool.
+ * The range of strips is split in halves until single strips remain, so idle workers steal
+ * the other halves. Used by the generators that work on independent strips of the map.
+ */
+public class StripTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The work done for one strip.
+     */
+    public interface Body {
+        void run(int strip);
+    }
+
+    /** Maps with fewer tiles than this are done on the calling thread (forking costs more than it saves). */
+    public static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private final Body body;
+    private final int from, to;
+
+    private StripTask(Body body, int from, int to) {
+        this.body = body;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Runs the body for every strip and waits until all of them are done.
+     *
+     * @param strips The number of strips.
+     * @param mapTiles The size of the map in tiles (small maps are not split across threads).
+     * @param body The work for one strip.
+     */
+    public static void forEachStrip(int strips, int mapTiles, Body body) {
+        if (strips == 1 || mapTiles < PARALLEL_THRESHOLD) {
+            for (int strip = 0; strip < strips; strip++) {
+                body.run(strip);
+            }
+        } else {
+            new StripTask(body, 0, strips).invoke(); // Forked halves go to the common pool
+        }
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from == 1) {
+            body.run(from);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        invokeAll(new StripTask(body, from, mid), new StripTask(body, mid, to));
+    }
+}
@@ -0,0 +1,173 @@
+import java.util.stream.IntStream;
+
+/**
+ * The SwarmSystem class drives the swarm enemies of horde mode, which live in the EntityWorld.
+ * Swarm enemies are simple melee chasers: the AI step points their velocity at the player
+ * (per-row work, run in parallel for large swarms), the MovementSystem moves them, and the
+ * contact step applies damage to the player on the game thread.
+ */
+public class SwarmSystem {
+
+    /** Swarm enemy: chases the player and hurts on contact. */
+    public static final int SWARM = EntityWorld.POSITION | EntityWorld.VELOCITY | EntityWorld.HEALTH |
+            EntityWorld.COLLIDER | EntityWorld.AI | EntityWorld.RENDERABLE | EntityWorld.DAMAGE;
+
+    public static final int SIZE = 32; // Smaller than a tile so crowds fit through corridors
+    public static final float SPEED = 2f;
+    public static final int CONTACT_COOLDOWN = 60; // 1 second between hits per enemy
+
+    private static final int PARALLEL_THRESHOLD = 4096;
+    private static final int CHUNK_SIZE = 1024;
+
+    GamePanel gp;
+
+    /**
+     * Constructor for SwarmSystem.
+     *
+     * @param gp The GamePanel instance.
+     */
+    public SwarmSystem(GamePanel gp) {
+        this.gp = gp;
+    }
+
+    /**
+     * Creates a swarm enemy with stats scaled by the difficulty level.
+     *
+     * @param world The ECS world.
+     * @param x The x-coordinate in the world.
+     * @param y The y-coordinate in the world.
+     */
+    public void spawn(EntityWorld world, int x, int y) {
+        int id = world.create(SWARM);
+        Archetype a = world.archetype(SWARM);
+        int row = world.rowOf(id);
+
+        int hp = (int)(10 * (1.0 + gp.difficultyLevel * 0.5));
+        int damage = Math.max(1, (int)(2 * (1.0 + gp.difficultyLevel * 0.1)));
+
+        // Jitter so a burst does not stack on one pixel
+        a.posX[row] = x + gp.rand.nextInt(gp.tileSize - SIZE + 1);
+        a.posY[row] = y + gp.rand.nextInt(gp.tileSize - SIZE + 1);
+        a.hp[row] = hp;
+        a.maxHp[row] = hp;
+        a.colliderSize[row] = SIZE;
+        a.renderKind[row] = RenderSystem.SWARM;
+        a.damage[row] = damage;
+    }
+
+    /**
+     * Points every swarm enemy at the player and counts down contact cooldowns.
+     *
+     * @param world The ECS world.
+     */
+    public void updateAI(EntityWorld world) {
+        Archetype a = world.archetype(SWARM);
+        if (a.count >= PARALLEL_THRESHOLD) {
+            int chunks = (a.count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            IntStream.range(0, chunks).parallel().forEach(c ->
+                    steer(a, c * CHUNK_SIZE, Math.min(a.count, (c + 1) * CHUNK_SIZE)));
+        } else {
+            steer(a, 0, a.count);
+        }
+    }
+
+    private void steer(Archetype a, int from, int to) {
+        float targetX = gp.player.worldX + (gp.tileSize - SIZE) / 2f;
+        float targetY = gp.player.worldY + (gp.tileSize - SIZE) / 2f;
+
+        for (int row = from; row < to; row++) {
+            float dx = targetX - a.posX[row];
+            float dy = targetY - a.posY[row];
+            float dist = (float)Math.sqrt(dx * dx + dy * dy);
+            if (dist > SPEED) {
+                a.velX[row] = dx / dist * SPEED;
+                a.velY[row] = dy / dist * SPEED;
+            } else {
+                a.velX[row] = 0;
+                a.velY[row] = 0;
+            }
+            if (a.aiCooldown[row] > 0) {
+                a.aiCooldown[row]--;
+            }
+        }
+    }
+
+    /**
+     * Applies contact damage to the player. Runs after movement, on the game thread.
+     *
+     * @param world The ECS world.
+     */
+    public void updateContact(EntityWorld world) {
+        Archetype a = world.archetype(SWARM);
+        Player player = gp.player;
+
+        Heatmap heatmap = gp.heatmap;
+
+        for (int row = 0; row < a.count; row++) {
+            int x = (int)a.posX[row];
+            int y = (int)a.posY[row];
+            if (heatmap != null) {
+                heatmap.add(Heatmap.ENEMIES, x + SIZE / 2, y + SIZE / 2, 1);
+            }
+            if (a.aiCooldown[row] > 0 || a.hp[row] <= 0) continue;
+
+            if (x < player.worldX + gp.tileSize && x + SIZE > player.worldX &&
+                y < player.worldY + gp.tileSize && y + SIZE > player.worldY) {
+                player.takeDamage(a.damage[row]);
+                a.aiCooldown[row] = CONTACT_COOLDOWN;
+                if (!player.alive) return;
+            }
+        }
+    }
+
+    /**
+     * Damages every swarm enemy inside an area (the player's attack) and awards score
+     * the same way as for regular enemies.
+     *
+     * @param world The ECS world.
+     * @param areaX The x-coordinate of the area's top-left corner.
+     * @param areaY The y-coordinate of the area's top-left corner.
+     * @param areaWidth The width of the area.
+     * @param areaHeight The height of the area.
+     * @param damage The damage dealt to each enemy hit.
+     * @param fromX The x-coordinate enemies are pushed away from.
+     * @param fromY The y-coordinate enemies are pushed away from.
+     * @return The number of enemies hit.
+     */
+    public int hitArea(EntityWorld world, int areaX, int areaY, int areaWidth, int areaHeight, int damage,
+                       int fromX, int fromY) {
+        Archetype a = world.archetype(SWARM);
+        int hits = 0;
+
+        for (int row = 0; row < a.count; row++) {
+            int x = (int)a.posX[row];
+            int y = (int)a.posY[row];
+            if (x < areaX + areaWidth && x + SIZE > areaX && y < areaY + areaHeight && y + SIZE > areaY) {
+                if (a.hp[row] <= 0) continue; // Already killed, waiting for flush()
+
+                a.hp[row] -= damage;
+                hits++;
+                if (gp.telemetry != null) {
+                    gp.telemetry.damageDealt += damage;
+                }
+                gp.spawnDamageNumber(x + SIZE / 2, y, damage);
+                gp.addScore(10);
+
+                if (a.hp[row] <= 0) {
+                    world.destroy(a.entityIds[row]);
+                    gp.addScore(50); // Bonus for kill
+                } else {
+                    // Knock back one tile (blocked by walls like any other move)
+                    double angle = Math.atan2(y - fromY, x - fromX);
+                    int nextX = x + (int)(Math.cos(angle) * gp.tileSize);
+                    int nextY = y + (int)(Math.sin(angle) * gp.tileSize);
+                    if (!gp.tileM.collidesWithBox(nextX, nextY, SIZE)) {
+                        a.posX[row] = nextX;
+                        a.posY[row] = nextY;
+                    }
+                }
+            }
+        }
+        return hits;
+    }
+}
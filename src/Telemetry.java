@@ -0,0 +1,320 @@
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The Telemetry class writes one row of aggregates per played tick (difficulty,
+ * entities and projectiles alive, damage dealt and taken, tick and render time, GC pauses) to
+ * a columnar run file, one file per run. TelemetryReport reads thousands of these files to
+ * show how frame times are distributed at each difficulty level.
+ *
+ * Turned on with {@code -Dtelemetry.dir=<directory>}. The game thread only fills a block of
+ * rows; full blocks are written by a background I/O thread and come back to a small pool, so
+ * recording allocates nothing and never waits for the disk. If the disk falls so far behind
+ * that the pool runs dry, rows are dropped (and counted) instead of stalling the game.
+ * A run ends at game over; the shutdown hook only ends a run that is still being played, under
+ * the same lock as {@link #record}, so it never hands over a block the game thread is filling.
+ *
+ * File layout (big-endian): a 64-byte header (int magic "DOJT", int version, int column
+ * count, int block rows, long start time in milliseconds, long random seed, int game mode),
+ * then blocks of an int row count followed by each column's values for those rows. A run cut
+ * off by a crash simply ends at its last complete block.
+ */
+public class Telemetry {
+
+    private static final Log.Site LOG_START_FAILED = Log.site(Log.ERROR, "Could not start telemetry file: {}");
+    private static final Log.Site LOG_WRITE_FAILED = Log.site(Log.ERROR, "Could not write telemetry: {}");
+    private static final Log.Site LOG_CLOSE_FAILED = Log.site(Log.ERROR, "Could not close telemetry file: {}");
+    private static final Log.Site LOG_CLOSE_TIMEOUT = Log.site(Log.WARN, "Telemetry did not finish in time");
+    private static final Log.Site LOG_DROPPED = Log.site(Log.WARN, "Telemetry dropped {} rows");
+
+    public static final int MAGIC = 0x444F4A54; // "DOJT"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 64;
+    public static final int BLOCK_ROWS = 4096; // About a minute of play
+
+    // Columns
+    public static final int TICK = 0;
+    public static final int DIFFICULTY = 1;
+    public static final int STAGE = 2;
+    public static final int ENTITIES = 3;
+    public static final int PROJECTILES = 4;
+    public static final int DAMAGE_DEALT = 5;
+    public static final int DAMAGE_TAKEN = 6;
+    public static final int TICK_MICROS = 7;
+    public static final int RENDER_MICROS = 8;
+    public static final int GC_MILLIS = 9;
+    public static final String[] COLUMN_NAMES = {
+            "tick", "difficulty", "stage", "entities", "projectiles", "damage-dealt", "damage-taken",
+            "tick-us", "render-us", "gc-ms"
+    };
+    public static final int COLUMNS = COLUMN_NAMES.length;
+
+    // Game modes in the header
+    public static final int MODE_NORMAL = 0;
+    public static final int MODE_HORDE = 1;
+    public static final int MODE_ENDLESS = 2;
+
+    private static final int POOL_BLOCKS = 4;
+
+    GamePanel gp;
+    private final Path directory;
+
+    /** Damage the player dealt and took during the current tick, counted by the game code. */
+    public int damageDealt = 0;
+    public int damageTaken = 0;
+    // The slowest frame painted since the last row (written by the paint thread)
+    private final AtomicLong worstRenderNanos = new AtomicLong();
+
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private long lastGcMillis;
+
+    // The block being filled on the game thread (column-major: column * BLOCK_ROWS + row)
+    private int[] block;
+    private int rows = 0;
+    private int runTick = 0;
+    private boolean running = false;
+    private final ArrayBlockingQueue<int[]> freeBlocks = new ArrayBlockingQueue<>(POOL_BLOCKS);
+    /** Rows lost because the writer fell behind. */
+    public long droppedRows = 0;
+
+    // Owned by the I/O thread
+    private FileChannel out;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(4 + COLUMNS * BLOCK_ROWS * 4);
+    private final ExecutorService io = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "telemetry-io");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Creates the recorder if {@code -Dtelemetry.dir} is set.
+     *
+     * @param gp The GamePanel instance.
+     * @return The recorder, or null when telemetry is off.
+     */
+    public static Telemetry fromSystemProperties(GamePanel gp) {
+        String dir = System.getProperty("telemetry.dir");
+        if (dir == null) {
+            return null;
+        }
+        return new Telemetry(gp, Paths.get(dir));
+    }
+
+    /**
+     * Constructor for Telemetry.
+     *
+     * @param gp The GamePanel instance.
+     * @param directory Where the run files go (created if needed).
+     */
+    public Telemetry(GamePanel gp, Path directory) {
+        this.gp = gp;
+        this.directory = directory;
+        for (int i = 0; i < POOL_BLOCKS; i++) {
+            freeBlocks.add(new int[COLUMNS * BLOCK_ROWS]);
+        }
+        block = freeBlocks.poll();
+        lastGcMillis = gcMillis();
+        // Write the rows of the last run when the game exits
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "telemetry-flush"));
+    }
+
+    /**
+     * Ends the current run file and starts a new one. Called when a run starts or a save is
+     * loaded.
+     */
+    public synchronized void startRun() {
+        if (io.isShutdown()) {
+            return; // The game is exiting
+        }
+        endRun();
+        long startMillis = System.currentTimeMillis();
+        long seed = gp.rand.state();
+        int mode = gp.horde != null ? MODE_HORDE : gp.endless ? MODE_ENDLESS : MODE_NORMAL;
+        Path file = directory.resolve("run-" + startMillis + "-" + ProcessHandle.current().pid() + ".dtl");
+        io.execute(() -> openRun(file, startMillis, seed, mode));
+        running = true;
+        runTick = 0;
+        damageDealt = 0;
+        damageTaken = 0;
+        worstRenderNanos.set(0);
+        lastGcMillis = gcMillis();
+    }
+
+    /**
+     * Writes the rows of the current run and closes its file.
+     */
+    public synchronized void endRun() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        flushBlock();
+        io.execute(this::closeRun);
+    }
+
+    /**
+     * Records the row of a played tick. Called by the game loop at the end of every tick that
+     * ran in the play state. Synchronized with the shutdown hook, which the game thread
+     * never contends with otherwise.
+     *
+     * @param tickNanos How long the tick took.
+     */
+    public synchronized void record(long tickNanos) {
+        if (!running) {
+            return;
+        }
+        long gc = gcMillis();
+        if (block == null && (block = freeBlocks.poll()) == null) {
+            droppedRows++;
+        } else {
+            int row = rows++;
+            block[TICK * BLOCK_ROWS + row] = runTick;
+            block[DIFFICULTY * BLOCK_ROWS + row] = gp.difficultyLevel;
+            block[STAGE * BLOCK_ROWS + row] = gp.stage;
+            block[ENTITIES * BLOCK_ROWS + row] = gp.enemies.size() + gp.world.archetype(SwarmSystem.SWARM).count;
+            block[PROJECTILES * BLOCK_ROWS + row] = gp.world.archetype(EntityWorld.PROJECTILE).count;
+            block[DAMAGE_DEALT * BLOCK_ROWS + row] = damageDealt;
+            block[DAMAGE_TAKEN * BLOCK_ROWS + row] = damageTaken;
+            block[TICK_MICROS * BLOCK_ROWS + row] = micros(tickNanos);
+            block[RENDER_MICROS * BLOCK_ROWS + row] = micros(worstRenderNanos.getAndSet(0));
+            block[GC_MILLIS * BLOCK_ROWS + row] = (int)Math.min(Integer.MAX_VALUE, gc - lastGcMillis);
+            if (rows == BLOCK_ROWS) {
+                flushBlock();
+            }
+        }
+        lastGcMillis = gc;
+        runTick++;
+        damageDealt = 0;
+        damageTaken = 0;
+    }
+
+    /**
+     * Notes how long a frame took to paint; the row of the next tick keeps the slowest one.
+     * Called from the paint thread.
+     *
+     * @param nanos The paint time.
+     */
+    public void frameRendered(long nanos) {
+        worstRenderNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Hands the filled rows to the I/O thread and takes a fresh block from the pool.
+     */
+    private void flushBlock() {
+        if (block == null || rows == 0) {
+            return;
+        }
+        int[] full = block;
+        int count = rows;
+        io.execute(() -> writeBlock(full, count));
+        block = freeBlocks.poll(); // Null if the writer is behind; record() retries
+        rows = 0;
+    }
+
+    private static int micros(long nanos) {
+        return (int)Math.min(Integer.MAX_VALUE, nanos / 1000);
+    }
+
+    private long gcMillis() {
+        long total = 0;
+        for (int i = 0; i < collectors.size(); i++) {
+            total += Math.max(0, collectors.get(i).getCollectionTime());
+        }
+        return total;
+    }
+
+    private void openRun(Path file, long startMillis, long seed, int mode) {
+        try {
+            Files.createDirectories(directory);
+            out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                   StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.clear();
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(COLUMNS).putInt(BLOCK_ROWS)
+                  .putLong(startMillis).putLong(seed).putInt(mode);
+            while (buffer.position() < HEADER_BYTES) {
+                buffer.put((byte)0);
+            }
+            buffer.flip();
+            writeFully(buffer);
+        } catch (IOException e) {
+            LOG_START_FAILED.log(e.getMessage());
+            closeRun();
+        }
+    }
+
+    private void writeBlock(int[] full, int count) {
+        try {
+            if (out != null) {
+                buffer.clear();
+                buffer.putInt(count);
+                IntBuffer ints = buffer.asIntBuffer();
+                for (int column = 0; column < COLUMNS; column++) {
+                    ints.put(full, column * BLOCK_ROWS, count);
+                }
+                buffer.position(4 + ints.position() * 4).flip();
+                writeFully(buffer);
+            }
+        } catch (IOException e) {
+            LOG_WRITE_FAILED.log(e.getMessage());
+            closeRun();
+        } finally {
+            freeBlocks.offer(full);
+        }
+    }
+
+    private void writeFully(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            out.write(data);
+        }
+    }
+
+    private void closeRun() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            LOG_CLOSE_FAILED.log(e.getMessage());
+        }
+        out = null;
+    }
+
+    /**
+     * Writes what is left of the current run and stops the I/O thread.
+     */
+    public void close() {
+        synchronized (this) {
+            if (io.isShutdown()) {
+                return;
+            }
+            endRun();
+            io.shutdown();
+        }
+        try {
+            if (!io.awaitTermination(2, TimeUnit.SECONDS)) {
+                LOG_CLOSE_TIMEOUT.log();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (droppedRows > 0) {
+            LOG_DROPPED.log(droppedRows);
+        }
+    }
+}
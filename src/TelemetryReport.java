@@ -0,0 +1,317 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * The TelemetryReport class analyzes the run files written by Telemetry. It shows, for every
+ * difficulty level, how tick, render and frame (tick + render) times are distributed and how
+ * often a frame blew the time budget, so slowdowns can be tied to difficulty.
+ *
+ * Usage: {@code java TelemetryReport <file or directory>...} (directories are searched for
+ * ".dtl" files). The budget defaults to one tick at 60 FPS and can be changed with
+ * {@code -Dreport.budgetMs}.
+ *
+ * Files are memory-mapped and read column by column straight from the page cache, and the
+ * files are spread over all cores (each worker fills its own histograms, which are merged at
+ * the end), so thousands of runs take seconds. Times go into log-linear histograms with 32
+ * buckets per power of two, so percentiles are within about 3% whatever the number of rows.
+ */
+public class TelemetryReport {
+
+    // Levels from this one up are reported together
+    private static final int MAX_LEVEL = 50;
+
+    private static final int SUB_BUCKETS = 32;
+    private static final int BUCKETS = SUB_BUCKETS * 27; // Every non-negative int
+
+    private final int budgetMicros;
+    private final Level[] levels = new Level[MAX_LEVEL + 1];
+    private long files = 0;
+    private long skipped = 0;
+    private long bytes = 0;
+    // Sums for the correlation between difficulty and frame time
+    private double n, sumX, sumY, sumXX, sumYY, sumXY;
+
+    /**
+     * The statistics of one difficulty level.
+     */
+    private static class Level {
+        long rows = 0;
+        long runs = 0;
+        long blowups = 0;
+        long gcMillis = 0;
+        long entities = 0;
+        long projectiles = 0;
+        long damageTaken = 0;
+        final long[] tick = new long[BUCKETS];
+        final long[] render = new long[BUCKETS];
+        final long[] frame = new long[BUCKETS];
+        int maxFrame = 0;
+
+        void merge(Level other) {
+            rows += other.rows;
+            runs += other.runs;
+            blowups += other.blowups;
+            gcMillis += other.gcMillis;
+            entities += other.entities;
+            projectiles += other.projectiles;
+            damageTaken += other.damageTaken;
+            for (int i = 0; i < BUCKETS; i++) {
+                tick[i] += other.tick[i];
+                render[i] += other.render[i];
+                frame[i] += other.frame[i];
+            }
+            maxFrame = Math.max(maxFrame, other.maxFrame);
+        }
+    }
+
+    /**
+     * Constructor for TelemetryReport.
+     *
+     * @param budgetMicros Frames slower than this count as blowups.
+     */
+    public TelemetryReport(int budgetMicros) {
+        this.budgetMicros = budgetMicros;
+    }
+
+    /**
+     * Returns the histogram bucket of a value: exact below 64, then 32 buckets per power of two.
+     */
+    static int bucket(int value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return Math.max(0, value);
+        }
+        int exponent = 31 - Integer.numberOfLeadingZeros(value);
+        return SUB_BUCKETS * (exponent - 4) + ((value >>> (exponent - 5)) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Returns the smallest value of a histogram bucket.
+     */
+    static int bucketStart(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + 4;
+        return (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - 5);
+    }
+
+    /**
+     * Returns a percentile of a histogram.
+     *
+     * @param histogram The bucket counts.
+     * @param total The number of values.
+     * @param fraction The percentile as a fraction (0.99 for p99).
+     * @return The start of the bucket holding the percentile.
+     */
+    static int percentile(long[] histogram, long total, double fraction) {
+        long rank = Math.max(1, (long)Math.ceil(total * fraction));
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank) {
+                return bucketStart(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Adds one run file. Files that are not telemetry (or not this version) are counted as
+     * skipped; a file cut off mid-block is read up to its last complete block.
+     *
+     * @param file The run file.
+     */
+    public void add(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < Telemetry.HEADER_BYTES || size > Integer.MAX_VALUE) {
+                skipped++;
+                return;
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int columns = data.getInt(8);
+            if (data.getInt(0) != Telemetry.MAGIC || data.getInt(4) != Telemetry.VERSION
+                    || columns < Telemetry.COLUMNS) {
+                skipped++;
+                return;
+            }
+            boolean[] seen = new boolean[MAX_LEVEL + 1];
+            int position = Telemetry.HEADER_BYTES;
+            while (position + 4 <= size) {
+                int rows = data.getInt(position);
+                long end = position + 4 + (long)rows * columns * 4;
+                if (rows <= 0 || end > size) {
+                    break;
+                }
+                addBlock(data, position + 4, rows, seen);
+                position = (int)end;
+            }
+            files++;
+            bytes += size;
+        } catch (IOException e) {
+            System.out.println("Could not read " + file + ": " + e.getMessage());
+            skipped++;
+        }
+    }
+
+    /**
+     * Adds the rows of one block. Each column is a run of rows ints starting at
+     * start + column * rows * 4.
+     */
+    private void addBlock(MappedByteBuffer data, int start, int rows, boolean[] seen) {
+        int columnBytes = rows * 4;
+        int difficulty = start + Telemetry.DIFFICULTY * columnBytes;
+        int entities = start + Telemetry.ENTITIES * columnBytes;
+        int projectiles = start + Telemetry.PROJECTILES * columnBytes;
+        int damageTaken = start + Telemetry.DAMAGE_TAKEN * columnBytes;
+        int tick = start + Telemetry.TICK_MICROS * columnBytes;
+        int render = start + Telemetry.RENDER_MICROS * columnBytes;
+        int gc = start + Telemetry.GC_MILLIS * columnBytes;
+        for (int offset = 0; offset < columnBytes; offset += 4) {
+            int levelNumber = Math.max(0, Math.min(MAX_LEVEL, data.getInt(difficulty + offset)));
+            Level level = levels[levelNumber];
+            if (level == null) {
+                level = levels[levelNumber] = new Level();
+            }
+            if (!seen[levelNumber]) {
+                seen[levelNumber] = true;
+                level.runs++;
+            }
+            int tickMicros = data.getInt(tick + offset);
+            int renderMicros = data.getInt(render + offset);
+            int frameMicros = (int)Math.min(Integer.MAX_VALUE, (long)tickMicros + renderMicros);
+            level.rows++;
+            level.tick[bucket(tickMicros)]++;
+            level.render[bucket(renderMicros)]++;
+            level.frame[bucket(frameMicros)]++;
+            level.maxFrame = Math.max(level.maxFrame, frameMicros);
+            if (frameMicros > budgetMicros) {
+                level.blowups++;
+            }
+            level.gcMillis += data.getInt(gc + offset);
+            level.entities += data.getInt(entities + offset);
+            level.projectiles += data.getInt(projectiles + offset);
+            level.damageTaken += data.getInt(damageTaken + offset);
+
+            n++;
+            sumX += levelNumber;
+            sumY += frameMicros;
+            sumXX += (double)levelNumber * levelNumber;
+            sumYY += (double)frameMicros * frameMicros;
+            sumXY += (double)levelNumber * frameMicros;
+        }
+    }
+
+    /**
+     * Adds everything another report has read.
+     *
+     * @param other The other report (same budget).
+     */
+    public void merge(TelemetryReport other) {
+        for (int i = 0; i <= MAX_LEVEL; i++) {
+            if (other.levels[i] == null) continue;
+            if (levels[i] == null) {
+                levels[i] = other.levels[i];
+            } else {
+                levels[i].merge(other.levels[i]);
+            }
+        }
+        files += other.files;
+        skipped += other.skipped;
+        bytes += other.bytes;
+        n += other.n;
+        sumX += other.sumX;
+        sumY += other.sumY;
+        sumXX += other.sumXX;
+        sumYY += other.sumYY;
+        sumXY += other.sumXY;
+    }
+
+    /**
+     * Returns the Pearson correlation between difficulty level and frame time over every row.
+     *
+     * @return The correlation (-1..1), or 0 if it is undefined.
+     */
+    public double correlation() {
+        double varianceX = n * sumXX - sumX * sumX;
+        double varianceY = n * sumYY - sumY * sumY;
+        if (varianceX <= 0 || varianceY <= 0) {
+            return 0;
+        }
+        return (n * sumXY - sumX * sumY) / Math.sqrt(varianceX * varianceY);
+    }
+
+    /**
+     * Prints the table of levels.
+     */
+    public void print() {
+        System.out.printf("%d runs (%d skipped), %.0f rows, %.1f MB, budget %.2f ms%n",
+                files, skipped, n, bytes / (1024.0 * 1024.0), budgetMicros / 1000.0);
+        System.out.printf("%5s %6s %10s %8s %8s %8s %8s %8s %9s %8s %9s %7s %7s%n",
+                "level", "runs", "ticks", "tick p50", "tick p99", "rend p99", "frm p99", "frm p999",
+                "frame max", "blowup%", "gc ms/min", "entities", "proj");
+        for (int i = 0; i <= MAX_LEVEL; i++) {
+            Level level = levels[i];
+            if (level == null) continue;
+            double minutes = level.rows / (60.0 * 60.0);
+            System.out.printf("%5s %6d %10d %8.2f %8.2f %8.2f %8.2f %8.2f %9.2f %7.3f%% %9.1f %7.0f %7.1f%n",
+                    i == MAX_LEVEL ? MAX_LEVEL + "+" : Integer.toString(i), level.runs, level.rows,
+                    percentile(level.tick, level.rows, 0.50) / 1000.0,
+                    percentile(level.tick, level.rows, 0.99) / 1000.0,
+                    percentile(level.render, level.rows, 0.99) / 1000.0,
+                    percentile(level.frame, level.rows, 0.99) / 1000.0,
+                    percentile(level.frame, level.rows, 0.999) / 1000.0,
+                    level.maxFrame / 1000.0,
+                    100.0 * level.blowups / level.rows,
+                    level.gcMillis / minutes,
+                    level.entities / (double)level.rows,
+                    level.projectiles / (double)level.rows);
+        }
+        System.out.printf("Correlation between difficulty and frame time: %.3f%n", correlation());
+    }
+
+    /**
+     * Collects the run files named on the command line (directories are searched for ".dtl").
+     */
+    private static ArrayList<Path> runFiles(String[] args) throws IOException {
+        ArrayList<Path> result = new ArrayList<>();
+        for (String arg : args) {
+            Path path = Paths.get(arg);
+            if (Files.isDirectory(path)) {
+                try (DirectoryStream<Path> dir = Files.newDirectoryStream(path, "*.dtl")) {
+                    for (Path file : dir) {
+                        result.add(file);
+                    }
+                }
+            } else {
+                result.add(path);
+            }
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: java TelemetryReport <file or directory>...");
+            System.exit(2);
+        }
+        double budgetMs = Double.parseDouble(System.getProperty("report.budgetMs", "16.667"));
+        int budgetMicros = (int)Math.round(budgetMs * 1000);
+        ArrayList<Path> files = runFiles(args);
+
+        long start = System.nanoTime();
+        TelemetryReport report = files.parallelStream().collect(
+                () -> new TelemetryReport(budgetMicros), TelemetryReport::add, TelemetryReport::merge);
+        long elapsed = System.nanoTime() - start;
+
+        report.print();
+        System.out.printf("Read in %.0f ms%n", elapsed / 1_000_000.0);
+    }
+}
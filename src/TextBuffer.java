@@ -0,0 +1,225 @@
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+
+/**
+ * The TextBuffer class is a line of text with numbers in it (a score, an HP count) that is
+ * rebuilt in place every frame and drawn straight from its characters, so drawing it allocates
+ * nothing, unlike concatenating a new String each frame.
+ *
+ * It also caches the fonts and translucent colors that text is drawn with, since deriving a
+ * font or creating a color every frame allocates as well. The caches are only used from the
+ * thread that paints.
+ */
+public class TextBuffer {
+
+    private static final int CACHED_FONTS = 16;
+    private static final int[] fontStyles = new int[CACHED_FONTS];
+    private static final float[] fontSizes = new float[CACHED_FONTS];
+    private static final Font[] fonts = new Font[CACHED_FONTS];
+    private static int fontCount = 0;
+
+    private static final int CACHED_COLORS = 16;
+    private static final int[] colorRgbs = new int[CACHED_COLORS];
+    private static final Color[][] colorAlphas = new Color[CACHED_COLORS][];
+    private static int colorCount = 0;
+
+    private char[] chars;
+    private int length = 0;
+
+    /**
+     * Constructor for TextBuffer.
+     */
+    public TextBuffer() {
+        chars = new char[32];
+    }
+
+    /**
+     * Empties the text.
+     *
+     * @return This buffer.
+     */
+    public TextBuffer clear() {
+        length = 0;
+        return this;
+    }
+
+    /**
+     * Appends a string.
+     *
+     * @param text The string.
+     * @return This buffer.
+     */
+    public TextBuffer append(String text) {
+        int n = text.length();
+        ensureCapacity(length + n);
+        text.getChars(0, n, chars, length);
+        length += n;
+        return this;
+    }
+
+    /**
+     * Appends a character.
+     *
+     * @param c The character.
+     * @return This buffer.
+     */
+    public TextBuffer append(char c) {
+        ensureCapacity(length + 1);
+        chars[length++] = c;
+        return this;
+    }
+
+    /**
+     * Appends a number with a fixed count of decimals, rounded half up like "%.2f".
+     *
+     * @param value The number.
+     * @param decimals The number of digits after the point.
+     * @return This buffer.
+     */
+    public TextBuffer append(double value, int decimals) {
+        long scale = 1;
+        for (int i = 0; i < decimals; i++) scale *= 10;
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0) append('-');
+        appendDigits(scaled / scale, 1);
+        if (decimals > 0) {
+            append('.');
+            appendDigits(scaled % scale, decimals);
+        }
+        return this;
+    }
+
+    /**
+     * Appends a number in decimal.
+     *
+     * @param value The number.
+     * @return This buffer.
+     */
+    public TextBuffer append(int value) {
+        if (value < 0) append('-');
+        return appendDigits(Math.abs((long) value), 1);
+    }
+
+    private TextBuffer appendDigits(long value, int minDigits) {
+        ensureCapacity(length + Math.max(minDigits, 19));
+        int start = length;
+        do {
+            chars[length++] = (char)('0' + value % 10);
+            value /= 10;
+        } while (value > 0 || length - start < minDigits);
+        // The digits went in backwards
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            char c = chars[i];
+            chars[i] = chars[j];
+            chars[j] = c;
+        }
+        return this;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > chars.length) {
+            char[] bigger = new char[Math.max(capacity, chars.length * 2)];
+            System.arraycopy(chars, 0, bigger, 0, length);
+            chars = bigger;
+        }
+    }
+
+    /**
+     * Returns the number of characters.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Draws the text with the current font and color.
+     *
+     * @param g2 The Graphics2D context.
+     * @param x The x-coordinate of the baseline start.
+     * @param y The y-coordinate of the baseline.
+     */
+    public void draw(Graphics2D g2, int x, int y) {
+        g2.drawChars(chars, 0, length, x, y);
+    }
+
+    /**
+     * Returns the width of the text in the current font.
+     *
+     * @param g2 The Graphics2D context.
+     * @return The advance width in pixels.
+     */
+    public int width(Graphics2D g2) {
+        return g2.getFontMetrics().charsWidth(chars, 0, length);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Returns the current font with another style and size, derived once and cached.
+     *
+     * @param g2 The Graphics2D context (its font is the family of the result).
+     * @param style The style (Font.PLAIN, Font.BOLD...).
+     * @param size The point size.
+     * @return The font.
+     */
+    public static Font font(Graphics2D g2, int style, float size) {
+        for (int i = 0; i < fontCount; i++) {
+            if (fontStyles[i] == style && fontSizes[i] == size) {
+                return fonts[i];
+            }
+        }
+        Font font = g2.getFont().deriveFont(style, size);
+        if (fontCount < CACHED_FONTS) {
+            fontStyles[fontCount] = style;
+            fontSizes[fontCount] = size;
+            fonts[fontCount++] = font;
+        }
+        return font;
+    }
+
+    /**
+     * Returns a color with another alpha, created once and cached.
+     *
+     * @param color The opaque color.
+     * @param alpha The alpha (0-255).
+     * @return The translucent color.
+     */
+    public static Color withAlpha(Color color, int alpha) {
+        int rgb = color.getRGB() & 0xFFFFFF;
+        alpha = Math.max(0, Math.min(255, alpha));
+        Color[] alphas = null;
+        for (int i = 0; i < colorCount; i++) {
+            if (colorRgbs[i] == rgb) {
+                alphas = colorAlphas[i];
+                break;
+            }
+        }
+        if (alphas == null) {
+            if (colorCount == CACHED_COLORS) {
+                return new Color(rgb | alpha << 24, true);
+            }
+            alphas = new Color[256];
+            colorRgbs[colorCount] = rgb;
+            colorAlphas[colorCount++] = alphas;
+        }
+        Color result = alphas[alpha];
+        if (result == null) {
+            result = alphas[alpha] = new Color(rgb | alpha << 24, true);
+        }
+        return result;
+    }
+
+    /**
+     * Converts a 0-1 opacity to the alpha {@link Color#Color(float, float, float, float)} would use.
+     *
+     * @param opacity The opacity.
+     * @return The alpha (0-255).
+     */
+    public static int alpha(float opacity) {
+        return (int)(Math.max(0f, Math.min(1f, opacity)) * 255 + 0.5f);
+    }
+}
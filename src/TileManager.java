@@ -1,107 +1,307 @@
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Random;
 
 /**
  * The TileManager class handles the generation and rendering of the game world (dungeon).
- * It uses a procedural generation algorithm to create a unique map layout for each run.
+ * It uses a procedural generation algorithm (see DungeonGenerator) to create a unique map layout for each run.
  */
 public class TileManager {
 
+    private static final Log.Site LOG_DUNGEON_FILE_FAILED = Log.site(Log.WARN, "Could not use dungeon file {}: {}");
+
     GamePanel gp;
-    /** 2D array representing the map layout. 0 = Floor, 1 = Wall. */
-    public int[][] mapTileNum;
-    
+    /** The map layout (see TileMap and TileType). */
+    public TileMap map;
+    /** The connected floor regions of the map (see RegionMap). */
+    public RegionMap regions;
+    /** The floor tiles of the main (largest) region, for spawn placement (see FloorIndex). */
+    public FloorIndex floor;
+    /** The streamed world of Endless Descent (null when playing on the fixed map). */
+    public ChunkManager chunks = null;
+    /** The curated stage loaded from {@code -Ddungeon.file} (null to generate a new dungeon every stage). */
+    public StagePlan fixedStage = null;
+    /** Incremented every time a new dungeon is generated, so caches built from the map know when to rebuild. */
+    public int mapVersion = 0;
+
+    /** The layout algorithm ({@code -Ddungeon.generator}, see DungeonGenerator). */
+    public static final DungeonGenerator GENERATOR = DungeonGenerator.fromSystemProperties();
+    /** What generation does with unreachable floor pockets ({@code -Ddungeon.pockets}). */
+    public static final RegionMap.Pockets POCKETS = RegionMap.pocketsFromSystemProperties();
+
+    // How far from the player things are placed in Endless Descent (in tiles)
+    public static final int PLACEMENT_RADIUS = 96;
+
     // Palette
     Color floorColor = new Color(20, 20, 30);
+    Color floorGrid = new Color(30, 30, 45);
     Color wallColor = new Color(40, 40, 60);
     Color wallBorder = new Color(60, 60, 90);
-    
+    Color wallShadow = new Color(20, 20, 30);
+
     /**
      * Constructor for TileManager.
-     * Initializes the map array and generates the dungeon.
-     * 
+     * Initializes the map and generates the dungeon.
+     *
      * @param gp The GamePanel instance.
      */
     public TileManager(GamePanel gp) {
         this.gp = gp;
-        mapTileNum = new int[gp.maxWorldCol][gp.maxWorldRow];
+        map = new TileMap(gp.maxWorldCol, gp.maxWorldRow);
+        String file = System.getProperty("dungeon.file");
+        if (file != null) {
+            fixedStage = loadFixedStage(Paths.get(file));
+        }
         generateDungeon();
     }
-    
+
     /**
-     * Generates a procedural dungeon using a Random Walker algorithm.
-     * It starts with a map full of walls and carves out floor tiles.
+     * Generates a procedural dungeon with the configured generator (the random walker by default)
+     * and makes sure all floor used for placement is reachable.
      */
     public void generateDungeon() {
-        // Initialize all as walls (1)
-        for (int col = 0; col < gp.maxWorldCol; col++) {
-            for (int row = 0; row < gp.maxWorldRow; row++) {
-                mapTileNum[col][row] = 1;
+        if (gp.endless) {
+            // Endless Descent: chunks are generated on demand from a fresh seed
+            long seed = gp.rand.nextLong();
+            if (chunks == null) {
+                chunks = new ChunkManager(seed);
+            } else {
+                chunks.reset(seed);
             }
+            mapVersion++;
+            return;
         }
-        
-        // Improved Random Walker to create larger rooms
-        int x = gp.maxWorldCol / 2;
-        int y = gp.maxWorldRow / 2;
-        int steps = 1500; // Increased steps
-        Random rand = new Random();
-        
-        mapTileNum[x][y] = 0; // Start point
-        
-        for (int i = 0; i < steps; i++) {
-            int direction = rand.nextInt(4);
-            if (direction == 0) y--; // Up
-            if (direction == 1) y++; // Down
-            if (direction == 2) x--; // Left
-            if (direction == 3) x++; // Right
-            
-            // Keep within bounds (leave 1 tile border)
-            if (x < 2) x = 2;
-            if (x > gp.maxWorldCol - 3) x = gp.maxWorldCol - 3;
-            if (y < 2) y = 2;
-            if (y > gp.maxWorldRow - 3) y = gp.maxWorldRow - 3;
-            
-            // Carve a 3x3 area instead of 1x1 to make rooms bigger
-            int brushSize = 1; // Easy to adjust tunnel width now
-            for (int rX = -brushSize; rX <= brushSize; rX++) {
-                for (int rY = -brushSize; rY <= brushSize; rY++) {
-                    mapTileNum[x + rX][y + rY] = 0;
+        if (chunks != null) {
+            chunks.shutdown();
+            chunks = null;
+        }
+
+        if (fixedStage != null) {
+            // Nothing changes the stage's tiles, so every run can share them
+            install(fixedStage.map, fixedStage.regions, fixedStage.floor);
+            return;
+        }
+        // Generated into a fresh map: an installed map is never modified, so saved games
+        // (see SaveGame) can keep a reference to it instead of copying the tiles
+        TileMap next = new TileMap(gp.maxWorldCol, gp.maxWorldRow);
+        RegionMap nextRegions = generateLayout(GENERATOR, next, gp.rand.nextLong());
+        install(next, nextRegions, new FloorIndex(next, nextRegions, nextRegions.largest()));
+    }
+
+    /**
+     * Loads a curated stage (see DungeonFile). If the file does not exist yet, a stage of the
+     * world's size is generated and saved there, so the next start loads it instead. A stage of
+     * another size than the world is rejected.
+     *
+     * @param path The dungeon file.
+     * @return The stage, or null if the file could not be loaded or created.
+     */
+    private StagePlan loadFixedStage(Path path) {
+        try {
+            if (Files.exists(path)) {
+                StagePlan plan = DungeonFile.open(path).toStagePlan();
+                if (plan.map.cols != gp.maxWorldCol || plan.map.rows != gp.maxWorldRow) {
+                    // Camera and world bounds follow the world size (set -Dworld.cols and -Dworld.rows to match)
+                    throw new IOException("the stage is " + plan.map.cols + "x" + plan.map.rows
+                            + ", the world " + gp.maxWorldCol + "x" + gp.maxWorldRow);
                 }
+                return plan;
             }
+            StagePlan plan = StagePlan.build(GENERATOR, gp.maxWorldCol, gp.maxWorldRow, 5, 10, gp.rand.nextLong());
+            DungeonFile.write(path, plan, GENERATOR.name());
+            return plan;
+        } catch (IOException e) {
+            LOG_DUNGEON_FILE_FAILED.log(path, e.getMessage());
+            return null;
         }
     }
-    
+
+    /**
+     * Switches to a map that was generated elsewhere (see StagePlan), e.g. on a worker thread.
+     *
+     * @param next The new map.
+     * @param nextRegions The regions of the new map.
+     * @param nextFloor The floor index of the new map.
+     */
+    public void install(TileMap next, RegionMap nextRegions, FloorIndex nextFloor) {
+        map = next;
+        regions = nextRegions;
+        floor = nextFloor;
+        mapVersion++;
+    }
+
+    /**
+     * Lays out a map with a generator and repairs its pockets. Only the given map is
+     * touched, so this is safe to run off the game thread on a map nobody else is using.
+     *
+     * @param generator The layout algorithm.
+     * @param map The map to fill.
+     * @param seed The seed of the layout.
+     * @return The regions of the finished map (with at least one floor region).
+     */
+    public static RegionMap generateLayout(DungeonGenerator generator, TileMap map, long seed) {
+        generator.generate(map, seed);
+        RegionMap regions = RegionMap.repair(map, POCKETS);
+        if (regions.largest() == 0) {
+            // Some generators can leave a tiny map without floor; the walker never does
+            new WalkerGenerator().generate(map, seed);
+            regions = RegionMap.repair(map, POCKETS);
+        }
+        return regions;
+    }
+
+    /**
+     * Checks if a tile blocks movement. Anything outside the map counts as solid.
+     *
+     * @param col The column.
+     * @param row The row.
+     * @return True for walls and out-of-bounds tiles.
+     */
+    public boolean isSolid(int col, int row) {
+        return chunks != null ? chunks.isSolid(col, row) : map.isSolid(col, row);
+    }
+
+    /**
+     * Returns the connected floor region of a tile.
+     * The Endless Descent chunk generator connects every chunk to its neighbours, so there all
+     * floor is one region.
+     *
+     * @param col The column.
+     * @param row The row.
+     * @return The region id, or 0 for walls and out-of-bounds tiles.
+     */
+    public int regionOf(int col, int row) {
+        if (chunks != null) {
+            return chunks.isSolid(col, row) ? 0 : 1;
+        }
+        return regions.regionOf(col, row);
+    }
+
+    /**
+     * Checks if two tiles may be able to reach each other. Walls have no region and are treated
+     * as reachable, so a unit partly over a wall edge is not filtered out by mistake.
+     *
+     * @param col1 The first tile's column.
+     * @param row1 The first tile's row.
+     * @param col2 The second tile's column.
+     * @param row2 The second tile's row.
+     * @return False only if both tiles are floor in different regions.
+     */
+    public boolean sameRegion(int col1, int row1, int col2, int row2) {
+        int a = regionOf(col1, row1);
+        int b = regionOf(col2, row2);
+        return a == 0 || b == 0 || a == b;
+    }
+
+    /**
+     * Returns the type of a tile. Anything outside the map is a wall.
+     *
+     * @param col The column.
+     * @param row The row.
+     * @return The tile type.
+     */
+    public TileType getTile(int col, int row) {
+        if (chunks != null) {
+            return chunks.get(col, row);
+        }
+        if (col < 0 || col >= map.cols || row < 0 || row >= map.rows) {
+            return TileType.WALL;
+        }
+        return map.get(col, row);
+    }
+
+    /**
+     * Picks a random floor tile for placing things: anywhere on the fixed map, or within
+     * PLACEMENT_RADIUS of the player in Endless Descent.
+     *
+     * @param rand The random generator to use.
+     * @return The packed tile (see FloorIndex), or FloorIndex.NONE if there is no floor.
+     */
+    public long randomFloor(Random rand) {
+        if (chunks != null) {
+            return chunks.randomFloorInRing(gp.player.worldX / gp.tileSize, gp.player.worldY / gp.tileSize, 0, PLACEMENT_RADIUS, rand);
+        }
+        return floor.randomTile(rand);
+    }
+
+    /**
+     * Picks a random floor tile whose distance to a point lies between two bounds.
+     * Always terminates; in Endless Descent the maximum distance is capped to the chunks near the point.
+     *
+     * @param col The column of the point.
+     * @param row The row of the point.
+     * @param minDist The minimum distance in tiles (0 for none).
+     * @param maxDist The maximum distance in tiles (Integer.MAX_VALUE for none).
+     * @param rand The random generator to use.
+     * @return The packed tile (see FloorIndex), or FloorIndex.NONE if no floor tile is in range.
+     */
+    public long randomFloorInRing(int col, int row, int minDist, int maxDist, Random rand) {
+        if (chunks != null) {
+            return chunks.randomFloorInRing(col, row, minDist, maxDist, rand);
+        }
+        return floor.randomTileInRing(col, row, minDist, maxDist, rand);
+    }
+
+    /**
+     * Checks if a square box in world coordinates overlaps a wall or leaves the map.
+     * This is the shared tile collision used by the player, enemies and ECS entities.
+     *
+     * @param worldX The x-coordinate of the box's top-left corner.
+     * @param worldY The y-coordinate of the box's top-left corner.
+     * @param size The width and height of the box in pixels.
+     * @return True if any corner of the box is in a wall or out of bounds.
+     */
+    public boolean collidesWithBox(int worldX, int worldY, int size) {
+        if (worldX < 0 || worldY < 0) {
+            return true; // Out of bounds (the division below would round towards zero)
+        }
+
+        // Simple 4-corner collision check (TileMap treats out of bounds as solid)
+        int leftCol = worldX / gp.tileSize;
+        int rightCol = (worldX + size - 1) / gp.tileSize;
+        int topRow = worldY / gp.tileSize;
+        int bottomRow = (worldY + size - 1) / gp.tileSize;
+
+        if (chunks != null) {
+            return chunks.isSolid(leftCol, topRow) || chunks.isSolid(rightCol, topRow) ||
+                   chunks.isSolid(leftCol, bottomRow) || chunks.isSolid(rightCol, bottomRow);
+        }
+        return map.isSolid(leftCol, topRow) | map.isSolid(rightCol, topRow) |
+               map.isSolid(leftCol, bottomRow) | map.isSolid(rightCol, bottomRow);
+    }
+
     /**
      * Draws the visible portion of the map on the screen.
-     * It iterates through the map array and draws tiles relative to the player's camera position.
-     * 
+     * Only the tiles around the player's camera position are visited, so the cost does not
+     * depend on the size of the world.
+     *
      * @param g2 The Graphics2D context.
      */
     public void draw(Graphics2D g2) {
-        int worldCol = 0;
-        int worldRow = 0;
-
-        while (worldCol < gp.maxWorldCol && worldRow < gp.maxWorldRow) {
-
-            int tileNum = mapTileNum[worldCol][worldRow];
-            
-            int worldX = worldCol * gp.tileSize;
-            int worldY = worldRow * gp.tileSize;
-            int screenX = worldX - gp.player.worldX + gp.player.screenX;
-            int screenY = worldY - gp.player.worldY + gp.player.screenY;
-
-            // Only draw tiles visible on screen (with some buffer)
-            if (worldX + gp.tileSize > gp.player.worldX - gp.player.screenX &&
-                worldX - gp.tileSize < gp.player.worldX + gp.player.screenX &&
-                worldY + gp.tileSize > gp.player.worldY - gp.player.screenY &&
-                worldY - gp.tileSize < gp.player.worldY + gp.player.screenY) {
-                
-                if (tileNum == 0) {
+        // Visible tile range (with one tile of buffer)
+        int cols = chunks != null ? ChunkManager.WORLD_CHUNKS * ChunkManager.CHUNK_SIZE : map.cols;
+        int rows = chunks != null ? ChunkManager.WORLD_CHUNKS * ChunkManager.CHUNK_SIZE : map.rows;
+        int startCol = Math.max(0, (gp.player.worldX - gp.player.screenX) / gp.tileSize - 1);
+        int endCol = Math.min(cols - 1, (gp.player.worldX + gp.player.screenX) / gp.tileSize + 2);
+        int startRow = Math.max(0, (gp.player.worldY - gp.player.screenY) / gp.tileSize - 1);
+        int endRow = Math.min(rows - 1, (gp.player.worldY + gp.player.screenY) / gp.tileSize + 2);
+
+        for (int worldRow = startRow; worldRow <= endRow; worldRow++) {
+            for (int worldCol = startCol; worldCol <= endCol; worldCol++) {
+                int worldX = worldCol * gp.tileSize;
+                int worldY = worldRow * gp.tileSize;
+                int screenX = worldX - gp.player.worldX + gp.player.screenX;
+                int screenY = worldY - gp.player.worldY + gp.player.screenY;
+
+                if (getTile(worldCol, worldRow) == TileType.FLOOR) {
                     g2.setColor(floorColor);
                     g2.fillRect(screenX, screenY, gp.tileSize, gp.tileSize);
                     // Subtle grid
-                    g2.setColor(new Color(30, 30, 45));
+                    g2.setColor(floorGrid);
                     g2.drawRect(screenX, screenY, gp.tileSize, gp.tileSize);
                 } else {
                     g2.setColor(wallColor);
@@ -109,16 +309,10 @@ public class TileManager {
                     // 3D effect for walls
                     g2.setColor(wallBorder);
                     g2.fillRect(screenX, screenY, gp.tileSize, gp.tileSize/4); // Top highlight
-                    g2.setColor(new Color(20, 20, 30));
+                    g2.setColor(wallShadow);
                     g2.fillRect(screenX, screenY + gp.tileSize - gp.tileSize/4, gp.tileSize, gp.tileSize/4); // Bottom shadow
                 }
             }
-
-            worldCol++;
-            if (worldCol == gp.maxWorldCol) {
-                worldCol = 0;
-                worldRow++;
-            }
         }
     }
 }
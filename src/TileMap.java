@@ -0,0 +1,242 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * The TileMap class is the compact store behind the dungeon layout.
+ * Tiles are kept in a flat, row-major byte array (one TileType id per tile) and mirrored in a
+ * packed solidity bitset (one bit per tile), which is what the hot collision and line-of-sight
+ * checks read. A 4096x4096 map takes 16 MB of ids plus 2 MB of bits.
+ */
+public class TileMap {
+
+    /** The number of columns (tiles across). */
+    public final int cols;
+    /** The number of rows (tiles down). */
+    public final int rows;
+
+    private final byte[] tiles;
+    private final long[] solid;
+
+    /**
+     * Constructor for TileMap. Every tile starts as a wall.
+     *
+     * @param cols The number of columns.
+     * @param rows The number of rows.
+     */
+    public TileMap(int cols, int rows) {
+        this.cols = cols;
+        this.rows = rows;
+        this.tiles = new byte[cols * rows];
+        this.solid = new long[(cols * rows + 63) >>> 6];
+        fill(TileType.WALL);
+    }
+
+    /**
+     * Sets every tile to the same type.
+     *
+     * @param type The tile type.
+     */
+    public void fill(TileType type) {
+        Arrays.fill(tiles, type.id);
+        Arrays.fill(solid, type.solid ? -1L : 0L);
+    }
+
+    /**
+     * Returns the type of a tile. The coordinates must be inside the map.
+     *
+     * @param col The column.
+     * @param row The row.
+     * @return The tile type.
+     */
+    public TileType get(int col, int row) {
+        return TileType.fromId(tiles[row * cols + col]);
+    }
+
+    /**
+     * Changes the type of a tile. The coordinates must be inside the map.
+     *
+     * @param col The column.
+     * @param row The row.
+     * @param type The new tile type.
+     */
+    public void set(int col, int row, TileType type) {
+        int index = row * cols + col;
+        tiles[index] = type.id;
+        if (type.solid) {
+            solid[index >>> 6] |= 1L << index;
+        } else {
+            solid[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    /**
+     * Checks if a tile blocks movement. Anything outside the map counts as solid.
+     *
+     * @param col The column.
+     * @param row The row.
+     * @return True for walls and out-of-bounds coordinates.
+     */
+    public boolean isSolid(int col, int row) {
+        // One unsigned compare per axis covers both "< 0" and ">= size"
+        if (Integer.compareUnsigned(col, cols) >= 0 || Integer.compareUnsigned(row, rows) >= 0) {
+            return true;
+        }
+        int index = row * cols + col;
+        return (solid[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Checks if a tile blocks movement, by row-major index. The index must be inside the map.
+     *
+     * @param index The tile index (row * cols + col).
+     * @return True for walls.
+     */
+    public boolean isSolidIndex(int index) {
+        return (solid[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Writes the tile ids (one byte per tile, row-major) to a stream.
+     *
+     * @param out The stream to write to.
+     * @throws IOException If writing fails.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.write(tiles);
+    }
+
+    /**
+     * Replaces every tile with ids read from a stream (as written by {@link #write}).
+     * Unknown ids are read as walls.
+     *
+     * @param in The stream to read from.
+     * @throws IOException If reading fails or the stream ends early.
+     */
+    public void read(DataInputStream in) throws IOException {
+        in.readFully(tiles);
+        rebuildSolid();
+    }
+
+    /**
+     * Replaces every tile with the given ids (one byte per tile, row-major).
+     * Generators that fill a plain array in parallel use this to publish their result,
+     * since neighbouring tiles share a word of the solidity bitset.
+     *
+     * @param ids The tile ids; must hold cols * rows entries. Unknown ids are read as walls.
+     */
+    public void load(byte[] ids) {
+        System.arraycopy(ids, 0, tiles, 0, tiles.length);
+        rebuildSolid();
+    }
+
+    /**
+     * Returns the number of bits needed per tile to store every TileType id (1, 2, 4 or 8,
+     * so a tile never straddles two 64-bit words).
+     */
+    public static int bitsPerTile() {
+        int maxId = 0;
+        for (TileType type : TileType.values()) {
+            maxId = Math.max(maxId, type.id & 0xFF);
+        }
+        int bits = 1;
+        while ((1 << bits) <= maxId) {
+            bits <<= 1;
+        }
+        return bits;
+    }
+
+    /**
+     * Returns the number of 64-bit words the packed tiles take (see {@link #writePacked}).
+     *
+     * @param tileCount The number of tiles.
+     * @param bits The bits per tile.
+     */
+    public static int packedWords(int tileCount, int bits) {
+        return (int)(((long)tileCount * bits + 63) >>> 6);
+    }
+
+    /**
+     * Writes the tile ids bit-packed into 64-bit words, lowest bits first.
+     * With one bit per tile the words are exactly the solidity bitset.
+     *
+     * @param out The stream to write to.
+     * @param bits The bits per tile (1, 2, 4 or 8).
+     * @throws IOException If writing fails.
+     */
+    public void writePacked(DataOutputStream out, int bits) throws IOException {
+        if (bits == 1 && idsMatchSolidity()) {
+            for (long word : solid) {
+                out.writeLong(word);
+            }
+            return;
+        }
+        int perWord = 64 / bits;
+        long mask = (1L << bits) - 1;
+        for (int word = 0; word < packedWords(tiles.length, bits); word++) {
+            long value = 0;
+            int first = word * perWord;
+            int last = Math.min(tiles.length, first + perWord);
+            for (int index = first; index < last; index++) {
+                value |= (tiles[index] & mask) << ((index - first) * bits);
+            }
+            out.writeLong(value);
+        }
+    }
+
+    /**
+     * Replaces every tile with bit-packed ids (as written by {@link #writePacked}).
+     * With one bit per tile the words are copied straight into the solidity bitset in one bulk get.
+     *
+     * @param words The packed words, positioned at the first one (e.g. a view of a mapped file).
+     * @param bits The bits per tile (1, 2, 4 or 8).
+     */
+    public void readPacked(LongBuffer words, int bits) {
+        if (bits == 1 && idsMatchSolidity()) {
+            words.get(solid);
+            byte wall = TileType.WALL.id;
+            byte floor = TileType.FLOOR.id;
+            for (int index = 0; index < tiles.length; index++) {
+                tiles[index] = (solid[index >>> 6] & (1L << index)) != 0 ? wall : floor;
+            }
+            return;
+        }
+        int perWord = 64 / bits;
+        long mask = (1L << bits) - 1;
+        for (int word = 0; word < packedWords(tiles.length, bits); word++) {
+            long value = words.get();
+            int first = word * perWord;
+            int last = Math.min(tiles.length, first + perWord);
+            for (int index = first; index < last; index++) {
+                tiles[index] = (byte)((value >>> ((index - first) * bits)) & mask);
+            }
+        }
+        rebuildSolid();
+    }
+
+    /**
+     * Checks if a 1-bit tile id is the same as the solidity bit (only floor and wall exist).
+     */
+    private static boolean idsMatchSolidity() {
+        return TileType.values().length == 2 && TileType.FLOOR.id == 0 && TileType.WALL.id == 1;
+    }
+
+    /**
+     * Recomputes the solidity bitset from the tile ids.
+     */
+    private void rebuildSolid() {
+        Arrays.fill(solid, 0L);
+        for (int index = 0; index < tiles.length; index++) {
+            TileType type = TileType.fromId(tiles[index]);
+            if (type == null) {
+                type = TileType.WALL;
+                tiles[index] = type.id;
+            }
+            if (type.solid) {
+                solid[index >>> 6] |= 1L << index;
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * The TileType enum lists the kinds of tiles the dungeon is made of.
+ * Each type has a compact byte id (what TileMap stores per tile) and a solidity flag
+ * (what movement, projectiles and line of sight care about).
+ */
+public enum TileType {
+    FLOOR(0, false),
+    WALL(1, true);
+
+    /** The id stored in the TileMap. */
+    public final byte id;
+    /** Whether the tile blocks movement and sight. */
+    public final boolean solid;
+
+    private static final TileType[] BY_ID = new TileType[256];
+    static {
+        for (TileType type : values()) {
+            BY_ID[type.id & 0xFF] = type;
+        }
+    }
+
+    TileType(int id, boolean solid) {
+        this.id = (byte) id;
+        this.solid = solid;
+    }
+
+    /**
+     * Looks up a tile type by its stored id.
+     *
+     * @param id The byte id from the TileMap.
+     * @return The tile type, or null for an unknown id.
+     */
+    public static TileType fromId(byte id) {
+        return BY_ID[id & 0xFF];
+    }
+}
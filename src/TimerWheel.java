@@ -0,0 +1,182 @@
+/**
+ * The TimerWheel class schedules game events by tick number instead of having every entity
+ * count its own timers down each frame.
+ * It is a hashed timing wheel: each slot holds an intrusive linked list of the timers whose
+ * deadline falls on that slot, so advancing one tick only touches the timers that are due
+ * (plus the few long timers sharing the slot). Timers are owned and reused by the entities,
+ * so scheduling, rescheduling and cancelling never allocate.
+ */
+public class TimerWheel {
+
+    private static final int WHEEL_SIZE = 256; // Must be a power of two
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private final Timer[] slots = new Timer[WHEEL_SIZE];
+    private long currentTick = 0;
+    private int epoch = 0; // Bumped by clear() so a firing pass knows its slot was wiped
+
+    /**
+     * Returns the current tick of the wheel.
+     *
+     * @return The number of ticks advanced since the wheel was created.
+     */
+    public long now() {
+        return currentTick;
+    }
+
+    /**
+     * Schedules a timer to fire after the given number of ticks.
+     * If the timer is already scheduled it is moved to the new deadline.
+     *
+     * @param timer The timer to schedule.
+     * @param delay The number of ticks until it fires (at least 1).
+     */
+    public void schedule(Timer timer, int delay) {
+        if (timer.wheel != null) {
+            timer.wheel.unlink(timer);
+        }
+        if (delay < 1) delay = 1;
+
+        timer.wheel = this;
+        timer.deadline = currentTick + delay;
+
+        int index = (int)(timer.deadline & WHEEL_MASK);
+        timer.prev = null;
+        timer.next = slots[index];
+        if (slots[index] != null) {
+            slots[index].prev = timer;
+        }
+        slots[index] = timer;
+    }
+
+    /**
+     * Moves a scheduled timer's deadline later, e.g. to hold a cooldown while its owner is
+     * stunned. Does nothing if the timer is not scheduled.
+     *
+     * @param timer The timer to postpone.
+     * @param ticks The number of ticks to add.
+     */
+    public void postpone(Timer timer, int ticks) {
+        if (timer.wheel == this) {
+            schedule(timer, (int)(timer.deadline - currentTick) + ticks);
+        }
+    }
+
+    /**
+     * Cancels a timer if it is scheduled. Does nothing otherwise.
+     *
+     * @param timer The timer to cancel.
+     */
+    public void cancel(Timer timer) {
+        if (timer.wheel == this) {
+            unlink(timer);
+        }
+    }
+
+    /**
+     * Advances the wheel by one tick and fires every timer that is now due.
+     * Callbacks may freely schedule, cancel or clear timers.
+     */
+    public void advance() {
+        currentTick++;
+        int index = (int)(currentTick & WHEEL_MASK);
+        int startEpoch = epoch;
+
+        Timer timer = slots[index];
+        while (timer != null) {
+            if (timer.deadline <= currentTick) {
+                unlink(timer);
+                timer.action.run();
+
+                // The callback may have cleared the wheel or moved other timers,
+                // so rescan the slot from its head (fired timers are already gone)
+                if (epoch != startEpoch) return;
+                timer = slots[index];
+            } else {
+                timer = timer.next; // Due on a later turn of the wheel
+            }
+        }
+    }
+
+    /**
+     * Removes every scheduled timer without firing it.
+     * Used when the world is rebuilt (new game, next stage).
+     */
+    public void clear() {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            Timer timer = slots[i];
+            while (timer != null) {
+                Timer next = timer.next;
+                timer.wheel = null;
+                timer.next = null;
+                timer.prev = null;
+                timer = next;
+            }
+            slots[i] = null;
+        }
+        epoch++;
+    }
+
+    /**
+     * Removes every scheduled timer and sets the current tick, e.g. to continue a saved game
+     * (see SaveGame) whose timers are then rescheduled with the ticks they had left.
+     *
+     * @param tick The new current tick.
+     */
+    public void restart(long tick) {
+        clear();
+        currentTick = tick;
+    }
+
+    private void unlink(Timer timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            slots[(int)(timer.deadline & WHEEL_MASK)] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        timer.next = null;
+        timer.prev = null;
+        timer.wheel = null;
+    }
+
+    /**
+     * A reusable timer handle. Entities create their timers once and reschedule them as needed.
+     */
+    public static class Timer {
+        private final Runnable action;
+        private TimerWheel wheel;
+        private long deadline;
+        private Timer next, prev;
+
+        /**
+         * Constructor for Timer.
+         *
+         * @param action The callback to run when the timer fires.
+         */
+        public Timer(Runnable action) {
+            this.action = action;
+        }
+
+        /**
+         * Checks if the timer is waiting to fire.
+         *
+         * @return True if scheduled on a wheel.
+         */
+        public boolean isScheduled() {
+            return wheel != null;
+        }
+
+        /**
+         * Returns how many ticks are left before the timer fires.
+         *
+         * @return The remaining ticks, or 0 if the timer is not scheduled.
+         */
+        public int remaining() {
+            if (wheel == null) return 0;
+            return (int)(deadline - wheel.currentTick);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+import java.util.Random;
+
+/**
+ * The WalkerGenerator class is the original dungeon algorithm: a single random walker starts in
+ * the centre of a map full of walls and carves a square brush of floor at every step.
+ * It always produces one connected cave.
+ */
+public class WalkerGenerator implements DungeonGenerator {
+
+    /** Steps per 100x100 tiles (the number of steps scales with the map area). */
+    public int stepsPer10k = 1500;
+    /** Brush radius: 1 carves 3x3 tiles per step, 0 carves one tile. */
+    public int brushSize = 1;
+
+    @Override
+    public void generate(TileMap map, long seed) {
+        Random rand = new Random(seed);
+
+        // Initialize all as walls
+        map.fill(TileType.WALL);
+
+        int x = map.cols / 2;
+        int y = map.rows / 2;
+        int steps = (int)((long)stepsPer10k * map.cols * map.rows / (100 * 100));
+        int margin = brushSize + 1; // Keep a wall border around the map
+
+        map.set(x, y, TileType.FLOOR); // Start point
+
+        for (int i = 0; i < steps; i++) {
+            int direction = rand.nextInt(4);
+            if (direction == 0) y--; // Up
+            if (direction == 1) y++; // Down
+            if (direction == 2) x--; // Left
+            if (direction == 3) x++; // Right
+
+            // Keep within bounds (leave 1 tile border)
+            if (x < margin) x = margin;
+            if (x > map.cols - 1 - margin) x = map.cols - 1 - margin;
+            if (y < margin) y = margin;
+            if (y > map.rows - 1 - margin) y = map.rows - 1 - margin;
+
+            for (int rX = -brushSize; rX <= brushSize; rX++) {
+                for (int rY = -brushSize; rY <= brushSize; rY++) {
+                    map.set(x + rX, y + rY, TileType.FLOOR);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return "walker";
+    }
+}